@@ -41,13 +41,19 @@ import de.ugoe.cs.cpdp.dataprocessing.ISetWiseProcessingStrategy;
 import de.ugoe.cs.cpdp.dataprocessing.IVersionProcessingStrategy;
 import de.ugoe.cs.cpdp.dataselection.IPointWiseDataselectionStrategy;
 import de.ugoe.cs.cpdp.dataselection.ISetWiseDataselectionStrategy;
+import de.ugoe.cs.cpdp.eval.CVWekaEvaluation;
 import de.ugoe.cs.cpdp.eval.IEvaluationStrategy;
 import de.ugoe.cs.cpdp.eval.IResultStorage;
 import de.ugoe.cs.cpdp.loader.IVersionLoader;
+import de.ugoe.cs.cpdp.training.BudgetedTraining;
 import de.ugoe.cs.cpdp.training.ISetWiseTestdataAwareTrainingStrategy;
 import de.ugoe.cs.cpdp.training.ISetWiseTrainingStrategy;
 import de.ugoe.cs.cpdp.training.ITestAwareTrainingStrategy;
+import de.ugoe.cs.cpdp.training.ITrainer;
 import de.ugoe.cs.cpdp.training.ITrainingStrategy;
+import de.ugoe.cs.cpdp.training.IWekaCompatibleTrainer;
+import de.ugoe.cs.cpdp.training.MetricMatchingTraining;
+import de.ugoe.cs.cpdp.util.TrainingBudget;
 import de.ugoe.cs.cpdp.versions.IVersionFilter;
 
 /**
@@ -467,6 +473,19 @@ public class ExperimentConfiguration extends DefaultHandler {
         return this.executionStrategyParameters;
     }
 
+    /**
+     * Creates a new instance of this configuration by parsing the configuration file again. The
+     * new configuration has its own instances of all loaders, processors, trainers, etc. and can,
+     * therefore, be used concurrently to this configuration.
+     *
+     * @return independent copy of this configuration
+     * @throws ExperimentConfigurationException
+     *             thrown if there is an error creating the configuration
+     */
+    public ExperimentConfiguration createIndependentCopy() throws ExperimentConfigurationException {
+        return new ExperimentConfiguration(this.configFile);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -551,7 +570,7 @@ public class ExperimentConfiguration extends DefaultHandler {
                     .forName("de.ugoe.cs.cpdp.training." + attributes.getValue("name")).getDeclaredConstructor()
                     .newInstance();
                 trainer.setParameter(attributes.getValue("param"));
-                this.setwiseTrainers.add(trainer);
+                this.setwiseTrainers.add(applyBudget(trainer, attributes));
             }
             else if (qName.equalsIgnoreCase("setwisetestdataawaretrainer")) {
                 final ISetWiseTestdataAwareTrainingStrategy trainer =
@@ -561,7 +580,11 @@ public class ExperimentConfiguration extends DefaultHandler {
                 trainer.setParameter(attributes.getValue("param"));
                 trainer.setMethod(attributes.getValue("method"));
                 trainer.setThreshold(attributes.getValue("threshold"));
-                this.setwiseTestdataAwareTrainers.add(trainer);
+                String threads = attributes.getValue("threads");
+                if (trainer instanceof MetricMatchingTraining && threads != null) {
+                    ((MetricMatchingTraining) trainer).setNumThreads(Integer.parseInt(threads));
+                }
+                this.setwiseTestdataAwareTrainers.add(applyBudget(trainer, attributes));
             }
             else if (qName.equalsIgnoreCase("preprocessor")) {
                 final IProcessesingStrategy processor = (IProcessesingStrategy) Class
@@ -590,18 +613,28 @@ public class ExperimentConfiguration extends DefaultHandler {
                     .forName("de.ugoe.cs.cpdp.training." + attributes.getValue("name")).getDeclaredConstructor()
                     .newInstance();
                 trainer.setParameter(attributes.getValue("param"));
-                this.trainers.add(trainer);
+                this.trainers.add(applyBudget(trainer, attributes));
             }
             else if (qName.equalsIgnoreCase("testawaretrainer")) {
                 final ITestAwareTrainingStrategy trainer = (ITestAwareTrainingStrategy) Class
                     .forName("de.ugoe.cs.cpdp.training." + attributes.getValue("name")).getDeclaredConstructor()
                     .newInstance();
                 trainer.setParameter(attributes.getValue("param"));
-                this.testAwareTrainers.add(trainer);
+                this.testAwareTrainers.add(applyBudget(trainer, attributes));
             }
             else if (qName.equalsIgnoreCase("eval")) {
                 final IEvaluationStrategy evaluator = (IEvaluationStrategy) Class
                     .forName("de.ugoe.cs.cpdp.eval." + attributes.getValue("name")).getDeclaredConstructor().newInstance();
+                if (evaluator instanceof CVWekaEvaluation) {
+                    String seed = attributes.getValue("seed");
+                    if (seed != null) {
+                        ((CVWekaEvaluation) evaluator).setSeed(Long.parseLong(seed));
+                    }
+                    String threads = attributes.getValue("threads");
+                    if (threads != null) {
+                        ((CVWekaEvaluation) evaluator).setNumThreads(Integer.parseInt(threads));
+                    }
+                }
                 this.evaluators.add(evaluator);
             }
             else if (qName.equalsIgnoreCase("storage")) {
@@ -663,6 +696,37 @@ public class ExperimentConfiguration extends DefaultHandler {
         }
     }
 
+    /**
+     * <p>
+     * Wraps a trainer into a {@link BudgetedTraining} if the attributes of the trainer define a
+     * time budget (timeBudget, in seconds) or a memory budget (memoryBudget, in MB of heap
+     * allocations). The attribute fallback defines the classifier that is trained if the budget is
+     * exceeded.
+     * </p>
+     *
+     * @param trainer
+     *            the trainer
+     * @param attributes
+     *            the attributes of the trainer in the configuration
+     * @return the trainer or the budgeted trainer
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends ITrainer> T applyBudget(T trainer, Attributes attributes) {
+        String timeBudget = attributes.getValue("timeBudget");
+        String memoryBudget = attributes.getValue("memoryBudget");
+        if (timeBudget == null && memoryBudget == null) {
+            return trainer;
+        }
+        if (!(trainer instanceof IWekaCompatibleTrainer)) {
+            throw new IllegalArgumentException("budgets are only supported for Weka compatible trainers");
+        }
+        long maxMillis = timeBudget == null ? 0 : Math.round(Double.parseDouble(timeBudget) * 1000);
+        long maxAllocatedBytes = memoryBudget == null ? 0 : Long.parseLong(memoryBudget) << 20;
+        return (T) new BudgetedTraining((IWekaCompatibleTrainer) trainer,
+                                        new TrainingBudget(maxMillis, maxAllocatedBytes),
+                                        attributes.getValue("fallback"));
+    }
+
     /**
      * Adds the information of another experiment configuration to this configuration. This
      * mechanism allows the usage of partial configuration files. The name of the other
@@ -17,6 +17,9 @@ package de.ugoe.cs.cpdp;
 import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +36,10 @@ import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFact
 import org.apache.logging.log4j.core.config.builder.api.RootLoggerComponentBuilder;
 import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
 
+import de.ugoe.cs.cpdp.execution.ExperimentPlanner;
+import de.ugoe.cs.cpdp.execution.ExperimentPlanner.WorkUnit;
 import de.ugoe.cs.cpdp.execution.IExecutionStrategy;
+import de.ugoe.cs.cpdp.util.ArtifactCache;
 
 /**
  * Executable that can be used to run experiments.
@@ -71,29 +77,88 @@ public class Runner {
     /**
      * Main class. The arguments are {@link ExperimentConfiguration} files. Each experiment is
      * started in a separate thread. The number of concurrently running threads is the number of
-     * logical processors of the host system.
+     * logical processors of the host system.<br>
+     * <br>
+     * If the argument {@code --plan} is passed, the experiments are not executed. Instead, a dry-run
+     * plan with the work units and their estimated costs is created (see
+     * {@link ExperimentPlanner}). The plan is printed as table and stored as JSON in the file
+     * defined by {@code --planfile=<file>} (default: plan.json). The table is sorted by the
+     * estimated CPU time, unless another order is defined by {@code --plansort=cpu|memory|name}.
+     * <br>
+     * <br>
+     * The argument {@code --cachedir=<directory>} defines the directory of the
+     * {@link ArtifactCache}, such that intermediate results are reused across experiment
+     * configurations and runs.
      * 
      * @param args
      *            experiment configuration files
      */
     @SuppressWarnings("unused")
     public static void main(String[] args) {
-        final int concurrentThreads = Runtime.getRuntime().availableProcessors();
-        LOGGER.info("exuection max " + concurrentThreads + " at the same time");
-        final ExecutorService threadPool = Executors.newFixedThreadPool(concurrentThreads);
+        boolean plan = false;
+        String planFile = "plan.json";
+        Comparator<WorkUnit> planOrder = WorkUnit.BY_CPU_DESCENDING;
+        List<String> configFiles = new LinkedList<>();
         for (String arg : args) {
-            File file = new File(arg);
-            if (file.isFile()) {
-                createConfig(threadPool, file.getAbsolutePath());
+            if ("--plan".equals(arg)) {
+                plan = true;
+            }
+            else if (arg.startsWith("--planfile=")) {
+                planFile = arg.substring("--planfile=".length());
             }
-            else if (file.isDirectory() && file.listFiles() != null) {
-                for (File subfile : file.listFiles()) {
-                    if (subfile.isFile()) {
-                        createConfig(threadPool, subfile.getAbsolutePath());
+            else if (arg.startsWith("--cachedir=")) {
+                ArtifactCache.setDirectory(new File(arg.substring("--cachedir=".length())));
+            }
+            else if (arg.startsWith("--plansort=")) {
+                String order = arg.substring("--plansort=".length());
+                if ("memory".equals(order)) {
+                    planOrder = WorkUnit.BY_MEMORY_DESCENDING;
+                }
+                else if ("name".equals(order)) {
+                    planOrder = WorkUnit.BY_NAME;
+                }
+                else if (!"cpu".equals(order)) {
+                    LOGGER.warn("unknown plan order " + order + "; using cpu");
+                }
+            }
+            else {
+                File file = new File(arg);
+                if (file.isFile()) {
+                    configFiles.add(file.getAbsolutePath());
+                }
+                else if (file.isDirectory() && file.listFiles() != null) {
+                    for (File subfile : file.listFiles()) {
+                        if (subfile.isFile()) {
+                            configFiles.add(subfile.getAbsolutePath());
+                        }
                     }
                 }
             }
         }
+        
+        if (plan) {
+            ExperimentPlanner planner = new ExperimentPlanner();
+            for (String configFile : configFiles) {
+                ExperimentConfiguration config = loadConfig(configFile);
+                if (config != null) {
+                    IExecutionStrategy experiment = createExperiment(config);
+                    if (experiment != null) {
+                        planner.addConfiguration(config, experiment);
+                    }
+                }
+            }
+            System.out.print(planner.toTable(planOrder));
+            planner.writeJSON(new File(planFile));
+            LOGGER.info("plan written to " + planFile);
+            return;
+        }
+        
+        final int concurrentThreads = Runtime.getRuntime().availableProcessors();
+        LOGGER.info("exuection max " + concurrentThreads + " at the same time");
+        final ExecutorService threadPool = Executors.newFixedThreadPool(concurrentThreads);
+        for (String configFile : configFiles) {
+            createConfig(threadPool, configFile);
+        }
         threadPool.shutdown();
         try {
             threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
@@ -112,6 +177,23 @@ public class Runner {
      *            location of the config file
      */
     public static void createConfig(ExecutorService threadPool, String configFile) {
+        ExperimentConfiguration config = loadConfig(configFile);
+        if (config != null) {
+            IExecutionStrategy experiment = createExperiment(config);
+            if (experiment != null) {
+                threadPool.execute(experiment);
+            }
+        }
+    }
+
+    /**
+     * Loads an experiment configuration
+     * 
+     * @param configFile
+     *            location of the config file
+     * @return the configuration; null if the configuration could not be loaded
+     */
+    private static ExperimentConfiguration loadConfig(String configFile) {
         ExperimentConfiguration config = null;
         try {
             config = new ExperimentConfiguration(configFile);
@@ -121,61 +203,67 @@ public class Runner {
                     configFile);
             e.printStackTrace();
         }
+        return config;
+    }
 
-        if (config != null) {
-        	LOGGER.debug(config.toString());
-            // Instantiate the class like it was given as parameter in the config file and cast it
-            // to the interface
-            try {
-                // Because we need to pass a parameter, a normal new Instance call is not possible
-                Class<?> executionStrategyClass =
-                    Class.forName("de.ugoe.cs.cpdp.execution." + config.getExecutionStrategy());
-                Constructor<?> executionStrategyConstructor =
-                    executionStrategyClass.getConstructor(ExperimentConfiguration.class);
+    /**
+     * Creates the execution strategy of an experiment configuration
+     * 
+     * @param config
+     *            the configuration
+     * @return the experiment; null if the execution strategy could not be created
+     */
+    private static IExecutionStrategy createExperiment(ExperimentConfiguration config) {
+        LOGGER.debug(config.toString());
+        // Instantiate the class like it was given as parameter in the config file and cast it
+        // to the interface
+        try {
+            // Because we need to pass a parameter, a normal new Instance call is not possible
+            Class<?> executionStrategyClass =
+                Class.forName("de.ugoe.cs.cpdp.execution." + config.getExecutionStrategy());
+            Constructor<?> executionStrategyConstructor =
+                executionStrategyClass.getConstructor(ExperimentConfiguration.class);
 
-                IExecutionStrategy experiment =
-                    (IExecutionStrategy) executionStrategyConstructor.newInstance(config);
-                
-                if( experiment instanceof IParameterizable ) {
-                    ((IParameterizable) experiment).setParameter(config.getExecutionStrategyParameters());
-                }
-                
-                threadPool.execute(experiment);
-            }
-            catch (NoSuchMethodException e) {
-            	LOGGER.error("Class \"" + config.getExecutionStrategy() +
-                    "\" does not have the right Constructor");
-                e.printStackTrace();
+            IExecutionStrategy experiment =
+                (IExecutionStrategy) executionStrategyConstructor.newInstance(config);
+            
+            if( experiment instanceof IParameterizable ) {
+                ((IParameterizable) experiment).setParameter(config.getExecutionStrategyParameters());
             }
-            catch (SecurityException e) {
-            	LOGGER.error("Security manager prevents reflection");
-                e.printStackTrace();
-            }
-            catch (IllegalArgumentException e) {
-            	LOGGER.error("Class \"" + config.getExecutionStrategy() +
-                    "\" does not have a Constructor, which" + "matches the given arguments");
-                e.printStackTrace();
-            }
-            catch (InvocationTargetException e) {
-            	LOGGER.error("Constructor in Class \"" + config.getExecutionStrategy() +
-                    "\" is not public");
-                e.printStackTrace();
-            }
-            catch (InstantiationException e) {
-            	LOGGER.error("Cannot instantiate Class \"" + config.getExecutionStrategy() +
-                    "\"");
-                e.printStackTrace();
-            }
-            catch (IllegalAccessException e) {
-            	LOGGER.error("Cannot access Class \"" + config.getExecutionStrategy() + "\"");
-                e.printStackTrace();
-            }
-            catch (ClassNotFoundException e) {
-            	LOGGER.error("Class \"" + config.getExecutionStrategy() + "\" was not found");
-                e.printStackTrace();
-            }
-
+            return experiment;
         }
-
+        catch (NoSuchMethodException e) {
+        	LOGGER.error("Class \"" + config.getExecutionStrategy() +
+                "\" does not have the right Constructor");
+            e.printStackTrace();
+        }
+        catch (SecurityException e) {
+        	LOGGER.error("Security manager prevents reflection");
+            e.printStackTrace();
+        }
+        catch (IllegalArgumentException e) {
+        	LOGGER.error("Class \"" + config.getExecutionStrategy() +
+                "\" does not have a Constructor, which" + "matches the given arguments");
+            e.printStackTrace();
+        }
+        catch (InvocationTargetException e) {
+        	LOGGER.error("Constructor in Class \"" + config.getExecutionStrategy() +
+                "\" is not public");
+            e.printStackTrace();
+        }
+        catch (InstantiationException e) {
+        	LOGGER.error("Cannot instantiate Class \"" + config.getExecutionStrategy() +
+                "\"");
+            e.printStackTrace();
+        }
+        catch (IllegalAccessException e) {
+        	LOGGER.error("Cannot access Class \"" + config.getExecutionStrategy() + "\"");
+            e.printStackTrace();
+        }
+        catch (ClassNotFoundException e) {
+        	LOGGER.error("Class \"" + config.getExecutionStrategy() + "\" was not found");
+            e.printStackTrace();
+        }
+        return null;
     }
 }
@@ -22,8 +22,9 @@ import org.apache.commons.math3.stat.descriptive.rank.Median;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.ugoe.cs.cpdp.util.ColumnMatrix;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
-import weka.core.Instance;
 import weka.core.Instances;
 
 /**
@@ -36,6 +37,11 @@ import weka.core.Instances;
  * noise-free data regarding the median threshold classification.
  * </p>
  * <p>
+ * The medians and the metric violations are computed on a column-major copy of the data (see
+ * {@link ColumnMatrix}), in parallel for blocks of metrics. The number of threads is defined by the
+ * option -threads of the parameters, e.g., "-threads 4" (default: 1).
+ * </p>
+ * <p>
  * This can also be done for the test data (i.e., TestAsTraining data selection), as the original
  * classification is completely ignored. Hence, CLAMI is an approach for unsupervised learning.
  * </p>
@@ -48,6 +54,24 @@ public class CLAMIProcessor implements IProcessesingStrategy {
      * Reference to the logger
      */
     private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * number of threads used to process the metrics, sequential by default
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to process the metrics.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
 	
     /*
      * (non-Javadoc)
@@ -56,7 +80,9 @@ public class CLAMIProcessor implements IProcessesingStrategy {
      */
     @Override
     public void setParameter(String parameters) {
-        // dummy, parameters not used
+        if (parameters != null) {
+            this.numThreads = CrosspareUtils.parseNumThreads(parameters.trim().split(" "));
+        }
     }
 
     /*
@@ -82,60 +108,30 @@ public class CLAMIProcessor implements IProcessesingStrategy {
      *            version of the data to which the CLAMI processor is applied
      */
     @SuppressWarnings("boxing")
-    private static void applyCLAMI(SoftwareVersion testversion, SoftwareVersion trainversion) {
+    private void applyCLAMI(SoftwareVersion testversion, SoftwareVersion trainversion) {
         Instances testdata = testversion.getInstances();
         Instances data = trainversion.getInstances();
 
         // first determine medians
-        double[] medians = new double[data.numAttributes()];
-        // get medians
-        for (int j = 0; j < data.numAttributes(); j++) {
-            if (j != data.classIndex()) {
-                medians[j] = data.kthSmallestValue(j, (data.numInstances() + 1) >> 1);
-            }
-        }
+        ColumnMatrix matrix = new ColumnMatrix(data, this.numThreads);
+        double[] medians = matrix.kthSmallestValues((data.numInstances() + 1) >> 1);
         // now determine cluster number for each instance
+        int[] countHighValues = matrix.countAbove(medians);
         double[] clusterNumber = new double[data.numInstances()];
         for (int i = 0; i < data.numInstances(); i++) {
-            int countHighValues = 0;
-            Instance currentInstance = data.get(i);
-            for (int j = 0; j < data.numAttributes(); j++) {
-                if (j != data.classIndex()) {
-                    if (currentInstance.value(j) > medians[j]) {
-                        countHighValues++;
-                    }
-                }
-            }
-            clusterNumber[i] = countHighValues;
+            clusterNumber[i] = countHighValues[i];
         }
 
         // determine median of cluster number
         Median m = new Median();
         double medianClusterNumber = m.evaluate(clusterNumber);
+        boolean[] buggy = new boolean[data.numInstances()];
+        for (int i = 0; i < data.numInstances(); i++) {
+            buggy[i] = clusterNumber[i] > medianClusterNumber;
+        }
 
         // now we filter the metrics
-        int[] numMetricViolations = new int[data.numAttributes()];
-        for (int j = 0; j < data.numAttributes(); j++) {
-            int currentViolations = 0;
-            for (int i = 0; i < data.numInstances(); i++) {
-                Instance currentInstance = data.get(i);
-                if (j != data.classIndex()) {
-                    if (clusterNumber[i] > medianClusterNumber) {
-                        // "buggy"
-                        if (currentInstance.value(j) <= medians[j]) {
-                            currentViolations++;
-                        }
-                    }
-                    else {
-                        // "not buggy"
-                        if (currentInstance.value(j) > medians[j]) {
-                            currentViolations++;
-                        }
-                    }
-                }
-            }
-            numMetricViolations[j] = currentViolations;
-        }
+        int[] numMetricViolations = matrix.columnViolations(medians, buggy);
 
         SortedSet<Integer> distinctViolationCounts = new TreeSet<>();
         for (int currentViolations : numMetricViolations) {
@@ -155,40 +151,24 @@ public class CLAMIProcessor implements IProcessesingStrategy {
         int numCleanBugfreeInstances = 0;
         do {
             violationCutoff = violationCountInterator.next();
-            cleanInstances = new boolean[data.numInstances()];
+            boolean[] selectedMetrics = new boolean[data.numAttributes()];
+            for (int j = 0; j < data.numAttributes(); j++) {
+                selectedMetrics[j] =
+                    j != data.classIndex() && numMetricViolations[j] == violationCutoff;
+            }
+            int[] instanceViolations = matrix.rowViolations(medians, buggy, selectedMetrics);
             numCleanBuggyInstances = 0;
             numCleanBugfreeInstances = 0;
             for (int i = 0; i < data.numInstances(); i++) {
-                int currentViolations = 0;
-                Instance currentInstance = data.get(i);
-                for (int j = 0; j < data.numAttributes(); j++) {
-                    if (j != data.classIndex() && numMetricViolations[j] == violationCutoff) {
-                        if (clusterNumber[i] > medianClusterNumber) {
-                            // "buggy"
-                            if (currentInstance.value(j) <= medians[j]) {
-                                currentViolations++;
-                            }
-                        }
-                        else {
-                            // "not buggy"
-                            if (currentInstance.value(j) > medians[j]) {
-                                currentViolations++;
-                            }
-                        }
-                    }
-                }
-                if (currentViolations == 0) {
-                    cleanInstances[i] = true;
-                    if (clusterNumber[i] > medianClusterNumber) {
+                cleanInstances[i] = instanceViolations[i] == 0;
+                if (cleanInstances[i]) {
+                    if (buggy[i]) {
                         numCleanBuggyInstances++;
                     }
                     else {
                         numCleanBugfreeInstances++;
                     }
                 }
-                else {
-                    cleanInstances[i] = false;
-                }
             }
         }
         while (numCleanBuggyInstances == 0 || numCleanBugfreeInstances == 0);
@@ -225,7 +205,7 @@ public class CLAMIProcessor implements IProcessesingStrategy {
             }
             else {
                 // set the classification
-                if (clusterNumber[i] > medianClusterNumber) {
+                if (buggy[i]) {
                     data.get(i).setClassValue(1.0d);
                 }
                 else {
@@ -18,8 +18,9 @@ import java.util.Arrays;
 
 import org.apache.commons.math3.stat.descriptive.rank.Median;
 
+import de.ugoe.cs.cpdp.util.ColumnMatrix;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
-import weka.core.Instance;
 import weka.core.Instances;
 
 /**
@@ -32,11 +33,34 @@ import weka.core.Instances;
  * This can also be done for the test data (i.e., TestAsTraining data selection), as the original
  * classification is completely ignored. Hence, CLA is an approach for unsupervised learning.
  * </p>
+ * <p>
+ * The medians are computed on a column-major copy of the data (see {@link ColumnMatrix}), in
+ * parallel for blocks of metrics. The number of threads is defined by the option -threads of the
+ * parameters, e.g., "-threads 4" (default: 1).
+ * </p>
  * 
  * @author Steffen Herbold
  */
 public class CLAProcessor implements IProcessesingStrategy {
 
+    /**
+     * number of threads used to process the metrics; one thread unless set with the option -threads
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to process the metrics.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -44,7 +68,9 @@ public class CLAProcessor implements IProcessesingStrategy {
      */
     @Override
     public void setParameter(String parameters) {
-        // dummy, parameters not used
+        if (parameters != null) {
+            this.numThreads = CrosspareUtils.parseNumThreads(parameters.trim().split(" "));
+        }
     }
 
     /*
@@ -64,28 +90,15 @@ public class CLAProcessor implements IProcessesingStrategy {
      * @param data
      *            data to which the processor is applied
      */
-    private static void applyCLA(Instances data) {
+    private void applyCLA(Instances data) {
         // first determine medians
-        double[] medians = new double[data.numAttributes()];
-        // get medians
-        for (int j = 0; j < data.numAttributes(); j++) {
-            if (j != data.classIndex()) {
-                medians[j] = data.kthSmallestValue(j, (data.numInstances() + 1) >> 1);
-            }
-        }
+        ColumnMatrix matrix = new ColumnMatrix(data, this.numThreads);
+        double[] medians = matrix.kthSmallestValues((data.numInstances() + 1) >> 1);
         // now determine cluster number for each instance
+        int[] countHighValues = matrix.countAbove(medians);
         double[] clusterNumber = new double[data.numInstances()];
         for (int i = 0; i < data.numInstances(); i++) {
-            int countHighValues = 0;
-            Instance currentInstance = data.get(i);
-            for (int j = 0; j < data.numAttributes(); j++) {
-                if (j != data.classIndex()) {
-                    if (currentInstance.value(j) > medians[j]) {
-                        countHighValues++;
-                    }
-                }
-            }
-            clusterNumber[i] = countHighValues;
+            clusterNumber[i] = countHighValues[i];
         }
 
         // determine median of cluster number
@@ -0,0 +1,27 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.dataprocessing;
+
+/**
+ * Marker interface for setwise data processing strategies that process each version independent
+ * of all other versions, i.e., the result for a version does not depend on the test data or the
+ * other training data. The result of such strategies can be computed once per version and reused
+ * for all pairings of the version.
+ * 
+ * @author Steffen Herbold
+ */
+public interface IIndependentProcessingStrategy extends ISetWiseProcessingStrategy {
+    // marker interface
+}
@@ -18,8 +18,8 @@ import java.security.InvalidParameterException;
 import java.util.Random;
 
 import org.apache.commons.collections4.list.SetUniqueList;
-import org.apache.commons.math3.util.MathArrays;
 
+import de.ugoe.cs.cpdp.util.UnlikeNeighborIndex;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -100,8 +100,9 @@ public class MORPH implements ISetWiseProcessingStrategy, IProcessesingStrategy
      *            data to which the processor is applied
      */
     public void applyMORPH(Instances data) {
+        UnlikeNeighborIndex index = new UnlikeNeighborIndex(data);
         for (int i = 0; i < data.numInstances(); i++) {
-            morphInstance(data.get(i), data);
+            morphInstance(data.get(i), data, index);
         }
     }
 
@@ -116,7 +117,39 @@ public class MORPH implements ISetWiseProcessingStrategy, IProcessesingStrategy
      *            data based on which the instance is morphed
      */
     public void morphInstance(Instance instance, Instances data) {
-        Instance nearestUnlikeNeighbor = getNearestUnlikeNeighbor(instance, data);
+        morphInstance(instance, getNearestUnlikeNeighbor(instance, data), data);
+    }
+
+    /**
+     * <p>
+     * Applies MORPH to a single instance of the data and updates the index of the data afterwards.
+     * </p>
+     *
+     * @param instance
+     *            instance that is morphed
+     * @param data
+     *            data based on which the instance is morphed
+     * @param index
+     *            nearest unlike neighbor index of the data
+     */
+    public void morphInstance(Instance instance, Instances data, UnlikeNeighborIndex index) {
+        morphInstance(instance, index.nearest(instance), data);
+        index.update(instance);
+    }
+
+    /**
+     * <p>
+     * Applies MORPH to a single instance
+     * </p>
+     *
+     * @param instance
+     *            instance that is morphed
+     * @param nearestUnlikeNeighbor
+     *            nearest unlike neighbor of the instance
+     * @param data
+     *            data based on which the instance is morphed
+     */
+    private void morphInstance(Instance instance, Instance nearestUnlikeNeighbor, Instances data) {
         if (nearestUnlikeNeighbor == null) {
             throw new RuntimeException("could not find nearest unlike neighbor within the data: " +
                 data.relationName());
@@ -143,29 +176,15 @@ public class MORPH implements ISetWiseProcessingStrategy, IProcessesingStrategy
      */
     public static Instance getNearestUnlikeNeighbor(Instance instance, Instances data) {
         Instance nearestUnlikeNeighbor = null;
-
-        double[] instanceVector = new double[data.numAttributes() - 1];
-        int tmp = 0;
-        for (int j = 0; j < data.numAttributes(); j++) {
-            if (data.attribute(j) != data.classAttribute() && data.attribute(j).isNumeric()) {
-                instanceVector[tmp++] = instance.value(j);
-            }
-        }
+        int[] attributeIndices = UnlikeNeighborIndex.numericAttributeIndices(data);
 
         double minDistance = Double.MAX_VALUE;
         for (int i = 0; i < data.numInstances(); i++) {
             if (instance.classValue() != data.instance(i).classValue()) {
-                double[] otherVector = new double[data.numAttributes() - 1];
-                tmp = 0;
-                for (int j = 0; j < data.numAttributes(); j++) {
-                    if (data.attribute(j) != data.classAttribute() &&
-                        data.attribute(j).isNumeric())
-                    {
-                        otherVector[tmp++] = data.instance(i).value(j);
-                    }
-                }
-                if (MathArrays.distance(instanceVector, otherVector) < minDistance) {
-                    minDistance = MathArrays.distance(instanceVector, otherVector);
+                double distance =
+                    UnlikeNeighborIndex.distance(instance, data.instance(i), attributeIndices);
+                if (distance < minDistance) {
+                    minDistance = distance;
                     nearestUnlikeNeighbor = data.instance(i);
                 }
             }
@@ -23,7 +23,7 @@ import de.ugoe.cs.cpdp.versions.SoftwareVersion;
  * 
  * @author Steffen Herbold
  */
-public class Normalization implements ISetWiseProcessingStrategy, IProcessesingStrategy {
+public class Normalization implements IIndependentProcessingStrategy, IProcessesingStrategy {
 
     /**
      * @see ISetWiseProcessingStrategy#apply(de.ugoe.cs.cpdp.versions.SoftwareVersion,
@@ -14,18 +14,17 @@
 
 package de.ugoe.cs.cpdp.dataprocessing;
 
-import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.collections4.list.SetUniqueList;
 
+import de.ugoe.cs.cpdp.util.IndexSampling;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
-import weka.core.Attribute;
 import weka.core.Instances;
-import weka.filters.Filter;
-import weka.filters.supervised.instance.Resample;
 
 /**
- * Resamples the data with WEKA {@link Resample} to have a uniform distribution among all classes.
+ * Resamples the data with replacement to have a uniform distribution among all classes. The size
+ * of the data is not changed.
  * 
  * @author Steffen Herbold
  */
@@ -63,51 +62,10 @@ public class Resampling implements IProcessesingStrategy, ISetWiseProcessingStra
      */
     @Override
     public void apply(SoftwareVersion testversion, SoftwareVersion trainversion) {
-        SoftwareVersion trainversioncopy = new SoftwareVersion(trainversion);
         Instances traindata = trainversion.getInstances();
-        Instances bugmatrix = trainversion.getBugMatrix();
-        List<Double> efforts = trainversion.getEfforts();
-        List<Double> numBugs = trainversion.getNumBugs();
-        Instances indexed = new Instances(traindata);
-        indexed.insertAttributeAt(new Attribute("instance_index"), 0);
-        for (int i=0; i<indexed.size(); i++) {
-            indexed.get(i).setValue(0, i);
-        }
-        Resample resample = new Resample();
-        resample.setSampleSizePercent(100);
-        resample.setBiasToUniformClass(1.0);
-
-        Instances traindataSample;
-        try {
-            resample.setInputFormat(indexed);
-            traindataSample = Filter.useFilter(indexed, resample);
-        }
-        catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-        traindata.clear();
-        if (bugmatrix != null) {
-            bugmatrix.clear();
-        }
-        if (efforts != null) {
-            efforts.clear();
-        }
-        if (numBugs != null) {
-            numBugs.clear();
-        }
-        for (int i = 0; i < traindataSample.size(); i++) {
-            int index = (int)traindataSample.get(i).value(0);
-            traindata.add(trainversioncopy.getInstances().get(index));
-            if (bugmatrix != null) {
-                bugmatrix.add(trainversioncopy.getBugMatrix().get(index));
-            }
-            if (efforts != null) {
-                efforts.add(trainversioncopy.getEfforts().get(index));
-            }
-            if (numBugs != null) {
-                numBugs.add(trainversioncopy.getNumBugs().get(index));
-            }
-        }
+        int[] sample = IndexSampling.uniformClassSample(IndexSampling.classIndices(traindata),
+                                                        traindata.size(), new Random(1));
+        IndexSampling.select(trainversion, sample, trainversion);
     }
 
 }
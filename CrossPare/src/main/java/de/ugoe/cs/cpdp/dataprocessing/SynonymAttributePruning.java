@@ -14,19 +14,52 @@
 
 package de.ugoe.cs.cpdp.dataprocessing;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.ugoe.cs.cpdp.util.ColumnMatrix;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instances;
 
 /**
  * <p>
  * Synonym pruning after Amasaki et al. (2015). The selection of the attributes for pruning happens
- * only on the training data. The attributes are deleted from both the training and test data.
+ * only on the training data. The attributes are deleted from both the training and test data. The
+ * number of threads is defined by the option -threads of the parameters, e.g., "-threads 4"
+ * (default: 1).
  * </p>
  * 
  * @author Steffen Herbold
  */
 public class SynonymAttributePruning implements IProcessesingStrategy {
 
+    /**
+     * number of threads used to process the attributes and the pairs of instances; only one unless
+     * changed with the option -threads
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to process the attributes and the pairs of instances.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -34,7 +67,9 @@ public class SynonymAttributePruning implements IProcessesingStrategy {
      */
     @Override
     public void setParameter(String parameters) {
-        // ingoring parameters
+        if (parameters != null) {
+            this.numThreads = CrosspareUtils.parseNumThreads(parameters.trim().split(" "));
+        }
     }
 
     /**
@@ -48,7 +83,12 @@ public class SynonymAttributePruning implements IProcessesingStrategy {
 
     /**
      * <p>
-     * Applies the synonym pruning based on the training data.
+     * Applies the synonym pruning based on the training data. An attribute is kept if it has the
+     * minimal distance among all attributes for at least one pair of instances. Removing an
+     * attribute that is never closest does not change the minimal distance of any pair, hence the
+     * attributes can be evaluated independently of each other in a single pass over the pairs.
+     * Attributes with duplicate values are closest for the pairs with the same value; these are
+     * found on the sorted values of the attributes without considering pairs.
      * </p>
      *
      * @param testdata
@@ -56,35 +96,110 @@ public class SynonymAttributePruning implements IProcessesingStrategy {
      * @param traindata
      *            the training data
      */
-    private static void applySynonymPruning(Instances testdata, Instances traindata) {
-        double distance;
+    @SuppressWarnings("boxing")
+    private void applySynonymPruning(Instances testdata, Instances traindata) {
+        ColumnMatrix matrix = new ColumnMatrix(traindata, this.numThreads);
+        List<Boolean> hasDuplicates = matrix.mapColumns((j, column) -> {
+            for (double distance : ColumnMatrix.nearestValueDistances(column)) {
+                if (distance == 0.0) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        AtomicIntegerArray hasClosest = new AtomicIntegerArray(traindata.numAttributes());
+        int numOpen = 0;
+        for (int j = 0; j < traindata.numAttributes(); j++) {
+            if (j == traindata.classIndex() || hasDuplicates.get(j)) {
+                hasClosest.set(j, 1);
+            }
+            else {
+                numOpen++;
+            }
+        }
+        if (numOpen > 0) {
+            findClosestAttributes(traindata, hasClosest, numOpen);
+        }
         for (int j = traindata.numAttributes() - 1; j >= 0; j--) {
-            if (j != traindata.classIndex()) {
-                boolean hasClosest = false;
-                for (int i1 = 0; !hasClosest && i1 < traindata.size(); i1++) {
-                    for (int i2 = 0; !hasClosest && i2 < traindata.size(); i2++) {
-                        if (i1 != i2) {
-                            double minVal = Double.MAX_VALUE;
-                            double distanceJ = Double.MAX_VALUE;
-                            for (int k = 0; k < traindata.numAttributes(); k++) {
-                                distance = Math
-                                    .abs(traindata.get(i1).value(k) - traindata.get(i2).value(k));
-                                if (distance < minVal) {
-                                    minVal = distance;
-                                }
-                                if (k == j) {
-                                    distanceJ = distance;
-                                }
+            if (hasClosest.get(j) == 0) {
+                testdata.deleteAttributeAt(j);
+                traindata.deleteAttributeAt(j);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Determines the attributes with the minimal distance for the pairs of instances. The pairs
+     * are processed in parallel and the search stops as soon as all attributes are found.
+     * </p>
+     *
+     * @param traindata
+     *            the training data
+     * @param hasClosest
+     *            1 for each attribute that is already known to be closest for a pair, 0
+     *            otherwise; updated with the closest attributes
+     * @param numOpen
+     *            number of attributes that are not known to be closest
+     */
+    private void findClosestAttributes(Instances traindata,
+                                       AtomicIntegerArray hasClosest,
+                                       int numOpen)
+    {
+        final double[][] values = new double[traindata.size()][];
+        for (int i = 0; i < traindata.size(); i++) {
+            values[i] = traindata.get(i).toDoubleArray();
+        }
+        final AtomicInteger remaining = new AtomicInteger(numOpen);
+        final int numTasks = Math.max(1, Math.min(this.numThreads, values.length));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < numTasks; t++) {
+            final int offset = t;
+            tasks.add(() -> {
+                double[] distances = new double[traindata.numAttributes()];
+                // the rows are interleaved, such that all tasks process a similar number of pairs
+                for (int i1 = offset; i1 < values.length && remaining.get() > 0; i1 += numTasks) {
+                    for (int i2 = i1 + 1; i2 < values.length; i2++) {
+                        double minVal = Double.MAX_VALUE;
+                        for (int k = 0; k < distances.length; k++) {
+                            distances[k] = Math.abs(values[i1][k] - values[i2][k]);
+                            if (distances[k] < minVal) {
+                                minVal = distances[k];
+                            }
+                        }
+                        for (int k = 0; k < distances.length; k++) {
+                            if (distances[k] <= minVal && hasClosest.compareAndSet(k, 0, 1)) {
+                                remaining.decrementAndGet();
                             }
-                            hasClosest = distanceJ <= minVal;
                         }
                     }
                 }
-                if (!hasClosest) {
-                    testdata.deleteAttributeAt(j);
-                    traindata.deleteAttributeAt(j);
-                }
+                return null;
+            });
+        }
+        if (numTasks == 1) {
+            try {
+                tasks.get(0).call();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
             }
+            return;
+        }
+        ExecutorService threadPool = Executors.newFixedThreadPool(numTasks);
+        try {
+            for (Future<Void> future : threadPool.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("synonym pruning failed", e.getCause());
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            threadPool.shutdown();
         }
     }
 }
@@ -14,15 +14,13 @@
 
 package de.ugoe.cs.cpdp.dataprocessing;
 
-import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.collections4.list.SetUniqueList;
 
+import de.ugoe.cs.cpdp.util.IndexSampling;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
-import weka.core.Attribute;
 import weka.core.Instances;
-import weka.filters.Filter;
-import weka.filters.supervised.instance.Resample;
 
 /**
  * Implements undersampling, a strategy for handling bias in data. In case there are less positive
@@ -67,78 +65,14 @@ public class Undersampling implements IProcessesingStrategy, ISetWiseProcessingS
     @Override
     public void apply(SoftwareVersion testversion, SoftwareVersion trainversion) {
         Instances traindata = trainversion.getInstances();
-        final int[] counts = traindata.attributeStats(traindata.classIndex()).nominalCounts;
+        int[][] classIndices = IndexSampling.classIndices(traindata);
 
-        if (counts[1] < counts[0]) {
-            SoftwareVersion trainversioncopy = new SoftwareVersion(trainversion);
-            Instances bugmatrix = trainversion.getBugMatrix();
-            List<Double> efforts = trainversion.getEfforts();
-            List<Double> numBugs = trainversion.getNumBugs();
-
-            Instances negatives = new Instances(traindata);
-            Instances positives = new Instances(traindata);
-
-            negatives.insertAttributeAt(new Attribute("instance_index"), 0);
-            positives.insertAttributeAt(new Attribute("instance_index"), 0);
-            for (int i=0; i<negatives.size(); i++) {
-                negatives.get(i).setValue(0, i);
-                positives.get(i).setValue(0, i);
-            }
-
-            for (int i = traindata.size() - 1; i >= 0; i--) {
-                if (Double.compare(1.0, negatives.get(i).classValue()) == 0) {
-                    negatives.remove(i);
-                }
-                if (Double.compare(0.0, positives.get(i).classValue()) == 0) {
-                    positives.remove(i);
-                }
-            }
-
-            Resample resample = new Resample();
-            resample.setSampleSizePercent((100.0 * counts[1]) / counts[0]);
-            try {
-                resample.setInputFormat(negatives);
-                negatives = Filter.useFilter(negatives, resample);
-            }
-            catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            traindata.clear();
-            if (bugmatrix != null) {
-                bugmatrix.clear();
-            }
-            if (efforts != null) {
-                efforts.clear();
-            }
-            if (numBugs != null) {
-                numBugs.clear();
-            }
-            for (int i = 0; i < negatives.size(); i++) {
-                int index = (int)negatives.get(i).value(0);
-                traindata.add(trainversioncopy.getInstances().get(index));
-                if (bugmatrix != null) {
-                    bugmatrix.add(trainversioncopy.getBugMatrix().get(index));
-                }
-                if (efforts != null) {
-                    efforts.add(trainversioncopy.getEfforts().get(index));
-                }
-                if (numBugs != null) {
-                    numBugs.add(trainversioncopy.getNumBugs().get(index));
-                }
-            }
-            for (int i = 0; i < positives.size(); i++) {
-                int index = (int)positives.get(i).value(0);
-                traindata.add(trainversioncopy.getInstances().get(index));
-                if (bugmatrix != null) {
-                    bugmatrix.add(trainversioncopy.getBugMatrix().get(index));
-                }
-                if (efforts != null) {
-                    efforts.add(trainversioncopy.getEfforts().get(index));
-                }
-                if (numBugs != null) {
-                    numBugs.add(trainversioncopy.getNumBugs().get(index));
-                }
-            }
+        if (classIndices[1].length < classIndices[0].length) {
+            int[] negatives = IndexSampling.sampleWithReplacement(classIndices[0],
+                                                                  classIndices[1].length,
+                                                                  new Random(1));
+            IndexSampling.select(trainversion, IndexSampling.concat(negatives, classIndices[1]),
+                                 trainversion);
         }
     }
 
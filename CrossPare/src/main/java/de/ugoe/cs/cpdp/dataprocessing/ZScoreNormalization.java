@@ -23,7 +23,7 @@ import de.ugoe.cs.cpdp.versions.SoftwareVersion;
  * 
  * @author Steffen Herbold
  */
-public class ZScoreNormalization implements ISetWiseProcessingStrategy, IProcessesingStrategy {
+public class ZScoreNormalization implements IIndependentProcessingStrategy, IProcessesingStrategy {
 
     /**
      * Does not have parameters. String is ignored.
@@ -21,10 +21,7 @@ import org.apache.commons.collections4.list.SetUniqueList;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
-import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.Utils;
-import weka.experiment.Stats;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Normalize;
 
@@ -83,81 +80,70 @@ public abstract class AbstractCharacteristicSelection implements ISetWiseDatasel
         final Instances data = new Instances("distributional_characteristics", atts, 0);
 
         // setup data for clustering
-        double[] instanceValues = new double[atts.size()];
-        for (int i = 0; i < testdata.numAttributes(); i++) {
-            Attribute dataAtt = testdata.attribute(i);
+        data.add(new DenseInstance(1.0, characteristicValues(testversion, classAtt, atts.size())));
+        for (SoftwareVersion trainversion : trainversionSet) {
+            data.add(new DenseInstance(1.0,
+                                       characteristicValues(trainversion, classAtt, atts.size())));
+        }
+        return data;
+    }
+
+    /**
+     * Determines the distributional characteristics of a version from the
+     * {@link VersionCharacteristicsCache}.
+     * 
+     * @param version
+     *            the version
+     * @param classAtt
+     *            class attribute, for which no characteristics are determined
+     * @param numValues
+     *            number of characteristics
+     * @return distributional characteristics of the version
+     */
+    private double[] characteristicValues(SoftwareVersion version,
+                                          Attribute classAtt,
+                                          int numValues)
+    {
+        Instances data = version.getInstances();
+        double[][] versionCharacteristics = VersionCharacteristicsCache.characteristics(version);
+        double[] instanceValues = new double[numValues];
+        for (int i = 0; i < data.numAttributes(); i++) {
+            Attribute dataAtt = data.attribute(i);
             if (!dataAtt.equals(classAtt)) {
-                Stats stats = testdata.attributeStats(i).numericStats;
                 for (int j = 0; j < this.characteristics.length; j++) {
+                    int index;
                     if ("mean".equals(this.characteristics[j])) {
-                        instanceValues[i * this.characteristics.length + j] = stats.mean;
+                        index = VersionCharacteristicsCache.MEAN;
                     }
                     else if ("stddev".equals(this.characteristics[j])) {
-                        instanceValues[i * this.characteristics.length + j] = stats.stdDev;
+                        index = VersionCharacteristicsCache.STDDEV;
                     }
                     else if ("var".equals(this.characteristics[j])) {
-                        instanceValues[i * this.characteristics.length + j] = testdata.variance(j);
+                        // variance of the attribute at the position of the characteristic
+                        instanceValues[i * this.characteristics.length + j] =
+                            versionCharacteristics[j] != null ? versionCharacteristics[j][VersionCharacteristicsCache.VAR]
+                                : data.variance(j);
+                        continue;
                     }
                     else if ("max".equals(this.characteristics[j])) {
-                        instanceValues[i * this.characteristics.length + j] = stats.max;
+                        index = VersionCharacteristicsCache.MAX;
                     }
                     else if ("min".equals(this.characteristics[j])) {
-                        instanceValues[i * this.characteristics.length + j] = stats.min;
+                        index = VersionCharacteristicsCache.MIN;
                     }
                     else if ("median".equals(this.characteristics[j])) {
-                        instanceValues[i * this.characteristics.length + j] =
-                            Utils.kthSmallestValue(testdata.attributeToDoubleArray(i),
-                                                   testdata.size() / 2);
+                        index = VersionCharacteristicsCache.MEDIAN;
                     }
                     else {
                         throw new RuntimeException("Unkown distributional characteristic: " +
                             this.characteristics[j]);
                     }
+                    instanceValues[i * this.characteristics.length + j] =
+                        versionCharacteristics[i][index];
                 }
             }
         }
-        data.add(new DenseInstance(1.0, instanceValues));
-
-        for (SoftwareVersion trainversion : trainversionSet) {
-            Instances traindata = trainversion.getInstances();
-            instanceValues = new double[atts.size()];
-            for (int i = 0; i < traindata.numAttributes(); i++) {
-                Attribute dataAtt = traindata.attribute(i);
-                if (!dataAtt.equals(classAtt)) {
-                    Stats stats = traindata.attributeStats(i).numericStats;
-                    for (int j = 0; j < this.characteristics.length; j++) {
-                        if ("mean".equals(this.characteristics[j])) {
-                            instanceValues[i * this.characteristics.length + j] = stats.mean;
-                        }
-                        else if ("stddev".equals(this.characteristics[j])) {
-                            instanceValues[i * this.characteristics.length + j] = stats.stdDev;
-                        }
-                        else if ("var".equals(this.characteristics[j])) {
-                            instanceValues[i * this.characteristics.length + j] = traindata.variance(j);
-                        }
-                        else if ("max".equals(this.characteristics[j])) {
-                            instanceValues[i * this.characteristics.length + j] = stats.max;
-                        }
-                        else if ("min".equals(this.characteristics[j])) {
-                            instanceValues[i * this.characteristics.length + j] = stats.min;
-                        }
-                        else if ("median".equals(this.characteristics[j])) {
-                            instanceValues[i * this.characteristics.length + j] =
-                                Utils.kthSmallestValue(traindata.attributeToDoubleArray(i),
-                                                       traindata.size() / 2);
-                        }
-                        else {
-                            throw new RuntimeException("Unkown distributional characteristic: " +
-                                this.characteristics[j]);
-                        }
-                    }
-                }
-            }
-            Instance instance = new DenseInstance(1.0, instanceValues);
-
-            data.add(instance);
-        }
-        return data;
+        return instanceValues;
     }
 
     /**
@@ -18,11 +18,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import de.ugoe.cs.cpdp.util.ColumnMatrix;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instances;
 
 /**
- * Implements CLIFF data pruning.
+ * Implements CLIFF data pruning. The powers of the values are computed on a column-major copy of
+ * the data (see {@link ColumnMatrix}), in parallel for blocks of attributes, and multiplied in the
+ * order of the attributes. The number of threads is defined by the option -threads of the
+ * parameters, e.g., "0.2 -threads 4" (default: 1).
  * 
  * @author Steffen Herbold
  */
@@ -39,7 +44,25 @@ public class CLIFF implements IPointWiseDataselectionStrategy {
     private final int numRanges = 10;
 
     /**
-     * Sets the number of neighbors.
+     * number of threads used to process the attributes (default: 1)
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to process the attributes.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the number of neighbors and optionally the number of threads with the option -threads.
      * 
      * @param parameters
      *            number of neighbors
@@ -47,7 +70,13 @@ public class CLIFF implements IPointWiseDataselectionStrategy {
     @Override
     public void setParameter(String parameters) {
         if (parameters != null) {
-            this.percentage = Double.parseDouble(parameters);
+            String[] options = parameters.trim().split(" ");
+            this.numThreads = CrosspareUtils.parseNumThreads(options);
+            String[] params =
+                Arrays.stream(options).filter(option -> !option.isEmpty()).toArray(String[]::new);
+            if (params.length > 0) {
+                this.percentage = Double.parseDouble(params[0]);
+            }
         }
     }
 
@@ -84,45 +113,55 @@ public class CLIFF implements IPointWiseDataselectionStrategy {
             bugMatrix = new Instances(version.getBugMatrix());
             bugMatrix.clear();
         }
-        final double[][] powerAttributes = new double[data.size()][data.numAttributes()];
-        final double[] powerEntity = new double[data.size()];
-
-        final int[] counts = data.attributeStats(data.classIndex()).nominalCounts;
-        final double probDefect = data.numInstances() / (double) counts[1];
-
-        for (int j = 0; j < data.numAttributes(); j++) {
-            if (data.attribute(j) != data.classAttribute()) {
-                final double[] ranges = getRanges(data, j);
-                final double[] probDefectRange = getRangeProbabilities(data, j, ranges);
-
-                for (int i = 0; i < data.numInstances(); i++) {
-                    final double value = data.instance(i).value(j);
-                    final int range = determineRange(ranges, value);
-                    double probClass, probNotClass, probRangeClass, probRangeNotClass;
-                    if (data.instance(i).classValue() == 1) {
-                        probClass = probDefect;
-                        probNotClass = 1.0 - probDefect;
-                        probRangeClass = probDefectRange[range];
-                        probRangeNotClass = 1.0 - probDefectRange[range];
-                    }
-                    else {
-                        probClass = 1.0 - probDefect;
-                        probNotClass = probDefect;
-                        probRangeClass = 1.0 - probDefectRange[range];
-                        probRangeNotClass = probDefectRange[range];
-                    }
-                    powerAttributes[i][j] = Math.pow(probRangeClass, 2.0) /
-                        (probRangeClass * probClass + probRangeNotClass * probNotClass);
-                }
+        final double[] classValues = data.attributeToDoubleArray(data.classIndex());
+        int numDefects = 0;
+        for (double classValue : classValues) {
+            if (classValue == 1) {
+                numDefects++;
             }
         }
+        final double probDefect = data.numInstances() / (double) numDefects;
 
+        final ColumnMatrix matrix = new ColumnMatrix(data, this.numThreads);
+        final List<double[]> powerAttributes = matrix.mapColumns((j, column) -> {
+            final double[] ranges = getRanges(column);
+            final int[] valueRanges = new int[column.length];
+            for (int i = 0; i < column.length; i++) {
+                valueRanges[i] = determineRange(ranges, column[i]);
+            }
+            final double[] probDefectRange = getRangeProbabilities(valueRanges, classValues);
+
+            final double[] powers = new double[column.length];
+            for (int i = 0; i < column.length; i++) {
+                final int range = valueRanges[i];
+                double probClass, probNotClass, probRangeClass, probRangeNotClass;
+                if (classValues[i] == 1) {
+                    probClass = probDefect;
+                    probNotClass = 1.0 - probDefect;
+                    probRangeClass = probDefectRange[range];
+                    probRangeNotClass = 1.0 - probDefectRange[range];
+                }
+                else {
+                    probClass = 1.0 - probDefect;
+                    probNotClass = probDefect;
+                    probRangeClass = 1.0 - probDefectRange[range];
+                    probRangeNotClass = probDefectRange[range];
+                }
+                powers[i] = Math.pow(probRangeClass, 2.0) /
+                    (probRangeClass * probClass + probRangeNotClass * probNotClass);
+            }
+            return powers;
+        });
+
+        final double[] powerEntity = new double[data.numInstances()];
         for (int i = 0; i < data.numInstances(); i++) {
             powerEntity[i] = 1.0;
             for (int j = 0; j < data.numAttributes(); j++) {
-                powerEntity[i] *= powerAttributes[i][j];
+                // the class attribute has no power, i.e., its factor is 0
+                powerEntity[i] *= j == data.classIndex() ? 0.0 : powerAttributes.get(j)[i];
             }
         }
+
         double[] sortedPower = powerEntity.clone();
         Arrays.sort(sortedPower);
         double cutOff = sortedPower[(int) (data.numInstances() * (1 - this.percentage))];
@@ -149,48 +188,49 @@ public class CLIFF implements IPointWiseDataselectionStrategy {
 
     /**
      * <p>
-     * Gets an array with the ranges from the data for a given attribute
+     * Gets an array with the ranges from the values of an attribute
      * </p>
      *
-     * @param data
-     *            the data
-     * @param j
-     *            index of the attribute
+     * @param column
+     *            values of the attribute
      * @return the ranges for the attribute
      */
-    private double[] getRanges(Instances data, int j) {
+    private double[] getRanges(double[] column) {
+        double[] sorted = ColumnMatrix.sortedCopy(column);
         double[] values = new double[this.numRanges + 1];
         for (int k = 0; k < this.numRanges; k++) {
-            values[k] = data.kthSmallestValue(j, (int) (data.size() * (k + 1.0) / this.numRanges));
+            values[k] = sorted[Math.max(0, (int) (sorted.length * (k + 1.0) / this.numRanges) - 1)];
+        }
+        double max = Double.NaN;
+        for (double value : column) {
+            if (!Double.isNaN(value) && (Double.isNaN(max) || value > max)) {
+                max = value;
+            }
         }
-        values[this.numRanges] = data.attributeStats(j).numericStats.max;
+        values[this.numRanges] = max;
         return values;
     }
 
     /**
      * <p>
-     * Gets the probabilities of a positive prediction for each range for a given attribute
+     * Gets the probabilities of a positive prediction for each range of an attribute
      * </p>
      *
-     * @param data
-     *            the data
-     * @param j
-     *            index of the attribute
-     * @param ranges
-     *            the ranges
+     * @param valueRanges
+     *            range of the value of each instance
+     * @param classValues
+     *            class of each instance
      * @return probabilities for each range
      */
-    private double[] getRangeProbabilities(Instances data, int j, double[] ranges) {
+    private double[] getRangeProbabilities(int[] valueRanges, double[] classValues) {
         double[] probDefectRange = new double[this.numRanges];
         int[] countRange = new int[this.numRanges];
         int[] countDefect = new int[this.numRanges];
-        for (int i = 0; i < data.numInstances(); i++) {
-            int range = determineRange(ranges, data.instance(i).value(j));
-            countRange[range]++;
-            if (data.instance(i).classValue() == 1) {
-                countDefect[range]++;
+        for (int i = 0; i < valueRanges.length; i++) {
+            countRange[valueRanges[i]]++;
+            if (classValues[i] == 1) {
+                countDefect[valueRanges[i]]++;
             }
-
         }
         for (int k = 0; k < this.numRanges; k++) {
             probDefectRange[k] = ((double) countDefect[k]) / countRange[k];
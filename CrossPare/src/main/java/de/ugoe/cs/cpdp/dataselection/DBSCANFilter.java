@@ -14,40 +14,106 @@
 
 package de.ugoe.cs.cpdp.dataselection;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections4.map.LRUMap;
 
-import de.lmu.ifi.dbs.elki.algorithm.clustering.DBSCAN;
-import de.lmu.ifi.dbs.elki.data.Cluster;
-import de.lmu.ifi.dbs.elki.data.Clustering;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
-import de.lmu.ifi.dbs.elki.data.model.Model;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
-import de.lmu.ifi.dbs.elki.datasource.DatabaseConnection;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.tree.metrical.covertree.CoverTree;
+import de.ugoe.cs.cpdp.util.ArtifactCache;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instances;
 
 /**
- * DBSCAN filter after Kawata et al. (2015)
+ * <p>
+ * DBSCAN filter after Kawata et al. (2015). The test data and the training data are clustered
+ * together with DBSCAN and all training instances that are in a cluster with test data are
+ * selected. Noise is treated like a cluster, i.e., all noise of the training data is selected if
+ * any test instance is noise.
+ * </p>
+ * <p>
+ * The neighborhoods of DBSCAN are determined with range queries on ELKI databases that are
+ * indexed with cover trees. The test data and the training data have separate databases, such
+ * that the database of a version is built only once and reused for all pairs of test and training
+ * versions that contain the version. The databases are identified by the content of the data.
+ * </p>
+ * <p>
+ * The parameters are the radius eps of the neighborhoods and the minimal number of points minPts
+ * in the neighborhood of a core point, e.g., "1.0 10" (default). If eps is auto, it is estimated
+ * from the knee of the sorted distances of the instances to their minPts-nearest neighbors
+ * (k-distance graph).
+ * </p>
  * 
  * @author Steffen Herbold
  */
 public class DBSCANFilter implements IPointWiseDataselectionStrategy {
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see de.ugoe.cs.cpdp.IParameterizable#setParameter(java.lang.String)
+    /**
+     * maximal number of indexed databases that are kept
+     */
+    private static final int DATABASE_CACHE_SIZE = 128;
+
+    /**
+     * cluster label of instances that are not yet visited
+     */
+    private static final int UNDEFINED = -2;
+
+    /**
+     * cluster label of noise
+     */
+    private static final int NOISE = -1;
+
+    /**
+     * radius of the neighborhoods; NaN if the radius is estimated
+     */
+    private double eps = 1.0;
+
+    /**
+     * minimal number of points in the neighborhood of a core point, including the point itself
+     */
+    private int minPts = 10;
+
+    /**
+     * indexed databases of versions, identified by the content hash of their data
+     */
+    private final Map<String, IndexedDatabase> databases =
+        Collections.synchronizedMap(new LRUMap<String, IndexedDatabase>(DATABASE_CACHE_SIZE));
+
+    /**
+     * Sets eps and minPts, e.g., "1.0 10" or "auto 10".
      */
     @Override
     public void setParameter(String parameters) {
-        // do nothing
+        if (parameters != null && !"".equals(parameters.trim())) {
+            String[] params = parameters.trim().split(" ");
+            if ("auto".equalsIgnoreCase(params[0])) {
+                this.eps = Double.NaN;
+            }
+            else {
+                this.eps = Double.parseDouble(params[0]);
+            }
+            if (params.length > 1) {
+                this.minPts = Integer.parseInt(params[1]);
+            }
+        }
     }
 
     /**
@@ -74,66 +140,40 @@ public class DBSCANFilter implements IPointWiseDataselectionStrategy {
             bugMatrix.clear();
         }
 
-        double[][] data =
-            new double[testdata.size() + traindata.size()][testdata.numAttributes() - 1];
-        int classIndex = testdata.classIndex();
-        for (int i = 0; i < testdata.size(); i++) {
-            int k = 0;
-            for (int j = 0; j < testdata.numAttributes(); j++) {
-                if (j != classIndex) {
-                    data[i][k] = testdata.get(i).value(j);
-                    k++;
-                }
-            }
-        }
-        for (int i = 0; i < traindata.size(); i++) {
-            int k = 0;
-            for (int j = 0; j < traindata.numAttributes(); j++) {
-                if (j != classIndex) {
-                    data[i + testdata.size()][k] = traindata.get(i).value(j);
-                    k++;
-                }
+        if (!testdata.isEmpty() && !traindata.isEmpty()) {
+            IndexedDatabase[] parts = new IndexedDatabase[]
+                { database(testdata, testdata.classIndex()),
+                  database(traindata, testdata.classIndex()) };
+            double radius = Double.isNaN(this.eps) ? estimateEps(parts) : this.eps;
+            int[] labels = dbscan(parts, radius);
+
+            // clusters with test data, the noise is the last cluster
+            int numClusters = 0;
+            for (int label : labels) {
+                numClusters = Math.max(numClusters, label + 1);
             }
-        }
-        DatabaseConnection dbc = new ArrayAdapterDatabaseConnection(data);
-        Database db = new StaticArrayDatabase(dbc, null);
-        db.initialize();
-        DBSCAN<DoubleVector> dbscan =
-            new DBSCAN<>(EuclideanDistanceFunction.STATIC, 1.0, 10);
-        Clustering<Model> clusterer = dbscan.run(db);
-        Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
-        int firstInternalIndex = rel.iterDBIDs().internalGetIndex();
-
-        for (Cluster<Model> cluster : clusterer.getAllClusters()) {
-            // check if cluster has any training data
-            DBIDIter iter = rel.iterDBIDs();
-            boolean noMatch = true;
-            for (int i = 0; noMatch && i < testdata.size(); i++) {
-                noMatch = !cluster.getIDs().contains(iter);
-                iter.advance();
+            boolean[] hasTestdata = new boolean[numClusters + 1];
+            for (int i = 0; i < testdata.size(); i++) {
+                hasTestdata[clusterIndex(labels[i], numClusters)] = true;
             }
-            if (!noMatch) {
-                // cluster contains test data
-                for (DBIDIter clusterIter = cluster.getIDs().iter(); clusterIter
-                    .valid(); clusterIter.advance())
-                {
-                    int internalIndex =
-                        clusterIter.internalGetIndex() - testdata.size() - firstInternalIndex;
-                    if (internalIndex >= 0) {
-                        // index belongs to a training instance
-                        filteredTraindata.add(traindata.get(internalIndex));
+            for (int cluster = 0; cluster <= numClusters; cluster++) {
+                if (!hasTestdata[cluster]) {
+                    continue;
+                }
+                for (int i = 0; i < traindata.size(); i++) {
+                    if (clusterIndex(labels[testdata.size() + i], numClusters) == cluster) {
+                        filteredTraindata.add(traindata.get(i));
                         if (bugMatrix != null) {
-                            bugMatrix.add(trainversion.getBugMatrix().instance(internalIndex));
+                            bugMatrix.add(trainversion.getBugMatrix().instance(i));
                         }
                         if (efforts != null) {
-                            efforts.add(trainversion.getEfforts().get(internalIndex));
+                            efforts.add(trainversion.getEfforts().get(i));
                         }
                         if (numBugs != null) {
-                            numBugs.add(trainversion.getNumBugs().get(internalIndex));
+                            numBugs.add(trainversion.getNumBugs().get(i));
                         }
                     }
                 }
-
             }
         }
 
@@ -141,4 +181,283 @@ public class DBSCANFilter implements IPointWiseDataselectionStrategy {
                 filteredTraindata, bugMatrix, efforts, numBugs, trainversion.getReleaseDate(), null);
     }
 
+    /**
+     * <p>
+     * Returns the indexed database of the data. The database is created if it is not yet cached.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @param classIndex
+     *            index of the class attribute, which is not part of the database
+     * @return the indexed database
+     */
+    private IndexedDatabase database(Instances data, int classIndex) {
+        String key = ArtifactCache.contentHash(data) + "_" + classIndex;
+        IndexedDatabase database = this.databases.get(key);
+        if (database == null) {
+            double[][] points = new double[data.size()][data.numAttributes() - 1];
+            for (int i = 0; i < data.size(); i++) {
+                int k = 0;
+                for (int j = 0; j < data.numAttributes(); j++) {
+                    if (j != classIndex) {
+                        points[i][k] = data.get(i).value(j);
+                        k++;
+                    }
+                }
+            }
+            database = new IndexedDatabase(points);
+            this.databases.put(key, database);
+        }
+        return database;
+    }
+
+    /**
+     * <p>
+     * Clusters the instances of the databases with DBSCAN. The instances are visited in the order
+     * of the databases, i.e., the test data first.
+     * </p>
+     *
+     * @param parts
+     *            the databases
+     * @param radius
+     *            radius of the neighborhoods
+     * @return cluster labels of the instances; {@link #NOISE} for noise
+     */
+    private int[] dbscan(IndexedDatabase[] parts, double radius) {
+        int[] offsets = new int[parts.length + 1];
+        for (int p = 0; p < parts.length; p++) {
+            offsets[p + 1] = offsets[p] + parts[p].points.length;
+        }
+        double[][] points = new double[offsets[parts.length]][];
+        for (int p = 0; p < parts.length; p++) {
+            System.arraycopy(parts[p].points, 0, points, offsets[p], parts[p].points.length);
+        }
+
+        int[] labels = new int[points.length];
+        Arrays.fill(labels, UNDEFINED);
+        int cluster = 0;
+        Deque<Integer> seeds = new ArrayDeque<>();
+        for (int i = 0; i < points.length; i++) {
+            if (labels[i] != UNDEFINED) {
+                continue;
+            }
+            List<Integer> neighbors = neighbors(parts, offsets, points[i], radius);
+            if (neighbors.size() < this.minPts) {
+                labels[i] = NOISE;
+                continue;
+            }
+            labels[i] = cluster;
+            seeds.addAll(neighbors);
+            while (!seeds.isEmpty()) {
+                int neighbor = seeds.poll().intValue();
+                if (labels[neighbor] == NOISE) {
+                    // border point
+                    labels[neighbor] = cluster;
+                }
+                if (labels[neighbor] != UNDEFINED) {
+                    continue;
+                }
+                labels[neighbor] = cluster;
+                List<Integer> neighborNeighbors =
+                    neighbors(parts, offsets, points[neighbor], radius);
+                if (neighborNeighbors.size() >= this.minPts) {
+                    seeds.addAll(neighborNeighbors);
+                }
+            }
+            cluster++;
+        }
+        return labels;
+    }
+
+    /**
+     * <p>
+     * Determines the neighborhood of a point through range queries on all databases.
+     * </p>
+     *
+     * @param parts
+     *            the databases
+     * @param offsets
+     *            offsets of the instances of the databases
+     * @param point
+     *            the point
+     * @param radius
+     *            radius of the neighborhood
+     * @return indices of the instances in the neighborhood, including the point itself
+     */
+    private static List<Integer> neighbors(IndexedDatabase[] parts,
+                                           int[] offsets,
+                                           double[] point,
+                                           double radius)
+    {
+        List<Integer> neighbors = new ArrayList<>();
+        DoubleVector vector = DoubleVector.wrap(point);
+        for (int p = 0; p < parts.length; p++) {
+            for (DoubleDBIDListIter iter =
+                parts[p].rangeQuery.getRangeForObject(vector, radius).iter(); iter.valid(); iter
+                    .advance())
+            {
+                neighbors.add(Integer.valueOf(offsets[p] + parts[p].ids.getOffset(iter)));
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * <p>
+     * Estimates eps from the k-distance graph with k=minPts, i.e., from the sorted distances of the
+     * instances to their k-nearest neighbors, where each instance is its own nearest neighbor. The
+     * estimate is the k-distance at the knee of the graph, which is the point with the largest
+     * distance to the line between the smallest and the largest k-distance.
+     * </p>
+     *
+     * @param parts
+     *            the databases
+     * @return estimated eps
+     */
+    private double estimateEps(IndexedDatabase[] parts) {
+        double[] kDistances = kDistances(parts);
+        int numPoints = kDistances.length;
+        double first = kDistances[0];
+        double range = kDistances[numPoints - 1] - first;
+        if (range <= 0.0 || numPoints < 3) {
+            return kDistances[numPoints - 1];
+        }
+        // distance to the line in the graph normalized to the unit square
+        int knee = numPoints - 1;
+        double maxDistance = 0.0;
+        for (int i = 0; i < numPoints; i++) {
+            double x = ((double) i) / (numPoints - 1);
+            double y = (kDistances[i] - first) / range;
+            if (x - y > maxDistance) {
+                maxDistance = x - y;
+                knee = i;
+            }
+        }
+        return kDistances[knee];
+    }
+
+    /**
+     * <p>
+     * Determines the sorted distances of the instances of the test data and the training data to
+     * their minPts-nearest neighbors, where each instance is its own nearest neighbor.
+     * </p>
+     *
+     * @param testdata
+     *            the test data
+     * @param traindata
+     *            the training data
+     * @return sorted k-distances
+     */
+    double[] kDistances(Instances testdata, Instances traindata) {
+        return kDistances(new IndexedDatabase[]
+            { database(testdata, testdata.classIndex()),
+              database(traindata, testdata.classIndex()) });
+    }
+
+    /**
+     * <p>
+     * Determines the sorted distances of the instances of the databases to their minPts-nearest
+     * neighbors. The k-nearest neighbors within each database are sorted by their distance and may
+     * contain more than k instances in case of ties. The k-distance is therefore determined by
+     * merging the k smallest distances of each database.
+     * </p>
+     *
+     * @param parts
+     *            the databases
+     * @return sorted k-distances
+     */
+    private double[] kDistances(IndexedDatabase[] parts) {
+        int numPoints = 0;
+        for (IndexedDatabase part : parts) {
+            numPoints += part.points.length;
+        }
+        int k = Math.min(this.minPts, numPoints);
+        double[] kDistances = new double[numPoints];
+        double[] candidates = new double[parts.length * k];
+        int i = 0;
+        for (IndexedDatabase queryPart : parts) {
+            for (double[] point : queryPart.points) {
+                DoubleVector vector = DoubleVector.wrap(point);
+                int numCandidates = 0;
+                for (IndexedDatabase part : parts) {
+                    KNNList knns = part.knnQuery.getKNNForObject(vector, k);
+                    DoubleDBIDListIter iter = knns.iter();
+                    for (int n = 0; n < k && iter.valid(); n++, iter.advance()) {
+                        candidates[numCandidates++] = iter.doubleValue();
+                    }
+                }
+                Arrays.sort(candidates, 0, numCandidates);
+                kDistances[i++] = candidates[k - 1];
+            }
+        }
+        Arrays.sort(kDistances);
+        return kDistances;
+    }
+
+    /**
+     * <p>
+     * Maps cluster labels to indices of clusters, where the noise has the last index.
+     * </p>
+     *
+     * @param label
+     *            the cluster label
+     * @param numClusters
+     *            number of clusters without the noise
+     * @return index of the cluster
+     */
+    private static int clusterIndex(int label, int numClusters) {
+        return label == NOISE ? numClusters : label;
+    }
+
+    /**
+     * <p>
+     * ELKI database of the instances of a version, indexed with a cover tree.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class IndexedDatabase {
+
+        /**
+         * the instances without the class attribute
+         */
+        private final double[][] points;
+
+        /**
+         * DBIDs of the instances, the offset of a DBID is the index of the instance
+         */
+        private final DBIDRange ids;
+
+        /**
+         * range queries on the database
+         */
+        private final RangeQuery<DoubleVector> rangeQuery;
+
+        /**
+         * kNN queries on the database
+         */
+        private final KNNQuery<DoubleVector> knnQuery;
+
+        /**
+         * <p>
+         * Constructor. Creates a new indexed database.
+         * </p>
+         *
+         * @param points
+         *            the instances without the class attribute
+         */
+        @SuppressWarnings("hiding")
+        private IndexedDatabase(double[][] points) {
+            this.points = points;
+            Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(points),
+                                                  Arrays.asList(new CoverTree.Factory<DoubleVector>(
+                                                      EuclideanDistanceFunction.STATIC, 1.3, 10)));
+            db.initialize();
+            Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+            this.ids = (DBIDRange) relation.getDBIDs();
+            this.rangeQuery = QueryUtil.getRangeQuery(relation, EuclideanDistanceFunction.STATIC);
+            this.knnQuery = QueryUtil.getKNNQuery(relation, EuclideanDistanceFunction.STATIC);
+        }
+    }
 }
@@ -15,11 +15,20 @@
 package de.ugoe.cs.cpdp.dataselection;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections4.list.SetUniqueList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
@@ -28,11 +37,21 @@ import weka.classifiers.trees.REPTree;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instances;
+import weka.core.Utils;
 
 /**
  * <p>
  * Training data selection as a combination of Zimmermann et al. 2009
  * </p>
+ * <p>
+ * The transfer scores, i.e., the f-measure of J48 trained on one version and evaluated on another
+ * version, only depend on the data of the two versions. They are computed for all pairs of the
+ * training versions and the test version, in parallel with the number of threads defined by the
+ * option -threads of the parameters (default: 1), and stored row-wise in the
+ * {@link ArtifactCache}. Hence, each leave-one-out step of an experiment only computes the scores
+ * of versions that were not seen before, and other experiment configurations with the same data
+ * reuse the scores.
+ * </p>
  * 
  * @author Steffen Herbold
  */
@@ -42,7 +61,42 @@ public class DecisionTreeSelection extends AbstractCharacteristicSelection {
      * Reference to the logger
      */
     private static final Logger LOGGER = LogManager.getLogger("main");
-	
+
+    /**
+     * namespace of the transfer scores in the {@link ArtifactCache}
+     */
+    private static final String CACHE_NAMESPACE = "DecisionTreeSelection-J48-fMeasure";
+
+    /**
+     * number of threads used to compute the transfer scores
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to compute the transfer scores.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the distributional characteristics. The names of the characteristics are separated by
+     * blanks. The option -threads defines the number of threads used to compute the transfer
+     * scores (default: 1).
+     */
+    @Override
+    public void setParameter(String parameters) {
+        String[] options = parameters.split(" ");
+        this.numThreads = CrosspareUtils.parseNumThreads(options);
+        super.setParameter(Utils.joinOptions(options));
+    }
+
     /*
      * @see de.ugoe.cs.cpdp.dataselection.SetWiseDataselectionStrategy#apply(de.ugoe.cs.cpdp.versions.SoftwareVersion,
      * org.apache.commons.collections4.list.SetUniqueList)
@@ -64,9 +118,8 @@ public class DecisionTreeSelection extends AbstractCharacteristicSelection {
         similarityData.setClassIndex(similarityData.numAttributes() - 1);
 
         try {
-            Classifier classifier = new J48();
+            double[][] transferScores = transferScores(testversion, trainversionSet);
             for (int i = 0; i < trainversionSet.size(); i++) {
-                classifier.buildClassifier(trainversionSet.get(i).getInstances());
                 for (int j = 0; j < trainversionSet.size(); j++) {
                     if (i != j) {
                         double[] similarity = new double[data.numAttributes() + 1];
@@ -81,9 +134,7 @@ public class DecisionTreeSelection extends AbstractCharacteristicSelection {
                                 similarity[k] = 0.0;
                             }
                         }
-                        Evaluation eval = new Evaluation(trainversionSet.get(j).getInstances());
-                        eval.evaluateModel(classifier, trainversionSet.get(j).getInstances());
-                        similarity[data.numAttributes()] = eval.fMeasure(1);
+                        similarity[data.numAttributes()] = transferScores[i][j];
                         similarityData.add(new DenseInstance(1.0, similarity));
                     }
                 }
@@ -131,4 +182,93 @@ public class DecisionTreeSelection extends AbstractCharacteristicSelection {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * <p>
+     * Determines the transfer scores between the training versions. The scores are taken from the
+     * {@link ArtifactCache} if possible. Missing scores are computed in parallel, one task for each
+     * version on which J48 is trained. The test version is included in the computation, because
+     * it is usually a training version in the other leave-one-out steps of the experiment.
+     * </p>
+     *
+     * @param testversion
+     *            the test version
+     * @param trainversionSet
+     *            the training versions
+     * @return matrix with the f-measure of J48 trained on the i-th and evaluated on the j-th
+     *         training version; the diagonal is not set
+     */
+    private double[][] transferScores(SoftwareVersion testversion,
+                                      SetUniqueList<SoftwareVersion> trainversionSet)
+    {
+        final List<Instances> versions = new ArrayList<>(trainversionSet.size() + 1);
+        for (SoftwareVersion trainversion : trainversionSet) {
+            versions.add(trainversion.getInstances());
+        }
+        versions.add(testversion.getInstances());
+        final String[] hashes = new String[versions.size()];
+        for (int i = 0; i < versions.size(); i++) {
+            hashes[i] = ArtifactCache.contentHash(versions.get(i));
+        }
+
+        final List<HashMap<String, Double>> rows = new ArrayList<>(versions.size());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            HashMap<String, Double> cachedRow = ArtifactCache.get(CACHE_NAMESPACE, hashes[i]);
+            final HashMap<String, Double> row =
+                cachedRow == null ? new HashMap<>() : new HashMap<>(cachedRow);
+            rows.add(row);
+            final List<Integer> missing = new ArrayList<>();
+            for (int j = 0; j < versions.size(); j++) {
+                if (i != j && !row.containsKey(hashes[j])) {
+                    missing.add(Integer.valueOf(j));
+                }
+            }
+            if (!missing.isEmpty()) {
+                final int trainIndex = i;
+                tasks.add(() -> {
+                    Classifier classifier = new J48();
+                    classifier.buildClassifier(versions.get(trainIndex));
+                    for (Integer j : missing) {
+                        Instances evaldata = versions.get(j.intValue());
+                        Evaluation eval = new Evaluation(evaldata);
+                        eval.evaluateModel(classifier, evaldata);
+                        row.put(hashes[j.intValue()], Double.valueOf(eval.fMeasure(1)));
+                    }
+                    ArtifactCache.put(CACHE_NAMESPACE, hashes[trainIndex], new HashMap<>(row));
+                    return null;
+                });
+            }
+        }
+        if (!tasks.isEmpty()) {
+            LOGGER.debug("computing transfer scores for " + tasks.size() + " of " +
+                versions.size() + " versions");
+            ExecutorService threadPool =
+                Executors.newFixedThreadPool(Math.min(this.numThreads, tasks.size()));
+            try {
+                for (Future<Void> future : threadPool.invokeAll(tasks)) {
+                    future.get();
+                }
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            finally {
+                threadPool.shutdown();
+            }
+        }
+
+        double[][] scores = new double[trainversionSet.size()][trainversionSet.size()];
+        for (int i = 0; i < trainversionSet.size(); i++) {
+            for (int j = 0; j < trainversionSet.size(); j++) {
+                if (i != j) {
+                    scores[i][j] = rows.get(i).get(hashes[j]).doubleValue();
+                }
+            }
+        }
+        return scores;
+    }
 }
@@ -0,0 +1,281 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.dataselection;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import weka.clusterers.EM;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * <p>
+ * Helper for the data selection strategies that are based on EM clustering. Provides the
+ * projection of data on the attributes without the class, the assignment of instances to the
+ * clusters of a fitted model, and the clustering of versions by their characteristics.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class EMClustering {
+
+    /**
+     * namespace of the clusterings of versions in the {@link ArtifactCache}
+     */
+    private static final String VERSION_CLUSTERING_NAMESPACE = "SetWiseEMClustering";
+
+    /**
+     * <p>
+     * Private constructor to prevent instantiation.
+     * </p>
+     */
+    private EMClustering() {
+        // only static methods
+    }
+
+    /**
+     * <p>
+     * Creates an empty header with the attributes of the data without the class attribute.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @return the header
+     */
+    public static Instances projectedHeader(Instances data) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int j = 0; j < data.numAttributes(); j++) {
+            if (j != data.classIndex()) {
+                attributes.add((Attribute) data.attribute(j).copy());
+            }
+        }
+        return new Instances(data.relationName(), attributes, 0);
+    }
+
+    /**
+     * <p>
+     * Projects data on the attributes of a header that was created with
+     * {@link #projectedHeader(Instances)}, i.e., removes the class attribute.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @param header
+     *            the header
+     * @return the projected data
+     */
+    public static Instances project(Instances data, Instances header) {
+        Instances projected = new Instances(header, data.size());
+        for (Instance instance : data) {
+            double[] values = new double[header.numAttributes()];
+            int k = 0;
+            for (int j = 0; j < data.numAttributes(); j++) {
+                if (j != data.classIndex()) {
+                    values[k++] = instance.value(j);
+                }
+            }
+            projected.add(new DenseInstance(instance.weight(), values));
+        }
+        return projected;
+    }
+
+    /**
+     * <p>
+     * Assigns the instances to the clusters with the highest probability. The clusterer may be
+     * shared, because the assignment is synchronized on the clusterer.
+     * </p>
+     *
+     * @param clusterer
+     *            the fitted clusterer
+     * @param data
+     *            the data, projected on the attributes used by the clusterer
+     * @return clusters of the instances
+     * @throws Exception
+     *             thrown if the cluster distribution of an instance cannot be determined
+     */
+    public static int[] assignClusters(EM clusterer, Instances data) throws Exception {
+        int[] clusters = new int[data.size()];
+        synchronized (clusterer) {
+            for (int i = 0; i < data.size(); i++) {
+                clusters[i] = Utils.maxIndex(clusterer.distributionForInstance(data.get(i)));
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * <p>
+     * Clusters the characteristics of versions with EM. The maximal number of clusters starts with
+     * the number of training versions and is reduced until the cluster of the test version also
+     * contains training versions.
+     * </p>
+     * <p>
+     * The instances are clustered in a canonical order, i.e., sorted by their values, such that the
+     * result does not depend on which version is the test version. Hence, the clusterings are
+     * stored in the {@link ArtifactCache} and reused, e.g., for all iterations of a leave-one-out
+     * experiment.
+     * </p>
+     *
+     * @param data
+     *            characteristics of the versions; the first instance is the test version
+     * @param numExecutionSlots
+     *            number of execution slots of EM
+     * @return clusters of the instances
+     * @throws Exception
+     *             thrown if the clustering fails
+     */
+    public static int[] clusterVersions(Instances data, int numExecutionSlots) throws Exception {
+        Integer[] order = new Integer[data.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> data.get(i.intValue()).toDoubleArray(),
+                                                EMClustering::compareValues));
+        Instances sorted = new Instances(data, data.size());
+        int targetPosition = -1;
+        for (int i = 0; i < order.length; i++) {
+            sorted.add(data.get(order[i].intValue()));
+            if (order[i].intValue() == 0) {
+                targetPosition = i;
+            }
+        }
+        String dataHash = ArtifactCache.contentHash(sorted);
+
+        VersionClustering clustering;
+        boolean onlyTarget;
+        int maxNumClusters = data.size() - 1;
+        do {
+            // the clusters depend on the number of execution slots, because EM sums the partial
+            // results of the slots
+            String key = dataHash + "_" + maxNumClusters + "_" + numExecutionSlots;
+            clustering = ArtifactCache.get(VERSION_CLUSTERING_NAMESPACE, key);
+            if (clustering == null) {
+                EM emeans = new EM();
+                emeans.setNumExecutionSlots(numExecutionSlots);
+                emeans.setMaximumNumberOfClusters(maxNumClusters);
+                emeans.buildClusterer(sorted);
+                clustering =
+                    new VersionClustering(assignClusters(emeans, sorted), emeans.numberOfClusters());
+                ArtifactCache.put(VERSION_CLUSTERING_NAMESPACE, key, clustering);
+            }
+
+            // check if cluster only contains target project
+            onlyTarget = true;
+            for (int i = 0; i < sorted.size() && onlyTarget; i++) {
+                onlyTarget = i == targetPosition ||
+                    clustering.clusters[i] != clustering.clusters[targetPosition];
+            }
+            maxNumClusters = clustering.numClusters - 1;
+        }
+        while (onlyTarget);
+
+        int[] clusters = new int[data.size()];
+        for (int i = 0; i < order.length; i++) {
+            clusters[order[i].intValue()] = clustering.clusters[i];
+        }
+        return clusters;
+    }
+
+    /**
+     * <p>
+     * Parses the number of execution slots of EM from the option -num-slots. The option is removed
+     * from the options.
+     * </p>
+     *
+     * @param options
+     *            the options
+     * @param defaultNumExecutionSlots
+     *            number of execution slots if the option is not defined
+     * @return number of execution slots
+     */
+    public static int parseNumExecutionSlots(String[] options, int defaultNumExecutionSlots) {
+        try {
+            String numSlots = Utils.getOption("num-slots", options);
+            return numSlots.isEmpty() ? defaultNumExecutionSlots : Integer.parseInt(numSlots);
+        }
+        catch (Exception e) {
+            throw new RuntimeException("invalid option -num-slots", e);
+        }
+    }
+
+    /**
+     * <p>
+     * Compares the values of two instances lexicographically.
+     * </p>
+     *
+     * @param values1
+     *            values of the first instance
+     * @param values2
+     *            values of the second instance
+     * @return result of the comparison
+     */
+    private static int compareValues(double[] values1, double[] values2) {
+        for (int j = 0; j < values1.length; j++) {
+            int result = Double.compare(values1[j], values2[j]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * <p>
+     * Clustering of the characteristics of versions.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class VersionClustering implements Serializable {
+
+        /**
+         * default serialization ID
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * clusters of the versions
+         */
+        private final int[] clusters;
+
+        /**
+         * number of clusters
+         */
+        private final int numClusters;
+
+        /**
+         * <p>
+         * Constructor. Creates a new clustering.
+         * </p>
+         *
+         * @param clusters
+         *            clusters of the versions
+         * @param numClusters
+         *            number of clusters
+         */
+        @SuppressWarnings("hiding")
+        private VersionClustering(int[] clusters, int numClusters) {
+            this.clusters = clusters;
+            this.numClusters = numClusters;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.commons.math3.stat.descriptive.rank.Median;
 import org.apache.commons.math3.util.MathArrays;
 
 import de.ugoe.cs.cpdp.dataprocessing.MORPH;
+import de.ugoe.cs.cpdp.util.UnlikeNeighborIndex;
 import de.ugoe.cs.cpdp.util.WekaUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instance;
@@ -66,6 +67,7 @@ public class LACE2 implements ISetWiseDataselectionStrategy {
     public void apply(SoftwareVersion testversion, SetUniqueList<SoftwareVersion> trainversionSet) {
         Instances selectedData = new Instances(testversion.getInstances());
         selectedData.clear();
+        UnlikeNeighborIndex selectedIndex = new UnlikeNeighborIndex(selectedData);
 
         LinkedList<SoftwareVersion> trainversionCopy = new LinkedList<>(trainversionSet);
         Collections.shuffle(trainversionCopy);
@@ -79,6 +81,7 @@ public class LACE2 implements ISetWiseDataselectionStrategy {
         for (SoftwareVersion trainversion : trainversionCopy) {
             Instances traindata = trainversion.getInstances();
             Instances cliffedData = cliff.applyCLIFF(trainversion).getInstances();
+            UnlikeNeighborIndex cliffedIndex = null;
             if (minDist == Double.MIN_VALUE) {
                 // determine distance for leader-follower algorithm
                 Instances sample;
@@ -107,26 +110,31 @@ public class LACE2 implements ISetWiseDataselectionStrategy {
                     sample = new Instances(traindata);
                 }
                 double[] distances = new double[sample.size()];
+                UnlikeNeighborIndex sampleIndex = new UnlikeNeighborIndex(sample);
                 for (int i = 0; i < sample.size(); i++) {
-                    Instance unlikeNeighbor = MORPH.getNearestUnlikeNeighbor(sample.get(i), sample);
+                    Instance unlikeNeighbor = sampleIndex.nearest(sample.get(i));
                     distances[i] = MathArrays.distance(WekaUtils.instanceValues(sample.get(i)),
                                                        WekaUtils.instanceValues(unlikeNeighbor));
                 }
                 minDist = median.evaluate(distances);
             }
             for (int i = 0; i < cliffedData.size(); i++) {
-                Instance unlikeNeighbor =
-                    MORPH.getNearestUnlikeNeighbor(cliffedData.get(i), selectedData);
+                Instance unlikeNeighbor = selectedIndex.nearest(cliffedData.get(i));
                 if (unlikeNeighbor == null) {
                     selectedData.add(cliffedData.get(i));
+                    selectedIndex.add(selectedData.lastInstance());
                 }
                 else {
                     double distance =
                         MathArrays.distance(WekaUtils.instanceValues(cliffedData.get(i)),
                                             WekaUtils.instanceValues(unlikeNeighbor));
                     if (distance > minDist) {
-                        morph.morphInstance(cliffedData.get(i), cliffedData);
+                        if (cliffedIndex == null) {
+                            cliffedIndex = new UnlikeNeighborIndex(cliffedData);
+                        }
+                        morph.morphInstance(cliffedData.get(i), cliffedData, cliffedIndex);
                         selectedData.add(cliffedData.get(i));
+                        selectedIndex.add(selectedData.lastInstance());
                     }
                 }
             }
@@ -14,14 +14,24 @@
 
 package de.ugoe.cs.cpdp.dataselection;
 
-import org.apache.commons.math3.linear.BlockRealMatrix;
-import org.apache.commons.math3.linear.LUDecomposition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
 import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.SingularMatrixException;
 import org.apache.commons.math3.stat.correlation.Covariance;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.util.WekaUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instances;
@@ -31,6 +41,17 @@ import weka.core.Instances;
  * Uses the Mahalanobis distance for outlier removal. All instances that are epsilon times the
  * distance are removed. The default for epsilon is 3.0.
  * </p>
+ * <p>
+ * The Mahalanobis distance does not depend on the scales of the metrics, which differ by many
+ * orders of magnitude for software metrics. Therefore, the metrics are standardized and the
+ * distances are computed with the Cholesky factor L of the correlation matrix R=LL^T as the norm of
+ * L^-1z, where z are the standardized values. The forward substitution is solved for blocks of
+ * instances, which are distributed over the number of threads defined by the option -threads of the
+ * parameters (default: 1), e.g., "3.0 -threads 4". Constant
+ * metrics do not contribute to the distance and are ignored. If the correlation matrix is
+ * singular, e.g., due to collinear metrics, it is shrunk towards the identity matrix until it is
+ * positive definite, i.e., the covariance matrix is shrunk towards its diagonal.
+ * </p>
  * 
  * @author Steffen Herbold
  */
@@ -43,23 +64,64 @@ public class MahalanobisOutlierRemoval
      */
     private static final Logger LOGGER = LogManager.getLogger("main");
 
+    /**
+     * number of instances whose distances are computed by one task
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * smallest pivot of the Cholesky decomposition of the correlation matrix
+     */
+    private static final double POSITIVITY_THRESHOLD = 1.0e-10;
+
+    /**
+     * intensities of the shrinkage that are tried in case of a singular covariance matrix
+     */
+    private static final double[] SHRINKAGE_INTENSITIES = new double[]
+        { 1.0e-6, 1.0e-4, 1.0e-2, 1.0e-1, 1.0 };
+
     /**
      * Distance outside which entities are removed as outliers.
      */
     private double epsilon = 3.0d;
 
     /**
-     * Sets epsilon. Default is 3.0.
+     * number of threads used to compute the distances
+     */
+    private int numThreads = 1;
+
+    /**
+     * Sets epsilon. Default is 3.0. The option -threads defines the number of threads used to
+     * compute the distances.
      * 
      * @see de.ugoe.cs.cpdp.IParameterizable#setParameter(java.lang.String)
      */
     @Override
     public void setParameter(String parameters) {
-        if (parameters != null && !parameters.isEmpty()) {
-            this.epsilon = Double.parseDouble(parameters);
+        if (parameters != null && !parameters.trim().isEmpty()) {
+            String[] options = parameters.trim().split(" ");
+            this.numThreads = CrosspareUtils.parseNumThreads(options);
+            String[] params =
+                Arrays.stream(options).filter(option -> !option.isEmpty()).toArray(String[]::new);
+            if (params.length > 0) {
+                this.epsilon = Double.parseDouble(params[0]);
+            }
         }
     }
 
+    /**
+     * <p>
+     * Sets the number of threads used to compute the distances.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -83,71 +145,245 @@ public class MahalanobisOutlierRemoval
      */
     private void applyMahalanobisDistancesRemoval(SoftwareVersion version) {
         Instances data = version.getInstances();
-        RealMatrix values = new BlockRealMatrix(data.size(), data.numAttributes() - 1);
+        if (data.size() < 2) {
+            return;
+        }
+        double[][] values = new double[data.size()][];
         for (int i = 0; i < data.size(); i++) {
-            values.setRow(i, WekaUtils.instanceValues(data.get(i)));
+            values[i] = WekaUtils.instanceValues(data.get(i));
         }
-        RealMatrix inverseCovariance;
-        try {
-            inverseCovariance = new LUDecomposition(new Covariance(values).getCovarianceMatrix())
-                .getSolver().getInverse();
+        RealMatrix covariance = new Covariance(values).getCovarianceMatrix();
+        // constant metrics are ignored
+        int[] metrics = new int[covariance.getRowDimension()];
+        double[] stddevs = new double[covariance.getRowDimension()];
+        int numMetrics = 0;
+        for (int k = 0; k < covariance.getRowDimension(); k++) {
+            double variance = covariance.getEntry(k, k);
+            if (variance > 0.0 && !Double.isInfinite(variance)) {
+                metrics[numMetrics] = k;
+                stddevs[numMetrics] = Math.sqrt(variance);
+                numMetrics++;
+            }
         }
-        catch (@SuppressWarnings("unused") SingularMatrixException e) {
-            LOGGER.warn("could not perform Mahalanobis outlier removal due to singular covariance matrix");
+        if (numMetrics == 0) {
+            LOGGER.warn("could not perform Mahalanobis outlier removal due to constant metrics");
             return;
         }
-        // create mean vector
+        RealMatrix correlation = MatrixUtils.createRealMatrix(numMetrics, numMetrics);
+        for (int a = 0; a < numMetrics; a++) {
+            for (int b = 0; b < numMetrics; b++) {
+                correlation.setEntry(a, b, covariance.getEntry(metrics[a], metrics[b]) /
+                    (stddevs[a] * stddevs[b]));
+            }
+        }
+        double[][] lowerCholesky = choleskyFactor(correlation);
+        if (lowerCholesky == null) {
+            LOGGER.warn("could not perform Mahalanobis outlier removal due to a singular covariance matrix");
+            return;
+        }
+
+        // standardize the values of the metrics
         double[] meanValues = new double[data.numAttributes() - 1];
         int k = 0;
         for (int j = 0; j < data.numAttributes(); j++) {
             if (j != data.classIndex()) {
-                meanValues[k] = data.attributeStats(j).numericStats.mean;
+                meanValues[k] = data.meanOrMode(j);
                 k++;
             }
         }
+        for (int i = 0; i < values.length; i++) {
+            double[] standardized = new double[numMetrics];
+            for (int a = 0; a < numMetrics; a++) {
+                standardized[a] = (values[i][metrics[a]] - meanValues[metrics[a]]) / stddevs[a];
+            }
+            values[i] = standardized;
+        }
 
-        for (int i = data.size() - 1; i >= 0; i--) {
-            double distance =
-                mahalanobisDistance(inverseCovariance, WekaUtils.instanceValues(data.get(i)),
-                                    meanValues);
-            if (distance > this.epsilon) {
-                data.remove(i);
-                if (version.getBugMatrix() != null) {
-                    version.getBugMatrix().remove(i);
-                }
-                if (version.getEfforts() != null) {
-                    version.getEfforts().remove(i);
+        double[] distances = mahalanobisDistances(lowerCholesky, values);
+        boolean[] keep = new boolean[data.size()];
+        boolean outliers = false;
+        for (int i = 0; i < data.size(); i++) {
+            keep[i] = distances[i] <= this.epsilon;
+            outliers |= !keep[i];
+        }
+        if (outliers) {
+            compact(data, keep);
+            if (version.getBugMatrix() != null) {
+                compact(version.getBugMatrix(), keep);
+            }
+            if (version.getEfforts() != null) {
+                compact(version.getEfforts(), keep);
+            }
+            if (version.getNumBugs() != null) {
+                compact(version.getNumBugs(), keep);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Calculates the lower triangular Cholesky factor of a correlation matrix. If the correlation
+     * matrix is not positive definite, it is shrunk towards the identity matrix.
+     * </p>
+     *
+     * @param correlation
+     *            the correlation matrix
+     * @return the Cholesky factor; null if no shrinkage leads to a positive definite matrix
+     */
+    private static double[][] choleskyFactor(RealMatrix correlation) {
+        double[][] lowerCholesky = cholesky(correlation, POSITIVITY_THRESHOLD);
+        if (lowerCholesky != null) {
+            return lowerCholesky;
+        }
+        RealMatrix identity = MatrixUtils.createRealIdentityMatrix(correlation.getRowDimension());
+        for (double intensity : SHRINKAGE_INTENSITIES) {
+            lowerCholesky = cholesky(correlation.scalarMultiply(1.0 - intensity)
+                .add(identity.scalarMultiply(intensity)), POSITIVITY_THRESHOLD);
+            if (lowerCholesky != null) {
+                LOGGER.warn("singular covariance matrix for Mahalanobis outlier removal, " +
+                    "using shrinkage with intensity " + intensity);
+                return lowerCholesky;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Calculates the lower triangular Cholesky factor of a matrix.
+     * </p>
+     *
+     * @param matrix
+     *            the matrix
+     * @param threshold
+     *            smallest pivot of the decomposition
+     * @return the Cholesky factor; null if the matrix is not positive definite
+     */
+    private static double[][] cholesky(RealMatrix matrix, double threshold) {
+        try {
+            return new CholeskyDecomposition(matrix, CholeskyDecomposition.DEFAULT_RELATIVE_SYMMETRY_THRESHOLD,
+                                             threshold).getL().getData();
+        }
+        catch (@SuppressWarnings("unused") NonPositiveDefiniteMatrixException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Calculates the Mahalanobis distances of standardized vectors to the mean for a given
+     * Cholesky factor of the correlation matrix.
+     * </p>
+     *
+     * @param lowerCholesky
+     *            lower triangular Cholesky factor of the correlation matrix
+     * @param values
+     *            the standardized vectors
+     * @return the distances
+     */
+    private double[] mahalanobisDistances(double[][] lowerCholesky, double[][] values) {
+        double[] distances = new double[values.length];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < values.length; start += BLOCK_SIZE) {
+            final int blockStart = start;
+            final int blockEnd = Math.min(start + BLOCK_SIZE, values.length);
+            tasks.add(() -> {
+                solveBlock(lowerCholesky, values, distances, blockStart, blockEnd);
+                return null;
+            });
+        }
+        if (tasks.size() == 1 || this.numThreads <= 1) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
                 }
-                if (version.getNumBugs() != null) {
-                    version.getInstances().remove(i);
+                catch (Exception e) {
+                    throw new RuntimeException(e);
                 }
             }
+            return distances;
+        }
+        ExecutorService threadPool =
+            Executors.newFixedThreadPool(Math.min(this.numThreads, tasks.size()));
+        try {
+            for (Future<Void> future : threadPool.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("calculation of Mahalanobis distances failed", e.getCause());
         }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            threadPool.shutdown();
+        }
+        return distances;
     }
 
     /**
      * <p>
-     * Calculates the Mahalanobis distance between two vectors for a given inverse covariance
-     * matric.
+     * Calculates the Mahalanobis distances of a block of standardized vectors through forward
+     * substitution with the Cholesky factor.
      * </p>
      *
-     * @param inverseCovariance
-     * @param vector1
-     * @param vector2
-     * @return
+     * @param lowerCholesky
+     *            lower triangular Cholesky factor of the correlation matrix
+     * @param values
+     *            the standardized vectors
+     * @param distances
+     *            array where the distances are stored
+     * @param blockStart
+     *            index of the first vector of the block
+     * @param blockEnd
+     *            index after the last vector of the block
      */
-    private static double mahalanobisDistance(RealMatrix inverseCovariance,
-                                       double[] vector1,
-                                       double[] vector2)
+    private static void solveBlock(double[][] lowerCholesky,
+                                   double[][] values,
+                                   double[] distances,
+                                   int blockStart,
+                                   int blockEnd)
     {
-        RealMatrix x = new BlockRealMatrix(1, vector1.length);
-        x.setRow(0, vector1);
-        RealMatrix y = new BlockRealMatrix(1, vector2.length);
-        y.setRow(0, vector2);
-
-        RealMatrix deltaxy = x.subtract(y);
+        double[] solution = new double[lowerCholesky.length];
+        for (int i = blockStart; i < blockEnd; i++) {
+            double squaredDistance = 0.0;
+            for (int k = 0; k < lowerCholesky.length; k++) {
+                double[] row = lowerCholesky[k];
+                double sum = values[i][k];
+                for (int j = 0; j < k; j++) {
+                    sum -= row[j] * solution[j];
+                }
+                solution[k] = sum / row[k];
+                squaredDistance += solution[k] * solution[k];
+            }
+            distances[i] = Math.sqrt(squaredDistance);
+        }
+    }
 
-        return Math
-            .sqrt(deltaxy.multiply(inverseCovariance).multiply(deltaxy.transpose()).getEntry(0, 0));
+    /**
+     * <p>
+     * Removes the elements of a list that are not marked to keep. The remaining elements are moved
+     * to the front of the list, such that no element is shifted more than once.
+     * </p>
+     *
+     * @param list
+     *            the list
+     * @param keep
+     *            true for the elements that are kept
+     */
+    private static <T> void compact(List<T> list, boolean[] keep) {
+        int size = 0;
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                if (size != i) {
+                    list.set(size, list.get(i));
+                }
+                size++;
+            }
+        }
+        for (int i = list.size() - 1; i >= size; i--) {
+            list.remove(i);
+        }
     }
 }
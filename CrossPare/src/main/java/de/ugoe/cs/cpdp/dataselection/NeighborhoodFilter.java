@@ -18,7 +18,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeSet;
 
-import de.ugoe.cs.cpdp.util.WekaUtils;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
+import de.ugoe.cs.cpdp.util.HammingIndex;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instances;
 
@@ -26,11 +27,35 @@ import weka.core.Instances;
  * <p>
  * Relevancy filter after Ryu et al., 2015b.
  * </p>
+ * <p>
+ * The nearest neighbors of the test instances are determined with a {@link HammingIndex} of the
+ * training data. The test instances are distributed over the number of threads defined by the
+ * option -threads of the parameters (default: 1), e.g.,
+ * {@code <pointwiseselector name="NeighborhoodFilter" param="-threads 4"/>}.
+ * </p>
  * 
  * @author Steffen Herbold
  */
 public class NeighborhoodFilter implements IPointWiseDataselectionStrategy {
 
+    /**
+     * number of threads used to determine the nearest neighbors
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to determine the nearest neighbors.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -38,7 +63,9 @@ public class NeighborhoodFilter implements IPointWiseDataselectionStrategy {
      */
     @Override
     public void setParameter(String parameters) {
-        // dummy, parameters not used
+        if (parameters != null) {
+            this.numThreads = CrosspareUtils.parseNumThreads(parameters.trim().split(" "));
+        }
     }
 
     /*
@@ -49,7 +76,7 @@ public class NeighborhoodFilter implements IPointWiseDataselectionStrategy {
      */
     @Override
     public SoftwareVersion apply(SoftwareVersion testversion, SoftwareVersion trainversion) {
-        return applyNeighborhoodFilter(testversion, trainversion);
+        return applyNeighborhoodFilter(testversion, trainversion, this.numThreads);
     }
 
     /**
@@ -61,10 +88,15 @@ public class NeighborhoodFilter implements IPointWiseDataselectionStrategy {
      *            version of the test data
      * @param trainversion
      *            version of the training data
+     * @param numThreads
+     *            number of threads used to determine the nearest neighbors
      * @return filtered version of the training data
      */
     @SuppressWarnings("boxing")
-    private static SoftwareVersion applyNeighborhoodFilter(SoftwareVersion testversion, SoftwareVersion trainversion) {
+    private static SoftwareVersion applyNeighborhoodFilter(SoftwareVersion testversion,
+                                                           SoftwareVersion trainversion,
+                                                           int numThreads)
+    {
         Instances testdata = testversion.getInstances();
         Instances traindata = trainversion.getInstances();
         Instances bugMatrix = null;
@@ -81,19 +113,10 @@ public class NeighborhoodFilter implements IPointWiseDataselectionStrategy {
             bugMatrix.clear();
         }
         TreeSet<Integer> selectedInstances = new TreeSet<>();
-        for (int i = 0; i < testdata.size(); i++) {
-            double minHam = Double.MAX_VALUE;
-            for (int j = 0; j < traindata.size(); j++) {
-                double distance = WekaUtils.hammingDistance(testdata.get(i), traindata.get(j));
-                if (distance < minHam) {
-                    minHam = distance;
-                }
-            }
-            for (int j = 0; j < traindata.size(); j++) {
-                double distance = WekaUtils.hammingDistance(testdata.get(i), traindata.get(j));
-                if (distance <= minHam) {
-                    selectedInstances.add(j);
-                }
+        HammingIndex hammingIndex = new HammingIndex(traindata);
+        for (int[] nearest : hammingIndex.nearest(testdata, numThreads)) {
+            for (int j : nearest) {
+                selectedInstances.add(j);
             }
         }
         Instances selectedTraindata = new Instances(testdata);
@@ -14,20 +14,18 @@
 
 package de.ugoe.cs.cpdp.dataselection;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
-import org.apache.commons.collections4.list.SetUniqueList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.ugoe.cs.cpdp.util.ArtifactCache;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.clusterers.EM;
 import weka.core.Instances;
-import weka.filters.Filter;
-import weka.filters.unsupervised.attribute.AddCluster;
-import weka.filters.unsupervised.attribute.Remove;
+import weka.core.Utils;
 
 /**
  * Use in Config:
@@ -40,6 +38,13 @@ import weka.filters.unsupervised.attribute.Remove;
  * <pointwiseselector name="PointWiseEMClusterSelection" param="-I 10 -X 5 -max 300"/>
  * 
  * Don't forget to add: <preprocessor name="Normalization" param=""/>
+ * 
+ * The number of execution slots of EM is defined with -num-slots (default: 1), e.g.,
+ * <pointwiseselector name="PointWiseEMClusterSelection" param="-N 10 -num-slots 4"/>
+ * 
+ * The clustering of the training data does not depend on the test data. The fitted clusterer and
+ * the clusters of the training data are stored in the {@link ArtifactCache} and reused for all
+ * test versions.
  */
 public class PointWiseEMClusterSelection implements IPointWiseDataselectionStrategy {
 
@@ -48,11 +53,21 @@ public class PointWiseEMClusterSelection implements IPointWiseDataselectionStrat
      */
     private static final Logger LOGGER = LogManager.getLogger("main");
 	
+    /**
+     * namespace of the cluster models in the {@link ArtifactCache}
+     */
+    private static final String CACHE_NAMESPACE = "PointWiseEMClusterSelection";
+
     /**
      * paramters passed to the selection
      */
     private String[] params;
 
+    /**
+     * number of execution slots of EM; only used if the parameters do not define -num-slots
+     */
+    private int numExecutionSlots = 1;
+
     /*
      * (non-Javadoc)
      * 
@@ -63,13 +78,26 @@ public class PointWiseEMClusterSelection implements IPointWiseDataselectionStrat
         this.params = parameters.split(" ");
     }
 
+    /**
+     * <p>
+     * Sets the number of execution slots of EM, i.e., the number of threads used for the
+     * clustering. The option -num-slots of the parameters takes precedence.
+     * </p>
+     *
+     * @param numExecutionSlots
+     *            number of execution slots
+     */
+    @SuppressWarnings("hiding")
+    public void setNumExecutionSlots(int numExecutionSlots) {
+        this.numExecutionSlots = numExecutionSlots;
+    }
+
     /**
      * 1. Cluster the traindata 2. for each instance in the testdata find the assigned cluster 3.
      * select only traindata from the clusters we found in our testdata
      * 
      * @returns the software version of the selected training data
      */
-    @SuppressWarnings("boxing")
     @Override
     public SoftwareVersion apply(SoftwareVersion testversion, SoftwareVersion trainversion) {
         Instances traindata = trainversion.getInstances();
@@ -87,81 +115,33 @@ public class PointWiseEMClusterSelection implements IPointWiseDataselectionStrat
             bugMatrix = new Instances(trainversion.getBugMatrix());
             bugMatrix.delete();
         }
-        // final Attribute classAttribute = testdata.classAttribute();
-
-        final List<Integer> selectedCluster =
-            SetUniqueList.setUniqueList(new LinkedList<Integer>());
-
-        // 1. copy train- and testdata
-        Instances train = new Instances(traindata);
-        Instances test = new Instances(testdata);
 
         Instances selected = null;
 
         try {
-            // remove class attribute from traindata
-            Remove filter = new Remove();
-            filter.setAttributeIndices("" + (train.classIndex() + 1));
-            filter.setInputFormat(train);
-            train = Filter.useFilter(train, filter);
-
-            LOGGER.debug(String.format("starting clustering"));
-
-            // 3. cluster data
-            EM clusterer = new EM();
-            clusterer.setOptions(this.params);
-            clusterer.buildClusterer(train);
-            int numClusters = clusterer.getNumClusters();
-            if (numClusters == -1) {
-            	LOGGER.debug(String.format("we have unlimited clusters"));
-            }
-            else {
-            	LOGGER.debug(String.format("we have: " + numClusters + " clusters"));
-            }
-
-            // 4. classify testdata, save cluster int
-
-            // remove class attribute from testdata?
-            Remove filter2 = new Remove();
-            filter2.setAttributeIndices("" + (test.classIndex() + 1));
-            filter2.setInputFormat(test);
-            test = Filter.useFilter(test, filter2);
-
-            int cnum;
-            for (int i = 0; i < test.numInstances(); i++) {
-                cnum = clusterer.clusterInstance(test.get(i));
+            // 1. cluster the traindata without the class attribute
+            ClusterModel model = clusterModel(traindata);
 
-                // we dont want doubles (maybe use a hashset instead of list?)
-                if (!selectedCluster.contains(cnum)) {
-                    selectedCluster.add(cnum);
-                    // Console.traceln(Level.INFO, String.format("assigned to cluster: "+cnum));
+            // 2. classify testdata, save cluster int
+            int[] testClusters = EMClustering
+                .assignClusters(model.clusterer, EMClustering.project(testdata, model.header));
+            boolean[] selectedCluster = new boolean[model.clusterer.numberOfClusters()];
+            int numSelectedClusters = 0;
+            for (int cnum : testClusters) {
+                if (!selectedCluster[cnum]) {
+                    selectedCluster[cnum] = true;
+                    numSelectedClusters++;
                 }
             }
 
-            LOGGER.debug(String.format("our testdata is in: " + selectedCluster.size() + " different clusters"));
+            LOGGER.debug(String.format("our testdata is in: " + numSelectedClusters + " different clusters"));
 
-            // 5. get cluster membership of our traindata
-            AddCluster cfilter = new AddCluster();
-            cfilter.setClusterer(clusterer);
-            cfilter.setInputFormat(train);
-            Instances ctrain = Filter.useFilter(train, cfilter);
-
-            // 6. for all traindata get the cluster int, if it is in our list of testdata cluster
-            // int add the traindata
-            // of this cluster to our returned traindata
-            int cnumber;
+            // 3. select the traindata of the clusters we found in our testdata
             selected = new Instances(traindata);
             selected.delete();
 
-            for (int j = 0; j < ctrain.numInstances(); j++) {
-                // get the cluster number from the attributes
-                cnumber = Integer.parseInt(ctrain.get(j)
-                    .stringValue(ctrain.get(j).numAttributes() - 1).replace("cluster", ""));
-
-                // Console.traceln(Level.INFO,
-                // String.format("instance "+j+" is in cluster: "+cnumber));
-                if (selectedCluster.contains(cnumber)) {
-                    // this only works if the index does not change
+            for (int j = 0; j < traindata.numInstances(); j++) {
+                if (selectedCluster[model.trainClusters[j]]) {
                     selected.add(traindata.get(j));
                     if (bugMatrix != null) {
                         bugMatrix.add(trainversion.getBugMatrix().instance(j));
@@ -172,12 +152,6 @@ public class PointWiseEMClusterSelection implements IPointWiseDataselectionStrat
                     if (numBugs != null) {
                         numBugs.add(trainversion.getNumBugs().get(j));
                     }
-                    // check for differences, just one attribute, we are pretty sure the index does
-                    // not change
-                    if (traindata.get(j).value(3) != ctrain.get(j).value(3)) {
-                    	LOGGER.warn(String
-                            .format("we have a difference between train an ctrain!"));
-                    }
                 }
             }
 
@@ -192,4 +166,95 @@ public class PointWiseEMClusterSelection implements IPointWiseDataselectionStrat
                 selected, bugMatrix, efforts, numBugs, trainversion.getReleaseDate(), null);
     }
 
+    /**
+     * <p>
+     * Returns the cluster model of the training data. The model is fitted if it is not yet cached.
+     * </p>
+     *
+     * @param traindata
+     *            the training data
+     * @return the cluster model
+     * @throws Exception
+     *             thrown if the clustering fails
+     */
+    private ClusterModel clusterModel(Instances traindata) throws Exception {
+        String[] options = this.params == null ? new String[0] : this.params.clone();
+        int numSlots = EMClustering.parseNumExecutionSlots(options, this.numExecutionSlots);
+        // the clusters depend on the number of execution slots, because EM sums the partial
+        // results of the slots
+        String key = ArtifactCache.contentHash(traindata) + "_" +
+            Integer.toHexString(Utils.joinOptions(options).hashCode()) + "_" + numSlots;
+        ClusterModel model = ArtifactCache.get(CACHE_NAMESPACE, key);
+        if (model == null) {
+            Instances header = EMClustering.projectedHeader(traindata);
+            Instances train = EMClustering.project(traindata, header);
+
+            LOGGER.debug(String.format("starting clustering"));
+            EM clusterer = new EM();
+            // setOptions consumes the options, hence a copy is used
+            clusterer.setOptions(options.clone());
+            clusterer.setNumExecutionSlots(numSlots);
+            clusterer.buildClusterer(train);
+            int numClusters = clusterer.getNumClusters();
+            if (numClusters == -1) {
+                LOGGER.debug(String.format("we have unlimited clusters"));
+            }
+            else {
+                LOGGER.debug(String.format("we have: " + numClusters + " clusters"));
+            }
+
+            model = new ClusterModel(header, clusterer, EMClustering.assignClusters(clusterer, train));
+            ArtifactCache.put(CACHE_NAMESPACE, key, model);
+        }
+        return model;
+    }
+
+    /**
+     * <p>
+     * EM clusterer fitted on training data together with the clusters of the training data.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class ClusterModel implements Serializable {
+
+        /**
+         * default serialization ID
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * header of the training data without the class attribute
+         */
+        private final Instances header;
+
+        /**
+         * the fitted clusterer
+         */
+        private final EM clusterer;
+
+        /**
+         * clusters of the training instances
+         */
+        private final int[] trainClusters;
+
+        /**
+         * <p>
+         * Constructor. Creates a new cluster model.
+         * </p>
+         *
+         * @param header
+         *            header of the training data without the class attribute
+         * @param clusterer
+         *            the fitted clusterer
+         * @param trainClusters
+         *            clusters of the training instances
+         */
+        @SuppressWarnings("hiding")
+        private ClusterModel(Instances header, EM clusterer, int[] trainClusters) {
+            this.header = header;
+            this.clusterer = clusterer;
+            this.trainClusters = trainClusters;
+        }
+    }
 }
@@ -14,11 +14,25 @@
 
 package de.ugoe.cs.cpdp.dataselection;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections4.list.SetUniqueList;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
 
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.classifiers.Evaluation;
 import weka.classifiers.functions.Logistic;
@@ -32,12 +46,25 @@ import weka.core.Instances;
  * Empirical Study on Defect Prediction. <br>
  * <br>
  * This is calculated through the error of a logistic regression classifier that tries to separate
- * the sets.
+ * the sets. With the parameter lda, the error is estimated with a linear discriminant analysis
+ * instead, which is cheaper, because it has a closed form solution and does not require a
+ * cross-validation. <br>
+ * <br>
+ * The separatability of two versions does not depend on the other versions. It is computed once
+ * for each unordered pair of versions and stored in the {@link ArtifactCache}. The random samples
+ * are seeded by the pair. The repetitions and folds can be executed in parallel with the option
+ * -threads of the parameters, e.g., "16 lda -threads 4"; by default, one thread is used, because
+ * the experiments are already executed in parallel by the {@link de.ugoe.cs.cpdp.Runner}.
  * 
  * @author Steffen Herbold
  */
 public class SeparatabilitySelection implements ISetWiseDataselectionStrategy {
 
+    /**
+     * number of folds of the cross-validation of the logistic regression
+     */
+    private static final int NUM_FOLDS = 5;
+
     /**
      * size of the random sample that is drawn from both test data and training data
      */
@@ -54,61 +81,155 @@ public class SeparatabilitySelection implements ISetWiseDataselectionStrategy {
     private int neighbors = 10;
 
     /**
-     * Sets the number of neighbors that are selected.
+     * true if the separatability is estimated with a linear discriminant analysis
+     */
+    private boolean useLDA = false;
+
+    /**
+     * number of threads used to calculate the separatability
+     */
+    private int numThreads = 1;
+
+    /**
+     * Sets the number of neighbors that are selected, optionally followed by lda to estimate the
+     * separatability with a linear discriminant analysis, e.g., "16 lda". The option -threads
+     * defines the number of threads used to calculate the separatability, e.g., "16 lda -threads 4".
      */
     @Override
     public void setParameter(String parameters) {
-        if (!"".equals(parameters)) {
-            this.neighbors = Integer.parseInt(parameters);
+        if (parameters != null && !"".equals(parameters.trim())) {
+            String[] options = parameters.trim().split(" ");
+            this.numThreads = CrosspareUtils.parseNumThreads(options);
+            String[] params =
+                Arrays.stream(options).filter(option -> !option.isEmpty()).toArray(String[]::new);
+            if (params.length == 0) {
+                return;
+            }
+            this.neighbors = Integer.parseInt(params[0]);
+            if (params.length > 1) {
+                if ("lda".equalsIgnoreCase(params[1])) {
+                    this.useLDA = true;
+                }
+                else if ("logistic".equalsIgnoreCase(params[1])) {
+                    this.useLDA = false;
+                }
+                else {
+                    throw new RuntimeException("unknown separatability estimate: " + params[1]);
+                }
+            }
         }
     }
 
+    /**
+     * <p>
+     * Sets the number of threads used to calculate the separatability.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /**
      * @see ISetWiseDataselectionStrategy#apply(de.ugoe.cs.cpdp.versions.SoftwareVersion,
      *      org.apache.commons.collections4.list.SetUniqueList)
      */
     @Override
     public void apply(SoftwareVersion testversion, SetUniqueList<SoftwareVersion> trainversionSet) {
-        final Random rand = new Random(1);
-
         // calculate distances between testdata and traindata
         final double[] distances = new double[trainversionSet.size()];
 
-        Instances testdata = testversion.getInstances();
-        int i = 0;
-        for (SoftwareVersion trainversion : trainversionSet) {
-            Instances traindata = trainversion.getInstances();
-            double distance = 0.0;
-            for (int rep = 0; rep < this.maxRep; rep++) {
-                // sample instances
-                Instances sample = new Instances(testdata);
-                sample.clear();
-                for (int j = 0; j < this.sampleSize; j++) {
-                    Instance inst =
-                        new DenseInstance(testdata.instance(rand.nextInt(testdata.numInstances())));
-                    inst.setDataset(sample);
-                    inst.setClassValue(1.0);
-                    sample.add(inst);
-                    inst = new DenseInstance(traindata
-                        .instance(rand.nextInt(traindata.numInstances())));
-                    inst.setDataset(sample);
-                    inst.setClassValue(0.0);
-                    sample.add(inst);
-                }
+        final Instances testdata = testversion.getInstances();
+        final String testHash = ArtifactCache.contentHash(testdata);
+        final String namespace = "SeparatabilitySelection-" + (this.useLDA ? "lda" : "logistic") +
+            "-" + this.sampleSize + "-" + this.maxRep;
+        final List<Integer> missing = new ArrayList<>();
+        final String[] pairKeys = new String[trainversionSet.size()];
+        final Instances[] firstData = new Instances[trainversionSet.size()];
+        final Instances[] secondData = new Instances[trainversionSet.size()];
+        for (int i = 0; i < trainversionSet.size(); i++) {
+            Instances traindata = trainversionSet.get(i).getInstances();
+            String trainHash = ArtifactCache.contentHash(traindata);
+            // the pair is ordered by the hashes, such that the separatability is symmetric
+            boolean testFirst = testHash.compareTo(trainHash) <= 0;
+            pairKeys[i] = testFirst ? testHash + "_" + trainHash : trainHash + "_" + testHash;
+            firstData[i] = testFirst ? testdata : traindata;
+            secondData[i] = testFirst ? traindata : testdata;
+            Double cached = ArtifactCache.get(namespace, pairKeys[i]);
+            if (cached == null) {
+                missing.add(Integer.valueOf(i));
+            }
+            else {
+                distances[i] = cached.doubleValue();
+            }
+        }
 
-                // calculate separation
-                Evaluation eval;
-                try {
-                    eval = new Evaluation(sample);
-                    eval.crossValidateModel(new Logistic(), sample, 5, rand);
+        if (!missing.isEmpty()) {
+            // weighted number of correctly separated and of all instances of each pair
+            final double[][] correct = new double[trainversionSet.size()][this.maxRep];
+            final double[][] total = new double[trainversionSet.size()][this.maxRep];
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Integer index : missing) {
+                final int i = index.intValue();
+                Random pairRandom = new Random(pairKeys[i].hashCode());
+                for (int rep = 0; rep < this.maxRep; rep++) {
+                    final int r = rep;
+                    final long seed = pairRandom.nextLong();
+                    if (this.useLDA) {
+                        tasks.add(() -> {
+                            Instances sample =
+                                drawSample(firstData[i], secondData[i], new Random(seed));
+                            double[] result = separateLDA(sample);
+                            correct[i][r] = result[0];
+                            total[i][r] = result[1];
+                            return null;
+                        });
+                    }
+                    else {
+                        for (int fold = 0; fold < NUM_FOLDS; fold++) {
+                            final int f = fold;
+                            tasks.add(() -> {
+                                Random rand = new Random(seed);
+                                Instances sample = drawSample(firstData[i], secondData[i], rand);
+                                double[] result = separateLogisticFold(sample, f, rand);
+                                synchronized (correct) {
+                                    correct[i][r] += result[0];
+                                    total[i][r] += result[1];
+                                }
+                                return null;
+                            });
+                        }
+                    }
+                }
+            }
+            ExecutorService threadPool =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(this.numThreads, tasks.size())));
+            try {
+                for (Future<Void> future : threadPool.invokeAll(tasks)) {
+                    future.get();
                 }
-                catch (Exception e) {
-                    throw new RuntimeException("cross-validation during calculation of separatability failed",
-                                               e);
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException("calculation of separatability failed", e.getCause());
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            finally {
+                threadPool.shutdown();
+            }
+            for (Integer index : missing) {
+                int i = index.intValue();
+                double distance = 0.0;
+                for (int rep = 0; rep < this.maxRep; rep++) {
+                    distance += correct[i][rep] / total[i][rep];
                 }
-                distance += eval.pctCorrect() / 100.0;
+                distances[i] = 2 * ((distance / this.maxRep) - 0.5);
+                ArtifactCache.put(namespace, pairKeys[i], Double.valueOf(distances[i]));
             }
-            distances[i++] = 2 * ((distance / this.maxRep) - 0.5);
         }
 
         // select closest neighbors
@@ -116,10 +237,153 @@ public class SeparatabilitySelection implements ISetWiseDataselectionStrategy {
         Arrays.sort(distancesCopy);
         final double cutoffDistance = distancesCopy[this.neighbors];
 
-        for (i = trainversionSet.size() - 1; i >= 0; i--) {
+        for (int i = trainversionSet.size() - 1; i >= 0; i--) {
             if (distances[i] > cutoffDistance) {
                 trainversionSet.remove(i);
             }
         }
     }
+
+    /**
+     * <p>
+     * Draws a random sample with replacement from two data sets. The instances of the first data
+     * set have the class value 1, the instances of the second data set the class value 0.
+     * </p>
+     *
+     * @param first
+     *            the first data set
+     * @param second
+     *            the second data set
+     * @param rand
+     *            random number generator
+     * @return the sample
+     */
+    private Instances drawSample(Instances first, Instances second, Random rand) {
+        Instances sample = new Instances(first, 2 * this.sampleSize);
+        for (int j = 0; j < this.sampleSize; j++) {
+            Instance inst = new DenseInstance(first.instance(rand.nextInt(first.numInstances())));
+            inst.setDataset(sample);
+            inst.setClassValue(1.0);
+            sample.add(inst);
+            inst = new DenseInstance(second.instance(rand.nextInt(second.numInstances())));
+            inst.setDataset(sample);
+            inst.setClassValue(0.0);
+            sample.add(inst);
+        }
+        return sample;
+    }
+
+    /**
+     * <p>
+     * Evaluates a fold of the cross-validation of a logistic regression on the sample. The folds
+     * are created in the same way as by
+     * {@link Evaluation#crossValidateModel}.
+     * </p>
+     *
+     * @param sample
+     *            the sample
+     * @param fold
+     *            the fold
+     * @param rand
+     *            random number generator, after the sample was drawn
+     * @return weighted number of correctly classified instances and of all instances of the fold
+     * @throws Exception
+     *             thrown if the training or the evaluation fails
+     */
+    private static double[] separateLogisticFold(Instances sample, int fold, Random rand)
+        throws Exception
+    {
+        sample.randomize(rand);
+        sample.stratify(NUM_FOLDS);
+        Instances train = null;
+        for (int i = 0; i <= fold; i++) {
+            // the training sets of the previous folds are drawn to advance the random numbers
+            train = sample.trainCV(NUM_FOLDS, i, rand);
+        }
+        Instances test = sample.testCV(NUM_FOLDS, fold);
+        Logistic logistic = new Logistic();
+        logistic.buildClassifier(train);
+        Evaluation eval = new Evaluation(train);
+        eval.evaluateModel(logistic, test);
+        return new double[]
+            { eval.correct(), eval.correct() + eval.incorrect() + eval.unclassified() };
+    }
+
+    /**
+     * <p>
+     * Separates the sample with a linear discriminant analysis and evaluates the separation on the
+     * sample.
+     * </p>
+     *
+     * @param sample
+     *            the sample
+     * @return weighted number of correctly classified instances and of all instances
+     */
+    private static double[] separateLDA(Instances sample) {
+        int numAttributes = sample.numAttributes() - 1;
+        double[][] values = new double[sample.size()][numAttributes];
+        double[] sumWeights = new double[2];
+        double[][] means = new double[2][numAttributes];
+        for (int i = 0; i < sample.size(); i++) {
+            Instance instance = sample.get(i);
+            int k = 0;
+            for (int j = 0; j < sample.numAttributes(); j++) {
+                if (j != sample.classIndex()) {
+                    values[i][k++] = instance.value(j);
+                }
+            }
+            int c = (int) instance.classValue();
+            sumWeights[c] += instance.weight();
+            for (k = 0; k < numAttributes; k++) {
+                means[c][k] += instance.weight() * values[i][k];
+            }
+        }
+        for (int c = 0; c < 2; c++) {
+            for (int k = 0; k < numAttributes; k++) {
+                means[c][k] /= sumWeights[c];
+            }
+        }
+
+        // pooled within-class covariance
+        RealMatrix covariance = new Array2DRowRealMatrix(numAttributes, numAttributes);
+        for (int i = 0; i < sample.size(); i++) {
+            double weight = sample.get(i).weight();
+            double[] mean = means[(int) sample.get(i).classValue()];
+            for (int k = 0; k < numAttributes; k++) {
+                double dk = values[i][k] - mean[k];
+                for (int l = k; l < numAttributes; l++) {
+                    covariance.addToEntry(k, l, weight * dk * (values[i][l] - mean[l]));
+                }
+            }
+        }
+        for (int k = 0; k < numAttributes; k++) {
+            for (int l = k; l < numAttributes; l++) {
+                double entry = covariance.getEntry(k, l) / (sumWeights[0] + sumWeights[1] - 2);
+                covariance.setEntry(k, l, entry);
+                covariance.setEntry(l, k, entry);
+            }
+        }
+
+        // the pseudo-inverse handles constant and collinear attributes
+        RealVector meanDifference =
+            new ArrayRealVector(means[1]).subtract(new ArrayRealVector(means[0]));
+        RealVector direction = new SingularValueDecomposition(covariance).getSolver()
+            .getInverse().operate(meanDifference);
+        double threshold = direction
+            .dotProduct(new ArrayRealVector(means[1]).add(new ArrayRealVector(means[0]))) / 2.0;
+
+        double correct = 0.0;
+        double total = 0.0;
+        for (int i = 0; i < sample.size(); i++) {
+            Instance instance = sample.get(i);
+            double projection = direction.dotProduct(new ArrayRealVector(values[i], false));
+            int predicted = projection > threshold ? 1 : 0;
+            if (predicted == (int) instance.classValue()) {
+                correct += instance.weight();
+            }
+            total += instance.weight();
+        }
+        return new double[]
+            { correct, total };
+    }
 }
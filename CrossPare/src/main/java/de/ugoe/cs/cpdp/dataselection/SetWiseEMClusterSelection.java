@@ -14,15 +14,11 @@
 
 package de.ugoe.cs.cpdp.dataselection;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import org.apache.commons.collections4.list.SetUniqueList;
 
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
-import weka.clusterers.EM;
-import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 
 /**
  * Filter based on EM clustering after S. Herbold: Training data selection for cross-project defect
@@ -32,6 +28,36 @@ import weka.core.Instances;
  */
 public class SetWiseEMClusterSelection extends AbstractCharacteristicSelection {
 
+    /**
+     * number of execution slots of EM
+     */
+    private int numExecutionSlots = 1;
+
+    /**
+     * Sets the distributional characteristics. The names of the characteristics are separated by
+     * blanks. The option -num-slots defines the number of execution slots of EM (default: 1).
+     */
+    @Override
+    public void setParameter(String parameters) {
+        String[] options = parameters.split(" ");
+        this.numExecutionSlots = EMClustering.parseNumExecutionSlots(options, 1);
+        super.setParameter(Utils.joinOptions(options));
+    }
+
+    /**
+     * <p>
+     * Sets the number of execution slots of EM, i.e., the number of threads used for the
+     * clustering. The clusters may differ for different numbers of execution slots.
+     * </p>
+     *
+     * @param numExecutionSlots
+     *            number of execution slots
+     */
+    @SuppressWarnings("hiding")
+    public void setNumExecutionSlots(int numExecutionSlots) {
+        this.numExecutionSlots = numExecutionSlots;
+    }
+
     /**
      * @see ISetWiseDataselectionStrategy#apply(de.ugoe.cs.cpdp.versions.SoftwareVersion,
      *      org.apache.commons.collections4.list.SetUniqueList)
@@ -39,37 +65,14 @@ public class SetWiseEMClusterSelection extends AbstractCharacteristicSelection {
     @Override
     public void apply(SoftwareVersion testversion, SetUniqueList<SoftwareVersion> trainversionSet) {
         final Instances data = normalizedCharacteristicInstances(testversion, trainversionSet);
-        final Instance targetInstance = data.instance(0);
-        final List<Instance> candidateInstances = new LinkedList<>();
-        for (int i = 1; i < data.numInstances(); i++) {
-            candidateInstances.add(data.instance(i));
-        }
 
         // cluster and select
         try {
-            final EM emeans = new EM();
-            boolean onlyTarget = true;
-            int targetCluster;
-            int maxNumClusters = candidateInstances.size();
-            do { // while(onlyTarget)
-                emeans.setMaximumNumberOfClusters(maxNumClusters);
-                emeans.buildClusterer(data);
-
-                targetCluster = emeans.clusterInstance(targetInstance);
-
-                // check if cluster only contains target project
-                for (int i = 0; i < candidateInstances.size() && onlyTarget; i++) {
-                    onlyTarget &=
-                        !(emeans.clusterInstance(candidateInstances.get(i)) == targetCluster);
-                }
-                maxNumClusters = emeans.numberOfClusters() - 1;
-            }
-            while (onlyTarget);
-
+            final int[] clusters = EMClustering.clusterVersions(data, this.numExecutionSlots);
             int numRemoved = 0;
-            for (int i = 0; i < candidateInstances.size(); i++) {
-                if (emeans.clusterInstance(candidateInstances.get(i)) != targetCluster) {
-                    trainversionSet.remove(i - numRemoved++);
+            for (int i = 1; i < data.numInstances(); i++) {
+                if (clusters[i] != clusters[0]) {
+                    trainversionSet.remove(i - 1 - numRemoved++);
                 }
             }
         }
@@ -16,8 +16,6 @@ package de.ugoe.cs.cpdp.dataselection;
 
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 
@@ -26,11 +24,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
-import weka.clusterers.EM;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
-import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Normalize;
 
@@ -39,6 +36,8 @@ import weka.filters.unsupervised.attribute.Normalize;
  * 
  * The project context factors used for the clustering are configured in the XML param attribute,
  * Example: <setwiseselector name="SetWiseEMContextSelection" param="AFS TND TNC" />
+ * 
+ * The number of execution slots of EM is defined with the option -num-slots (default: 1).
  */
 public class SetWiseEMContextSelection implements ISetWiseDataselectionStrategy {
 	
@@ -52,6 +51,11 @@ public class SetWiseEMContextSelection implements ISetWiseDataselectionStrategy
      */
     private String[] project_context_factors; // = new String[]{"TND", "TNC", "TNF", "TLOC"};
 
+    /**
+     * number of execution slots of EM
+     */
+    private int numExecutionSlots = 1;
+
     /*
      * (non-Javadoc)
      * 
@@ -60,10 +64,26 @@ public class SetWiseEMContextSelection implements ISetWiseDataselectionStrategy
     @Override
     public void setParameter(String parameters) {
         if (parameters != null) {
-            this.project_context_factors = parameters.split(" ");
+            String[] options = parameters.split(" ");
+            this.numExecutionSlots = EMClustering.parseNumExecutionSlots(options, 1);
+            this.project_context_factors = Utils.joinOptions(options).split(" ");
         }
     }
 
+    /**
+     * <p>
+     * Sets the number of execution slots of EM, i.e., the number of threads used for the
+     * clustering.
+     * </p>
+     *
+     * @param numExecutionSlots
+     *            number of execution slots
+     */
+    @SuppressWarnings("hiding")
+    public void setNumExecutionSlots(int numExecutionSlots) {
+        this.numExecutionSlots = numExecutionSlots;
+    }
+
     /**
      * Uses the Weka EM-Clustering algorithm to cluster the projects by their project context
      * factors. The project context factors are first normalized and then used for clustering. They
@@ -76,42 +96,14 @@ public class SetWiseEMContextSelection implements ISetWiseDataselectionStrategy
         // now do the clustering, normalizedCharacteristicInstances ruft getContextFactors auf
         final Instances data = this.normalizedCharacteristicInstances(testversion, trainversionSet);
 
-        final Instance targetInstance = data.instance(0);
-        final List<Instance> candidateInstances = new LinkedList<>();
-        for (int i = 1; i < data.numInstances(); i++) {
-            candidateInstances.add(data.instance(i));
-        }
-
         // cluster and select
         try {
-            final EM emeans = new EM();
-            boolean onlyTarget = true;
-            int targetCluster;
-            int maxNumClusters = candidateInstances.size();
-
-            do { // while(onlyTarget)
-                emeans.setMaximumNumberOfClusters(maxNumClusters);
-                emeans.buildClusterer(data);
-
-                targetCluster = emeans.clusterInstance(targetInstance);
-
-                // check if cluster only contains target project
-                for (int i = 0; i < candidateInstances.size() && onlyTarget; i++) {
-                    onlyTarget &=
-                        !(emeans.clusterInstance(candidateInstances.get(i)) == targetCluster);
-                }
-                maxNumClusters = emeans.numberOfClusters() - 1;
-
-                // Console.traceln(Level.INFO, "number of clusters: " + emeans.numberOfClusters());
-            }
-            while (onlyTarget);
-
-            LOGGER.debug("clusters: " + maxNumClusters);
+            final int[] clusters = EMClustering.clusterVersions(data, this.numExecutionSlots);
             LOGGER.debug("instances before clustering: " + trainversionSet.size());
             int numRemoved = 0;
-            for (int i = 0; i < candidateInstances.size(); i++) {
-                if (emeans.clusterInstance(candidateInstances.get(i)) != targetCluster) {
-                    trainversionSet.remove(i - numRemoved++);
+            for (int i = 1; i < data.numInstances(); i++) {
+                if (clusters[i] != clusters[0]) {
+                    trainversionSet.remove(i - 1 - numRemoved++);
                 }
             }
             LOGGER.debug("instances after clustering: " + trainversionSet.size());
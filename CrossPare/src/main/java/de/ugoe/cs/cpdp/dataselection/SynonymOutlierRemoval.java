@@ -14,18 +14,43 @@
 
 package de.ugoe.cs.cpdp.dataselection;
 
+import java.util.Arrays;
+import java.util.List;
+
+import de.ugoe.cs.cpdp.util.ColumnMatrix;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
+import de.ugoe.cs.cpdp.util.IndexSampling;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.core.Instances;
 
 /**
  * <p>
- * Synonym outlier removal after Amasaki et al. (2015).
+ * Synonym outlier removal after Amasaki et al. (2015). The number of threads is defined by the
+ * option -threads of the parameters, e.g., "-threads 4" (default: 1).
  * </p>
  * 
  * @author Steffen Herbold
  */
 public class SynonymOutlierRemoval implements IPointWiseDataselectionStrategy {
 
+    /**
+     * number of threads used to process the attributes (default: 1)
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to process the attributes.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -33,7 +58,9 @@ public class SynonymOutlierRemoval implements IPointWiseDataselectionStrategy {
      */
     @Override
     public void setParameter(String parameters) {
-        // do nothing
+        if (parameters != null) {
+            this.numThreads = CrosspareUtils.parseNumThreads(parameters.trim().split(" "));
+        }
     }
 
     /*
@@ -44,64 +71,73 @@ public class SynonymOutlierRemoval implements IPointWiseDataselectionStrategy {
      */
     @Override
     public SoftwareVersion apply(SoftwareVersion testversion, SoftwareVersion trainversion) {
-        applySynonymRemoval(trainversion);
+        applySynonymRemoval(trainversion, this.numThreads);
         return trainversion;
     }
 
     /**
      * <p>
-     * Applies the synonym outlier removal.
+     * Applies the synonym outlier removal with a single thread.
      * </p>
      *
      * @param trainversion
      *            version of the data from which the outliers are removed.
      */
     public static void applySynonymRemoval(SoftwareVersion trainversion) {
+        applySynonymRemoval(trainversion, 1);
+    }
+
+    /**
+     * <p>
+     * Applies the synonym outlier removal. An instance is kept if its distance to the nearest
+     * other instance is minimal for at least one attribute, i.e., if it belongs to the closest pair
+     * of values of the attribute. The distances to the nearest values are determined on the sorted
+     * values of each attribute, in parallel for blocks of attributes.
+     * </p>
+     *
+     * @param trainversion
+     *            version of the data from which the outliers are removed.
+     * @param numThreads
+     *            number of threads used to process the attributes
+     */
+    public static void applySynonymRemoval(SoftwareVersion trainversion, int numThreads) {
         Instances traindata = trainversion.getInstances();
-        double minDistance[][] = new double[traindata.size()][traindata.numAttributes() - 1];
-        double minDistanceAttribute[] = new double[traindata.numAttributes() - 1];
-        double distance;
-        for (int j = 0; j < minDistanceAttribute.length; j++) {
-            minDistanceAttribute[j] = Double.MAX_VALUE;
-        }
-        for (int i1 = traindata.size() - 1; i1 < traindata.size(); i1++) {
-            int k = 0;
-            for (int j = 0; j < traindata.numAttributes(); j++) {
-                if (j != traindata.classIndex()) {
-                    minDistance[i1][k] = Double.MAX_VALUE;
-                    for (int i2 = 0; i2 < traindata.size(); i2++) {
-                        if (i1 != i2) {
-                            distance =
-                                Math.abs(traindata.get(i1).value(j) - traindata.get(i2).value(j));
-                            if (distance < minDistance[i1][k]) {
-                                minDistance[i1][k] = distance;
-                            }
-                            if (distance < minDistanceAttribute[k]) {
-                                minDistanceAttribute[k] = distance;
-                            }
-                        }
-                    }
-                    k++;
+        ColumnMatrix matrix = new ColumnMatrix(traindata, numThreads);
+        List<int[]> closestInstances = matrix.mapColumns((j, column) -> {
+            double[] minDistance = ColumnMatrix.nearestValueDistances(column);
+            double minDistanceAttribute = Double.MAX_VALUE;
+            for (double distance : minDistance) {
+                if (distance < minDistanceAttribute) {
+                    minDistanceAttribute = distance;
                 }
             }
-        }
-        for (int i = traindata.size() - 1; i >= 0; i--) {
-            boolean hasClosest = false;
-            for (int j = 0; !hasClosest && j < traindata.numAttributes(); j++) {
-                hasClosest = minDistance[i][j] <= minDistanceAttribute[j];
-            }
-            if (!hasClosest) {
-                traindata.remove(i);
-                if (trainversion.getBugMatrix() != null) {
-                    trainversion.getBugMatrix().remove(i);
-                }
-                if (trainversion.getEfforts() != null) {
-                    trainversion.getEfforts().remove(i);
+            int[] closest = new int[minDistance.length];
+            int numClosest = 0;
+            for (int i = 0; i < minDistance.length; i++) {
+                if (minDistance[i] <= minDistanceAttribute) {
+                    closest[numClosest++] = i;
                 }
-                if (trainversion.getNumBugs() != null) {
-                    trainversion.getNumBugs().remove(i);
+            }
+            return Arrays.copyOf(closest, numClosest);
+        });
+
+        boolean[] hasClosest = new boolean[traindata.size()];
+        for (int[] closest : closestInstances) {
+            if (closest != null) {
+                for (int i : closest) {
+                    hasClosest[i] = true;
                 }
             }
         }
+        int[] selected = new int[traindata.size()];
+        int numSelected = 0;
+        for (int i = 0; i < traindata.size(); i++) {
+            if (hasClosest[i]) {
+                selected[numSelected++] = i;
+            }
+        }
+        if (numSelected < traindata.size()) {
+            IndexSampling.select(trainversion, Arrays.copyOf(selected, numSelected), trainversion);
+        }
     }
 }
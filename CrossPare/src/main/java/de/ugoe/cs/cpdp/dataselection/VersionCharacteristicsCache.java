@@ -0,0 +1,195 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.dataselection;
+
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * <p>
+ * Cache for the distributional characteristics of the attributes of versions, which are used by
+ * the {@link AbstractCharacteristicSelection}s. The characteristics of a version do not depend on
+ * the test version, hence they are only computed once for each version. The characteristics of an
+ * attribute are computed in a single pass over the values of the attribute; the median is
+ * determined with a quickselect.
+ * </p>
+ * <p>
+ * The characteristics are stored in the {@link ArtifactCache}. The key consists of the name of the
+ * version and the hash of its content, i.e., the data after all preceding processing steps of the
+ * experiment. Hence, cached characteristics are never used after a processor changed the data.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class VersionCharacteristicsCache {
+
+    /**
+     * index of the weighted mean within the characteristics of an attribute
+     */
+    public static final int MEAN = 0;
+
+    /**
+     * index of the weighted standard deviation within the characteristics of an attribute
+     */
+    public static final int STDDEV = 1;
+
+    /**
+     * index of the weighted variance within the characteristics of an attribute
+     */
+    public static final int VAR = 2;
+
+    /**
+     * index of the minimum within the characteristics of an attribute
+     */
+    public static final int MIN = 3;
+
+    /**
+     * index of the maximum within the characteristics of an attribute
+     */
+    public static final int MAX = 4;
+
+    /**
+     * index of the median within the characteristics of an attribute
+     */
+    public static final int MEDIAN = 5;
+
+    /**
+     * namespace of the characteristics in the {@link ArtifactCache}
+     */
+    private static final String CACHE_NAMESPACE = "VersionCharacteristics";
+
+    /**
+     * <p>
+     * Private constructor to prevent instantiation.
+     * </p>
+     */
+    private VersionCharacteristicsCache() {
+        // only static methods
+    }
+
+    /**
+     * <p>
+     * Returns the characteristics of the attributes of a version. The returned array is shared and
+     * must not be modified.
+     * </p>
+     *
+     * @param version
+     *            the version
+     * @return characteristics of each attribute, indexed by {@link #MEAN}, {@link #STDDEV},
+     *         {@link #VAR}, {@link #MIN}, {@link #MAX}, and {@link #MEDIAN}; null for the class
+     *         attribute and attributes that are not numeric
+     */
+    public static double[][] characteristics(SoftwareVersion version) {
+        Instances data = version.getInstances();
+        String key = (version.getDataset() + "_" + version.getProject() + "_" +
+            version.getVersion()).replaceAll("[^A-Za-z0-9._-]", "_") + "_" +
+            ArtifactCache.contentHash(data);
+        double[][] characteristics = ArtifactCache.get(CACHE_NAMESPACE, key);
+        if (characteristics == null) {
+            characteristics = computeCharacteristics(data);
+            ArtifactCache.put(CACHE_NAMESPACE, key, characteristics);
+        }
+        return characteristics;
+    }
+
+    /**
+     * <p>
+     * Computes the characteristics of the attributes of the data.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @return characteristics of each attribute
+     */
+    static double[][] computeCharacteristics(Instances data) {
+        double[][] characteristics = new double[data.numAttributes()][];
+        double[] column = new double[data.size()];
+        double[] weights = new double[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            weights[i] = data.get(i).weight();
+        }
+        for (int j = 0; j < data.numAttributes(); j++) {
+            if (j != data.classIndex() && data.attribute(j).isNumeric()) {
+                for (int i = 0; i < data.size(); i++) {
+                    Instance instance = data.get(i);
+                    column[i] = instance.isMissing(j) ? Double.NaN : instance.value(j);
+                }
+                characteristics[j] = computeCharacteristics(column, weights);
+            }
+        }
+        return characteristics;
+    }
+
+    /**
+     * <p>
+     * Computes the characteristics of an attribute. The mean and the variance are computed with
+     * the weighted update of Welford in the same way as {@link Instances#variance(int)}. Missing
+     * values are ignored, except for the median, which is determined in the same way as by
+     * {@link Utils#kthSmallestValue(double[], int)} for the values of all instances.
+     * </p>
+     *
+     * @param column
+     *            values of the attribute
+     * @param weights
+     *            weights of the instances
+     * @return the characteristics
+     */
+    private static double[] computeCharacteristics(double[] column, double[] weights) {
+        double mean = 0.0;
+        double var = Double.NaN;
+        double sumWeights = 0.0;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (int i = 0; i < column.length; i++) {
+            double value = column[i];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            double weight = weights[i];
+            if (Double.isNaN(var)) {
+                mean = value;
+                sumWeights = weight;
+                var = 0.0;
+            }
+            else {
+                double delta = weight * (value - mean);
+                sumWeights += weight;
+                mean += delta / sumWeights;
+                var += delta * (value - mean);
+            }
+            if (weight > 0.0) {
+                if (Double.isNaN(min) || value < min) {
+                    min = value;
+                }
+                if (Double.isNaN(max) || value > max) {
+                    max = value;
+                }
+            }
+        }
+        double[] characteristics = new double[6];
+        characteristics[MEAN] = Double.isNaN(var) ? Double.NaN : mean;
+        characteristics[VAR] =
+            sumWeights <= 1.0 ? Double.NaN : Math.max(0.0, var / (sumWeights - 1.0));
+        characteristics[STDDEV] = Math.sqrt(characteristics[VAR]);
+        characteristics[MIN] = min;
+        characteristics[MAX] = max;
+        characteristics[MEDIAN] =
+            column.length == 0 ? Double.NaN : Utils.kthSmallestValue(column, column.length / 2);
+        return characteristics;
+    }
+}
@@ -23,9 +23,11 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import de.ugoe.cs.cpdp.training.BudgetedTraining;
 import de.ugoe.cs.cpdp.training.ITrainer;
 import de.ugoe.cs.cpdp.training.IWekaCompatibleTrainer;
 import de.ugoe.cs.cpdp.util.WekaUtils;
+import de.ugoe.cs.cpdp.wekaclassifier.ParallelCVParameterSelection;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.core.Instance;
@@ -119,10 +121,22 @@ public abstract class AbstractWekaEvaluation implements IEvaluationStrategy {
 
         for (ITrainer trainer : trainers) {
             if (trainer instanceof IWekaCompatibleTrainer) {
-                classifiers.add(((IWekaCompatibleTrainer) trainer).getClassifier());
-                experimentResults
-                    .add(new ExperimentResult(this.configurationName, productName,
-                                              ((IWekaCompatibleTrainer) trainer).getName()));
+                Classifier classifier = ((IWekaCompatibleTrainer) trainer).getClassifier();
+                classifiers.add(classifier);
+                ExperimentResult result = new ExperimentResult(this.configurationName, productName,
+                                                               ((IWekaCompatibleTrainer) trainer).getName());
+                if (trainer instanceof BudgetedTraining) {
+                    result.setFallbackReason(((BudgetedTraining) trainer).getFallbackReason());
+                }
+                if (classifier instanceof ParallelCVParameterSelection) {
+                    ParallelCVParameterSelection parameterSelection =
+                        (ParallelCVParameterSelection) classifier;
+                    result.setSelectedParameters(parameterSelection.getSelectedParameters());
+                    if (result.getSelectedParameters() != null) {
+                        result.setTuningTime(parameterSelection.getTuningTime());
+                    }
+                }
+                experimentResults.add(result);
             }
             else {
                 throw new RuntimeException("The selected evaluator only support Weka classifiers");
@@ -14,42 +14,161 @@
 
 package de.ugoe.cs.cpdp.eval;
 
-import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.io.output.NullOutputStream;
-
+import de.ugoe.cs.cpdp.util.ThreadOutputCapture;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.AggregateableEvaluation;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.core.Instances;
 
 /**
+ * <p>
  * Implements the {@link AbstractWekaEvaluation} for 10-fold cross validation.
- * 
+ * </p>
+ * <p>
+ * The folds are created exactly as by {@link Evaluation#crossValidateModel(Classifier, Instances,
+ * int, Random, Object...)}, but the classifiers of the folds are trained and evaluated in parallel.
+ * The random number generator is seeded with a fixed seed (default: 1), which can be defined with
+ * the attribute seed of the eval element in the configuration. The number of threads can be defined
+ * with the attribute threads (default: 1). The output of Weka to
+ * {@link System#err} is logged on debug level.
+ * </p>
+ *
  * @author Steffen Herbold
  */
 public class CVWekaEvaluation extends AbstractWekaEvaluation {
 
+    /**
+     * number of folds of the cross validation
+     */
+    private static final int NUM_FOLDS = 10;
+
+    /**
+     * seed of the random number generator used to create the folds
+     */
+    private long seed = 1;
+
+    /**
+     * number of threads used for the folds
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the seed of the random number generator used to create the folds.
+     * </p>
+     *
+     * @param seed
+     *            the seed
+     */
+    @SuppressWarnings("hiding")
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * <p>
+     * Sets the number of threads used to train and evaluate the folds.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     /*
      * @see de.ugoe.cs.cpdp.eval.AbstractWekaEvaluation#createEvaluator(weka.core.Instances,
      * weka.classifiers.Classifier)
      */
     @Override
     protected Evaluation createEvaluator(Instances testdata, Classifier classifier) {
-        PrintStream errStr = System.err;
-        try(PrintStream nullStream = new PrintStream(new NullOutputStream());) {
-            System.setErr(nullStream);
-            try {
-                final Evaluation eval = new Evaluation(testdata);
-                eval.crossValidateModel(classifier, testdata, 10, new Random());
-                return eval;
+        try {
+            // create the folds in the same way as Evaluation.crossValidateModel
+            final Instances data = new Instances(testdata);
+            final Random random = new Random(this.seed);
+            data.randomize(random);
+            if (data.classAttribute().isNominal()) {
+                data.stratify(NUM_FOLDS);
+            }
+            List<Callable<Evaluation>> folds = new ArrayList<>(NUM_FOLDS);
+            for (int i = 0; i < NUM_FOLDS; i++) {
+                final Instances train = data.trainCV(NUM_FOLDS, i, random);
+                final Instances test = data.testCV(NUM_FOLDS, i);
+                final Classifier foldClassifier = AbstractClassifier.makeCopy(classifier);
+                final String context = String.format("%s fold %d", testdata.relationName(), i);
+                folds.add(() -> evaluateFold(foldClassifier, data, train, test, context));
             }
-            catch (Exception e) {
-                throw new RuntimeException(e);
+
+            final AggregateableEvaluation eval = new AggregateableEvaluation(testdata);
+            ExecutorService threadPool =
+                Executors.newFixedThreadPool(Math.min(this.numThreads, NUM_FOLDS));
+            try {
+                for (Future<Evaluation> fold : threadPool.invokeAll(folds)) {
+                    eval.aggregate(fold.get());
+                }
             }
             finally {
-                System.setErr(errStr);
+                threadPool.shutdown();
             }
+            return eval;
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Trains the classifier of a fold and evaluates it on the test data of the fold. The error
+     * output of Weka is captured for the executing thread.
+     * </p>
+     *
+     * @param classifier
+     *            classifier of the fold
+     * @param data
+     *            complete data of the cross validation
+     * @param train
+     *            training data of the fold
+     * @param test
+     *            test data of the fold
+     * @param context
+     *            context used for logging the output of Weka
+     * @return evaluation of the fold
+     * @throws Exception
+     *             thrown if training or evaluation fails
+     */
+    private static Evaluation evaluateFold(Classifier classifier,
+                                           Instances data,
+                                           Instances train,
+                                           Instances test,
+                                           String context)
+        throws Exception
+    {
+        ThreadOutputCapture.begin(context);
+        try {
+            final Evaluation eval = new Evaluation(data);
+            eval.setPriors(train);
+            classifier.buildClassifier(train);
+            eval.evaluateModel(classifier, test);
+            return eval;
+        }
+        finally {
+            ThreadOutputCapture.end();
         }
     }
 
@@ -25,6 +25,22 @@ public class ExperimentResult {
      */
     private String trainProductName = "";
 
+    /**
+     * reason why a fallback classifier was used instead of the classifier; null if no fallback
+     * was used
+     */
+    private String fallbackReason = null;
+
+    /**
+     * options of the parameters selected by a parameter tuning; null if no parameters were tuned
+     */
+    private String selectedParameters = null;
+
+    /**
+     * time required for the parameter tuning in milliseconds; -1 if no parameters were tuned
+     */
+    private long tuningTime = -1;
+
     /**
      * name of the classifier used
      */
@@ -796,6 +812,91 @@ public class ExperimentResult {
         return this.trainProductName;
     }
 
+    /**
+     * <p>
+     * sets the name of the training product
+     * </p>
+     *
+     * @param trainProductName
+     *            the name of the training product
+     */
+    @SuppressWarnings("hiding")
+    public void setTrainProductName(String trainProductName) {
+        this.trainProductName = trainProductName;
+    }
+
+    /**
+     * <p>
+     * returns the reason why a fallback classifier was used instead of the classifier
+     * </p>
+     *
+     * @return the reason; null if no fallback was used
+     */
+    public String getFallbackReason() {
+        return this.fallbackReason;
+    }
+
+    /**
+     * <p>
+     * sets the reason why a fallback classifier was used instead of the classifier
+     * </p>
+     *
+     * @param fallbackReason
+     *            the reason; null if no fallback was used
+     */
+    @SuppressWarnings("hiding")
+    public void setFallbackReason(String fallbackReason) {
+        this.fallbackReason = fallbackReason;
+    }
+
+    /**
+     * <p>
+     * returns the options of the parameters selected by a parameter tuning
+     * </p>
+     *
+     * @return the options; null if no parameters were tuned
+     */
+    public String getSelectedParameters() {
+        return this.selectedParameters;
+    }
+
+    /**
+     * <p>
+     * sets the options of the parameters selected by a parameter tuning
+     * </p>
+     *
+     * @param selectedParameters
+     *            the options; null if no parameters were tuned
+     */
+    @SuppressWarnings("hiding")
+    public void setSelectedParameters(String selectedParameters) {
+        this.selectedParameters = selectedParameters;
+    }
+
+    /**
+     * <p>
+     * returns the time required for the parameter tuning
+     * </p>
+     *
+     * @return the tuning time in milliseconds; -1 if no parameters were tuned
+     */
+    public long getTuningTime() {
+        return this.tuningTime;
+    }
+
+    /**
+     * <p>
+     * sets the time required for the parameter tuning
+     * </p>
+     *
+     * @param tuningTime
+     *            the tuning time in milliseconds; -1 if no parameters were tuned
+     */
+    @SuppressWarnings("hiding")
+    public void setTuningTime(long tuningTime) {
+        this.tuningTime = tuningTime;
+    }
+
     /**
      * <p>
      * returns the classifier name
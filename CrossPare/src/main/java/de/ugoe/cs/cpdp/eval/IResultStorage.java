@@ -48,6 +48,18 @@ public interface IResultStorage {
      */
     public int containsResult(String experimentName, String productName, String classifierName);
 
+    /**
+     * <p>
+     * Loads the number of stored results of all products and classifiers of a configuration at
+     * once. Afterwards, {@link #containsResult(String, String, String)} is answered from memory for
+     * this configuration.
+     * </p>
+     *
+     * @param configurationName
+     *            name of the configuration
+     */
+    public void preloadCounts(String configurationName);
+
     /**
      * <p>
      * Checks if a heterogeneous result is already contained in the storage.
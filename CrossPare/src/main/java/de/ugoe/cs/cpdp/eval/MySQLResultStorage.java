@@ -21,7 +21,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -67,6 +69,40 @@ public class MySQLResultStorage implements IResultStorage {
      */
     private static final Object createTableLock = new Object();
 
+    /**
+     * Indicates if the results table has a column for the name of the training product. This
+     * column is required to store heterogeneous results. Determined once, when the table is first
+     * accessed.
+     */
+    private volatile Boolean hasTrainProductColumn = null;
+
+    /**
+     * Indicates if the results table has a column for the reason why a fallback classifier was
+     * used. Determined once, when the table is first accessed.
+     */
+    private volatile Boolean hasFallbackReasonColumn = null;
+
+    /**
+     * Indicates if the results table has columns for the parameters selected by a parameter tuning
+     * and the time required for the tuning. Determined once, when the table is first accessed.
+     */
+    private volatile Boolean hasParameterSelectionColumns = null;
+
+    /**
+     * Number of stored results per configuration. Each index maps the product and classifier to the
+     * number of results. Only configurations for which {@link #preloadCounts(String)} was called
+     * are indexed.
+     */
+    private final Map<String, Map<String, Integer>> resultIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the heterogeneous results that are already stored, per configuration. Each index
+     * maps the product, classifier and training product to the number of results. The index of a
+     * configuration is loaded with a single query, when a heterogeneous result of the configuration
+     * is first requested.
+     */
+    private final Map<String, Map<String, Integer>> heterogeneousIndex = new ConcurrentHashMap<>();
+
     /**
      * <p>
      * Creates a MySQLResultStorage with the default parameter file mysql.cred from the working
@@ -270,9 +306,29 @@ public class MySQLResultStorage implements IResultStorage {
         preparedSql.append("`lowerSize1toMImp50`,");
         preparedSql.append("`upperSize1toMImp50`,");
         preparedSql.append("`lowerSizeNtoMImp50`,");
-        preparedSql.append("`upperSizeNtoMImp50`) VALUES ");
+        preparedSql.append("`upperSizeNtoMImp50`");
+        boolean storeTrainProduct = result.getTrainProductName() != null &&
+            !result.getTrainProductName().isEmpty() && hasTrainProductColumn();
+        int numParameters = 114;
+        if (storeTrainProduct) {
+            preparedSql.append(",`trainProductName`");
+            numParameters++;
+        }
+        boolean storeFallbackReason =
+            result.getFallbackReason() != null && hasFallbackReasonColumn();
+        if (storeFallbackReason) {
+            preparedSql.append(",`fallbackReason`");
+            numParameters++;
+        }
+        boolean storeParameterSelection =
+            result.getSelectedParameters() != null && hasParameterSelectionColumns();
+        if (storeParameterSelection) {
+            preparedSql.append(",`selectedParameters`,`tuningTime`");
+            numParameters += 2;
+        }
+        preparedSql.append(") VALUES ");
         preparedSql.append("(");
-        for(int i=0; i<113; i++) {
+        for(int i=0; i<numParameters-1; i++) {
         	preparedSql.append("?,");
         }
         preparedSql.append("?)");
@@ -393,11 +449,35 @@ public class MySQLResultStorage implements IResultStorage {
             stmt.setDouble(i++, result.getUpperSize1toMImp50());
             stmt.setDouble(i++, result.getLowerSizeNtoMImp50());
             stmt.setDouble(i++, result.getUpperSizeNtoMImp50());
-            
+            if (storeTrainProduct) {
+                stmt.setString(i++, result.getTrainProductName());
+            }
+            if (storeFallbackReason) {
+                stmt.setString(i++, result.getFallbackReason());
+            }
+            if (storeParameterSelection) {
+                stmt.setString(i++, result.getSelectedParameters());
+                stmt.setLong(i++, result.getTuningTime());
+            }
 
             int qryResult = stmt.executeUpdate();
             if (qryResult < 1) {
             	LOGGER.error("Insert failed.");
+                return;
+            }
+            Map<String, Integer> counts = this.resultIndex.get(result.getConfigurationName());
+            if (counts != null) {
+                counts.merge(resultKey(result.getProductName(), result.getClassifier()), 1,
+                             Integer::sum);
+            }
+            if (storeTrainProduct) {
+                Map<String, Integer> index =
+                    this.heterogeneousIndex.get(result.getConfigurationName());
+                if (index != null) {
+                    index.merge(heterogeneousKey(result.getProductName(), result.getClassifier(),
+                                                 result.getTrainProductName()),
+                                1, Integer::sum);
+                }
             }
         }
         catch (SQLException e) {
@@ -416,6 +496,10 @@ public class MySQLResultStorage implements IResultStorage {
      */
     @Override
     public int containsResult(String experimentName, String productName, String classifierName) {
+        Map<String, Integer> counts = this.resultIndex.get(experimentName);
+        if (counts != null) {
+            return counts.getOrDefault(resultKey(productName, classifierName), 0);
+        }
     	checkIfCreateTable();
     	
         String preparedSql = "SELECT COUNT(*) as cnt FROM " + this.resultsTableName +
@@ -438,6 +522,37 @@ public class MySQLResultStorage implements IResultStorage {
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see de.ugoe.cs.cpdp.eval.IResultStorage#preloadCounts(java.lang.String)
+     */
+    @Override
+    public void preloadCounts(String configurationName) {
+        checkIfCreateTable();
+
+        String preparedSql = "SELECT productName, classifier, COUNT(*) as cnt FROM " +
+            this.resultsTableName + " WHERE configurationName=? GROUP BY productName, classifier";
+        try(PreparedStatement stmt = this.connectionPool.getConnection().prepareStatement(preparedSql);) {
+            stmt.setString(1, configurationName);
+            Map<String, Integer> counts = new ConcurrentHashMap<>();
+            try(ResultSet results = stmt.executeQuery();) {
+                while (results.next()) {
+                    counts.put(resultKey(results.getString("productName"),
+                                         results.getString("classifier")),
+                               results.getInt("cnt"));
+                }
+            }
+            this.resultIndex.put(configurationName, counts);
+        }
+        catch (SQLException e) {
+        	LOGGER.error("Problem with MySQL connection: \n");
+        	LOGGER.error("SQLException: " + e.getMessage() + "\n");
+        	LOGGER.error("SQLState: " + e.getSQLState() + "\n");
+        	LOGGER.error("VendorError: " + e.getErrorCode() + "\n");
+        }
+    }
+
     /**
      * <p>
      * Checks if the results table exists.
@@ -599,6 +714,10 @@ public class MySQLResultStorage implements IResultStorage {
             "`upperSize1toMImp50` double DEFAULT NULL," +
             "`lowerSizeNtoMImp50` double DEFAULT NULL," +
             "`upperSizeNtoMImp50` double DEFAULT NULL," +
+            "`trainProductName` varchar(100) DEFAULT NULL," +
+            "`fallbackReason` varchar(250) DEFAULT NULL," +
+            "`selectedParameters` varchar(250) DEFAULT NULL," +
+            "`tuningTime` bigint DEFAULT NULL," +
             "PRIMARY KEY (`idresults`)" +
             ") ENGINE=InnoDB AUTO_INCREMENT=77777 DEFAULT CHARSET=utf8;";
         try(Statement stmt = this.connectionPool.getConnection().createStatement();) { 
@@ -613,14 +732,170 @@ public class MySQLResultStorage implements IResultStorage {
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see de.ugoe.cs.cpdp.eval.IResultStorage#containsHeterogeneousResult(java.lang.String,
+     * java.lang.String, java.lang.String, java.lang.String)
+     */
     @Override
     public int containsHeterogeneousResult(String experimentName,
                                            String productName,
                                            String classifierName,
                                            String trainProductName)
     {
-        // TODO dummy implementation
-        return 0;
+        Map<String, Integer> index =
+            this.heterogeneousIndex.computeIfAbsent(experimentName, this::loadHeterogeneousIndex);
+        return index.getOrDefault(heterogeneousKey(productName, classifierName, trainProductName),
+                                  0);
+    }
+
+    /**
+     * <p>
+     * Loads the counts of all heterogeneous results of a configuration with a single query.
+     * </p>
+     *
+     * @param experimentName
+     *            name of the experiment
+     * @return index with the number of results for each product, classifier and training product
+     */
+    private Map<String, Integer> loadHeterogeneousIndex(String experimentName) {
+        checkIfCreateTable();
+        Map<String, Integer> index = new ConcurrentHashMap<>();
+        if (!hasTrainProductColumn()) {
+            LOGGER.warn("results table " + this.resultsTableName +
+                " has no column trainProductName; heterogeneous results cannot be resumed");
+            return index;
+        }
+
+        String preparedSql = "SELECT productName, classifier, trainProductName, COUNT(*) as cnt FROM " +
+            this.resultsTableName +
+            " WHERE configurationName=? AND trainProductName IS NOT NULL" +
+            " GROUP BY productName, classifier, trainProductName";
+        try(PreparedStatement stmt = this.connectionPool.getConnection().prepareStatement(preparedSql);) {
+            stmt.setString(1, experimentName);
+            try(ResultSet results = stmt.executeQuery();) {
+                while (results.next()) {
+                    index.put(heterogeneousKey(results.getString("productName"),
+                                               results.getString("classifier"),
+                                               results.getString("trainProductName")),
+                              results.getInt("cnt"));
+                }
+            }
+        }
+        catch (SQLException e) {
+        	LOGGER.error("Problem with MySQL connection: \n");
+        	LOGGER.error("SQLException: " + e.getMessage() + "\n");
+        	LOGGER.error("SQLState: " + e.getSQLState() + "\n");
+        	LOGGER.error("VendorError: " + e.getErrorCode() + "\n");
+        }
+        return index;
+    }
+
+    /**
+     * <p>
+     * Checks if the results table has a column for the training product name.
+     * </p>
+     *
+     * @return true if the column exists, false otherwise
+     */
+    private boolean hasTrainProductColumn() {
+        if (this.hasTrainProductColumn == null) {
+            this.hasTrainProductColumn = hasColumn("trainProductName");
+        }
+        return this.hasTrainProductColumn;
+    }
+
+    /**
+     * <p>
+     * Checks if the results table has a column for the reason why a fallback classifier was used.
+     * Older tables do not have this column.
+     * </p>
+     *
+     * @return true if the column exists, false otherwise
+     */
+    private boolean hasFallbackReasonColumn() {
+        if (this.hasFallbackReasonColumn == null) {
+            this.hasFallbackReasonColumn = hasColumn("fallbackReason");
+        }
+        return this.hasFallbackReasonColumn;
+    }
+
+    /**
+     * <p>
+     * Checks if the results table has columns for the parameters selected by a parameter tuning
+     * and the time required for the tuning. Older tables do not have these columns.
+     * </p>
+     *
+     * @return true if both columns exist, false otherwise
+     */
+    private boolean hasParameterSelectionColumns() {
+        if (this.hasParameterSelectionColumns == null) {
+            this.hasParameterSelectionColumns =
+                hasColumn("selectedParameters") && hasColumn("tuningTime");
+        }
+        return this.hasParameterSelectionColumns;
+    }
+
+    /**
+     * <p>
+     * Checks if the results table has a column.
+     * </p>
+     *
+     * @param columnName
+     *            name of the column
+     * @return true if the column exists, false otherwise
+     */
+    private boolean hasColumn(String columnName) {
+        boolean exists = false;
+        try {
+            DatabaseMetaData meta = this.connectionPool.getConnection().getMetaData();
+            try(ResultSet res = meta.getColumns(null, null, this.resultsTableName, columnName);) {
+                exists = res.next();
+            }
+        }
+        catch (SQLException e) {
+        	LOGGER.error("Problem with MySQL connection: \n");
+        	LOGGER.error("SQLException: " + e.getMessage() + "\n");
+        	LOGGER.error("SQLState: " + e.getSQLState() + "\n");
+        	LOGGER.error("VendorError: " + e.getErrorCode() + "\n");
+        }
+        return exists;
+    }
+
+    /**
+     * <p>
+     * key of a result in the index
+     * </p>
+     *
+     * @param productName
+     *            name of the product
+     * @param classifierName
+     *            name of the classifier
+     * @return key
+     */
+    private static String resultKey(String productName, String classifierName) {
+        return productName + "\t" + classifierName;
+    }
+
+    /**
+     * <p>
+     * key of a heterogeneous result in the index
+     * </p>
+     *
+     * @param productName
+     *            name of the product
+     * @param classifierName
+     *            name of the classifier
+     * @param trainProductName
+     *            name of the training product
+     * @return key
+     */
+    private static String heterogeneousKey(String productName,
+                                           String classifierName,
+                                           String trainProductName)
+    {
+        return productName + "\t" + classifierName + "\t" + trainProductName;
     }
 
 }
@@ -87,6 +87,21 @@ public abstract class AbstractCrossProjectExperiment implements IExecutionStrate
      */
     protected final ExperimentConfiguration config;
 
+    /**
+     * release graph of the versions; built on demand
+     */
+    private ReleaseGraph releaseGraph = null;
+
+    /**
+     * versions for which the release graph was built
+     */
+    private List<SoftwareVersion> releaseGraphVersions = null;
+
+    /**
+     * number of versions for which the release graph was built
+     */
+    private int releaseGraphSize = -1;
+
     /**
      * Constructor. Creates a new experiment based on a configuration.
      * 
@@ -100,7 +115,9 @@ public abstract class AbstractCrossProjectExperiment implements IExecutionStrate
 
     /**
      * <p>
-     * Defines which products are allowed for training.
+     * Defines which products are allowed for training. The decision must only depend on the meta
+     * data of the versions (project, version, release date), as it is made before the training
+     * version processors are applied.
      * </p>
      *
      * @param trainingVersion
@@ -115,6 +132,123 @@ public abstract class AbstractCrossProjectExperiment implements IExecutionStrate
                                                  SoftwareVersion testVersion,
                                                  List<SoftwareVersion> versions);
 
+    /**
+     * <p>
+     * Determines the training data for a test version. Only versions that are training versions
+     * according to {@link #isTrainingVersion(SoftwareVersion, SoftwareVersion, List)} are copied
+     * and prepared with {@link #prepareTrainingVersion(SoftwareVersion, SoftwareVersion, List)}.
+     * Experiments can override this method to restrict the candidates, e.g., with the
+     * {@link ReleaseGraph}.
+     * </p>
+     *
+     * @param testVersion
+     *            the test version
+     * @param versions
+     *            all software versions in the data set
+     * @return prepared training versions
+     */
+    protected SetUniqueList<SoftwareVersion> getTrainingVersions(SoftwareVersion testVersion,
+                                                                 List<SoftwareVersion> versions)
+    {
+        SetUniqueList<SoftwareVersion> trainversionSet =
+            SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+        for (SoftwareVersion trainingVersion : versions) {
+            // the decision only depends on the meta data of the versions; check it before copying
+            if (trainingVersion != testVersion &&
+                isTrainingVersion(trainingVersion, testVersion, versions))
+            {
+                SoftwareVersion trainversion =
+                    prepareTrainingVersion(trainingVersion, testVersion, versions);
+                if (trainversion != null) {
+                    trainversionSet.add(trainversion);
+                }
+            }
+        }
+        return trainversionSet;
+    }
+
+    /**
+     * <p>
+     * Determines the training versions of a test version for a dry run of the experiment. In
+     * contrast to {@link #getTrainingVersions(SoftwareVersion, List)}, the versions are neither
+     * copied nor processed: the training version filters are checked on the unprocessed versions.
+     * If training version processors change the outcome of the filters, the planned training
+     * versions may therefore differ from the ones used in the execution.
+     * </p>
+     *
+     * @param testVersion
+     *            the test version
+     * @param versions
+     *            all software versions in the data set
+     * @return unprocessed training versions
+     */
+    protected List<SoftwareVersion> planTrainingVersions(SoftwareVersion testVersion,
+                                                         List<SoftwareVersion> versions)
+    {
+        List<SoftwareVersion> trainingVersions = new LinkedList<>();
+        for (SoftwareVersion trainingVersion : versions) {
+            if (trainingVersion != testVersion &&
+                isTrainingVersion(trainingVersion, testVersion, versions) &&
+                CrosspareUtils.isVersion(trainingVersion, versions,
+                                         this.config.getTrainingVersionFilters()))
+            {
+                trainingVersions.add(trainingVersion);
+            }
+        }
+        return trainingVersions;
+    }
+
+    /**
+     * <p>
+     * Copies a candidate training version, applies the training version processors, and checks the
+     * training version filters.
+     * </p>
+     *
+     * @param trainingVersion
+     *            the candidate training version
+     * @param testVersion
+     *            the test version
+     * @param versions
+     *            all software versions in the data set
+     * @return the prepared copy of the training version; null if it is filtered
+     */
+    protected SoftwareVersion prepareTrainingVersion(SoftwareVersion trainingVersion,
+                                                     SoftwareVersion testVersion,
+                                                     List<SoftwareVersion> versions)
+    {
+        SoftwareVersion trainversion = new SoftwareVersion(trainingVersion);
+        for (IVersionProcessingStrategy processor : this.config.getTrainingVersionProcessors()) {
+            processor.apply(testVersion, trainversion);
+        }
+        if (!CrosspareUtils.isVersion(trainversion, versions,
+                                      this.config.getTrainingVersionFilters()))
+        {
+            return null;
+        }
+        return trainversion;
+    }
+
+    /**
+     * <p>
+     * Returns the release graph of the versions. The graph is only rebuilt if the list of versions
+     * changes.
+     * </p>
+     *
+     * @param versions
+     *            all software versions in the data set
+     * @return the release graph
+     */
+    protected ReleaseGraph getReleaseGraph(List<SoftwareVersion> versions) {
+        if (this.releaseGraph == null || this.releaseGraphVersions != versions ||
+            this.releaseGraphSize != versions.size())
+        {
+            this.releaseGraph = new ReleaseGraph(versions);
+            this.releaseGraphVersions = versions;
+            this.releaseGraphSize = versions.size();
+        }
+        return this.releaseGraph;
+    }
+
     /**
      * Executes the experiment with the steps as described in the class comment.
      * 
@@ -144,6 +278,9 @@ public abstract class AbstractCrossProjectExperiment implements IExecutionStrate
         // sort versions
         Collections.sort(versions);
 
+        // fetch the number of available results at once
+        CrosspareUtils.preloadResults(this.config);
+
         for (SoftwareVersion testVersion : versions) {
             if (CrosspareUtils.isVersion(testVersion, versions, this.config.getTestVersionFilters())) {
                 LOGGER.info(String.format("[%s] [%02d/%02d] %s: starting",
@@ -160,20 +297,7 @@ public abstract class AbstractCrossProjectExperiment implements IExecutionStrate
 
                 // Setup testdata and training data
                 SetUniqueList<SoftwareVersion> trainversionSet =
-                    SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
-                for (SoftwareVersion trainingVersion : versions) {
-                    if (trainingVersion != testVersion) {
-                        SoftwareVersion trainversion = new SoftwareVersion(trainingVersion);
-                        for(IVersionProcessingStrategy processor : this.config.getTrainingVersionProcessors()) {
-                            processor.apply(testVersion, trainversion);
-                        }
-                        if (CrosspareUtils.isVersion(trainversion, versions, this.config.getTrainingVersionFilters())) {
-                            if (isTrainingVersion(trainversion, testVersion, versions)) {
-                                trainversionSet.add(trainversion);
-                            }
-                        }
-                    }
-                }
+                    getTrainingVersions(testVersion, versions);
                 if (trainversionSet.isEmpty()) {
                 	LOGGER.warn(String
                                     .format("[%s] [%02d/%02d] %s: no training data this product; skipped",
@@ -0,0 +1,887 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.execution;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import de.ugoe.cs.cpdp.ExperimentConfiguration;
+import de.ugoe.cs.cpdp.loader.IVersionLoader;
+import de.ugoe.cs.cpdp.training.BudgetedTraining;
+import de.ugoe.cs.cpdp.training.ISetWiseTestdataAwareTrainingStrategy;
+import de.ugoe.cs.cpdp.training.ISetWiseTrainingStrategy;
+import de.ugoe.cs.cpdp.training.ITestAwareTrainingStrategy;
+import de.ugoe.cs.cpdp.training.ITrainer;
+import de.ugoe.cs.cpdp.training.ITrainingStrategy;
+import de.ugoe.cs.cpdp.training.IWekaCompatibleTrainer;
+import de.ugoe.cs.cpdp.training.WekaBaseTraining;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+
+/**
+ * <p>
+ * Dry-run planner for experiments. The planner loads the versions of each configuration, applies
+ * the version filters and determines the work units, i.e., all combinations of test versions and
+ * trainers, without executing any of the data processing or training. The training versions are
+ * determined from the release graph and the training version filters, which are checked on the
+ * unprocessed versions. The cost of each work unit is estimated with a simple cost model per
+ * strategy, that defines the complexity in the number of instances as well as a constant factor.
+ * The constant factors are relative to an elementary floating point operation, whose duration is
+ * calibrated on the host machine when the planner is created.
+ * </p>
+ * <p>
+ * The result is available as a table sorted by the estimated CPU time or as a JSON plan that lists
+ * the work units in a longest-job-first order.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class ExperimentPlanner {
+
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * number of copies of the data that are held in memory during the execution of a work unit
+     * (loaded data, copies of the training versions, unified training data, original training data)
+     */
+    private static final int DATA_COPIES = 4;
+
+    /**
+     * bytes required per value of a {@link weka.core.DenseInstance}
+     */
+    private static final int BYTES_PER_VALUE = 8;
+
+    /**
+     * cost model used for all strategies without an explicit entry
+     */
+    private static final CostModel DEFAULT_COST_MODEL = new CostModel(1.0, 0.0, 10.0, 0.0);
+
+    /**
+     * cost models of the strategies, identified by their simple class name
+     */
+    private static final Map<String, CostModel> COST_MODELS = new HashMap<>();
+
+    static {
+        // data processing
+        COST_MODELS.put("MORPH", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("SMOTUNED", new CostModel(2.0, 0.0, 50.0, 0.0));
+        COST_MODELS.put("SynonymAttributePruning", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("TransferComponentAnalysis", new CostModel(3.0, 2.0, 1.0, 3.0));
+        COST_MODELS.put("TCAPlusNormalization", new CostModel(3.0, 2.0, 1.0, 3.0));
+        COST_MODELS.put("DataGravitation", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("CLAMIProcessor", new CostModel(1.0, 0.0, 5.0, 0.0));
+        COST_MODELS.put("CLAProcessor", new CostModel(1.0, 0.0, 5.0, 0.0));
+        // data selection
+        COST_MODELS.put("LACE2", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("CLIFF", new CostModel(1.0, 0.0, 5.0, 0.0));
+        COST_MODELS.put("DBSCANFilter", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("NeighborhoodFilter", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("PetersFilter", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("TurhanFilter", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("SynonymOutlierRemoval", new CostModel(1.0, 0.0, 5.0, 0.0));
+        COST_MODELS.put("MahalanobisOutlierRemoval", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("DecisionTreeSelection", new CostModel(1.0, 0.0, 500.0, 0.0));
+        COST_MODELS.put("SeparatabilitySelection", new CostModel(1.0, 0.0, 5000.0, 0.0));
+        COST_MODELS.put("PointWiseEMClusterSelection", new CostModel(1.0, 0.0, 200.0, 0.0));
+        COST_MODELS.put("SetWiseEMClusterSelection", new CostModel(1.0, 0.0, 200.0, 0.0));
+        COST_MODELS.put("SetWiseEMContextSelection", new CostModel(1.0, 0.0, 200.0, 0.0));
+        // training strategies
+        COST_MODELS.put("GPTraining", new CostModel(1.0, 0.0, 100000.0, 0.0));
+        COST_MODELS.put("DifferentialEvolutionTraining", new CostModel(1.0, 0.0, 20000.0, 0.0));
+        COST_MODELS.put("MetricMatchingTraining", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("WekaLASERTraining", new CostModel(2.0, 0.0, 4.0, 0.0));
+        COST_MODELS.put("WekaLocalFQTraining", new CostModel(2.0, 2.0, 1.0, 1.0));
+        COST_MODELS.put("WekaLocalEMTraining", new CostModel(1.0, 0.0, 500.0, 0.0));
+        // Weka classifiers
+        COST_MODELS.put("SMO", new CostModel(2.0, 0.0, 1.0, 0.0));
+        COST_MODELS.put("VCBSVM", new CostModel(2.0, 0.0, 10.0, 0.0));
+        COST_MODELS.put("SearchBasedSelectionClassifier", new CostModel(2.0, 0.0, 10.0, 0.0));
+        COST_MODELS.put("RBFNetwork", new CostModel(1.0, 0.0, 200.0, 0.0));
+        COST_MODELS.put("RandomForest", new CostModel(1.0, 0.0, 200.0, 0.0));
+        COST_MODELS.put("MultilayerPerceptron", new CostModel(1.0, 0.0, 1000.0, 0.0));
+        COST_MODELS.put("Logistic", new CostModel(1.0, 0.0, 50.0, 0.0));
+        COST_MODELS.put("J48", new CostModel(1.0, 0.0, 20.0, 0.0));
+    }
+
+    /**
+     * duration of an elementary operation on this host in seconds
+     */
+    private final double secondsPerOperation;
+
+    /**
+     * work units that were planned
+     */
+    private final List<WorkUnit> workUnits = new LinkedList<>();
+
+    /**
+     * <p>
+     * Creates a new planner and calibrates the cost model on the host machine.
+     * </p>
+     */
+    public ExperimentPlanner() {
+        this.secondsPerOperation = calibrate();
+        LOGGER.info(String.format("planner calibrated with %.3f ns per operation",
+                                  this.secondsPerOperation * 1e9));
+    }
+
+    /**
+     * <p>
+     * Adds the work units of a configuration to the plan. The versions are loaded and filtered like
+     * in the execution of the experiment, but no data processing or training is performed.
+     * </p>
+     *
+     * @param config
+     *            configuration of the experiment
+     * @param experiment
+     *            execution strategy of the configuration
+     */
+    public void addConfiguration(ExperimentConfiguration config, IExecutionStrategy experiment) {
+        final List<SoftwareVersion> versions = new LinkedList<>();
+        for (IVersionLoader loader : config.getLoaders()) {
+            versions.addAll(loader.load());
+        }
+        CrosspareUtils.filterVersions(versions, config.getVersionFilters());
+        Collections.sort(versions);
+
+        long corpusValues = 0;
+        for (SoftwareVersion version : versions) {
+            corpusValues += (long) version.getInstances().size() *
+                version.getInstances().numAttributes();
+        }
+
+        List<ITrainer> trainers = getAllTrainers(config);
+        List<String> pipeline = getPipeline(config);
+
+        for (SoftwareVersion testVersion : versions) {
+            if (!CrosspareUtils.isVersion(testVersion, versions, config.getTestVersionFilters())) {
+                continue;
+            }
+            for (List<SoftwareVersion> trainingVersions : getTrainingSets(config, experiment,
+                                                                           testVersion, versions))
+            {
+                int numTrain = 0;
+                for (SoftwareVersion trainingVersion : trainingVersions) {
+                    numTrain += trainingVersion.getInstances().size();
+                }
+                int numTest = testVersion.getInstances().size();
+                int numAttributes = testVersion.getInstances().numAttributes();
+
+                // the pipeline is executed once for all trainers
+                double pipelineOperations = 0.0;
+                double pipelineMemory = 0.0;
+                for (String strategy : pipeline) {
+                    CostModel model = getCostModel(strategy);
+                    pipelineOperations += model.operations(numTrain + numTest, numAttributes);
+                    pipelineMemory =
+                        Math.max(pipelineMemory, model.memory(numTrain + numTest, numAttributes));
+                }
+                for (ITrainer trainer : trainers) {
+                    CostModel model = getCostModel(getStrategyName(trainer));
+                    double operations = pipelineOperations / trainers.size() +
+                        model.operations(numTrain, numAttributes);
+                    double memory = DATA_COPIES * BYTES_PER_VALUE *
+                        (double) (numTrain + numTest) * numAttributes +
+                        Math.max(pipelineMemory, model.memory(numTrain, numAttributes)) +
+                        (double) BYTES_PER_VALUE * corpusValues;
+                    this.workUnits.add(new WorkUnit(config.getExperimentName(),
+                                                    testVersion.getProject(),
+                                                    testVersion.getVersion(),
+                                                    trainingVersions.size() == 1 ? trainingVersions
+                                                        .get(0).getVersion() : null,
+                                                    getTrainerName(trainer), trainingVersions.size(),
+                                                    numTrain, numTest, numAttributes,
+                                                    operations * this.secondsPerOperation *
+                                                        config.getRepetitions(),
+                                                    (long) memory));
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * returns the planned work units
+     * </p>
+     *
+     * @param comparator
+     *            ordering of the work units
+     * @return sorted work units
+     */
+    public List<WorkUnit> getWorkUnits(Comparator<WorkUnit> comparator) {
+        List<WorkUnit> sorted = new ArrayList<>(this.workUnits);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    /**
+     * <p>
+     * Creates a table of the work units.
+     * </p>
+     *
+     * @param comparator
+     *            ordering of the work units
+     * @return table as string
+     */
+    public String toTable(Comparator<WorkUnit> comparator) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-40s %-30s %-15s %8s %8s %5s %12s %10s",
+                                     "configuration", "test version", "trainer", "#train",
+                                     "#test", "#atts", "cpu [s]", "mem [MB]") +
+            System.lineSeparator());
+        double totalSeconds = 0.0;
+        long peakMemory = 0;
+        for (WorkUnit unit : getWorkUnits(comparator)) {
+            builder.append(String.format("%-40s %-30s %-15s %8d %8d %5d %12.1f %10d",
+                                         unit.getConfigurationName(),
+                                         unit.getProject() + "/" + unit.getTestVersion(),
+                                         unit.getTrainerName(), unit.getNumTrainInstances(),
+                                         unit.getNumTestInstances(), unit.getNumAttributes(),
+                                         unit.getEstimatedCpuSeconds(),
+                                         unit.getEstimatedMemoryBytes() / (1024 * 1024)) +
+                System.lineSeparator());
+            totalSeconds += unit.getEstimatedCpuSeconds();
+            peakMemory = Math.max(peakMemory, unit.getEstimatedMemoryBytes());
+        }
+        builder.append(String.format("%d work units; estimated total CPU time %.1f h; peak memory %d MB",
+                                     this.workUnits.size(), totalSeconds / 3600.0,
+                                     peakMemory / (1024 * 1024)) + System.lineSeparator());
+        return builder.toString();
+    }
+
+    /**
+     * <p>
+     * Creates the JSON representation of the plan. The work units are ordered longest job first.
+     * </p>
+     *
+     * @return JSON plan
+     */
+    public JSONObject toJSON() {
+        JSONArray units = new JSONArray();
+        double totalSeconds = 0.0;
+        for (WorkUnit unit : getWorkUnits(WorkUnit.BY_CPU_DESCENDING)) {
+            units.put(unit.toJSON());
+            totalSeconds += unit.getEstimatedCpuSeconds();
+        }
+        JSONObject plan = new JSONObject();
+        plan.put("secondsPerOperation", this.secondsPerOperation);
+        plan.put("numWorkUnits", this.workUnits.size());
+        plan.put("estimatedCpuSeconds", totalSeconds);
+        plan.put("workUnits", units);
+        return plan;
+    }
+
+    /**
+     * <p>
+     * Writes the JSON plan to a file.
+     * </p>
+     *
+     * @param file
+     *            file where the plan is written
+     */
+    public void writeJSON(File file) {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(toJSON().toString(2));
+        }
+        catch (IOException e) {
+            LOGGER.error("could not write plan to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * <p>
+     * Determines the training data sets for a test version. For cross-project experiments, this is
+     * a single set with all versions that are used as training data, which is determined from the
+     * release graph and the training version filters without processing the versions. For heterogeneous
+     * experiments, each valid training version is its own set. For all other experiments, the test
+     * version itself is used as training data.
+     * </p>
+     *
+     * @param config
+     *            configuration of the experiment
+     * @param experiment
+     *            execution strategy
+     * @param testVersion
+     *            test version
+     * @param versions
+     *            all versions of the experiment
+     * @return list of training data sets
+     */
+    private static List<List<SoftwareVersion>> getTrainingSets(ExperimentConfiguration config,
+                                                               IExecutionStrategy experiment,
+                                                               SoftwareVersion testVersion,
+                                                               List<SoftwareVersion> versions)
+    {
+        List<List<SoftwareVersion>> trainingSets = new LinkedList<>();
+        if (experiment instanceof AbstractCrossProjectExperiment) {
+            List<SoftwareVersion> trainingVersions = ((AbstractCrossProjectExperiment) experiment)
+                .planTrainingVersions(testVersion, versions);
+            if (!trainingVersions.isEmpty()) {
+                trainingSets.add(trainingVersions);
+            }
+        }
+        else if (experiment instanceof HeterogeneousExperiment) {
+            for (SoftwareVersion trainingVersion : versions) {
+                if (trainingVersion != testVersion &&
+                    CrosspareUtils.isVersion(trainingVersion, versions,
+                                             config.getTrainingVersionFilters()) &&
+                    HeterogeneousExperiment.isTrainingVersion(trainingVersion, testVersion))
+                {
+                    List<SoftwareVersion> trainingVersions = new LinkedList<>();
+                    trainingVersions.add(trainingVersion);
+                    trainingSets.add(trainingVersions);
+                }
+            }
+        }
+        else {
+            List<SoftwareVersion> trainingVersions = new LinkedList<>();
+            trainingVersions.add(testVersion);
+            trainingSets.add(trainingVersions);
+        }
+        return trainingSets;
+    }
+
+    /**
+     * <p>
+     * returns all trainers of a configuration
+     * </p>
+     *
+     * @param config
+     *            configuration of the experiment
+     * @return all trainers
+     */
+    private static List<ITrainer> getAllTrainers(ExperimentConfiguration config) {
+        List<ITrainer> allTrainers = new LinkedList<>();
+        for (ISetWiseTrainingStrategy setwiseTrainer : config.getSetWiseTrainers()) {
+            allTrainers.add(setwiseTrainer);
+        }
+        for (ISetWiseTestdataAwareTrainingStrategy setwiseTestdataAwareTrainer : config
+            .getSetWiseTestdataAwareTrainers())
+        {
+            allTrainers.add(setwiseTestdataAwareTrainer);
+        }
+        for (ITrainingStrategy trainer : config.getTrainers()) {
+            allTrainers.add(trainer);
+        }
+        for (ITestAwareTrainingStrategy trainer : config.getTestAwareTrainers()) {
+            allTrainers.add(trainer);
+        }
+        return allTrainers;
+    }
+
+    /**
+     * <p>
+     * returns the names of all data processing and selection strategies of a configuration
+     * </p>
+     *
+     * @param config
+     *            configuration of the experiment
+     * @return names of the strategies
+     */
+    private static List<String> getPipeline(ExperimentConfiguration config) {
+        List<Object> strategies = new LinkedList<>();
+        strategies.addAll(config.getTrainingVersionProcessors());
+        strategies.addAll(config.getSetWisePreprocessors());
+        strategies.addAll(config.getSetWiseSelectors());
+        strategies.addAll(config.getSetWisePostprocessors());
+        strategies.addAll(config.getPreProcessors());
+        strategies.addAll(config.getPointWiseSelectors());
+        strategies.addAll(config.getPostProcessors());
+        List<String> names = new LinkedList<>();
+        for (Object strategy : strategies) {
+            names.add(strategy.getClass().getSimpleName());
+        }
+        return names;
+    }
+
+    /**
+     * <p>
+     * returns the name of the strategy that determines the cost of a trainer. For Weka trainers,
+     * this is the Weka classifier, if it has an own cost model.
+     * </p>
+     *
+     * @param trainer
+     *            the trainer
+     * @return name of the strategy
+     */
+    private static String getStrategyName(ITrainer trainer) {
+        if (trainer instanceof BudgetedTraining) {
+            return getStrategyName(((BudgetedTraining) trainer).getTrainer());
+        }
+        if (trainer instanceof WekaBaseTraining) {
+            String classifierClassName = ((WekaBaseTraining) trainer).getClassifierClassName();
+            if (classifierClassName != null) {
+                String simpleName =
+                    classifierClassName.substring(classifierClassName.lastIndexOf('.') + 1);
+                if (COST_MODELS.containsKey(simpleName)) {
+                    return simpleName;
+                }
+            }
+        }
+        return trainer.getClass().getSimpleName();
+    }
+
+    /**
+     * <p>
+     * returns the name of a trainer
+     * </p>
+     *
+     * @param trainer
+     *            the trainer
+     * @return name of the trainer
+     */
+    private static String getTrainerName(ITrainer trainer) {
+        if (trainer instanceof IWekaCompatibleTrainer) {
+            return ((IWekaCompatibleTrainer) trainer).getName();
+        }
+        return trainer.getClass().getSimpleName();
+    }
+
+    /**
+     * <p>
+     * returns the cost model of a strategy
+     * </p>
+     *
+     * @param strategyName
+     *            simple class name of the strategy
+     * @return the cost model
+     */
+    private static CostModel getCostModel(String strategyName) {
+        CostModel model = COST_MODELS.get(strategyName);
+        if (model == null) {
+            return DEFAULT_COST_MODEL;
+        }
+        return model;
+    }
+
+    /**
+     * <p>
+     * Measures the duration of an elementary floating point operation on this host.
+     * </p>
+     *
+     * @return seconds per operation
+     */
+    private static double calibrate() {
+        final int numOperations = 20000000;
+        double[] values = new double[1024];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i / 1024.0;
+        }
+        double sum = 0.0;
+        // warm up, such that the JIT compiler kicks in
+        for (int i = 0; i < numOperations; i++) {
+            sum += values[i & 1023] * values[(i + 1) & 1023];
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < numOperations; i++) {
+            sum += values[i & 1023] * values[(i + 1) & 1023];
+        }
+        long duration = System.nanoTime() - start;
+        if (sum < 0) {
+            // never happens, but prevents dead code elimination
+            LOGGER.debug("calibration sum: " + sum);
+        }
+        return Math.max(duration, 1) / 1e9 / numOperations;
+    }
+
+    /**
+     * <p>
+     * Cost model of a strategy. The number of operations is estimated as factor*n^exponent*m, the
+     * memory is estimated as memoryFactor*n^memoryExponent*8 bytes, where n is the number of
+     * instances and m the number of attributes.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class CostModel {
+
+        /**
+         * exponent of the number of instances for the CPU time
+         */
+        private final double cpuExponent;
+
+        /**
+         * exponent of the number of instances for the additional memory
+         */
+        private final double memoryExponent;
+
+        /**
+         * constant factor of the CPU time
+         */
+        private final double cpuFactor;
+
+        /**
+         * constant factor of the additional memory
+         */
+        private final double memoryFactor;
+
+        /**
+         * <p>
+         * Constructor. Creates a new cost model.
+         * </p>
+         *
+         * @param cpuExponent
+         *            exponent of the number of instances for the CPU time
+         * @param memoryExponent
+         *            exponent of the number of instances for the additional memory
+         * @param cpuFactor
+         *            constant factor of the CPU time
+         * @param memoryFactor
+         *            constant factor of the additional memory
+         */
+        @SuppressWarnings("hiding")
+        CostModel(double cpuExponent, double memoryExponent, double cpuFactor, double memoryFactor)
+        {
+            this.cpuExponent = cpuExponent;
+            this.memoryExponent = memoryExponent;
+            this.cpuFactor = cpuFactor;
+            this.memoryFactor = memoryFactor;
+        }
+
+        /**
+         * <p>
+         * estimated number of elementary operations
+         * </p>
+         *
+         * @param numInstances
+         *            number of instances
+         * @param numAttributes
+         *            number of attributes
+         * @return number of operations
+         */
+        double operations(int numInstances, int numAttributes) {
+            return this.cpuFactor * Math.pow(numInstances, this.cpuExponent) * numAttributes;
+        }
+
+        /**
+         * <p>
+         * estimated additional memory in bytes
+         * </p>
+         *
+         * @param numInstances
+         *            number of instances
+         * @param numAttributes
+         *            number of attributes
+         * @return memory in bytes
+         */
+        double memory(int numInstances, int numAttributes) {
+            if (this.memoryFactor == 0.0) {
+                return 0.0;
+            }
+            double values = this.memoryExponent > 0 ? Math.pow(numInstances, this.memoryExponent)
+                : numAttributes;
+            return this.memoryFactor * values * BYTES_PER_VALUE;
+        }
+    }
+
+    /**
+     * <p>
+     * A work unit of the plan, i.e., the combination of a test version and a trainer.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    public static class WorkUnit {
+
+        /**
+         * orders by the estimated CPU time, longest first
+         */
+        public static final Comparator<WorkUnit> BY_CPU_DESCENDING =
+            Comparator.comparingDouble(WorkUnit::getEstimatedCpuSeconds).reversed();
+
+        /**
+         * orders by the estimated memory, largest first
+         */
+        public static final Comparator<WorkUnit> BY_MEMORY_DESCENDING =
+            Comparator.comparingLong(WorkUnit::getEstimatedMemoryBytes).reversed();
+
+        /**
+         * orders by configuration and test version
+         */
+        public static final Comparator<WorkUnit> BY_NAME =
+            Comparator.comparing(WorkUnit::getConfigurationName).thenComparing(WorkUnit::getProject)
+                .thenComparing(WorkUnit::getTestVersion);
+
+        /**
+         * name of the configuration
+         */
+        private final String configurationName;
+
+        /**
+         * project of the test version
+         */
+        private final String project;
+
+        /**
+         * name of the test version
+         */
+        private final String testVersion;
+
+        /**
+         * name of the training version for pairwise experiments, null otherwise
+         */
+        private final String trainVersion;
+
+        /**
+         * name of the trainer
+         */
+        private final String trainerName;
+
+        /**
+         * number of training versions
+         */
+        private final int numTrainingVersions;
+
+        /**
+         * number of training instances
+         */
+        private final int numTrainInstances;
+
+        /**
+         * number of test instances
+         */
+        private final int numTestInstances;
+
+        /**
+         * number of attributes
+         */
+        private final int numAttributes;
+
+        /**
+         * estimated CPU time in seconds
+         */
+        private final double estimatedCpuSeconds;
+
+        /**
+         * estimated peak memory in bytes
+         */
+        private final long estimatedMemoryBytes;
+
+        /**
+         * <p>
+         * Constructor. Creates a new work unit.
+         * </p>
+         *
+         * @param configurationName
+         *            name of the configuration
+         * @param project
+         *            project of the test version
+         * @param testVersion
+         *            name of the test version
+         * @param trainVersion
+         *            name of the training version for pairwise experiments, null otherwise
+         * @param trainerName
+         *            name of the trainer
+         * @param numTrainingVersions
+         *            number of training versions
+         * @param numTrainInstances
+         *            number of training instances
+         * @param numTestInstances
+         *            number of test instances
+         * @param numAttributes
+         *            number of attributes
+         * @param estimatedCpuSeconds
+         *            estimated CPU time
+         * @param estimatedMemoryBytes
+         *            estimated peak memory
+         */
+        @SuppressWarnings("hiding")
+        WorkUnit(String configurationName,
+                 String project,
+                 String testVersion,
+                 String trainVersion,
+                 String trainerName,
+                 int numTrainingVersions,
+                 int numTrainInstances,
+                 int numTestInstances,
+                 int numAttributes,
+                 double estimatedCpuSeconds,
+                 long estimatedMemoryBytes)
+        {
+            this.configurationName = configurationName;
+            this.project = project;
+            this.testVersion = testVersion;
+            this.trainVersion = trainVersion;
+            this.trainerName = trainerName;
+            this.numTrainingVersions = numTrainingVersions;
+            this.numTrainInstances = numTrainInstances;
+            this.numTestInstances = numTestInstances;
+            this.numAttributes = numAttributes;
+            this.estimatedCpuSeconds = estimatedCpuSeconds;
+            this.estimatedMemoryBytes = estimatedMemoryBytes;
+        }
+
+        /**
+         * <p>
+         * returns the name of the configuration
+         * </p>
+         *
+         * @return name of the configuration
+         */
+        public String getConfigurationName() {
+            return this.configurationName;
+        }
+
+        /**
+         * <p>
+         * returns the project of the test version
+         * </p>
+         *
+         * @return project of the test version
+         */
+        public String getProject() {
+            return this.project;
+        }
+
+        /**
+         * <p>
+         * returns the name of the test version
+         * </p>
+         *
+         * @return name of the test version
+         */
+        public String getTestVersion() {
+            return this.testVersion;
+        }
+
+        /**
+         * <p>
+         * returns the name of the training version for pairwise experiments
+         * </p>
+         *
+         * @return name of the training version for pairwise experiments, null otherwise
+         */
+        public String getTrainVersion() {
+            return this.trainVersion;
+        }
+
+        /**
+         * <p>
+         * returns the name of the trainer
+         * </p>
+         *
+         * @return name of the trainer
+         */
+        public String getTrainerName() {
+            return this.trainerName;
+        }
+
+        /**
+         * <p>
+         * returns the number of training versions
+         * </p>
+         *
+         * @return number of training versions
+         */
+        public int getNumTrainingVersions() {
+            return this.numTrainingVersions;
+        }
+
+        /**
+         * <p>
+         * returns the number of training instances
+         * </p>
+         *
+         * @return number of training instances
+         */
+        public int getNumTrainInstances() {
+            return this.numTrainInstances;
+        }
+
+        /**
+         * <p>
+         * returns the number of test instances
+         * </p>
+         *
+         * @return number of test instances
+         */
+        public int getNumTestInstances() {
+            return this.numTestInstances;
+        }
+
+        /**
+         * <p>
+         * returns the number of attributes
+         * </p>
+         *
+         * @return number of attributes
+         */
+        public int getNumAttributes() {
+            return this.numAttributes;
+        }
+
+        /**
+         * <p>
+         * returns the estimated CPU time in seconds
+         * </p>
+         *
+         * @return estimated CPU time in seconds
+         */
+        public double getEstimatedCpuSeconds() {
+            return this.estimatedCpuSeconds;
+        }
+
+        /**
+         * <p>
+         * returns the estimated peak memory in bytes
+         * </p>
+         *
+         * @return estimated peak memory in bytes
+         */
+        public long getEstimatedMemoryBytes() {
+            return this.estimatedMemoryBytes;
+        }
+
+        /**
+         * <p>
+         * JSON representation of the work unit
+         * </p>
+         *
+         * @return JSON object
+         */
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("configurationName", this.configurationName);
+            json.put("project", this.project);
+            json.put("testVersion", this.testVersion);
+            if (this.trainVersion != null) {
+                json.put("trainVersion", this.trainVersion);
+            }
+            json.put("trainer", this.trainerName);
+            json.put("numTrainingVersions", this.numTrainingVersions);
+            json.put("numTrainInstances", this.numTrainInstances);
+            json.put("numTestInstances", this.numTestInstances);
+            json.put("numAttributes", this.numAttributes);
+            json.put("estimatedCpuSeconds", this.estimatedCpuSeconds);
+            json.put("estimatedMemoryBytes", this.estimatedMemoryBytes);
+            return json;
+        }
+    }
+}
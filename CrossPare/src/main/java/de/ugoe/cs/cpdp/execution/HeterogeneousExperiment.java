@@ -2,20 +2,30 @@
 package de.ugoe.cs.cpdp.execution;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.list.SetUniqueList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.ugoe.cs.cpdp.ExperimentConfiguration;
+import de.ugoe.cs.cpdp.ExperimentConfigurationException;
+import de.ugoe.cs.cpdp.IParameterizable;
+import de.ugoe.cs.cpdp.dataprocessing.IIndependentProcessingStrategy;
 import de.ugoe.cs.cpdp.dataprocessing.IProcessesingStrategy;
 import de.ugoe.cs.cpdp.dataprocessing.ISetWiseProcessingStrategy;
 import de.ugoe.cs.cpdp.dataselection.IPointWiseDataselectionStrategy;
 import de.ugoe.cs.cpdp.dataselection.ISetWiseDataselectionStrategy;
+import de.ugoe.cs.cpdp.eval.ExperimentResult;
 import de.ugoe.cs.cpdp.eval.IEvaluationStrategy;
 import de.ugoe.cs.cpdp.eval.IResultStorage;
 import de.ugoe.cs.cpdp.loader.IVersionLoader;
@@ -33,10 +43,19 @@ import weka.core.Instances;
  * <p>
  * Implements a execuction strategy for heterogeneous defect prediction.
  * </p>
+ * <p>
+ * Each pair of test and training version is executed separately. The pairs can be executed in
+ * parallel, the number of threads is defined by the parameter of the execution strategy (default:
+ * 1). Each thread uses its own copy of the configuration, such that the processors and trainers are
+ * not shared between threads. The evaluation of the pairs is synchronized. Setwise preprocessors at
+ * the beginning of the pipeline that process each version independently (see
+ * {@link IIndependentProcessingStrategy}) are applied only once per version and the results are
+ * shared between all pairs of the version.
+ * </p>
  * 
  * @author Alexander Trautsch
  */
-public class HeterogeneousExperiment implements IExecutionStrategy {
+public class HeterogeneousExperiment implements IExecutionStrategy, IParameterizable {
 
 	/**
      * Reference to the logger
@@ -48,6 +67,21 @@ public class HeterogeneousExperiment implements IExecutionStrategy {
      */
     protected final ExperimentConfiguration config;
 
+    /**
+     * number of threads used for the execution of the pairs
+     */
+    private int numThreads = 1;
+
+    /**
+     * lock that synchronizes the evaluation of pairs
+     */
+    private final Object evaluationLock = new Object();
+
+    /**
+     * defines if the header of the results file is written with the next evaluation
+     */
+    private boolean writeHeader = true;
+
     /**
      * Constructor. Creates a new experiment based on a configuration.
      * 
@@ -59,6 +93,19 @@ public class HeterogeneousExperiment implements IExecutionStrategy {
         this.config = config;
     }
 
+    /**
+     * Sets the number of threads that are used to execute the pairs of test and training versions.
+     * 
+     * @param parameters
+     *            number of threads
+     */
+    @Override
+    public void setParameter(String parameters) {
+        if (parameters != null && !parameters.trim().isEmpty()) {
+            this.numThreads = Integer.parseInt(parameters.trim());
+        }
+    }
+
     /**
      * DUBLICATE FROM AbstractCrossProjectExperiment
      * 
@@ -103,7 +150,6 @@ public class HeterogeneousExperiment implements IExecutionStrategy {
         return true;
     }
 
-    @SuppressWarnings("boxing")
     @Override
     public void run() {
         final List<SoftwareVersion> versions = new LinkedList<>();
@@ -114,221 +160,309 @@ public class HeterogeneousExperiment implements IExecutionStrategy {
 
         CrosspareUtils.filterVersions(versions, this.config.getVersionFilters());
         
-        boolean writeHeader = true;
-        int versionCount = 1;
-        int testVersionCount = 0;
-
-        // changed
-        for (SoftwareVersion testVersion : versions) {
-            if (CrosspareUtils.isVersion(testVersion, versions, this.config.getTestVersionFilters())) {
-                for (SoftwareVersion trainingVersion : versions) {
-                    if (CrosspareUtils.isVersion(trainingVersion, versions, this.config.getTrainingVersionFilters())) {
-                        testVersionCount++;
-                    }
+        // sort versions
+        Collections.sort(versions);
+
+        // evaluate the version filters only once per version
+        final List<SoftwareVersion> testVersions = new ArrayList<>();
+        final List<SoftwareVersion> trainingVersions = new ArrayList<>();
+        for (SoftwareVersion version : versions) {
+            if (CrosspareUtils.isVersion(version, versions, this.config.getTestVersionFilters())) {
+                testVersions.add(version);
+            }
+            if (CrosspareUtils.isVersion(version, versions, this.config.getTrainingVersionFilters())) {
+                trainingVersions.add(version);
+            }
+        }
+
+        final List<SoftwareVersion[]> pairs = new ArrayList<>();
+        for (SoftwareVersion testVersion : testVersions) {
+            for (SoftwareVersion trainingVersion : trainingVersions) {
+                // checks if they are the same dataset
+                if (trainingVersion != testVersion &&
+                    isTrainingVersion(trainingVersion, testVersion))
+                {
+                    pairs.add(new SoftwareVersion[]
+                        { testVersion, trainingVersion });
                 }
             }
         }
+        final int numPairs = pairs.size();
 
-        // sort versions
-        Collections.sort(versions);
+        final List<SoftwareVersion[]> pendingPairs = new ArrayList<>();
+        for (int i = 0; i < numPairs; i++) {
+            SoftwareVersion testVersion = pairs.get(i)[0];
+            SoftwareVersion trainingVersion = pairs.get(i)[1];
+            if (resultsAvailable(testVersion, trainingVersion) >= this.config.getRepetitions()) {
+            	LOGGER.info(String
+                    .format("[%s] [%02d/%02d] %s:%s results already available; skipped",
+                            this.config.getExperimentName(), i + 1, numPairs,
+                            testVersion.getVersion(), trainingVersion.getVersion()));
+            }
+            else {
+                pendingPairs.add(pairs.get(i));
+            }
+        }
 
-        // todo: test version check problematic
-        //
-        for (SoftwareVersion testVersion : versions) {
-            if (CrosspareUtils.isVersion(testVersion, versions, this.config.getTestVersionFilters())) {
-
-                // now iterate trainVersions
-                for (SoftwareVersion trainingVersion : versions) {
-                    if (CrosspareUtils.isVersion(trainingVersion, versions, this.config.getTrainingVersionFilters())) {
-                        if (trainingVersion != testVersion) {
-                            if (isTrainingVersion(trainingVersion, testVersion)) { // checks if they
-                                                                                   // are the same
-                                                                                   // dataset
-
-                                LOGGER.info(String.format("[%s] [%02d/%02d] %s:%s starting",
-                                                              this.config.getExperimentName(),
-                                                              versionCount, testVersionCount,
-                                                              testVersion.getVersion(),
-                                                              trainingVersion.getVersion()));
-                                int numResultsAvailable =
-                                    resultsAvailable(testVersion, trainingVersion);
-                                if (numResultsAvailable >= this.config.getRepetitions()) {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s:%s results already available; skipped",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                trainingVersion.getVersion()));
-                                    versionCount++;
-                                    continue;
-                                }
-
-                                // Setup testdata and training data
-                                SoftwareVersion testversion = new SoftwareVersion(testVersion);
-
-                                SoftwareVersion trainversion = new SoftwareVersion(trainingVersion);
-                                SoftwareVersion trainversionOriginal = new SoftwareVersion(trainingVersion);
-
-                                // only one set
-                                SetUniqueList<SoftwareVersion> trainversionSet =
-                                    SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
-                                trainversionSet.add(trainversion);
-
-                                for (ISetWiseProcessingStrategy processor : this.config
-                                    .getSetWisePreprocessors())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s:%s applying setwise preprocessor %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                trainingVersion.getVersion(),
-                                                processor.getClass().getName()));
-                                    processor.apply(testversion, trainversionSet);
-                                }
-                                for (ISetWiseDataselectionStrategy dataselector : this.config
-                                    .getSetWiseSelectors())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying setwise selection %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                dataselector.getClass().getName()));
-                                    dataselector.apply(testversion, trainversionSet);
-                                }
-                                for (ISetWiseProcessingStrategy processor : this.config
-                                    .getSetWisePostprocessors())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying setwise postprocessor %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                processor.getClass().getName()));
-                                    processor.apply(testversion, trainversionSet);
-                                }
-                                for (ISetWiseTrainingStrategy setwiseTrainer : this.config
-                                    .getSetWiseTrainers())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying setwise trainer %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                setwiseTrainer.getName()));
-                                    setwiseTrainer.apply(trainversionSet);
-                                }
-                                for (ISetWiseTestdataAwareTrainingStrategy setwiseTestdataAwareTrainer : this.config
-                                    .getSetWiseTestdataAwareTrainers())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s:%s applying testdata aware setwise trainer %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                trainingVersion.getVersion(),
-                                                setwiseTestdataAwareTrainer.getName()));
-                                    setwiseTestdataAwareTrainer.apply(trainversionSet, testversion);
-                                }
-
-                                // this part will not work in heterogeneous
-                                // Instances traindata = makeSingleTrainingSet(traindataSet);
-                                for (IProcessesingStrategy processor : this.config
-                                    .getPreProcessors())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying preprocessor %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                processor.getClass().getName()));
-                                    processor.apply(testversion, trainversion);
-                                }
-                                for (IPointWiseDataselectionStrategy dataselector : this.config
-                                    .getPointWiseSelectors())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying pointwise selection %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                dataselector.getClass().getName()));
-                                    trainversion = dataselector.apply(testversion, trainversion);
-                                }
-                                for (IProcessesingStrategy processor : this.config
-                                    .getPostProcessors())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying setwise postprocessor %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                processor.getClass().getName()));
-                                    processor.apply(testversion, trainversion);
-                                }
-                                for (ITrainingStrategy trainer : this.config.getTrainers()) {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying trainer %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                trainer.getName()));
-                                    trainer.apply(trainversion);
-                                }
-                                for (ITestAwareTrainingStrategy trainer : this.config
-                                    .getTestAwareTrainers())
-                                {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s: applying trainer %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                trainer.getName()));
-                                    trainer.apply(testversion, trainversion);
-                                }
-                                File resultsDir = new File(this.config.getResultsPath());
-                                if (!resultsDir.exists()) {
-                                    resultsDir.mkdir();
-                                }
-                                for (IEvaluationStrategy evaluator : this.config.getEvaluators()) {
-                                	LOGGER.info(String
-                                        .format("[%s] [%02d/%02d] %s:%s applying evaluator %s",
-                                                this.config.getExperimentName(), versionCount,
-                                                testVersionCount, testVersion.getVersion(),
-                                                trainingVersion.getVersion(),
-                                                evaluator.getClass().getName()));
-                                    List<ITrainer> allTrainers = new LinkedList<>();
-                                    for (ISetWiseTrainingStrategy setwiseTrainer : this.config
-                                        .getSetWiseTrainers())
-                                    {
-                                        allTrainers.add(setwiseTrainer);
-                                    }
-                                    for (ISetWiseTestdataAwareTrainingStrategy setwiseTestdataAwareTrainer : this.config
-                                        .getSetWiseTestdataAwareTrainers())
-                                    {
-                                        allTrainers.add(setwiseTestdataAwareTrainer);
-                                    }
-                                    for (ITrainingStrategy trainer : this.config.getTrainers()) {
-                                        allTrainers.add(trainer);
-                                    }
-                                    for (ITestAwareTrainingStrategy trainer : this.config
-                                        .getTestAwareTrainers())
-                                    {
-                                        allTrainers.add(trainer);
-                                    }
-                                    if (writeHeader) {
-                                        evaluator.setParameter(this.config.getResultsPath() + "/" +
-                                            this.config.getExperimentName() + ".csv");
-                                    }
-                                    evaluator.apply(testversion.getInstances(), trainversion.getInstances(),
-                                            trainversionOriginal.getInstances(), allTrainers, testversion.getEfforts(),
-                                            testversion.getNumBugs(), testversion.getBugMatrix(), writeHeader,
-                                            this.config.getResultStorages());
-                                    writeHeader = false;
-                                }
-                                LOGGER.info(String.format("[%s] [%02d/%02d] %s: finished",
-                                                              this.config.getExperimentName(),
-                                                              versionCount, testVersionCount,
-                                                              testVersion.getVersion()));
-                                versionCount++;
-
-                            }
+        // apply the independent setwise preprocessors once per version
+        int numIndependentPreprocessors = 0;
+        for (ISetWiseProcessingStrategy processor : this.config.getSetWisePreprocessors()) {
+            if (!(processor instanceof IIndependentProcessingStrategy)) {
+                break;
+            }
+            numIndependentPreprocessors++;
+        }
+        final Map<SoftwareVersion, SoftwareVersion> preprocessedVersions = new IdentityHashMap<>();
+        if (numIndependentPreprocessors > 0) {
+            for (SoftwareVersion[] pair : pendingPairs) {
+                for (SoftwareVersion version : pair) {
+                    if (!preprocessedVersions.containsKey(version)) {
+                        SoftwareVersion preprocessed = new SoftwareVersion(version);
+                        for (ISetWiseProcessingStrategy processor : this.config
+                            .getSetWisePreprocessors().subList(0, numIndependentPreprocessors))
+                        {
+                            processor.apply(preprocessed, SetUniqueList
+                                .setUniqueList(new LinkedList<SoftwareVersion>()));
                         }
+                        preprocessedVersions.put(version, preprocessed);
                     }
                 }
+            }
+        }
 
-            } /* end if check training */
-        } /* end for iteration test version */
+        final int skipPreprocessors = numIndependentPreprocessors;
+        final AtomicInteger pairCount = new AtomicInteger(numPairs - pendingPairs.size());
+        if (this.numThreads <= 1) {
+            for (SoftwareVersion[] pair : pendingPairs) {
+                executePair(this.config, pair[0], pair[1], preprocessedVersions,
+                            skipPreprocessors, pairCount.incrementAndGet(), numPairs);
+            }
+        }
+        else {
+            LOGGER.info(String.format("[%s] executing %d pairs with %d threads",
+                                      this.config.getExperimentName(), pendingPairs.size(),
+                                      this.numThreads));
+            final ThreadLocal<ExperimentConfiguration> threadConfigs =
+                ThreadLocal.withInitial(() -> {
+                    try {
+                        return this.config.createIndependentCopy();
+                    }
+                    catch (ExperimentConfigurationException e) {
+                        throw new RuntimeException("could not copy configuration", e);
+                    }
+                });
+            final ExecutorService threadPool = Executors.newFixedThreadPool(this.numThreads);
+            for (SoftwareVersion[] pair : pendingPairs) {
+                threadPool.execute(() -> {
+                    try {
+                        executePair(threadConfigs.get(), pair[0], pair[1], preprocessedVersions,
+                                    skipPreprocessors, pairCount.incrementAndGet(), numPairs);
+                    }
+                    catch (RuntimeException e) {
+                        LOGGER.error(String.format("[%s] %s:%s failed",
+                                                   this.config.getExperimentName(),
+                                                   pair[0].getVersion(), pair[1].getVersion()),
+                                     e);
+                    }
+                });
+            }
+            threadPool.shutdown();
+            try {
+                threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Executes the experiment for a pair of test and training version.
+     * </p>
+     *
+     * @param pairConfig
+     *            configuration whose strategies are used for the pair
+     * @param testVersion
+     *            the test version
+     * @param trainingVersion
+     *            the training version
+     * @param preprocessedVersions
+     *            versions to which the independent setwise preprocessors were already applied
+     * @param skipPreprocessors
+     *            number of setwise preprocessors that were already applied
+     * @param pairCount
+     *            number of the pair
+     * @param numPairs
+     *            total number of pairs
+     */
+    @SuppressWarnings("boxing")
+    private void executePair(ExperimentConfiguration pairConfig,
+                             SoftwareVersion testVersion,
+                             SoftwareVersion trainingVersion,
+                             Map<SoftwareVersion, SoftwareVersion> preprocessedVersions,
+                             int skipPreprocessors,
+                             int pairCount,
+                             int numPairs)
+    {
+        LOGGER.info(String.format("[%s] [%02d/%02d] %s:%s starting",
+                                      this.config.getExperimentName(),
+                                      pairCount, numPairs,
+                                      testVersion.getVersion(),
+                                      trainingVersion.getVersion()));
+
+        // Setup testdata and training data; the original training data is only read
+        SoftwareVersion testversion =
+            new SoftwareVersion(preprocessedVersions.getOrDefault(testVersion, testVersion));
+        SoftwareVersion trainversion = new SoftwareVersion(preprocessedVersions
+            .getOrDefault(trainingVersion, trainingVersion));
+        SoftwareVersion trainversionOriginal = trainingVersion;
+
+        // only one set
+        SetUniqueList<SoftwareVersion> trainversionSet =
+            SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+        trainversionSet.add(trainversion);
+
+        List<ISetWiseProcessingStrategy> setwisePreprocessors =
+            pairConfig.getSetWisePreprocessors();
+        for (ISetWiseProcessingStrategy processor : setwisePreprocessors
+            .subList(skipPreprocessors, setwisePreprocessors.size()))
+        {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s:%s applying setwise preprocessor %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        trainingVersion.getVersion(),
+                        processor.getClass().getName()));
+            processor.apply(testversion, trainversionSet);
+        }
+        for (ISetWiseDataselectionStrategy dataselector : pairConfig.getSetWiseSelectors()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying setwise selection %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        dataselector.getClass().getName()));
+            dataselector.apply(testversion, trainversionSet);
+        }
+        for (ISetWiseProcessingStrategy processor : pairConfig.getSetWisePostprocessors()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying setwise postprocessor %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        processor.getClass().getName()));
+            processor.apply(testversion, trainversionSet);
+        }
+        for (ISetWiseTrainingStrategy setwiseTrainer : pairConfig.getSetWiseTrainers()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying setwise trainer %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        setwiseTrainer.getName()));
+            setwiseTrainer.apply(trainversionSet);
+        }
+        for (ISetWiseTestdataAwareTrainingStrategy setwiseTestdataAwareTrainer : pairConfig
+            .getSetWiseTestdataAwareTrainers())
+        {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s:%s applying testdata aware setwise trainer %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        trainingVersion.getVersion(),
+                        setwiseTestdataAwareTrainer.getName()));
+            setwiseTestdataAwareTrainer.apply(trainversionSet, testversion);
+        }
+
+        // this part will not work in heterogeneous
+        // Instances traindata = makeSingleTrainingSet(traindataSet);
+        for (IProcessesingStrategy processor : pairConfig.getPreProcessors()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying preprocessor %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        processor.getClass().getName()));
+            processor.apply(testversion, trainversion);
+        }
+        for (IPointWiseDataselectionStrategy dataselector : pairConfig.getPointWiseSelectors()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying pointwise selection %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        dataselector.getClass().getName()));
+            trainversion = dataselector.apply(testversion, trainversion);
+        }
+        for (IProcessesingStrategy processor : pairConfig.getPostProcessors()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying setwise postprocessor %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        processor.getClass().getName()));
+            processor.apply(testversion, trainversion);
+        }
+        for (ITrainingStrategy trainer : pairConfig.getTrainers()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying trainer %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        trainer.getName()));
+            trainer.apply(trainversion);
+        }
+        for (ITestAwareTrainingStrategy trainer : pairConfig.getTestAwareTrainers()) {
+        	LOGGER.info(String
+                .format("[%s] [%02d/%02d] %s: applying trainer %s",
+                        this.config.getExperimentName(), pairCount,
+                        numPairs, testVersion.getVersion(),
+                        trainer.getName()));
+            trainer.apply(testversion, trainversion);
+        }
+
+        List<ITrainer> allTrainers = new LinkedList<>();
+        for (ISetWiseTrainingStrategy setwiseTrainer : pairConfig.getSetWiseTrainers()) {
+            allTrainers.add(setwiseTrainer);
+        }
+        for (ISetWiseTestdataAwareTrainingStrategy setwiseTestdataAwareTrainer : pairConfig
+            .getSetWiseTestdataAwareTrainers())
+        {
+            allTrainers.add(setwiseTestdataAwareTrainer);
+        }
+        for (ITrainingStrategy trainer : pairConfig.getTrainers()) {
+            allTrainers.add(trainer);
+        }
+        for (ITestAwareTrainingStrategy trainer : pairConfig.getTestAwareTrainers()) {
+            allTrainers.add(trainer);
+        }
+        List<IResultStorage> storages = new LinkedList<>();
+        for (IResultStorage storage : this.config.getResultStorages()) {
+            storages.add(new TrainProductResultStorage(storage, trainingVersion.getVersion()));
+        }
+
+        // the evaluators of the main configuration write into the same results file
+        synchronized (this.evaluationLock) {
+            File resultsDir = new File(this.config.getResultsPath());
+            if (!resultsDir.exists()) {
+                resultsDir.mkdir();
+            }
+            for (IEvaluationStrategy evaluator : this.config.getEvaluators()) {
+            	LOGGER.info(String
+                    .format("[%s] [%02d/%02d] %s:%s applying evaluator %s",
+                            this.config.getExperimentName(), pairCount,
+                            numPairs, testVersion.getVersion(),
+                            trainingVersion.getVersion(),
+                            evaluator.getClass().getName()));
+                if (this.writeHeader) {
+                    evaluator.setParameter(this.config.getResultsPath() + "/" +
+                        this.config.getExperimentName() + ".csv");
+                }
+                evaluator.apply(testversion.getInstances(), trainversion.getInstances(),
+                        trainversionOriginal.getInstances(), allTrainers, testversion.getEfforts(),
+                        testversion.getNumBugs(), testversion.getBugMatrix(), this.writeHeader,
+                        storages);
+                this.writeHeader = false;
+            }
+        }
+        LOGGER.info(String.format("[%s] [%02d/%02d] %s: finished",
+                                      this.config.getExperimentName(),
+                                      pairCount, numPairs,
+                                      testVersion.getVersion()));
     }
 
     /**
@@ -367,4 +501,68 @@ public class HeterogeneousExperiment implements IExecutionStrategy {
         }
         return available;
     }
+
+    /**
+     * <p>
+     * Result storage that adds the name of the training product to all results before they are
+     * passed to the actual storage. Required to distinguish the results of the different pairs of
+     * test and training version.
+     * </p>
+     * 
+     * @author Steffen Herbold
+     */
+    private static class TrainProductResultStorage implements IResultStorage {
+
+        /**
+         * storage to which the results are passed
+         */
+        private final IResultStorage storage;
+
+        /**
+         * name of the training product
+         */
+        private final String trainProductName;
+
+        /**
+         * <p>
+         * Constructor. Creates a new TrainProductResultStorage.
+         * </p>
+         *
+         * @param storage
+         *            storage to which the results are passed
+         * @param trainProductName
+         *            name of the training product
+         */
+        @SuppressWarnings("hiding")
+        TrainProductResultStorage(IResultStorage storage, String trainProductName) {
+            this.storage = storage;
+            this.trainProductName = trainProductName;
+        }
+
+        @Override
+        public void addResult(ExperimentResult result) {
+            result.setTrainProductName(this.trainProductName);
+            this.storage.addResult(result);
+        }
+
+        @Override
+        public int containsResult(String experimentName, String productName, String classifierName) {
+            return this.storage.containsResult(experimentName, productName, classifierName);
+        }
+
+        @Override
+        public void preloadCounts(String configurationName) {
+            this.storage.preloadCounts(configurationName);
+        }
+
+        @Override
+        public int containsHeterogeneousResult(String experimentName,
+                                               String productName,
+                                               String classifierName,
+                                               String trainProductName)
+        {
+            return this.storage.containsHeterogeneousResult(experimentName, productName,
+                                                            classifierName, trainProductName);
+        }
+    }
 }
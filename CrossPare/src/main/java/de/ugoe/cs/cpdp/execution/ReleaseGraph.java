@@ -0,0 +1,206 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+
+/**
+ * <p>
+ * Release graph of the versions of an experiment. The versions are grouped by project and the
+ * releases of each project are ordered with {@link SoftwareVersion#compareTo(SoftwareVersion)},
+ * i.e., the same order that the experiments use for the sorted list of versions. The graph is built
+ * once and afterwards allows constant time lookups of the position of a release within its project,
+ * its predecessors, and the range of earlier releases.
+ * </p>
+ * <p>
+ * Versions are looked up by identity first. Copies of versions, e.g., the result of
+ * {@link SoftwareVersion#SoftwareVersion(SoftwareVersion)}, are resolved through their data set,
+ * project, and version name.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class ReleaseGraph {
+
+    /**
+     * releases of each project in release order
+     */
+    private final Map<String, List<SoftwareVersion>> projectReleases;
+
+    /**
+     * position of each version within the releases of its project
+     */
+    private final Map<SoftwareVersion, Integer> positions;
+
+    /**
+     * position of each version by data set, project, and version name; used for copies
+     */
+    private final Map<List<String>, Integer> positionsByName;
+
+    /**
+     * <p>
+     * Constructor. Creates the release graph for the versions.
+     * </p>
+     *
+     * @param versions
+     *            versions of the experiment
+     */
+    @SuppressWarnings("boxing")
+    public ReleaseGraph(List<SoftwareVersion> versions) {
+        this.projectReleases = new HashMap<>();
+        this.positions = new IdentityHashMap<>();
+        this.positionsByName = new HashMap<>();
+        for (SoftwareVersion version : versions) {
+            this.projectReleases.computeIfAbsent(version.getProject(), p -> new ArrayList<>())
+                .add(version);
+        }
+        for (List<SoftwareVersion> releases : this.projectReleases.values()) {
+            Collections.sort(releases);
+            for (int i = 0; i < releases.size(); i++) {
+                this.positions.put(releases.get(i), i);
+                this.positionsByName.put(key(releases.get(i)), i);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Returns the position of a version within the releases of its project.
+     * </p>
+     *
+     * @param version
+     *            the version
+     * @return position of the version; -1 if the version is not part of the graph
+     */
+    @SuppressWarnings("boxing")
+    public int getPosition(SoftwareVersion version) {
+        Integer position = this.positions.get(version);
+        if (position == null) {
+            position = this.positionsByName.get(key(version));
+        }
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * <p>
+     * Returns all releases of a project in release order.
+     * </p>
+     *
+     * @param project
+     *            name of the project
+     * @return unmodifiable view of the releases; empty if the project is unknown
+     */
+    public List<SoftwareVersion> getReleases(String project) {
+        List<SoftwareVersion> releases = this.projectReleases.get(project);
+        if (releases == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(releases);
+    }
+
+    /**
+     * <p>
+     * Returns all releases of the same project that are earlier than the version.
+     * </p>
+     *
+     * @param version
+     *            the version
+     * @return unmodifiable view of the earlier releases in release order
+     */
+    public List<SoftwareVersion> getEarlierReleases(SoftwareVersion version) {
+        int position = getPosition(version);
+        if (position <= 0) {
+            return Collections.emptyList();
+        }
+        return getReleases(version.getProject()).subList(0, position);
+    }
+
+    /**
+     * <p>
+     * Returns the direct predecessor of a version within its project.
+     * </p>
+     *
+     * @param version
+     *            the version
+     * @return the predecessor; null if the version is the first release of the project
+     */
+    public SoftwareVersion getPredecessor(SoftwareVersion version) {
+        int position = getPosition(version);
+        if (position <= 0) {
+            return null;
+        }
+        return this.projectReleases.get(version.getProject()).get(position - 1);
+    }
+
+    /**
+     * <p>
+     * Returns the number of releases between two versions of the same project.
+     * </p>
+     *
+     * @param earlierVersion
+     *            the earlier version
+     * @param laterVersion
+     *            the later version
+     * @return difference between the positions; {@link Integer#MIN_VALUE} if the versions are not
+     *         from the same project or not part of the graph
+     */
+    public int getDistance(SoftwareVersion earlierVersion, SoftwareVersion laterVersion) {
+        int earlierPosition = getPosition(earlierVersion);
+        int laterPosition = getPosition(laterVersion);
+        if (earlierPosition < 0 || laterPosition < 0 ||
+            !Objects.equals(earlierVersion.getProject(), laterVersion.getProject()))
+        {
+            return Integer.MIN_VALUE;
+        }
+        return laterPosition - earlierPosition;
+    }
+
+    /**
+     * <p>
+     * Checks if a version is an earlier release of the same project than another version.
+     * </p>
+     *
+     * @param earlierVersion
+     *            the possibly earlier version
+     * @param laterVersion
+     *            the possibly later version
+     * @return true if both versions are from the same project and the first version is earlier
+     */
+    public boolean isEarlierRelease(SoftwareVersion earlierVersion, SoftwareVersion laterVersion) {
+        return getDistance(earlierVersion, laterVersion) > 0;
+    }
+
+    /**
+     * <p>
+     * Key of a version that is independent of its identity.
+     * </p>
+     *
+     * @param version
+     *            the version
+     * @return key consisting of data set, project, and version name
+     */
+    private static List<String> key(SoftwareVersion version) {
+        return Arrays.asList(version.getDataset(), version.getProject(), version.getVersion());
+    }
+}
@@ -14,9 +14,13 @@
 
 package de.ugoe.cs.cpdp.execution;
 
+import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.collections4.list.SetUniqueList;
+
 import de.ugoe.cs.cpdp.ExperimentConfiguration;
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 
 /**
@@ -53,4 +57,55 @@ public class WithinProjectOldReleasesExperiment extends AbstractCrossProjectExpe
         boolean isOlderRelease = trainingVersion.getVersion().compareTo(testVersion.getVersion())<0;
         return isSameProject && isOlderRelease;
     }
+
+    /**
+     * <p>
+     * Only the earlier releases of the project of the test version are considered as candidates.
+     * </p>
+     * 
+     * @see de.ugoe.cs.cpdp.execution.AbstractCrossProjectExperiment#getTrainingVersions(de.ugoe.cs.cpdp.versions.SoftwareVersion,
+     *      java.util.List)
+     */
+    @Override
+    protected SetUniqueList<SoftwareVersion> getTrainingVersions(SoftwareVersion testVersion,
+                                                                 List<SoftwareVersion> versions)
+    {
+        SetUniqueList<SoftwareVersion> trainversionSet =
+            SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+        for (SoftwareVersion trainingVersion : getReleaseGraph(versions)
+            .getEarlierReleases(testVersion))
+        {
+            if (isTrainingVersion(trainingVersion, testVersion, versions)) {
+                SoftwareVersion trainversion =
+                    prepareTrainingVersion(trainingVersion, testVersion, versions);
+                if (trainversion != null) {
+                    trainversionSet.add(trainversion);
+                }
+            }
+        }
+        return trainversionSet;
+    }
+
+    /*
+     * @see
+     * de.ugoe.cs.cpdp.execution.AbstractCrossProjectExperiment#planTrainingVersions(de.ugoe.cs.cpdp
+     * .versions.SoftwareVersion, java.util.List)
+     */
+    @Override
+    protected List<SoftwareVersion> planTrainingVersions(SoftwareVersion testVersion,
+                                                         List<SoftwareVersion> versions)
+    {
+        List<SoftwareVersion> trainingVersions = new LinkedList<>();
+        for (SoftwareVersion trainingVersion : getReleaseGraph(versions)
+            .getEarlierReleases(testVersion))
+        {
+            if (isTrainingVersion(trainingVersion, testVersion, versions) &&
+                CrosspareUtils.isVersion(trainingVersion, versions,
+                                         this.config.getTrainingVersionFilters()))
+            {
+                trainingVersions.add(trainingVersion);
+            }
+        }
+        return trainingVersions;
+    }
 }
@@ -102,6 +102,9 @@ public class WithinProjectOrderedSplitExperiment implements IExecutionStrategy {
         // sort versions
         Collections.sort(versions);
 
+        // fetch the number of available results at once
+        CrosspareUtils.preloadResults(this.config);
+
         for (SoftwareVersion testVersion : versions) {
             if (CrosspareUtils.isVersion(testVersion, versions, this.config.getTestVersionFilters())) {
                 LOGGER.info(String.format("[%s] [%02d/%02d] %s: starting",
@@ -14,11 +14,13 @@
 
 package de.ugoe.cs.cpdp.execution;
 
+import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.collections4.list.SetUniqueList;
+
 import de.ugoe.cs.cpdp.ExperimentConfiguration;
 import de.ugoe.cs.cpdp.IParameterizable;
-import de.ugoe.cs.cpdp.dataprocessing.IVersionProcessingStrategy;
 import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 
@@ -58,28 +60,77 @@ public class WithinProjectPreviousReleasesExperiment extends AbstractCrossProjec
                                         List<SoftwareVersion> versions)
     {
         // find all previous versions of test version
-        int trainIndex = versions.indexOf(trainingVersion);
-        int testIndex = versions.indexOf(testVersion);
-        
-        boolean isSameProject = trainingVersion.getProject().equals(testVersion.getProject());
-        boolean isWithinPreviousReleases = testIndex>trainIndex && (testIndex-trainIndex)<=numPreviousReleases;
+        ReleaseGraph releaseGraph = getReleaseGraph(versions);
+        int distance = releaseGraph.getDistance(trainingVersion, testVersion);
+        if (distance <= 0) {
+            return false;
+        }
+        if (distance <= this.numPreviousReleases) {
+            return true;
+        }
+        if (this.config.getTrainingVersionFilters().isEmpty()) {
+            return false;
+        }
+        List<SoftwareVersion> earlierReleases = releaseGraph.getEarlierReleases(testVersion);
+        int validPreviousReleasesCount = 0;
+        for (int i = earlierReleases.size() - distance; i < earlierReleases.size() &&
+            validPreviousReleasesCount <= this.numPreviousReleases; i++)
+        {
+            if (prepareTrainingVersion(earlierReleases.get(i), testVersion, versions) != null) {
+                validPreviousReleasesCount += 1;
+            }
+        }
+        return validPreviousReleasesCount <= this.numPreviousReleases;
+    }
 
-        if( !config.getTrainingVersionFilters().isEmpty() && testIndex>trainIndex && (testIndex-trainIndex)>numPreviousReleases ) {
-            int validPreviousReleasesCount = 0;
-            for ( int i=trainIndex; i<testIndex; i++ ) {
-                SoftwareVersion otherTrainingVersion = new SoftwareVersion(versions.get(i));
-                for(IVersionProcessingStrategy processor : this.config.getTrainingVersionProcessors()) {
-                    processor.apply(testVersion, otherTrainingVersion);
-                }
-                if ( CrosspareUtils.isVersion(otherTrainingVersion, versions, this.config.getTrainingVersionFilters()) ) {
-                    validPreviousReleasesCount += 1;
-                }
+    /**
+     * <p>
+     * Walks backwards through the earlier releases of the test version and stops as soon as the
+     * configured number of valid previous releases is found. Only the visited releases are copied.
+     * </p>
+     * 
+     * @see de.ugoe.cs.cpdp.execution.AbstractCrossProjectExperiment#getTrainingVersions(de.ugoe.cs.cpdp.versions.SoftwareVersion,
+     *      java.util.List)
+     */
+    @Override
+    protected SetUniqueList<SoftwareVersion> getTrainingVersions(SoftwareVersion testVersion,
+                                                                 List<SoftwareVersion> versions)
+    {
+        List<SoftwareVersion> earlierReleases = getReleaseGraph(versions).getEarlierReleases(testVersion);
+        LinkedList<SoftwareVersion> previousReleases = new LinkedList<>();
+        for (int i = earlierReleases.size() - 1; i >= 0 &&
+            previousReleases.size() < this.numPreviousReleases; i--)
+        {
+            SoftwareVersion trainversion =
+                prepareTrainingVersion(earlierReleases.get(i), testVersion, versions);
+            if (trainversion != null) {
+                previousReleases.addFirst(trainversion);
             }
-            if( validPreviousReleasesCount <= numPreviousReleases ){
-                isWithinPreviousReleases = true;
+        }
+        return SetUniqueList.setUniqueList(previousReleases);
+    }
+
+    /*
+     * @see
+     * de.ugoe.cs.cpdp.execution.AbstractCrossProjectExperiment#planTrainingVersions(de.ugoe.cs.cpdp
+     * .versions.SoftwareVersion, java.util.List)
+     */
+    @Override
+    protected List<SoftwareVersion> planTrainingVersions(SoftwareVersion testVersion,
+                                                         List<SoftwareVersion> versions)
+    {
+        List<SoftwareVersion> earlierReleases = getReleaseGraph(versions).getEarlierReleases(testVersion);
+        LinkedList<SoftwareVersion> previousReleases = new LinkedList<>();
+        for (int i = earlierReleases.size() - 1; i >= 0 &&
+            previousReleases.size() < this.numPreviousReleases; i--)
+        {
+            if (CrosspareUtils.isVersion(earlierReleases.get(i), versions,
+                                         this.config.getTrainingVersionFilters()))
+            {
+                previousReleases.addFirst(earlierReleases.get(i));
             }
         }
-        return isSameProject && isWithinPreviousReleases;
+        return previousReleases;
     }
 
     @Override
@@ -0,0 +1,275 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.training;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
+import de.ugoe.cs.cpdp.util.TrainingBudget;
+import de.ugoe.cs.cpdp.util.WekaUtils;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Executes a Weka compatible trainer within a {@link TrainingBudget}. If the budget is exceeded,
+ * a fallback classifier is trained on the same training data instead, and the reason for the
+ * fallback is available through {@link #getFallbackReason()} until the next training. The budget
+ * is defined with the attributes timeBudget (seconds), memoryBudget (MB of heap allocations), and
+ * fallback (Weka classifier with options, default weka.classifiers.rules.ZeroR) of the trainer in
+ * the experiment configuration.
+ * </p>
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * {@code
+ * <trainer name="WekaTraining" param="J48Tuned weka.classifiers.trees.J48 -CVPARAM C 0.1 0.5 5" timeBudget="3600" fallback="weka.classifiers.bayes.NaiveBayes" />
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class BudgetedTraining
+    implements ITrainingStrategy, ITestAwareTrainingStrategy, ISetWiseTrainingStrategy,
+    ISetWiseTestdataAwareTrainingStrategy, IWekaCompatibleTrainer
+{
+
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * the trainer that is executed within the budget
+     */
+    private final IWekaCompatibleTrainer trainer;
+
+    /**
+     * the budget
+     */
+    private final TrainingBudget budget;
+
+    /**
+     * fallback classifier with options
+     */
+    private final String fallback;
+
+    /**
+     * classifier that was trained instead of the trainer; null if the budget was not exceeded
+     */
+    private Classifier fallbackClassifier = null;
+
+    /**
+     * reason why the fallback classifier was trained; null if the budget was not exceeded
+     */
+    private String fallbackReason = null;
+
+    /**
+     * <p>
+     * Constructor. Creates a new budgeted training.
+     * </p>
+     *
+     * @param trainer
+     *            the trainer that is executed within the budget
+     * @param budget
+     *            the budget
+     * @param fallback
+     *            Weka classifier with options that is trained if the budget is exceeded; ZeroR
+     *            if null
+     */
+    @SuppressWarnings("hiding")
+    public BudgetedTraining(IWekaCompatibleTrainer trainer, TrainingBudget budget, String fallback) {
+        this.trainer = trainer;
+        this.budget = budget;
+        this.fallback = fallback == null ? "weka.classifiers.rules.ZeroR" : fallback;
+    }
+
+    /**
+     * <p>
+     * returns the trainer that is executed within the budget
+     * </p>
+     *
+     * @return the trainer
+     */
+    public IWekaCompatibleTrainer getTrainer() {
+        return this.trainer;
+    }
+
+    /**
+     * <p>
+     * returns the reason why the fallback classifier was used for the last training
+     * </p>
+     *
+     * @return the reason; null if the last training finished within the budget
+     */
+    public String getFallbackReason() {
+        return this.fallbackReason;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.IParameterizable#setParameter(java.lang.String)
+     */
+    @Override
+    public void setParameter(String parameters) {
+        this.trainer.setParameter(parameters);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * de.ugoe.cs.cpdp.training.ISetWiseTestdataAwareTrainingStrategy#setMethod(java.lang.String)
+     */
+    @Override
+    public void setMethod(String method) {
+        ((ISetWiseTestdataAwareTrainingStrategy) this.trainer).setMethod(method);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * de.ugoe.cs.cpdp.training.ISetWiseTestdataAwareTrainingStrategy#setThreshold(java.lang.String)
+     */
+    @Override
+    public void setThreshold(String threshold) {
+        ((ISetWiseTestdataAwareTrainingStrategy) this.trainer).setThreshold(threshold);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.training.ITrainingStrategy#apply(de.ugoe.cs.cpdp.versions.
+     * SoftwareVersion)
+     */
+    @Override
+    public void apply(SoftwareVersion trainversion) {
+        train(() -> ((ITrainingStrategy) this.trainer).apply(trainversion),
+              trainversion::getInstances);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.training.ITestAwareTrainingStrategy#apply(de.ugoe.cs.cpdp.versions.
+     * SoftwareVersion, de.ugoe.cs.cpdp.versions.SoftwareVersion)
+     */
+    @Override
+    public void apply(SoftwareVersion testversion, SoftwareVersion trainversion) {
+        train(() -> ((ITestAwareTrainingStrategy) this.trainer).apply(testversion, trainversion),
+              trainversion::getInstances);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * de.ugoe.cs.cpdp.training.ISetWiseTrainingStrategy#apply(org.apache.commons.collections4.list.
+     * SetUniqueList)
+     */
+    @Override
+    public void apply(SetUniqueList<SoftwareVersion> trainversionSet) {
+        train(() -> ((ISetWiseTrainingStrategy) this.trainer).apply(trainversionSet),
+              () -> CrosspareUtils.makeSingleTrainingSet(trainversionSet));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.training.ISetWiseTestdataAwareTrainingStrategy#apply(org.apache.commons.
+     * collections4.list.SetUniqueList, de.ugoe.cs.cpdp.versions.SoftwareVersion)
+     */
+    @Override
+    public void apply(SetUniqueList<SoftwareVersion> trainversionSet, SoftwareVersion testversion) {
+        train(() -> ((ISetWiseTestdataAwareTrainingStrategy) this.trainer)
+            .apply(trainversionSet, testversion),
+              () -> CrosspareUtils.makeSingleTrainingSet(trainversionSet));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.training.IWekaCompatibleTrainer#getClassifier()
+     */
+    @Override
+    public Classifier getClassifier() {
+        if (this.fallbackReason != null) {
+            return this.fallbackClassifier;
+        }
+        return this.trainer.getClassifier();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.training.IWekaCompatibleTrainer#getName()
+     */
+    @Override
+    public String getName() {
+        return this.trainer.getName();
+    }
+
+    /**
+     * <p>
+     * Executes a training within the budget and trains the fallback classifier if the budget is
+     * exceeded. The training data of the fallback classifier is only created in that case, because
+     * the set-wise trainings have to combine all training versions for it.
+     * </p>
+     *
+     * @param training
+     *            the training
+     * @param traindata
+     *            supplies the training data for the fallback classifier
+     */
+    private void train(Runnable training, Supplier<Instances> traindata) {
+        this.fallbackClassifier = null;
+        this.fallbackReason = this.budget.run(training);
+        if (this.fallbackReason != null) {
+            LOGGER.warn(String.format("trainer %s: %s; training %s instead", getName(),
+                                      this.fallbackReason, this.fallback));
+            this.fallbackClassifier = WekaUtils.buildClassifier(createFallback(), traindata.get());
+        }
+    }
+
+    /**
+     * <p>
+     * Creates the untrained fallback classifier.
+     * </p>
+     *
+     * @return the classifier
+     */
+    private Classifier createFallback() {
+        String[] params = this.fallback.trim().split(" ");
+        try {
+            return AbstractClassifier.forName(params[0],
+                                              Arrays.copyOfRange(params, 1, params.length));
+        }
+        catch (Exception e) {
+            throw new RuntimeException("could not create fallback classifier " + this.fallback,
+                                       e);
+        }
+    }
+}
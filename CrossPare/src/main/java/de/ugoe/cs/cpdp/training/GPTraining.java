@@ -1,10 +1,21 @@
 
 package de.ugoe.cs.cpdp.training;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections4.list.SetUniqueList;
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
@@ -35,8 +46,10 @@ import org.jgap.gp.GPFitnessFunction;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.terminal.Variable;
 import org.jgap.gp.MathCommand;
+import org.jgap.impl.StockRandomGenerator;
 import org.jgap.util.ICloneable;
 
+import de.ugoe.cs.cpdp.util.TrainingBudget;
 import de.ugoe.cs.cpdp.util.WekaUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 
@@ -52,13 +65,29 @@ import org.jgap.util.CloneException;
  * - GPRun is a Run of a complete Genetic Programm Evolution, we want several complete runs. -
  * GPVClassifier is the Validation Classifier - GPVVClassifier is the Validation-Voting Classifier
  * 
- * config: <setwisetrainer name="GPTraining" param="populationSize:1000,numberRuns:10" />
+ * The runs are executed in parallel. Each run uses its own random number generator, that is seeded
+ * with the seed (default: 1) and the index of the run, such that the results are reproducible
+ * independent of the number of threads (default: 1). The evolved
+ * programs are compiled into flat evaluators that compute the values of a program for all instances
+ * of a data set at once, instead of interpreting the program once per instance.
+ * 
+ * config: <setwisetrainer name="GPTraining" param="populationSize:1000,numberRuns:10,seed:1,threads:4" />
  * 
  * @author Alexander Trautsch
  */
 @SuppressWarnings("hiding")
 public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrainer {
 
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * number of programs whose fitness is cached by each run
+     */
+    private static final int FITNESS_CACHE_SIZE = 10000;
+
     /**
      * the interal validation-and-voting classifier
      */
@@ -113,6 +142,16 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
      */
     private int maxNodes = 100;
 
+    /**
+     * seed of the random number generators of the runs; default is 1
+     */
+    private long seed = 1;
+
+    /**
+     * number of threads used to execute the runs; default is 1
+     */
+    private int numThreads = 1;
+
     /*
      * (non-Javadoc)
      * 
@@ -160,6 +199,14 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                 case "maxNodes":
                     this.maxNodes = Integer.parseInt(keyvalue[1]);
                     break;
+
+                case "seed":
+                    this.seed = Long.parseLong(keyvalue[1]);
+                    break;
+
+                case "threads":
+                    this.numThreads = Math.max(1, Integer.parseInt(keyvalue[1]));
+                    break;
                 default:
                     throw new RuntimeException("Unknown Parameter for GPTraining: " + keyvalue[0]);
             }
@@ -168,7 +215,8 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
         this.classifier = new GPVVClassifier();
         ((GPVClassifier) this.classifier)
             .configure(this.populationSize, this.initMinDepth, this.initMaxDepth, this.tournamentSize, this.maxGenerations,
-                       this.errorType2Weight, this.numberRuns, this.maxDepth, this.maxNodes);
+                       this.errorType2Weight, this.numberRuns, this.maxDepth, this.maxNodes,
+                       this.seed, this.numThreads);
     }
 
     /*
@@ -223,6 +271,11 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          */
         private double[][] instances_x;
 
+        /**
+         * instance values stored column-wise, i.e., one array for each attribute
+         */
+        private double[][] instances_columns;
+
         /**
          * class labels
          */
@@ -246,6 +299,13 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                 this.instances_x[i] = WekaUtils.instanceValues(current);
                 this.instances_y[i] = 1.0 == current.classValue();
             }
+
+            this.instances_columns = new double[instances.numAttributes() - 1][this.instances_x.length];
+            for (int i = 0; i < this.instances_x.length; i++) {
+                for (int j = 0; j < this.instances_columns.length; j++) {
+                    this.instances_columns[j][i] = this.instances_x[i][j];
+                }
+            }
         }
 
         /**
@@ -259,6 +319,17 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
             return this.instances_x;
         }
 
+        /**
+         * <p>
+         * returns the instance values column-wise, i.e., one array for each attribute
+         * </p>
+         *
+         * @return the instance values
+         */
+        public double[][] getColumns() {
+            return this.instances_columns;
+        }
+
         /**
          * <p>
          * returns the instance labels
@@ -331,6 +402,16 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          */
         private GPProblem problem;
 
+        /**
+         * seed of the random number generator of the genetic program
+         */
+        private long seed;
+
+        /**
+         * compiled version of the fittest program; created on first use
+         */
+        private CompiledProgram compiledProgram = null;
+
         /**
          * <p>
          * Configures the runner
@@ -352,6 +433,8 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          *            maximal depth of the S-expression tree
          * @param maxNodes
          *            maximal number of nodes of the S-expression tree
+         * @param seed
+         *            seed of the random number generator
          */
         @SuppressWarnings("hiding")
         public void configure(int populationSize,
@@ -361,7 +444,8 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                               int maxGenerations,
                               double errorType2Weight,
                               int maxDepth,
-                              int maxNodes)
+                              int maxNodes,
+                              long seed)
         {
             this.populationSize = populationSize;
             this.initMinDepth = initMinDepth;
@@ -371,6 +455,7 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
             this.errorType2Weight = errorType2Weight;
             this.maxDepth = maxDepth;
             this.maxNodes = maxNodes;
+            this.seed = seed;
         }
 
         /**
@@ -395,20 +480,45 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
             return ((CrossPareGP) this.problem).getVariables();
         }
 
+        /**
+         * <p>
+         * returns the compiled version of the fittest program of all generations
+         * </p>
+         *
+         * @return the compiled program
+         */
+        public synchronized CompiledProgram getCompiledProgram() {
+            if (this.compiledProgram == null) {
+                this.compiledProgram =
+                    CompiledProgram.compile(this.gp.getAllTimeBest(), getVariables());
+            }
+            return this.compiledProgram;
+        }
+
         /*
          * (non-Javadoc)
          * 
          * @see weka.classifiers.Classifier#buildClassifier(weka.core.Instances)
          */
+        @SuppressWarnings("boxing")
         @Override
         public void buildClassifier(Instances traindata) throws Exception {
             InstanceData train = new InstanceData(traindata);
             this.problem =
                 new CrossPareGP(train.getX(), train.getY(), this.populationSize, this.initMinDepth,
                                 this.initMaxDepth, this.tournamentSize, this.errorType2Weight,
-                                this.maxDepth, this.maxNodes);
+                                this.maxDepth, this.maxNodes, this.seed);
             this.gp = this.problem.create();
-            this.gp.evolve(this.maxGenerations);
+            this.compiledProgram = null;
+            long start = System.nanoTime();
+            for (int generation = 0; generation < this.maxGenerations; generation++) {
+                TrainingBudget.checkpoint();
+                this.gp.evolve(1);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LOGGER.debug(String.format("GP run with seed %d: %d generations in %.2fs (%.1f generations/s)",
+                                       this.seed, this.maxGenerations, seconds,
+                                       this.maxGenerations / seconds));
         }
 
         /**
@@ -467,6 +577,8 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
              *            maximal depth of the S-expression tree
              * @param maxNodes
              *            maximal number of nodes of the S-expression tree
+             * @param seed
+             *            seed of the random number generator
              * @throws InvalidConfigurationException
              *             thrown in case the problem cannot be created
              */
@@ -479,7 +591,8 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                                int tournamentSize,
                                double errorType2Weight,
                                int maxDepth,
-                               int maxNodes)
+                               int maxNodes,
+                               long seed)
                 throws InvalidConfigurationException
             {
                 super(new GPConfiguration());
@@ -492,6 +605,11 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                 Configuration.reset();
                 GPConfiguration config = this.getGPConfiguration();
 
+                // each run has its own random number generator for reproducible parallel runs
+                StockRandomGenerator random = new StockRandomGenerator();
+                random.setSeed(seed);
+                config.setRandomGenerator(random);
+
                 this.x = new Variable[this.instances[0].length];
 
                 for (int j = 0; j < this.x.length; j++) {
@@ -613,11 +731,21 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
              */
             private double[][] instances;
 
+            /**
+             * instance values of the training data stored column-wise
+             */
+            private double[][] columns;
+
             /**
              * classifications of the training data
              */
             private boolean[] output;
 
+            /**
+             * type I and type II errors of already evaluated programs
+             */
+            private transient LRUMap<CompiledProgram, int[]> fitnessCache = null;
+
             /**
              * weight of the error costs
              */
@@ -665,6 +793,13 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                 this.instances = instances;
                 this.output = output;
                 this.errorType2Weight = errorType2Weight;
+
+                this.columns = new double[x.length][instances.length];
+                for (int i = 0; i < instances.length; i++) {
+                    for (int j = 0; j < x.length; j++) {
+                        this.columns[j][i] = instances[i][j];
+                    }
+                }
             }
 
             /**
@@ -716,6 +851,11 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
              * The fitness function. Our fitness is best if we have the less wrong classifications,
              * this includes a weight for type2 errors.
              * </p>
+             * <p>
+             * The program is compiled and evaluated for all instances at once. The errors are
+             * cached with the compiled program as key, such that programs that occur multiple times
+             * during the evolution are only evaluated once.
+             * </p>
              * 
              * @param program
              *            the genetic program whose fitness is evaluated.
@@ -727,34 +867,35 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
             protected double evaluate(final IGPProgram program) {
                 double pfitness = 0.0f;
                 this.sfitness = 0.0f;
-                double value = 0.0f;
-
-                // count classification errors
-                this.errorType1 = 0;
-                this.errorType2 = 0;
 
-                for (int i = 0; i < this.instances.length; i++) {
-
-                    // requires that we have a variable for each column of our dataset (attribute of
-                    // instance)
-                    for (int j = 0; j < this.x.length; j++) {
-                        this.x[j].set(this.instances[i][j]);
-                    }
-
-                    // value gives us a double, if < 0.5 we set this instance as faulty
-                    value = program.execute_double(0, this.x);
-
-                    if (value < 0.5) {
-                        if (this.output[i] != true) {
-                            this.errorType1 += 1;
+                if (this.fitnessCache == null) {
+                    this.fitnessCache = new LRUMap<>(FITNESS_CACHE_SIZE);
+                }
+                CompiledProgram compiled = CompiledProgram.compile(program, this.x);
+                int[] errors = this.fitnessCache.get(compiled);
+                if (errors == null) {
+                    // count classification errors
+                    errors = new int[2];
+
+                    // values give us a double for each instance, if < 0.5 we set this instance as
+                    // faulty
+                    double[] values = compiled.execute(this.columns, this.instances.length);
+                    for (int i = 0; i < this.instances.length; i++) {
+                        if (values[i] < 0.5) {
+                            if (this.output[i] != true) {
+                                errors[0] += 1;
+                            }
                         }
-                    }
-                    else {
-                        if (this.output[i] == true) {
-                            this.errorType2 += 1;
+                        else {
+                            if (this.output[i] == true) {
+                                errors[1] += 1;
+                            }
                         }
                     }
+                    this.fitnessCache.put(compiled, errors);
                 }
+                this.errorType1 = errors[0];
+                this.errorType2 = errors[1];
 
                 // now calc pfitness
                 pfitness = (this.errorType1 + this.errorType2Weight * this.errorType2) /
@@ -914,55 +1055,59 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          * This is according to Section 6 of the Paper by Liu et al. It is basically the Multiple
          * Data Sets Validation Classifier but here we keep the best models an let them vote.
          * 
+         * The runs for all training data are executed in parallel. The errors on the evaluation
+         * data are computed once per run and reused for the model selection.
+         * 
          * @param trainversionSet
          *            versions of the training data
          * @throws Exception
          *             thrown in case of a problem with the training
          */
+        @SuppressWarnings("boxing")
         @Override
         public void buildClassifier(SetUniqueList<SoftwareVersion> trainversionSet) throws Exception {
 
             // each classifier is trained with one project from the set
             // then is evaluated on the rest
+            long start = System.nanoTime();
+            List<RunResult> results = executeRuns(trainversionSet);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LOGGER.info(String.format("GPTraining: %d runs with %d generations in %.2fs (%.1f generations/s)",
+                                      results.size(), this.maxGenerations, seconds,
+                                      results.size() * this.maxGenerations / seconds));
+
             this.classifiers = new LinkedList<>();
             for (int i = 0; i < trainversionSet.size(); i++) {
 
                 // candidates we get out of evaluation
-                LinkedList<Classifier> candidates = new LinkedList<>();
+                LinkedList<RunResult> candidates = new LinkedList<>();
 
                 // number of runs, yields the best of these
                 double smallest_error_count_train = Double.MAX_VALUE;
                 Classifier bestTrain = null;
                 for (int k = 0; k < this.numberRuns; k++) {
+                    RunResult result = results.get(i * this.numberRuns + k);
                     double[] errors_eval =
                         { 0.0, 0.0 };
-                    Classifier currentTrainClassifier = new GPRun();
-                    ((GPRun) currentTrainClassifier).configure(this.populationSize, this.initMinDepth,
-                                                   this.initMaxDepth, this.tournamentSize,
-                                                   this.maxGenerations, this.errorType2Weight,
-                                                   this.maxDepth, this.maxNodes);
-
-                    // one project is training data
-                    currentTrainClassifier.buildClassifier(trainversionSet.get(i).getInstances());
 
                     double[] errors;
-                    // rest of the set is evaluation data, we evaluate now
+                    // rest of the set is evaluation data
                     for (int j = 0; j < trainversionSet.size(); j++) {
                         if (j != i) {
                             // if type1 and type2 errors are < 0.5 we allow the model in the
                             // candidates
-                            errors = this.evaluate((GPRun) currentTrainClassifier, trainversionSet.get(j).getInstances());
+                            errors = result.getErrors(j);
                             errors_eval[0] += errors[0];
                             errors_eval[1] += errors[1];
                             if ((errors[0] < 0.5) && (errors[1] < 0.5)) {
-                                candidates.add(currentTrainClassifier);
+                                candidates.add(result);
                             }
                         }
                     }
 
                     // if the candidate made fewer errors it is now the best
                     if (errors_eval[0] + errors_eval[1] < smallest_error_count_train) {
-                        bestTrain = currentTrainClassifier;
+                        bestTrain = result.getRun();
                         smallest_error_count_train = errors_eval[0] + errors_eval[1];
                     }
                 }
@@ -980,7 +1125,7 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                     // we add the errors the candidate makes over the evaldata
                     for (int j = 0; j < trainversionSet.size(); j++) {
                         if (j != i) {
-                            errors = this.evaluate((GPRun) candidates.get(ii), trainversionSet.get(j).getInstances());
+                            errors = candidates.get(ii).getErrors(j);
                             errors_eval[0] += errors[0];
                             errors_eval[1] += errors[1];
                         }
@@ -988,7 +1133,7 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
 
                     // if the candidate made fewer errors it is now the best
                     if (errors_eval[0] + errors_eval[1] < smallest_error_count) {
-                        best = candidates.get(ii);
+                        best = candidates.get(ii).getRun();
                         smallest_error_count = errors_eval[0] + errors_eval[1];
                     }
                 }
@@ -1015,16 +1160,14 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
 
             int vote_positive = 0;
 
-            for (Classifier clf : this.classifiers) {
-                GPGenotype gp = ((GPRun) clf).getGp();
-                Variable[] vars = ((GPRun) clf).getVariables();
-
-                IGPProgram fitest = gp.getAllTimeBest(); // all time fitest
-                for (int j = 0; j < instance.numAttributes() - 1; j++) {
-                    vars[j].set(instance.value(j));
-                }
+            double[] values = new double[instance.numAttributes() - 1];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = instance.value(j);
+            }
 
-                if (fitest.execute_double(0, vars) < 0.5) {
+            for (Classifier clf : this.classifiers) {
+                // all time fitest
+                if (((GPRun) clf).getCompiledProgram().execute(values) < 0.5) {
                     vote_positive += 1;
                 }
             }
@@ -1099,6 +1242,16 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          */
         protected int maxNodes;
 
+        /**
+         * seed of the random number generators of the runs
+         */
+        protected long seed;
+
+        /**
+         * number of threads used to execute the runs
+         */
+        protected int numThreads = 1;
+
         /**
          * 
          * <p>
@@ -1123,6 +1276,10 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          *            maximal depth of the S-expression tree
          * @param maxNodes
          *            maximal number of nodes of the S-expression tree
+         * @param seed
+         *            seed of the random number generators of the runs
+         * @param numThreads
+         *            number of threads used to execute the runs
          */
         @SuppressWarnings("hiding")
         public void configure(int populationSize,
@@ -1133,7 +1290,9 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                               double errorType2Weight,
                               int numberRuns,
                               int maxDepth,
-                              int maxNodes)
+                              int maxNodes,
+                              long seed,
+                              int numThreads)
         {
             this.populationSize = populationSize;
             this.initMinDepth = initMinDepth;
@@ -1144,6 +1303,90 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
             this.numberRuns = numberRuns;
             this.maxDepth = maxDepth;
             this.maxNodes = maxNodes;
+            this.seed = seed;
+            this.numThreads = numThreads;
+        }
+
+        /**
+         * <p>
+         * Creates a configured run. The seed is determined by the index of the training data and
+         * the index of the run, such that the result does not depend on the order in which the
+         * runs are executed.
+         * </p>
+         *
+         * @param trainIndex
+         *            index of the training data
+         * @param run
+         *            index of the run for the training data
+         * @return the run
+         */
+        protected GPRun createRun(int trainIndex, int run) {
+            GPRun gpRun = new GPRun();
+            gpRun.configure(this.populationSize, this.initMinDepth, this.initMaxDepth,
+                            this.tournamentSize, this.maxGenerations, this.errorType2Weight,
+                            this.maxDepth, this.maxNodes,
+                            this.seed + (long) trainIndex * this.numberRuns + run);
+            return gpRun;
+        }
+
+        /**
+         * <p>
+         * Executes numberRuns runs for each training data in parallel. Each run is evaluated on all
+         * other training data.
+         * </p>
+         *
+         * @param trainversionSet
+         *            versions of the training data
+         * @return results of the runs; the runs of the i-th training data are stored at the
+         *         indizes i*numberRuns to (i+1)*numberRuns-1
+         * @throws Exception
+         *             thrown in case of a problem with the training
+         */
+        protected List<RunResult> executeRuns(SetUniqueList<SoftwareVersion> trainversionSet)
+            throws Exception
+        {
+            final List<InstanceData> evalData = new ArrayList<>(trainversionSet.size());
+            for (SoftwareVersion version : trainversionSet) {
+                evalData.add(new InstanceData(version.getInstances()));
+            }
+
+            List<Callable<RunResult>> tasks = new ArrayList<>();
+            for (int i = 0; i < trainversionSet.size(); i++) {
+                final int trainIndex = i;
+                final Instances traindata = trainversionSet.get(i).getInstances();
+                for (int k = 0; k < this.numberRuns; k++) {
+                    final GPRun run = createRun(i, k);
+                    tasks.add(() -> {
+                        run.buildClassifier(traindata);
+                        double[][] errors = new double[evalData.size()][];
+                        for (int j = 0; j < evalData.size(); j++) {
+                            if (j != trainIndex) {
+                                errors[j] = evaluate(run, evalData.get(j));
+                            }
+                        }
+                        return new RunResult(run, errors);
+                    });
+                }
+            }
+
+            List<RunResult> results = new ArrayList<>(tasks.size());
+            ExecutorService threadPool =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(this.numThreads, tasks.size())));
+            try {
+                for (Future<RunResult> result : threadPool.invokeAll(tasks)) {
+                    results.add(result.get());
+                }
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            finally {
+                threadPool.shutdown();
+            }
+            return results;
         }
 
         /**
@@ -1168,11 +1411,7 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
 
                 // numberRuns full GPRuns, we generate numberRuns models for each traindata
                 for (int k = 0; k < this.numberRuns; k++) {
-                    Classifier currentTrainingClf = new GPRun();
-                    ((GPRun) currentTrainingClf).configure(this.populationSize, this.initMinDepth,
-                                                   this.initMaxDepth, this.tournamentSize,
-                                                   this.maxGenerations, this.errorType2Weight,
-                                                   this.maxDepth, this.maxNodes);
+                    Classifier currentTrainingClf = createRun(i, k);
 
                     currentTrainingClf.buildClassifier(trainversionSet.get(i).getInstances());
 
@@ -1250,10 +1489,7 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          */
         @Override
         public void buildClassifier(Instances traindata) throws Exception {
-            final Classifier currentTrainingClf = new GPRun();
-            ((GPRun) currentTrainingClf).configure(this.populationSize, this.initMinDepth, this.initMaxDepth,
-                                           this.tournamentSize, this.maxGenerations, this.errorType2Weight,
-                                           this.maxDepth, this.maxNodes);
+            final Classifier currentTrainingClf = createRun(0, 0);
             currentTrainingClf.buildClassifier(traindata);
             this.classifiers.add(currentTrainingClf);
         }
@@ -1268,38 +1504,44 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
          * missclassifications.
          * </p>
          * 
-         * @param classifier
+         * @param currentClassifier
          *            the classifier that is evaluated
          * @param evalData
          *            the validation data
          * @return the type I and type II error rates
          */
-        @SuppressWarnings("boxing")
         public double[] evaluate(GPRun currentClassifier, Instances evalData) {
-            GPGenotype gp = currentClassifier.getGp();
-            Variable[] vars = currentClassifier.getVariables();
+            return evaluate(currentClassifier, new InstanceData(evalData));
+        }
 
-            IGPProgram fitest = gp.getAllTimeBest(); // selects the fitest of all not just the last
-                                                     // generation
+        /**
+         * <p>
+         * Evaluation of the Classifier with validation data that is already converted into the
+         * internal representation. The compiled program computes the classifications for all
+         * instances at once.
+         * </p>
+         * 
+         * @param currentClassifier
+         *            the classifier that is evaluated
+         * @param evalData
+         *            the validation data
+         * @return the type I and type II error rates
+         */
+        public double[] evaluate(GPRun currentClassifier, InstanceData evalData) {
+            // selects the fitest of all not just the last generation
+            CompiledProgram fitest = currentClassifier.getCompiledProgram();
 
-            double classification;
+            boolean[] labels = evalData.getY();
+            double[] classifications = fitest.execute(evalData.getColumns(), labels.length);
             int error_type1 = 0;
             int error_type2 = 0;
             int positive = 0;
             int negative = 0;
 
-            for (Instance instance : evalData) {
-
-                // assign instance attribute values to the variables of the s-expression-tree
-                double[] tmp = WekaUtils.instanceValues(instance);
-                for (int i = 0; i < tmp.length; i++) {
-                    vars[i].set(tmp[i]);
-                }
-
-                classification = fitest.execute_double(0, vars);
+            for (int i = 0; i < labels.length; i++) {
 
                 // we need to count the absolutes of positives for percentage
-                if (instance.classValue() == 1.0) {
+                if (labels[i]) {
                     positive += 1;
                 }
                 else {
@@ -1307,13 +1549,13 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
                 }
 
                 // classification < 0.5 we say defective
-                if (classification < 0.5) {
-                    if (instance.classValue() != 1.0) {
+                if (classifications[i] < 0.5) {
+                    if (!labels[i]) {
                         error_type1 += 1;
                     }
                 }
                 else {
-                    if (instance.classValue() == 1.0) {
+                    if (labels[i]) {
                         error_type2 += 1;
                     }
                 }
@@ -1337,15 +1579,13 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
         @SuppressWarnings("boxing")
         @Override
         public double classifyInstance(Instance instance) {
-            GPGenotype gp = ((GPRun) this.best).getGp();
-            Variable[] vars = ((GPRun) this.best).getVariables();
-
-            IGPProgram fitest = gp.getAllTimeBest(); // all time fitest
-            for (int i = 0; i < instance.numAttributes() - 1; i++) {
-                vars[i].set(instance.value(i));
+            double[] values = new double[instance.numAttributes() - 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = instance.value(i);
             }
 
-            double classification = fitest.execute_double(0, vars);
+            // all time fitest
+            double classification = ((GPRun) this.best).getCompiledProgram().execute(values);
 
             if (classification < 0.5) {
                 return 1.0;
@@ -1353,4 +1593,493 @@ public class GPTraining implements ISetWiseTrainingStrategy, IWekaCompatibleTrai
             return 0.0;
         }
     }
+
+    /**
+     * <p>
+     * Result of a run: the trained run and its error rates on the evaluation data.
+     * </p>
+     * 
+     * @author Steffen Herbold
+     */
+    public static class RunResult {
+
+        /**
+         * the trained run
+         */
+        private final GPRun run;
+
+        /**
+         * type I and type II error rates for each evaluation data; null for the training data
+         */
+        private final double[][] errors;
+
+        /**
+         * <p>
+         * Constructor. Creates a new RunResult.
+         * </p>
+         *
+         * @param run
+         *            the trained run
+         * @param errors
+         *            type I and type II error rates for each evaluation data
+         */
+        @SuppressWarnings("hiding")
+        public RunResult(GPRun run, double[][] errors) {
+            this.run = run;
+            this.errors = errors;
+        }
+
+        /**
+         * <p>
+         * returns the trained run
+         * </p>
+         *
+         * @return the run
+         */
+        public GPRun getRun() {
+            return this.run;
+        }
+
+        /**
+         * <p>
+         * returns the type I and type II error rates for evaluation data
+         * </p>
+         *
+         * @param evalIndex
+         *            index of the evaluation data
+         * @return the error rates
+         */
+        public double[] getErrors(int evalIndex) {
+            return this.errors[evalIndex];
+        }
+    }
+
+    /**
+     * <p>
+     * Compiled version of a genetic program. The S-expression tree is flattened into postfix
+     * order. The program is executed column-wise, i.e., each operation is applied to the values of
+     * all instances in a tight loop over primitive arrays, instead of interpreting the tree once
+     * per instance. The results are identical to
+     * {@link IGPProgram#execute_double(int, Object[])}. Compiled programs are equal if their
+     * postfix representations are equal, i.e., they are the canonical form of the programs.
+     * </p>
+     * 
+     * @author Steffen Herbold
+     */
+    public static class CompiledProgram implements Serializable {
+
+        /**
+         * default serialization ID
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * operation that pushes the values of a variable
+         */
+        private static final int VARIABLE = 0;
+
+        /**
+         * operation that pushes a constant
+         */
+        private static final int CONSTANT = 1;
+
+        /**
+         * addition
+         */
+        private static final int ADD = 2;
+
+        /**
+         * subtraction
+         */
+        private static final int SUBTRACT = 3;
+
+        /**
+         * multiplication
+         */
+        private static final int MULTIPLY = 4;
+
+        /**
+         * division
+         */
+        private static final int DIVIDE = 5;
+
+        /**
+         * sine
+         */
+        private static final int SINE = 6;
+
+        /**
+         * cosine
+         */
+        private static final int COSINE = 7;
+
+        /**
+         * exponential function
+         */
+        private static final int EXP = 8;
+
+        /**
+         * natural logarithm
+         */
+        private static final int LOG = 9;
+
+        /**
+         * greater than comparison
+         */
+        private static final int GT = 10;
+
+        /**
+         * maximum
+         */
+        private static final int MAX = 11;
+
+        /**
+         * operations in postfix order
+         */
+        private final int[] operations;
+
+        /**
+         * variable indizes of the operations; only used for variables
+         */
+        private final int[] variables;
+
+        /**
+         * constants of the operations; only used for constants
+         */
+        private final double[] constants;
+
+        /**
+         * maximal size of the stack during the execution
+         */
+        private final int maxStackSize;
+
+        /**
+         * hash code of the program
+         */
+        private final int hashCode;
+
+        /**
+         * <p>
+         * Constructor. Creates a new compiled program.
+         * </p>
+         *
+         * @param operations
+         *            operations in postfix order
+         * @param variables
+         *            variable indizes of the operations
+         * @param constants
+         *            constants of the operations
+         */
+        @SuppressWarnings("hiding")
+        private CompiledProgram(int[] operations, int[] variables, double[] constants) {
+            this.operations = operations;
+            this.variables = variables;
+            this.constants = constants;
+
+            int stackSize = 0;
+            int maxSize = 0;
+            for (int operation : operations) {
+                if (operation == VARIABLE || operation == CONSTANT) {
+                    stackSize++;
+                }
+                else if (isBinary(operation)) {
+                    stackSize--;
+                }
+                maxSize = Math.max(maxSize, stackSize);
+            }
+            this.maxStackSize = maxSize;
+            this.hashCode = 31 * (31 * Arrays.hashCode(operations) + Arrays.hashCode(variables)) +
+                Arrays.hashCode(constants);
+        }
+
+        /**
+         * <p>
+         * Compiles the first chromosome of a genetic program.
+         * </p>
+         *
+         * @param program
+         *            the program
+         * @param x
+         *            variables of the genetic program; the index of a variable in this array is
+         *            the index of the attribute
+         * @return the compiled program
+         */
+        public static CompiledProgram compile(IGPProgram program, Variable[] x) {
+            ProgramChromosome chromosome = program.getChromosome(0);
+            int size = chromosome.getSize(0);
+            int[] operations = new int[size];
+            int[] variables = new int[size];
+            double[] constants = new double[size];
+            int length = compile(program, chromosome, 0, x, operations, variables, constants, 0);
+            return new CompiledProgram(Arrays.copyOf(operations, length),
+                                       Arrays.copyOf(variables, length),
+                                       Arrays.copyOf(constants, length));
+        }
+
+        /**
+         * <p>
+         * Compiles the subtree of a node into postfix order.
+         * </p>
+         *
+         * @param program
+         *            the program
+         * @param chromosome
+         *            chromosome of the program
+         * @param node
+         *            index of the node in the chromosome
+         * @param x
+         *            variables of the genetic program
+         * @param operations
+         *            operations of the compiled program
+         * @param variables
+         *            variable indizes of the compiled program
+         * @param constants
+         *            constants of the compiled program
+         * @param position
+         *            next free position of the compiled program
+         * @return next free position after the subtree was compiled
+         */
+        private static int compile(IGPProgram program,
+                                   ProgramChromosome chromosome,
+                                   int node,
+                                   Variable[] x,
+                                   int[] operations,
+                                   int[] variables,
+                                   double[] constants,
+                                   int position)
+        {
+            CommandGene gene = chromosome.getGene(node);
+            int next = position;
+            for (int child = 0; child < gene.getArity(program); child++) {
+                next = compile(program, chromosome, chromosome.getChild(node, child), x, operations,
+                               variables, constants, next);
+            }
+            if (gene instanceof Variable) {
+                operations[next] = VARIABLE;
+                variables[next] = variableIndex((Variable) gene, x);
+            }
+            else if (gene instanceof Terminal) {
+                operations[next] = CONSTANT;
+                constants[next] = gene.execute_double(chromosome, node, null);
+            }
+            else if (gene instanceof Add) {
+                operations[next] = ADD;
+            }
+            else if (gene instanceof Subtract) {
+                operations[next] = SUBTRACT;
+            }
+            else if (gene instanceof Multiply) {
+                operations[next] = MULTIPLY;
+            }
+            else if (gene instanceof Divide) {
+                operations[next] = DIVIDE;
+            }
+            else if (gene instanceof Sine) {
+                operations[next] = SINE;
+            }
+            else if (gene instanceof Cosine) {
+                operations[next] = COSINE;
+            }
+            else if (gene instanceof Exp) {
+                operations[next] = EXP;
+            }
+            else if (gene instanceof Log) {
+                operations[next] = LOG;
+            }
+            else if (gene instanceof GPRun.GT) {
+                operations[next] = GT;
+            }
+            else if (gene instanceof Max) {
+                operations[next] = MAX;
+            }
+            else {
+                throw new RuntimeException("Unsupported command of genetic program: " +
+                    gene.getName());
+            }
+            return next + 1;
+        }
+
+        /**
+         * <p>
+         * Determines the attribute index of a variable.
+         * </p>
+         *
+         * @param variable
+         *            the variable
+         * @param x
+         *            variables of the genetic program
+         * @return index of the variable
+         */
+        private static int variableIndex(Variable variable, Variable[] x) {
+            for (int j = 0; j < x.length; j++) {
+                if (x[j] == variable || x[j].getName().equals(variable.getName())) {
+                    return j;
+                }
+            }
+            throw new RuntimeException("Unknown variable of genetic program: " + variable.getName());
+        }
+
+        /**
+         * <p>
+         * Checks if an operation has two operands.
+         * </p>
+         *
+         * @param operation
+         *            the operation
+         * @return true if the operation is binary
+         */
+        private static boolean isBinary(int operation) {
+            return operation == ADD || operation == SUBTRACT || operation == MULTIPLY ||
+                operation == DIVIDE || operation == GT || operation == MAX;
+        }
+
+        /**
+         * <p>
+         * Executes the program for all instances.
+         * </p>
+         *
+         * @param columns
+         *            instance values stored column-wise, i.e., one array for each attribute
+         * @param numInstances
+         *            number of instances
+         * @return value of the program for each instance
+         */
+        public double[] execute(double[][] columns, int numInstances) {
+            double[][] stack = new double[this.maxStackSize][numInstances];
+            int top = -1;
+            for (int p = 0; p < this.operations.length; p++) {
+                double[] a;
+                double[] b;
+                switch (this.operations[p])
+                {
+                    case VARIABLE:
+                        top++;
+                        System.arraycopy(columns[this.variables[p]], 0, stack[top], 0,
+                                         numInstances);
+                        break;
+                    case CONSTANT:
+                        top++;
+                        Arrays.fill(stack[top], this.constants[p]);
+                        break;
+                    case ADD:
+                        a = stack[top - 1];
+                        b = stack[top--];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = a[i] + b[i];
+                        }
+                        break;
+                    case SUBTRACT:
+                        a = stack[top - 1];
+                        b = stack[top--];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = a[i] - b[i];
+                        }
+                        break;
+                    case MULTIPLY:
+                        a = stack[top - 1];
+                        b = stack[top--];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = a[i] * b[i];
+                        }
+                        break;
+                    case DIVIDE:
+                        a = stack[top - 1];
+                        b = stack[top--];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = a[i] / b[i];
+                        }
+                        break;
+                    case SINE:
+                        a = stack[top];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = Math.sin(Math.max(-10000.0, Math.min(a[i], 10000.0)));
+                        }
+                        break;
+                    case COSINE:
+                        a = stack[top];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = Math.cos(Math.max(-10000.0, Math.min(a[i], 10000.0)));
+                        }
+                        break;
+                    case EXP:
+                        a = stack[top];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = Math.exp(Math.max(-10000.0, Math.min(a[i], 20.0)));
+                        }
+                        break;
+                    case LOG:
+                        a = stack[top];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = Math.log(a[i]);
+                        }
+                        break;
+                    case GT:
+                        a = stack[top - 1];
+                        b = stack[top--];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = a[i] > b[i] ? 0 : 1;
+                        }
+                        break;
+                    case MAX:
+                        a = stack[top - 1];
+                        b = stack[top--];
+                        for (int i = 0; i < numInstances; i++) {
+                            a[i] = Math.max(a[i], b[i]);
+                        }
+                        break;
+                    default:
+                        throw new RuntimeException("Unknown operation: " + this.operations[p]);
+                }
+            }
+            return stack[0];
+        }
+
+        /**
+         * <p>
+         * Executes the program for a single instance.
+         * </p>
+         *
+         * @param values
+         *            values of the instance
+         * @return value of the program
+         */
+        public double execute(double[] values) {
+            double[][] columns = new double[values.length][];
+            for (int j = 0; j < values.length; j++) {
+                columns[j] = new double[]
+                    { values[j] };
+            }
+            return execute(columns, 1)[0];
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CompiledProgram)) {
+                return false;
+            }
+            CompiledProgram other = (CompiledProgram) obj;
+            return this.hashCode == other.hashCode &&
+                Arrays.equals(this.operations, other.operations) &&
+                Arrays.equals(this.variables, other.variables) &&
+                Arrays.equals(this.constants, other.constants);
+        }
+    }
 }
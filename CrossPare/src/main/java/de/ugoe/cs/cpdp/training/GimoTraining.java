@@ -1,5 +1,6 @@
 package de.ugoe.cs.cpdp.training;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -29,6 +30,7 @@ import de.unihannover.gimo_m.mining.common.RawEvaluationResult;
 import de.unihannover.gimo_m.mining.common.Record;
 import de.unihannover.gimo_m.mining.common.RecordScheme;
 import de.unihannover.gimo_m.mining.common.RuleSet;
+import de.ugoe.cs.cpdp.util.TrainingBudget;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import de.unihannover.gimo_m.mining.agents.MiningAgent;
 
@@ -50,12 +52,40 @@ import de.unihannover.gimo_m.mining.agents.MiningAgent;
  * range in favor of further complexity reduction 
  *  default: 0.1 (10%)
  * 
- * -T Training time in minutes 
+ * -T Maximum training time in minutes 
  *  default: 60
  * 
  * -V Verbosity: Controls whether the GIMO output should be displayed
  *  default: false 
  * 
+ * The following parameters for the early stopping are optional:
+ * 
+ * -M Minimum training time in minutes
+ *  default: 1
+ * 
+ * -K Number of generations without improvement of the hypervolume after which the
+ * training stops; 0 disables the early stopping
+ *  default: 10
+ * 
+ * -E Minimal relative improvement of the hypervolume of the pareto front between
+ * two generations
+ *  default: 0.001
+ * 
+ * -G Length of a generation in seconds, i.e., the interval in which the
+ * hypervolume is measured
+ *  default: 30
+ * 
+ * The mining agents of GIMO work asynchronously on the blackboard. Therefore, a
+ * generation is the interval after which the pareto front is inspected. The front
+ * is sampled with the best rule of each complexity up to the maximum complexity
+ * (see {@link HypervolumeConvergence}).
+ * 
+ * The bugmatrix and efforts are stored in a per-instance evaluation context. Since
+ * the RawEvaluationResult of GIMO keeps them in static fields, the context is
+ * installed under a lock that is shared by all GIMO trainers of the JVM. Hence,
+ * several GIMO trainers can be used in parallel experiments, but their training
+ * phases are executed one after another.
+ * 
  * @author jvdmosel
  */
 public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
@@ -65,6 +95,11 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
      */
     private static final Logger LOGGER = LogManager.getLogger("main");
 
+    /**
+     * Lock for the static state of RawEvaluationResult that is shared by all GIMO trainers
+     */
+    private static final Object EVALUATION_LOCK = new Object();
+
     /**
      * Reference to the weka classifier
      */
@@ -137,14 +172,9 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
         private Blackboard blackboard = null;
 
         /**
-         * Bugmatrix of the GIMO classifier
+         * Evaluation context with the bugmatrix and efforts of the GIMO classifier
          */
-        private double[][] bugMatrix = null;
-
-        /**
-         * Efforts of the GIMO classifier
-         */
-        private List<Double> efforts = null;
+        private EvaluationContext context = new EvaluationContext();
 
         /**
          * Best rule found by training GIMO, used for classification
@@ -162,10 +192,31 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
         private int numberOfAgents = 1;
 
         /**
-         * Training time in minutes
+         * Maximum training time in minutes
          */
         private int trainingTimeInMinutes = 60;
 
+        /**
+         * Minimum training time in minutes
+         */
+        private int minTrainingTimeInMinutes = 1;
+
+        /**
+         * Number of generations without sufficient improvement of the hypervolume after which the
+         * training stops; 0 disables the early stopping
+         */
+        private int stagnationGenerations = 10;
+
+        /**
+         * Minimal relative improvement of the hypervolume between two generations
+         */
+        private double improvementThreshold = 0.001;
+
+        /**
+         * Length of a generation in seconds
+         */
+        private int generationSeconds = 30;
+
         /**
          * Percentage in which the GIMO classifier is willing to deteriorate the cost
          * range in favor of further complexity reduction
@@ -187,6 +238,23 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
             withinPercent = Double.parseDouble(Utils.getOption('P', options));
             trainingTimeInMinutes = Integer.parseInt(Utils.getOption('T', options));
             verbose = Boolean.parseBoolean(Utils.getOption('V', options));
+            // optional parameters for the early stopping
+            String option = Utils.getOption('M', options);
+            if (!option.isEmpty()) {
+                minTrainingTimeInMinutes = Integer.parseInt(option);
+            }
+            option = Utils.getOption('K', options);
+            if (!option.isEmpty()) {
+                stagnationGenerations = Integer.parseInt(option);
+            }
+            option = Utils.getOption('E', options);
+            if (!option.isEmpty()) {
+                improvementThreshold = Double.parseDouble(option);
+            }
+            option = Utils.getOption('G', options);
+            if (!option.isEmpty()) {
+                generationSeconds = Math.max(1, Integer.parseInt(option));
+            }
         }
 
         /**
@@ -195,7 +263,7 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
          *              the bugmatrix
          */
         public void setBugMatrix(Instances bugMatrix) {
-            this.bugMatrix = toDoubleMatrix(bugMatrix);
+            context.setBugMatrix(toDoubleMatrix(bugMatrix));
         }
         
         /**
@@ -204,7 +272,7 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
          *              the efforts
          */
         public void setEfforts(List<Double> efforts) {
-            this.efforts = new ArrayList<Double>(efforts);
+            context.setEfforts(new ArrayList<Double>(efforts));
         }
 
         /**
@@ -227,43 +295,50 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
          */
         @Override
         public void buildClassifier(Instances trainData) throws Exception {
-            if (this.bugMatrix == null || this.efforts == null) {
+            if (!context.isComplete()) {
                 LOGGER.error("GimoTraining requires a bugmatrix and efforts for training");
                 throw new RuntimeException();
             }
 
-            // transform training data into GIMO compatible format
-            RecordSet records = new RecordSet(determineScheme(trainData), transformToRecords(trainData));
-            ResultData resultData = new ResultData(records);
-            List<TargetFunction> targetFunctions = RawEvaluationResult.createTargetFunctions(resultData, bugMatrix,
-                    efforts);
-
-            // setup blackboard ()
-            blackboard = new Blackboard(records, resultData, targetFunctions, System.currentTimeMillis());
-            blackboard.setLog(verbose);
-
-            // start agents
-            ExecutorService executor = Executors.newFixedThreadPool(numberOfAgents);
-            for (int i = 1; i <= numberOfAgents; i++) {
-                if (verbose) {
-                    LOGGER.info(String.format("Agent started. %d agents now running.", i));
+            synchronized (EVALUATION_LOCK) {
+                context.install();
+
+                // transform training data into GIMO compatible format
+                RecordSet records = new RecordSet(determineScheme(trainData), transformToRecords(trainData));
+                ResultData resultData = new ResultData(records);
+                List<TargetFunction> targetFunctions = RawEvaluationResult.createTargetFunctions(resultData,
+                        context.getBugMatrix(), context.getEfforts());
+
+                // setup blackboard ()
+                blackboard = new Blackboard(records, resultData, targetFunctions, System.currentTimeMillis());
+                blackboard.setLog(verbose);
+
+                // start agents
+                ExecutorService executor = Executors.newFixedThreadPool(numberOfAgents);
+                for (int i = 1; i <= numberOfAgents; i++) {
+                    if (verbose) {
+                        LOGGER.info(String.format("Agent started. %d agents now running.", i));
+                    }
+                    executor.execute(new MiningAgent(blackboard));
                 }
-                executor.execute(new MiningAgent(blackboard));
-            }
 
-            // train GIMO for X = trainingTimeInMinutes minutes
-            executor.awaitTermination(trainingTimeInMinutes, TimeUnit.MINUTES);
-
-            // stop all agents, this might take some time
-            if (verbose) {
-                LOGGER.info("Stopping all agents.");
-            }
-            executor.shutdownNow();
-            while (!executor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
-                // waiting for all agents to stop
-            }
-            if (verbose) {
-                LOGGER.info("All agents stopped.");
+                try {
+                    // train GIMO until the pareto front converges or for at most X =
+                    // trainingTimeInMinutes minutes
+                    awaitConvergence(executor);
+                } finally {
+                    // stop all agents, this might take some time
+                    if (verbose) {
+                        LOGGER.info("Stopping all agents.");
+                    }
+                    executor.shutdownNow();
+                    while (!executor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
+                        // waiting for all agents to stop
+                    }
+                    if (verbose) {
+                        LOGGER.info("All agents stopped.");
+                    }
+                }
             }
 
             // try to find a rule having <= maxComplexity complexity in the pareto front
@@ -277,6 +352,75 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
             System.out.println("Best Rule: \n" + bestRule);
         }
 
+        /**
+         * Waits while the agents are mining. The budget of the training is checked once
+         * per second and the hypervolume of the pareto front once per generation. The
+         * training stops after the maximum training time or, once the minimum training
+         * time passed, if the relative improvement of the hypervolume is below the
+         * threshold for stagnationGenerations generations.
+         * 
+         * @param executor executor of the mining agents
+         * @throws InterruptedException if interrupted while waiting
+         */
+        private void awaitConvergence(ExecutorService executor) throws InterruptedException {
+            final long start = System.currentTimeMillis();
+            final long end = start + TimeUnit.MINUTES.toMillis(trainingTimeInMinutes);
+            final long generationMillis = TimeUnit.SECONDS.toMillis(generationSeconds);
+            HypervolumeConvergence convergence = new HypervolumeConvergence(stagnationGenerations,
+                    improvementThreshold, TimeUnit.MINUTES.toMillis(minTrainingTimeInMinutes));
+            long nextGeneration = start + generationMillis;
+            long now = start;
+            while (now < end) {
+                long wait = Math.min(1000, Math.min(end, nextGeneration) - now);
+                if (wait > 0 && executor.awaitTermination(wait, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+                TrainingBudget.checkpoint();
+                now = System.currentTimeMillis();
+                if (now >= nextGeneration && now < end) {
+                    nextGeneration += generationMillis;
+                    double hypervolume = HypervolumeConvergence.hypervolume(bestCostRanges());
+                    boolean converged = convergence.update(hypervolume, now - start);
+                    if (verbose) {
+                        LOGGER.info(String.format("Generation %d: hypervolume %f, %d of %d stagnant generations",
+                                convergence.getGeneration(), hypervolume, convergence.getStagnation(),
+                                stagnationGenerations));
+                    }
+                    if (converged) {
+                        LOGGER.info(String.format("GIMO converged after %d generations (%d seconds).",
+                                convergence.getGeneration(), TimeUnit.MILLISECONDS.toSeconds(now - start)));
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Samples the current pareto front with the best rule for each complexity
+         * 1, 2, ..., maxComplexity. Complexities without a rule and rules with an
+         * undefined or infinite cost range are NaN.
+         * 
+         * @return best cost range for each complexity
+         */
+        private double[] bestCostRanges() {
+            double[] costRanges = new double[Math.max(1, (int) maxComplexity)];
+            for (int i = 0; i < costRanges.length; i++) {
+                costRanges[i] = Double.NaN;
+                try {
+                    RuleSet rule = blackboard.getBestRule(i + 1, 0.0);
+                    if (rule != null) {
+                        double costRange = applyRule(rule);
+                        if (costRange != Double.MIN_VALUE && costRange != Double.MAX_VALUE) {
+                            costRanges[i] = costRange;
+                        }
+                    }
+                } catch (Exception e) {
+                    // no rule with this complexity on the front yet
+                }
+            }
+            return costRanges;
+        }
+
         /**
          * Finds best rule in the pareto front given the parameters. Filters the pareto
          * front to find rules with complexity <= maximum Complexity 
@@ -307,11 +451,13 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
          */
         public double applyRule(RuleSet rule) {
             RecordsAndRemarks rr = blackboard.getRecords();
-            // set the bugmatrix and efforts every time since RawEvaluationResult is static
-            RawEvaluationResult.setBugMatrix(this.bugMatrix);
-            RawEvaluationResult.setEfforts(this.efforts);
-            // apply the rule
-            ValuedResult<RuleSet> vr = ValuedResult.create(rule, rr.getRecords(), rr.getResultData());
+            ValuedResult<RuleSet> vr;
+            synchronized (EVALUATION_LOCK) {
+                // install the bugmatrix and efforts every time since RawEvaluationResult is static
+                context.install();
+                // apply the rule
+                vr = ValuedResult.create(rule, rr.getRecords(), rr.getResultData());
+            }
             // cost range might be NaN or lower bound might be greater than upper bound (terrible)
             if (vr.isNaN() || vr.isTerrible()) {
                 return Double.MIN_VALUE;
@@ -393,5 +539,77 @@ public class GimoTraining implements IWekaCompatibleTrainer, ITrainingStrategy {
             }
             return matrix;
         }
-    }    
+    }
+
+    /**
+     * Evaluation context of a GIMO classifier, i.e., the bugmatrix and the efforts of
+     * the training data. The RawEvaluationResult of GIMO stores the context in static
+     * fields. Therefore, the context must be installed while holding the
+     * EVALUATION_LOCK before the library evaluates rules.
+     */
+    private static class EvaluationContext implements Serializable {
+
+        /**
+         * Default serial ID
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Bugmatrix of the training data
+         */
+        private double[][] bugMatrix = null;
+
+        /**
+         * Efforts of the training data
+         */
+        private List<Double> efforts = null;
+
+        /**
+         * Sets the bugmatrix
+         * 
+         * @param bugMatrix the bugmatrix
+         */
+        void setBugMatrix(double[][] bugMatrix) {
+            this.bugMatrix = bugMatrix;
+        }
+
+        /**
+         * Sets the efforts
+         * 
+         * @param efforts the efforts
+         */
+        void setEfforts(List<Double> efforts) {
+            this.efforts = efforts;
+        }
+
+        /**
+         * @return the bugmatrix
+         */
+        double[][] getBugMatrix() {
+            return bugMatrix;
+        }
+
+        /**
+         * @return the efforts
+         */
+        List<Double> getEfforts() {
+            return efforts;
+        }
+
+        /**
+         * @return true if the bugmatrix and the efforts are set
+         */
+        boolean isComplete() {
+            return bugMatrix != null && efforts != null;
+        }
+
+        /**
+         * Installs the context in the static fields of RawEvaluationResult. Must only
+         * be called while holding the EVALUATION_LOCK.
+         */
+        void install() {
+            RawEvaluationResult.setBugMatrix(bugMatrix);
+            RawEvaluationResult.setEfforts(efforts);
+        }
+    }
 }
@@ -0,0 +1,156 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.training;
+
+/**
+ * <p>
+ * Convergence check for rule mining with two objectives, the complexity of a rule (minimized) and
+ * its cost range (maximized). The pareto front is described by the best cost range of a rule for
+ * each complexity level 1, 2, ..., i.e., a staircase. Its hypervolume with respect to the reference
+ * point (number of levels + 1, 0) is the area below the staircase.
+ * </p>
+ * <p>
+ * The hypervolume is measured once per generation. The mining converged if the relative
+ * improvement of the hypervolume stayed below a threshold for a number of generations and the
+ * minimal training time passed. Generations without any rule on the front do not count as
+ * stagnation.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+class HypervolumeConvergence {
+
+    /**
+     * number of generations without sufficient improvement after which the mining converged; 0
+     * disables the check
+     */
+    private final int stagnationGenerations;
+
+    /**
+     * minimal relative improvement of the hypervolume between two generations
+     */
+    private final double improvementThreshold;
+
+    /**
+     * minimal training time in milliseconds
+     */
+    private final long minMillis;
+
+    /**
+     * hypervolume of the last generation
+     */
+    private double lastHypervolume = 0.0;
+
+    /**
+     * number of consecutive generations without sufficient improvement
+     */
+    private int stagnation = 0;
+
+    /**
+     * number of measured generations
+     */
+    private int generation = 0;
+
+    /**
+     * <p>
+     * Constructor. Creates a new convergence check.
+     * </p>
+     *
+     * @param stagnationGenerations
+     *            number of generations without sufficient improvement after which the mining
+     *            converged; 0 disables the check
+     * @param improvementThreshold
+     *            minimal relative improvement of the hypervolume between two generations
+     * @param minMillis
+     *            minimal training time in milliseconds
+     */
+    HypervolumeConvergence(int stagnationGenerations, double improvementThreshold, long minMillis) {
+        this.stagnationGenerations = stagnationGenerations;
+        this.improvementThreshold = improvementThreshold;
+        this.minMillis = minMillis;
+    }
+
+    /**
+     * <p>
+     * Adds the hypervolume of the next generation.
+     * </p>
+     *
+     * @param hypervolume
+     *            hypervolume of the pareto front of the generation
+     * @param elapsedMillis
+     *            training time until the end of the generation in milliseconds
+     * @return true if the mining converged
+     */
+    boolean update(double hypervolume, long elapsedMillis) {
+        this.generation++;
+        if (hypervolume > 0.0 && this.lastHypervolume > 0.0 &&
+            (hypervolume - this.lastHypervolume) / this.lastHypervolume < this.improvementThreshold)
+        {
+            this.stagnation++;
+        }
+        else {
+            this.stagnation = 0;
+        }
+        this.lastHypervolume = hypervolume;
+        return this.stagnationGenerations > 0 && this.stagnation >= this.stagnationGenerations &&
+            elapsedMillis >= this.minMillis;
+    }
+
+    /**
+     * <p>
+     * returns the number of measured generations
+     * </p>
+     *
+     * @return number of generations
+     */
+    int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * <p>
+     * returns the number of consecutive generations without sufficient improvement
+     * </p>
+     *
+     * @return number of stagnant generations
+     */
+    int getStagnation() {
+        return this.stagnation;
+    }
+
+    /**
+     * <p>
+     * Calculates the hypervolume of a pareto front. The front is given by the best cost range of a
+     * rule with at most the complexity of each level. Levels without a rule or with an undefined or
+     * infinite cost range are NaN and do not contribute. Since a rule of a lower complexity is also a
+     * candidate for all higher levels, the best cost range so far is used for each level.
+     * </p>
+     *
+     * @param bestCostRanges
+     *            best cost range for each complexity level
+     * @return the hypervolume
+     */
+    static double hypervolume(double[] bestCostRanges) {
+        double volume = 0.0;
+        double best = 0.0;
+        for (double costRange : bestCostRanges) {
+            if (Double.isFinite(costRange)) {
+                best = Math.max(best, costRange);
+            }
+            volume += best;
+        }
+        return volume;
+    }
+}
@@ -27,10 +27,17 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections4.list.SetUniqueList;
-import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
+import org.apache.commons.math3.stat.ranking.NaturalRanking;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -52,7 +59,13 @@ import weka.core.Instances;
  * Config: <setwisetestdataawaretrainer name="MetricMatchingTraining" param=
  * "Logistic weka.classifiers.functions.Logistic" threshold="0.05" method="spearman"/> Instead of
  * spearman metchod it also takes ks, percentile. Instead of Logistic every other weka classifier
- * can be chosen.
+ * can be chosen. The optional attribute threads defines the number of threads used for the
+ * matching (default: 1).
+ * 
+ * The matching of the training versions is executed in parallel. The attribute columns are sorted
+ * or ranked once per version instead of once per pair of attributes; sorted columns are cached
+ * by their content, such that they are reused for other test versions. The scores of the pairs of
+ * attributes are computed in parallel blocks of rows.
  * 
  * Future work: implement chisquare test in addition to significance for attribute selection
  * http://commons.apache.org/proper/commons-math/apidocs/org/apache/commons/math3/stat/inference/
@@ -74,6 +87,27 @@ public class MetricMatchingTraining extends WekaBaseTraining
     private String method;
     private float threshold;
 
+    /**
+     * number of rows of the score matrix that are computed by one task
+     */
+    private static final int SCORE_BLOCK_ROWS = 4;
+
+    /**
+     * maximal number of sorted attribute columns that are cached
+     */
+    private static final int SORTED_COLUMN_CACHE_SIZE = 4096;
+
+    /**
+     * number of threads used for the matching
+     */
+    private int numThreads = 1;
+
+    /**
+     * sorted attribute columns, identified by their content
+     */
+    private final Map<ColumnKey, double[]> sortedColumns =
+        Collections.synchronizedMap(new LRUMap<ColumnKey, double[]>(SORTED_COLUMN_CACHE_SIZE));
+
     /**
      * We wrap the classifier here because of classifyInstance with our MetricMatchingClassfier
      * 
@@ -102,6 +136,19 @@ public class MetricMatchingTraining extends WekaBaseTraining
         this.threshold = Float.parseFloat(threshold);
     }
 
+    /**
+     * <p>
+     * Sets the number of threads used for the matching.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     /**
      * We need the test data instances to do a metric matching, so in this special case we get this
      * data before evaluation.
@@ -116,21 +163,53 @@ public class MetricMatchingTraining extends WekaBaseTraining
         double score = 0; // matching score to select the best matching training data from the set
         int num = 0;
         int biggest_num = 0;
-        MetricMatch tmp;
-        for (SoftwareVersion trainversion : trainversionSet) {
-            num++;
-
-            tmp = new MetricMatch(trainversion.getInstances(), testversion.getInstances());
-
-            // metric selection may create error, continue to next training set
-            try {
-                tmp.attributeSelection();
-                tmp.matchAttributes(this.method, this.threshold);
+        List<MetricMatch> matches = new ArrayList<>(trainversionSet.size());
+        ExecutorService threadPool = Executors.newFixedThreadPool(this.numThreads);
+        try {
+            // 1. attribute selection and preparation of the attribute columns of each training set
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (SoftwareVersion trainversion : trainversionSet) {
+                final MetricMatch tmp =
+                    new MetricMatch(trainversion.getInstances(), testversion.getInstances());
+                matches.add(tmp);
+                tasks.add(() -> {
+                    tmp.attributeSelection();
+                    tmp.prepare(this.method);
+                    return null;
+                });
             }
-            catch (Exception e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
+            invokeAll(threadPool, tasks);
+
+            // 2. scores of the attribute pairs in blocks of rows
+            tasks.clear();
+            for (final MetricMatch tmp : matches) {
+                for (int row = 0; row < tmp.train.numAttributes(); row += SCORE_BLOCK_ROWS) {
+                    final int fromRow = row;
+                    final int toRow = Math.min(row + SCORE_BLOCK_ROWS, tmp.train.numAttributes());
+                    tasks.add(() -> {
+                        tmp.computeWeights(this.method, this.threshold, fromRow, toRow);
+                        return null;
+                    });
+                }
             }
+            invokeAll(threadPool, tasks);
+
+            // 3. maximum weight bipartite matching for each training set
+            tasks.clear();
+            for (final MetricMatch tmp : matches) {
+                tasks.add(() -> {
+                    tmp.match();
+                    return null;
+                });
+            }
+            invokeAll(threadPool, tasks);
+        }
+        finally {
+            threadPool.shutdown();
+        }
+
+        for (MetricMatch tmp : matches) {
+            num++;
 
             // we only select the training data from our set with the most matching attributes
             if (tmp.getScore() > score && tmp.attributes.size() > 0) {
@@ -178,6 +257,152 @@ public class MetricMatchingTraining extends WekaBaseTraining
         }
     }
 
+    /**
+     * <p>
+     * Executes the tasks and waits until all are finished.
+     * </p>
+     *
+     * @param threadPool
+     *            executor of the tasks
+     * @param tasks
+     *            the tasks
+     */
+    private static void invokeAll(ExecutorService threadPool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : threadPool.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Returns the sorted copy of an attribute column. Sorted columns are cached by their content.
+     * </p>
+     *
+     * @param column
+     *            the attribute column
+     * @return sorted copy of the column
+     */
+    double[] getSortedColumn(double[] column) {
+        ColumnKey key = new ColumnKey(column);
+        double[] sorted = this.sortedColumns.get(key);
+        if (sorted == null) {
+            sorted = Arrays.copyOf(column, column.length);
+            Arrays.sort(sorted);
+            this.sortedColumns.put(key, sorted);
+        }
+        return sorted;
+    }
+
+    /**
+     * <p>
+     * Computes the Kolmogorov-Smirnov statistic of two sorted samples. This is the same
+     * computation as {@link KolmogorovSmirnovTest#kolmogorovSmirnovStatistic(double[], double[])},
+     * without sorting copies of the samples for each pair.
+     * </p>
+     *
+     * @param sx
+     *            first sample, sorted
+     * @param sy
+     *            second sample, sorted
+     * @return the Kolmogorov-Smirnov statistic
+     */
+    static double kolmogorovSmirnovStatistic(double[] sx, double[] sy) {
+        final int n = sx.length;
+        final int m = sy.length;
+        double supD = 0d;
+        // first walk the points of x
+        for (int i = 0; i < n; i++) {
+            final double cdf_x = (i + 1d) / n;
+            final int yIndex = Arrays.binarySearch(sy, sx[i]);
+            final double cdf_y = yIndex >= 0 ? (yIndex + 1d) / m : (-yIndex - 1d) / m;
+            final double curD = Math.abs(cdf_x - cdf_y);
+            if (curD > supD) {
+                supD = curD;
+            }
+        }
+        // now walk the points of y
+        for (int i = 0; i < m; i++) {
+            final double cdf_y = (i + 1d) / m;
+            final int xIndex = Arrays.binarySearch(sx, sy[i]);
+            final double cdf_x = xIndex >= 0 ? (xIndex + 1d) / n : (-xIndex - 1d) / n;
+            final double curD = Math.abs(cdf_x - cdf_y);
+            if (curD > supD) {
+                supD = curD;
+            }
+        }
+        return supD;
+    }
+
+    /**
+     * <p>
+     * Key of an attribute column that is based on its content.
+     * </p>
+     * 
+     * @author Steffen Herbold
+     */
+    private static class ColumnKey {
+
+        /**
+         * values of the column
+         */
+        private final double[] values;
+
+        /**
+         * hash code of the values
+         */
+        private final int hashCode;
+
+        /**
+         * <p>
+         * Constructor. Creates a new ColumnKey.
+         * </p>
+         *
+         * @param values
+         *            values of the column
+         */
+        @SuppressWarnings("hiding")
+        ColumnKey(double[] values) {
+            this.values = values;
+            this.hashCode = Arrays.hashCode(values);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ColumnKey)) {
+                return false;
+            }
+            ColumnKey other = (ColumnKey) obj;
+            return this.hashCode == other.hashCode && Arrays.equals(this.values, other.values);
+        }
+    }
+
     /**
      * Encapsulates the classifier configured with WekaBase within but use metric matching. This
      * allows us to use any Weka classifier with Heterogenous Defect Prediction.
@@ -245,6 +470,13 @@ public class MetricMatchingTraining extends WekaBaseTraining
         protected ArrayList<double[]> train_values;
         protected ArrayList<double[]> test_values;
 
+        // prepared columns for the similarity tests, i.e., sorted values or ranks
+        private double[][] train_columns;
+        private double[][] test_columns;
+
+        // matching scores of the attributes, train -> test
+        private double[][] weights;
+
         /**
          * <p>
          * Matches the metrics between two sets
@@ -563,24 +795,130 @@ public class MetricMatchingTraining extends WekaBaseTraining
          * @param cutoff
          *            cutoff for matching
          */
-        @SuppressWarnings("boxing")
         public void matchAttributes(String type, double cutoff) {
+            this.prepare(type);
+            this.computeWeights(type, cutoff, 0, this.train.numAttributes());
+            this.match();
+        }
 
-            MWBMatchingAlgorithm mwbm =
-                new MWBMatchingAlgorithm(this.train.numAttributes(), this.test.numAttributes());
-
+        /**
+         * <p>
+         * Prepares the attribute columns for the similarity tests. For Spearman's rank correlation,
+         * the bigger data set is sampled and the ranks of the columns are calculated. For the
+         * Kolmogorov-Smirnov test and the percentiles, the columns are sorted. This is only done
+         * once per attribute, not once per pair of attributes.
+         * </p>
+         *
+         * @param type
+         *            Type of matching. Current currently supports Spearman's rank correlation,
+         *            Kolomogorov-Smirnoff tests, and percentile based matching.
+         */
+        void prepare(String type) {
+            this.train_columns = new double[this.train.numAttributes()][];
+            this.test_columns = new double[this.test.numAttributes()][];
             if (type.equals("spearman")) {
-                this.spearmansRankCorrelation(cutoff, mwbm);
-            }
-            else if (type.equals("ks")) {
-                this.kolmogorovSmirnovTest(cutoff, mwbm);
+                // size has to be the same so we randomly sample the number of the smaller sample
+                // from the big sample
+                if (this.train.size() > this.test.size()) {
+                    this.sample(this.train, this.test, this.train_values);
+                }
+                else if (this.test.size() > this.train.size()) {
+                    this.sample(this.test, this.train, this.test_values);
+                }
+                NaturalRanking ranking = new NaturalRanking();
+                for (int i = 0; i < this.train_columns.length; i++) {
+                    if (this.train.classIndex() != i) {
+                        this.train_columns[i] = ranking.rank(this.train_values.get(i));
+                    }
+                }
+                for (int j = 0; j < this.test_columns.length; j++) {
+                    if (this.test.classIndex() != j) {
+                        this.test_columns[j] = ranking.rank(this.test_values.get(j));
+                    }
+                }
             }
-            else if (type.equals("percentile")) {
-                this.percentiles(cutoff, mwbm);
+            else if (type.equals("ks") || type.equals("percentile")) {
+                for (int i = 0; i < this.train_columns.length; i++) {
+                    if (this.train.classIndex() != i) {
+                        this.train_columns[i] = getSortedColumn(this.train_values.get(i));
+                    }
+                }
+                for (int j = 0; j < this.test_columns.length; j++) {
+                    if (this.test.classIndex() != j) {
+                        this.test_columns[j] = getSortedColumn(this.test_values.get(j));
+                    }
+                }
             }
             else {
                 throw new RuntimeException("unknown matching method");
             }
+            this.weights = new double[this.train.numAttributes()][this.test.numAttributes()];
+        }
+
+        /**
+         * <p>
+         * Calculates the matching scores for a block of training attributes. Requires that the
+         * columns were prepared with {@link #prepare(String)}. Blocks of different rows can be
+         * calculated concurrently.
+         * </p>
+         *
+         * @param type
+         *            Type of matching. Current currently supports Spearman's rank correlation,
+         *            Kolomogorov-Smirnoff tests, and percentile based matching.
+         * @param cutoff
+         *            cutoff for matching
+         * @param fromRow
+         *            first training attribute of the block (inclusive)
+         * @param toRow
+         *            last training attribute of the block (exclusive)
+         */
+        void computeWeights(String type, double cutoff, int fromRow, int toRow) {
+            KolmogorovSmirnovTest ks = new KolmogorovSmirnovTest();
+            PearsonsCorrelation pearson = new PearsonsCorrelation();
+            for (int i = fromRow; i < toRow; i++) {
+                for (int j = 0; j < this.test.numAttributes(); j++) {
+                    // negative infinity counts as not present, we do this so we don't have to map
+                    // between attribute indexes in weka
+                    // and the result of the mwbm computation
+                    this.weights[i][j] = Double.NEGATIVE_INFINITY;
+
+                    // class attributes are not relevant
+                    if (this.test.classIndex() == j) {
+                        continue;
+                    }
+                    if (this.train.classIndex() == i) {
+                        continue;
+                    }
+
+                    double score;
+                    if (type.equals("spearman")) {
+                        // Spearman's rank correlation is the Pearson correlation of the ranks
+                        score = pearson.correlation(this.train_columns[i], this.test_columns[j]);
+                    }
+                    else if (type.equals("ks")) {
+                        score = kolmogorovSmirnovP(ks, this.train_columns[i], this.test_columns[j]);
+                    }
+                    else {
+                        score = percentileScore(this.train_columns[i], this.test_columns[j]);
+                    }
+                    if (score > cutoff) {
+                        this.weights[i][j] = score;
+                    }
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Determines the maximum weight bipartite matching of the attributes based on the matching
+         * scores calculated with {@link #computeWeights(String, double, int, int)}.
+         * </p>
+         */
+        @SuppressWarnings("boxing")
+        void match() {
+            MWBMatchingAlgorithm mwbm =
+                new MWBMatchingAlgorithm(this.train.numAttributes(), this.test.numAttributes());
+            this.setWeights(mwbm);
 
             // resulting maximal match gets assigned to this.attributes
             int[] result = mwbm.getMatching();
@@ -596,6 +934,22 @@ public class MetricMatchingTraining extends WekaBaseTraining
             }
         }
 
+        /**
+         * <p>
+         * Passes the calculated matching scores to the matching strategy.
+         * </p>
+         *
+         * @param mwbm
+         *            matching strategy
+         */
+        private void setWeights(MWBMatchingAlgorithm mwbm) {
+            for (int i = 0; i < this.weights.length; i++) {
+                for (int j = 0; j < this.weights[i].length; j++) {
+                    mwbm.setWeight(i, j, this.weights[i][j]);
+                }
+            }
+        }
+
         /**
          * Calculates the Percentiles of the source and target metrics.
          * 
@@ -605,49 +959,39 @@ public class MetricMatchingTraining extends WekaBaseTraining
          *            matching strategy
          */
         public void percentiles(double cutoff, MWBMatchingAlgorithm mwbm) {
-            for (int i = 0; i < this.train.numAttributes(); i++) {
-                for (int j = 0; j < this.test.numAttributes(); j++) {
-                    // negative infinity counts as not present, we do this so we don't have to map
-                    // between attribute indexes in weka
-                    // and the result of the mwbm computation
-                    mwbm.setWeight(i, j, Double.NEGATIVE_INFINITY);
-
-                    // class attributes are not relevant
-                    if (this.test.classIndex() == j) {
-                        continue;
-                    }
-                    if (this.train.classIndex() == i) {
-                        continue;
-                    }
-
-                    // get percentiles
-                    double trainvals[] = this.train_values.get(i);
-                    double testvals[] = this.test_values.get(j);
-
-                    Arrays.sort(trainvals);
-                    Arrays.sort(testvals);
-
-                    // percentiles
-                    double train_p;
-                    double test_p;
-                    double score = 0.0;
-                    for (int p = 1; p <= 9; p++) {
-                        train_p = trainvals[(int) Math.ceil(trainvals.length * (p / 100))];
-                        test_p = testvals[(int) Math.ceil(testvals.length * (p / 100))];
-
-                        if (train_p > test_p) {
-                            score += test_p / train_p;
-                        }
-                        else {
-                            score += train_p / test_p;
-                        }
-                    }
+            this.prepare("percentile");
+            this.computeWeights("percentile", cutoff, 0, this.train.numAttributes());
+            this.setWeights(mwbm);
+        }
 
-                    if (score > cutoff) {
-                        mwbm.setWeight(i, j, score);
-                    }
+        /**
+         * <p>
+         * Calculates the percentile score of two sorted attribute columns.
+         * </p>
+         *
+         * @param trainvals
+         *            sorted training values
+         * @param testvals
+         *            sorted test values
+         * @return percentile score
+         */
+        private double percentileScore(double[] trainvals, double[] testvals) {
+            // percentiles
+            double train_p;
+            double test_p;
+            double score = 0.0;
+            for (int p = 1; p <= 9; p++) {
+                train_p = trainvals[(int) Math.ceil(trainvals.length * (p / 100))];
+                test_p = testvals[(int) Math.ceil(testvals.length * (p / 100))];
+
+                if (train_p > test_p) {
+                    score += test_p / train_p;
+                }
+                else {
+                    score += train_p / test_p;
                 }
             }
+            return score;
         }
 
         /**
@@ -661,41 +1005,9 @@ public class MetricMatchingTraining extends WekaBaseTraining
          *            matching strategy
          */
         public void spearmansRankCorrelation(double cutoff, MWBMatchingAlgorithm mwbm) {
-            double p = 0;
-
-            SpearmansCorrelation t = new SpearmansCorrelation();
-
-            // size has to be the same so we randomly sample the number of the smaller sample from
-            // the big sample
-            if (this.train.size() > this.test.size()) {
-                this.sample(this.train, this.test, this.train_values);
-            }
-            else if (this.test.size() > this.train.size()) {
-                this.sample(this.test, this.train, this.test_values);
-            }
-
-            // try out possible attribute combinations
-            for (int i = 0; i < this.train.numAttributes(); i++) {
-                for (int j = 0; j < this.test.numAttributes(); j++) {
-                    // negative infinity counts as not present, we do this so we don't have to map
-                    // between attribute indexs in weka
-                    // and the result of the mwbm computation
-                    mwbm.setWeight(i, j, Double.NEGATIVE_INFINITY);
-
-                    // class attributes are not relevant
-                    if (this.test.classIndex() == j) {
-                        continue;
-                    }
-                    if (this.train.classIndex() == i) {
-                        continue;
-                    }
-
-                    p = t.correlation(this.train_values.get(i), this.test_values.get(j));
-                    if (p > cutoff) {
-                        mwbm.setWeight(i, j, p);
-                    }
-                }
-            }
+            this.prepare("spearman");
+            this.computeWeights("spearman", cutoff, 0, this.train.numAttributes());
+            this.setWeights(mwbm);
         }
 
         /**
@@ -749,40 +1061,43 @@ public class MetricMatchingTraining extends WekaBaseTraining
          *            matching strategy
          */
         public void kolmogorovSmirnovTest(double cutoff, MWBMatchingAlgorithm mwbm) {
-            double p = 0;
-
-            KolmogorovSmirnovTest t = new KolmogorovSmirnovTest();
-            for (int i = 0; i < this.train.numAttributes(); i++) {
-                for (int j = 0; j < this.test.numAttributes(); j++) {
-                    // negative infinity counts as not present, we do this so we don't have to map
-                    // between attribute indexs in weka
-                    // and the result of the mwbm computation
-                    mwbm.setWeight(i, j, Double.NEGATIVE_INFINITY);
-
-                    // class attributes are not relevant
-                    if (this.test.classIndex() == j) {
-                        continue;
-                    }
-                    if (this.train.classIndex() == i) {
-                        continue;
-                    }
+            this.prepare("ks");
+            this.computeWeights("ks", cutoff, 0, this.train.numAttributes());
+            this.setWeights(mwbm);
+        }
 
-                    // this may invoke exactP on small sample sizes which will not terminate in all
-                    // cases
-                    // p = t.kolmogorovSmirnovTest(this.train_values.get(i),
-                    // this.test_values.get(j), false);
-
-                    // this uses approximateP everytime
-                    p = t.approximateP(
-                                       t.kolmogorovSmirnovStatistic(this.train_values.get(i),
-                                                                    this.test_values.get(j)),
-                                       this.train_values.get(i).length,
-                                       this.test_values.get(j).length);
-                    if (p > cutoff) {
-                        mwbm.setWeight(i, j, p);
-                    }
-                }
+        /**
+         * <p>
+         * Calculates the p-value of the Kolmogorov-Smirnov test of two sorted attribute columns.
+         * </p>
+         *
+         * @param t
+         *            the test
+         * @param trainvals
+         *            sorted training values
+         * @param testvals
+         *            sorted test values
+         * @return p-value
+         */
+        private double kolmogorovSmirnovP(KolmogorovSmirnovTest t,
+                                          double[] trainvals,
+                                          double[] testvals)
+        {
+            // this may invoke exactP on small sample sizes which will not terminate in all
+            // cases
+            // p = t.kolmogorovSmirnovTest(this.train_values.get(i),
+            // this.test_values.get(j), false);
+
+            double d;
+            if (trainvals.length < 2 || testvals.length < 2) {
+                // the test rejects these samples
+                d = t.kolmogorovSmirnovStatistic(trainvals, testvals);
+            }
+            else {
+                d = kolmogorovSmirnovStatistic(trainvals, testvals);
             }
+            // this uses approximateP everytime
+            return t.approximateP(d, trainvals.length, testvals.length);
         }
     }
 
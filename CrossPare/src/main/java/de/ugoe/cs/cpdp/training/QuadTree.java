@@ -30,6 +30,10 @@ import de.ugoe.cs.cpdp.training.WekaLocalFQTraining.QuadTreePayload;
  * QuadTree gets a list of instances and then recursively split them into 4 children For this it
  * uses the median of the 2 values x,y.
  * </p>
+ * <p>
+ * The global state of the tree (size, alpha, and the clusters) is stored in the root of the tree.
+ * Hence, different trees can be used concurrently.
+ * </p>
  * 
  * @author Alexander Trautsch
  */
@@ -40,6 +44,11 @@ public class QuadTree {
      */
     private QuadTree parent = null;
 
+    /**
+     * root of the tree, holds the global state of the tree
+     */
+    private final QuadTree root;
+
     /**
      * north-west quadrant
      */
@@ -86,25 +95,26 @@ public class QuadTree {
     public static boolean verbose = false;
 
     /**
-     * global size of the QuadTree.
+     * global size of the QuadTree (only used in the root).
      */
-    public static int size = 0;
+    private int size = 0;
 
     /**
-     * recursion parameter alpha
+     * recursion parameter alpha (only used in the root)
      */
-    public static double alpha = 0;
+    private double alpha = 0;
 
     /**
-     * data for each cluster
+     * data for each cluster (only used in the root)
      */
-    public static ArrayList<ArrayList<QuadTreePayload<Instance>>> ccluster =
+    private final ArrayList<ArrayList<QuadTreePayload<Instance>>> ccluster =
         new ArrayList<>();
 
     /**
      * cluster sizes (index is cluster number, {@link ArrayList} is list of boxes (x0,y0,x1,y1
+     * (only used in the root)
      */
-    public static HashMap<Integer, ArrayList<Double[][]>> csize =
+    private final HashMap<Integer, ArrayList<Double[][]>> csize =
         new HashMap<>();
 
     /**
@@ -125,9 +135,60 @@ public class QuadTree {
     @SuppressWarnings("hiding")
     public QuadTree(QuadTree parent, ArrayList<QuadTreePayload<Instance>> payload) {
         this.parent = parent;
+        this.root = (parent == null) ? this : parent.root;
         this.payload = payload;
     }
 
+    /**
+     * <p>
+     * sets the global size of the tree, i.e., the number of instances used to calculate the
+     * density
+     * </p>
+     *
+     * @param size
+     *            global size
+     */
+    @SuppressWarnings("hiding")
+    public void setTreeSize(int size) {
+        this.root.size = size;
+    }
+
+    /**
+     * <p>
+     * sets the recursion parameter alpha, i.e., the minimal number of instances of a quadrant that
+     * is split
+     * </p>
+     *
+     * @param alpha
+     *            recursion parameter
+     */
+    @SuppressWarnings("hiding")
+    public void setAlpha(double alpha) {
+        this.root.alpha = alpha;
+    }
+
+    /**
+     * <p>
+     * returns the data for each cluster determined by {@link #gridClustering(ArrayList)}
+     * </p>
+     *
+     * @return data for each cluster
+     */
+    public ArrayList<ArrayList<QuadTreePayload<Instance>>> getClusters() {
+        return this.root.ccluster;
+    }
+
+    /**
+     * <p>
+     * returns the boxes of each cluster determined by {@link #gridClustering(ArrayList)}
+     * </p>
+     *
+     * @return boxes of each cluster (x0,y0,x1,y1)
+     */
+    public HashMap<Integer, ArrayList<Double[][]>> getClusterSizes() {
+        return this.root.csize;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -167,7 +228,7 @@ public class QuadTree {
      */
     public double getDensity() {
         double dens = 0;
-        dens = (double) this.getNumbers() / QuadTree.size;
+        dens = (double) this.getNumbers() / this.root.size;
         return dens;
     }
 
@@ -413,7 +474,7 @@ public class QuadTree {
         if (QuadTree.verbose) {
             System.out.println("splitting: " + q);
         }
-        if (q.getNumbers() < QuadTree.alpha) {
+        if (q.getNumbers() < q.root.alpha) {
             return;
         }
         // exception is thrown if we would run into an endless loop (see comments in split())
@@ -586,14 +647,14 @@ public class QuadTree {
         }
 
         // 4. add to cluster
-        QuadTree.ccluster.add(current_cluster);
+        this.root.ccluster.add(current_cluster);
 
         // 5. add sizes of our current (biggest) this adds a number of sizes (all QuadTree Instances
         // belonging to this cluster)
         // we need that to classify test instances to a cluster later
-        Integer cnumber = QuadTree.ccluster.size() - 1;
-        if (QuadTree.csize.containsKey(cnumber) == false) {
-            QuadTree.csize.put(cnumber, tmpSize);
+        Integer cnumber = this.root.ccluster.size() - 1;
+        if (this.root.csize.containsKey(cnumber) == false) {
+            this.root.csize.put(cnumber, tmpSize);
         }
 
         // repeat
@@ -607,10 +668,10 @@ public class QuadTree {
      *
      */
     public void printInfo() {
-        System.out.println("we have " + ccluster.size() + " clusters");
+        System.out.println("we have " + this.root.ccluster.size() + " clusters");
 
-        for (int i = 0; i < ccluster.size(); i++) {
-            System.out.println("cluster: " + i + " size: " + ccluster.get(i).size());
+        for (int i = 0; i < this.root.ccluster.size(); i++) {
+            System.out.println("cluster: " + i + " size: " + this.root.ccluster.get(i).size());
         }
     }
 
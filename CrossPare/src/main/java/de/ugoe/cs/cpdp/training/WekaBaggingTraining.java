@@ -14,13 +14,21 @@
 
 package de.ugoe.cs.cpdp.training;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections4.list.SetUniqueList;
 
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.util.WekaUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.classifiers.AbstractClassifier;
@@ -28,12 +36,14 @@ import weka.classifiers.Classifier;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 
 /**
  * <p>
  * The first parameter is the trainer name, second parameter is class name. All subsequent
  * parameters are configuration parameters of the algorithms. Cross validation parameters always
- * come last and are prepended with -CVPARAM
+ * come last and are prepended with -CVPARAM. The classifiers for the products are trained with
+ * the number of threads defined by -threads (default: 1).
  * </p>
  * <p>
  * XML Configurations for Weka Classifiers:
@@ -43,6 +53,7 @@ import weka.core.Instances;
  * <!-- examples -->
  * <setwisetrainer name="WekaBaggingTraining" param="NaiveBayesBagging weka.classifiers.bayes.NaiveBayes" />
  * <setwisetrainer name="WekaBaggingTraining" param="LogisticBagging weka.classifiers.functions.Logistic -R 1.0E-8 -M -1" />
+ * <setwisetrainer name="WekaBaggingTraining" param="J48Bagging weka.classifiers.trees.J48 -threads 4" />
  * }
  * </pre>
  * </p>
@@ -57,6 +68,36 @@ public class WekaBaggingTraining extends WekaBaseTraining implements ISetWiseTra
     @SuppressWarnings("hiding")
 	private final TraindatasetBagging classifier = new TraindatasetBagging();
 
+    /**
+     * number of threads used to train the classifiers for the products (default: 1)
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to train the classifiers for the products.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see de.ugoe.cs.cpdp.training.WekaBaseTraining#setParameter(java.lang.String)
+     */
+    @Override
+    public void setParameter(String parameters) {
+        String[] options = parameters.split(" ");
+        this.numThreads = CrosspareUtils.parseNumThreads(options);
+        super.setParameter(Utils.joinOptions(options));
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -99,14 +140,10 @@ public class WekaBaggingTraining extends WekaBaseTraining implements ISetWiseTra
         private static final long serialVersionUID = 1L;
 
         /**
-         * internal storage of the training data
-         */
-        private List<Instances> trainingData = null;
-
-        /**
-         * bagging classifier for each training data set
+         * bagging classifier for each training data set together with the information required to
+         * project instances to the attributes of the training data set
          */
-        private List<Classifier> classifiers = null;
+        private List<BaggingMember> members = null;
 
         /*
          * (non-Javadoc)
@@ -115,48 +152,65 @@ public class WekaBaggingTraining extends WekaBaseTraining implements ISetWiseTra
          */
         @Override
         public double classifyInstance(Instance instance) {
-            if (this.classifiers == null) {
+            if (this.members == null) {
                 return 0.0;
             }
 
             double classification = 0.0;
-            for (int i = 0; i < this.classifiers.size(); i++) {
-                Classifier currentClassifier = this.classifiers.get(i);
-                Instances traindata = this.trainingData.get(i);
-
-                Set<String> attributeNames = new HashSet<>();
-                for (int j = 0; j < traindata.numAttributes(); j++) {
-                    attributeNames.add(traindata.attribute(j).name());
-                }
+            for (BaggingMember member : this.members) {
+                int[] projection = member.getProjection(instance.dataset());
+                classification += member.classify(member.project(instance, projection));
+            }
+            classification /= this.members.size();
+            return (classification >= 0.5) ? 1.0 : 0.0;
+        }
 
-                double[] values = new double[traindata.numAttributes()];
-                int index = 0;
-                for (int j = 0; j < instance.numAttributes(); j++) {
-                    if (attributeNames.contains(instance.attribute(j).name())) {
-                        values[index] = instance.value(j);
-                        index++;
+        /**
+         * <p>
+         * Classifies all instances at once. Each instance is projected only once to the attributes
+         * of each training data set.
+         * </p>
+         * 
+         * @see weka.classifiers.AbstractClassifier#distributionsForInstances(weka.core.Instances)
+         */
+        @Override
+        public double[][] distributionsForInstances(Instances instances) {
+            double[] classifications = new double[instances.numInstances()];
+            if (this.members != null) {
+                for (BaggingMember member : this.members) {
+                    int[] projection = member.getProjection(instances);
+                    for (int i = 0; i < instances.numInstances(); i++) {
+                        classifications[i] +=
+                            member.classify(member.project(instances.instance(i), projection));
                     }
                 }
-
-                Instances tmp = new Instances(traindata);
-                tmp.clear();
-                Instance instCopy = new DenseInstance(instance.weight(), values);
-                instCopy.setDataset(tmp);
-                try {
-                    classification += currentClassifier.classifyInstance(instCopy);
-                }
-                catch (Exception e) {
-                    throw new RuntimeException("bagging classifier could not classify an instance",
-                                               e);
+                for (int i = 0; i < classifications.length; i++) {
+                    classifications[i] /= this.members.size();
+                    classifications[i] = (classifications[i] >= 0.5) ? 1.0 : 0.0;
                 }
             }
-            classification /= this.classifiers.size();
-            return (classification >= 0.5) ? 1.0 : 0.0;
+            double[][] distributions = new double[instances.numInstances()][];
+            for (int i = 0; i < instances.numInstances(); i++) {
+                distributions[i] = new double[instances.numClasses()];
+                distributions[i][(int) classifications[i]] = 1.0;
+            }
+            return distributions;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see weka.classifiers.AbstractClassifier#implementsMoreEfficientBatchPrediction()
+         */
+        @Override
+        public boolean implementsMoreEfficientBatchPrediction() {
+            return true;
         }
 
         /**
          * <p>
-         * trains a new dataset wise bagging classifier
+         * trains a new dataset wise bagging classifier; the classifiers for the products can be
+         * trained in parallel
          * </p>
          *
          * @param trainversionSet
@@ -166,15 +220,28 @@ public class WekaBaggingTraining extends WekaBaseTraining implements ISetWiseTra
          *             product
          */
         public void buildClassifier(SetUniqueList<SoftwareVersion> trainversionSet) throws Exception {
-            this.classifiers = new LinkedList<>();
-            this.trainingData = new LinkedList<>();
+            List<Callable<BaggingMember>> tasks = new ArrayList<>(trainversionSet.size());
             for (SoftwareVersion trainversion : trainversionSet) {
-                Instances traindata = trainversion.getInstances();
-                Classifier currentClassifier = setupClassifier();
-                currentClassifier = WekaUtils.buildClassifier(currentClassifier, traindata);
-                this.classifiers.add(currentClassifier);
-                this.trainingData.add(new Instances(traindata));
+                tasks.add(() -> createMember(trainversion.getInstances()));
+            }
+            List<BaggingMember> newMembers = new ArrayList<>(tasks.size());
+            ExecutorService threadPool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(tasks.size(), WekaBaggingTraining.this.numThreads)));
+            try {
+                for (Future<BaggingMember> member : threadPool.invokeAll(tasks)) {
+                    newMembers.add(member.get());
+                }
             }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            finally {
+                threadPool.shutdown();
+            }
+            this.members = newMembers;
         }
 
         /*
@@ -184,12 +251,152 @@ public class WekaBaggingTraining extends WekaBaseTraining implements ISetWiseTra
          */
         @Override
         public void buildClassifier(Instances traindata) throws Exception {
-            this.classifiers = new LinkedList<>();
-            this.trainingData = new LinkedList<>();
+            List<BaggingMember> newMembers = new ArrayList<>(1);
+            newMembers.add(createMember(traindata));
+            this.members = newMembers;
+        }
+
+        /**
+         * <p>
+         * trains the classifier for a training data set
+         * </p>
+         *
+         * @param traindata
+         *            the training data
+         * @return the trained member of the bagging classifier
+         */
+        private BaggingMember createMember(Instances traindata) {
             Classifier currentClassifier = setupClassifier();
             currentClassifier = WekaUtils.buildClassifier(currentClassifier, traindata);
-            this.classifiers.add(currentClassifier);
-            this.trainingData.add(new Instances(traindata));
+            return new BaggingMember(currentClassifier, traindata);
+        }
+    }
+
+    /**
+     * <p>
+     * Classifier of the bagging for one training data set. Stores an empty header of the training
+     * data and the names of its attributes, such that instances can be projected to the training
+     * data without copying the training data.
+     * </p>
+     * 
+     * @author Steffen Herbold
+     */
+    private static class BaggingMember implements Serializable {
+
+        /**
+         * default serialization ID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * classifier trained on the training data
+         */
+        private final Classifier classifier;
+
+        /**
+         * empty header of the training data
+         */
+        private final Instances header;
+
+        /**
+         * names of the attributes of the training data
+         */
+        private final Set<String> attributeNames;
+
+        /**
+         * header for which the last projection was computed
+         */
+        private transient Instances projectionHeader = null;
+
+        /**
+         * last computed projection
+         */
+        private transient int[] projection = null;
+
+        /**
+         * <p>
+         * Constructor. Creates a new BaggingMember.
+         * </p>
+         *
+         * @param classifier
+         *            classifier trained on the training data
+         * @param traindata
+         *            the training data
+         */
+        @SuppressWarnings("hiding")
+        BaggingMember(Classifier classifier, Instances traindata) {
+            this.classifier = classifier;
+            this.header = new Instances(traindata, 0);
+            this.attributeNames = new HashSet<>();
+            for (int j = 0; j < traindata.numAttributes(); j++) {
+                this.attributeNames.add(traindata.attribute(j).name());
+            }
+        }
+
+        /**
+         * <p>
+         * Determines the indizes of the attributes of the instances that are also part of the
+         * training data. The projection is cached for the last header.
+         * </p>
+         *
+         * @param instancesHeader
+         *            header of the instances that are projected
+         * @return indizes of the attributes that are used for the classification
+         */
+        synchronized int[] getProjection(Instances instancesHeader) {
+            if (this.projection == null || this.projectionHeader != instancesHeader) {
+                int[] newProjection = new int[this.header.numAttributes()];
+                int index = 0;
+                for (int j = 0; j < instancesHeader.numAttributes(); j++) {
+                    if (this.attributeNames.contains(instancesHeader.attribute(j).name())) {
+                        newProjection[index] = j;
+                        index++;
+                    }
+                }
+                this.projection = Arrays.copyOf(newProjection, index);
+                this.projectionHeader = instancesHeader;
+            }
+            return this.projection;
+        }
+
+        /**
+         * <p>
+         * Projects an instance to the attributes of the training data.
+         * </p>
+         *
+         * @param instance
+         *            the instance
+         * @param projection
+         *            the projection of the header of the instance
+         * @return the projected instance
+         */
+        @SuppressWarnings("hiding")
+        Instance project(Instance instance, int[] projection) {
+            double[] values = new double[this.header.numAttributes()];
+            for (int j = 0; j < projection.length; j++) {
+                values[j] = instance.value(projection[j]);
+            }
+            Instance instCopy = new DenseInstance(instance.weight(), values);
+            instCopy.setDataset(this.header);
+            return instCopy;
+        }
+
+        /**
+         * <p>
+         * Classifies a projected instance.
+         * </p>
+         *
+         * @param instance
+         *            the projected instance
+         * @return the classification
+         */
+        double classify(Instance instance) {
+            try {
+                return this.classifier.classifyInstance(instance);
+            }
+            catch (Exception e) {
+                throw new RuntimeException("bagging classifier could not classify an instance", e);
+            }
         }
     }
 }
@@ -14,15 +14,17 @@
 
 package de.ugoe.cs.cpdp.training;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.ugoe.cs.cpdp.wekaclassifier.ParallelCVParameterSelection;
 import weka.core.OptionHandler;
 import weka.classifiers.Classifier;
 import weka.classifiers.bayes.BayesNet;
-import weka.classifiers.meta.CVParameterSelection;
 import weka.classifiers.meta.Vote;
 
 /**
@@ -39,6 +41,11 @@ import weka.classifiers.meta.Vote;
  * <trainer name="WekaTraining" param="RandomForestLocal weka.classifiers.trees.RandomForest -CVPARAM I 5 25 5"/>
  * }
  * </pre>
+ * <p>
+ * The parameters are selected with a {@link ParallelCVParameterSelection}. If the params contain
+ * -CVHALVING, grid points are abandoned with successive halving. The grid points are evaluated
+ * with the number of threads defined by -CVTHREADS (default: 1).
+ * </p>
  * 
  * @author Alexander Trautsch
  */
@@ -103,6 +110,17 @@ public abstract class WekaBaseTraining implements IWekaCompatibleTrainer {
         return this.classifier;
     }
 
+    /**
+     * <p>
+     * returns the qualified class name of the Weka classifier
+     * </p>
+     *
+     * @return class name of the classifier
+     */
+    public String getClassifierClassName() {
+        return this.classifierClassName;
+    }
+
     /**
      * <p>
      * helper function that sets up the Weka classifier including its parameters
@@ -118,18 +136,30 @@ public abstract class WekaBaseTraining implements IWekaCompatibleTrainer {
             @SuppressWarnings("unchecked")
 			Classifier obj = (Classifier) c.getDeclaredConstructor().newInstance();
 
+            // Filter out -CVHALVING and -CVTHREADS, these only define how the parameters are
+            // selected
+            List<String> paramList = new ArrayList<>(Arrays.asList(this.classifierParams));
+            boolean successiveHalving = paramList.remove("-CVHALVING");
+            int numThreads = 1;
+            int threadsIndex = paramList.indexOf("-CVTHREADS");
+            if (threadsIndex >= 0 && threadsIndex + 1 < paramList.size()) {
+                numThreads = Integer.parseInt(paramList.remove(threadsIndex + 1));
+                paramList.remove(threadsIndex);
+            }
+            String[] allParams = paramList.toArray(new String[paramList.size()]);
+
             // Filter out -CVPARAM, these are special because they do not belong to the Weka
             // classifier class as parameters
-            String[] param = Arrays.copyOf(this.classifierParams, this.classifierParams.length);
+            String[] param = Arrays.copyOf(allParams, allParams.length);
             String[] cvparam = { };
             boolean cv = false;
-            for (int i = 0; i < this.classifierParams.length; i++) {
-                if (this.classifierParams[i].equals("-CVPARAM")) {
+            for (int i = 0; i < allParams.length; i++) {
+                if (allParams[i].equals("-CVPARAM")) {
                     // rest of array are cvparam
-                    cvparam = Arrays.copyOfRange(this.classifierParams, i + 1, this.classifierParams.length);
+                    cvparam = Arrays.copyOfRange(allParams, i + 1, allParams.length);
 
                     // before this we have normal params
-                    param = Arrays.copyOfRange(this.classifierParams, 0, i);
+                    param = Arrays.copyOfRange(allParams, 0, i);
 
                     cv = true;
                     break;
@@ -151,9 +181,11 @@ public abstract class WekaBaseTraining implements IWekaCompatibleTrainer {
             // we have cross val params
             // cant check on cvparam.length here, it may not be initialized
             if (cv) {
-                final CVParameterSelection ps = new CVParameterSelection();
+                final ParallelCVParameterSelection ps = new ParallelCVParameterSelection();
                 ps.setClassifier(obj);
                 ps.setNumFolds(5);
+                ps.setSuccessiveHalving(successiveHalving);
+                ps.setNumThreads(numThreads);
                 // ps.addCVParameter("I 5 25 5");
                 for (int i = 1; i < cvparam.length / 4; i++) {
                     ps.addCVParameter(Arrays.asList(Arrays.copyOfRange(cvparam, 0, 4 * i))
@@ -0,0 +1,388 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
+import de.ugoe.cs.cpdp.util.WekaUtils;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Set-wise training that avoids retraining the classifier for each leave-one-out set of training
+ * versions. The classifier is trained once on the union of all training versions that were seen so
+ * far. The model for a set of training versions is then derived from the union model by removing
+ * the instances of the versions that are not part of the set. This is possible for classifiers
+ * whose model consists of sums of weighted sufficient statistics, i.e., the normal estimators and
+ * the counts of {@link NaiveBayes} and {@link weka.classifiers.bayes.NaiveBayesUpdateable}.
+ * Instances are removed by an update with their negated weight. Versions that are new are added to
+ * the union model by a regular update.
+ * </p>
+ * <p>
+ * The derived models match a full retraining up to the numeric precision of the normal estimators
+ * of {@link NaiveBayes}, which is determined from the training data of the union model. With the
+ * parameter -VERIFY &lt;tolerance&gt;, each derived model is compared with a full retraining on the
+ * training data and the retrained model is used if any class probability differs by more than the
+ * tolerance. All other classifiers, as well as {@link NaiveBayes} with kernel estimators or
+ * supervised discretization, are always fully retrained.
+ * </p>
+ * <p>
+ * XML Configurations:
+ *
+ * <pre>
+ * {@code
+ * <!-- examples -->
+ * <setwisetrainer name="WekaDecrementalTraining" param="NaiveBayes weka.classifiers.bayes.NaiveBayesUpdateable" />
+ * <setwisetrainer name="WekaDecrementalTraining" param="NaiveBayes weka.classifiers.bayes.NaiveBayes -VERIFY 0.001" />
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class WekaDecrementalTraining extends WekaBaseTraining implements ISetWiseTrainingStrategy {
+
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * tolerance for the verification of derived models; negative if the models are not verified
+     */
+    private double verificationTolerance = -1.0;
+
+    /**
+     * model trained on the union of all versions in {@link #unionVersions}
+     */
+    private Classifier unionModel = null;
+
+    /**
+     * training data of the versions that are part of the union model
+     */
+    private final Map<VersionKey, Instances> unionVersions = new LinkedHashMap<>();
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see de.ugoe.cs.cpdp.training.WekaBaseTraining#setParameter(java.lang.String)
+     */
+    @Override
+    public void setParameter(String parameters) {
+        super.setParameter(parameters);
+        List<String> paramList = new ArrayList<>(Arrays.asList(this.classifierParams));
+        int verifyIndex = paramList.indexOf("-VERIFY");
+        if (verifyIndex >= 0) {
+            this.verificationTolerance = Double.parseDouble(paramList.get(verifyIndex + 1));
+            paramList.subList(verifyIndex, verifyIndex + 2).clear();
+            this.classifierParams = paramList.toArray(new String[paramList.size()]);
+        }
+        this.unionModel = null;
+        this.unionVersions.clear();
+    }
+
+    /**
+     * <p>
+     * Sets the tolerance for the verification of derived models against a full retraining.
+     * </p>
+     *
+     * @param verificationTolerance
+     *            maximal difference of the class probabilities; negative to disable the
+     *            verification
+     */
+    @SuppressWarnings("hiding")
+    public void setVerificationTolerance(double verificationTolerance) {
+        this.verificationTolerance = verificationTolerance;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * de.ugoe.cs.cpdp.training.ISetWiseTrainingStrategy#apply(org.apache.commons.collections4.list.
+     * SetUniqueList)
+     */
+    @Override
+    public void apply(SetUniqueList<SoftwareVersion> trainversionSet) {
+        Classifier template = setupClassifier();
+        if (template == null) {
+            LOGGER.error("classifier of WekaDecrementalTraining is null");
+            throw new RuntimeException("classifier of WekaDecrementalTraining is null");
+        }
+        Instances traindata = CrosspareUtils.makeSingleTrainingSet(trainversionSet);
+        if (!isDecremental(template)) {
+            this.classifier = WekaUtils.buildClassifier(template, traindata);
+            return;
+        }
+
+        Map<VersionKey, Instances> versions = new LinkedHashMap<>();
+        for (SoftwareVersion trainversion : trainversionSet) {
+            versions.put(new VersionKey(trainversion), trainversion.getInstances());
+        }
+        boolean derived = false;
+        try {
+            if (this.unionModel == null ||
+                !this.unionVersions.values().iterator().next().equalHeaders(traindata))
+            {
+                buildUnionModel(template, traindata, versions);
+                if (this.unionModel == null) {
+                    return;
+                }
+            }
+            else {
+                for (Map.Entry<VersionKey, Instances> entry : versions.entrySet()) {
+                    if (!this.unionVersions.containsKey(entry.getKey())) {
+                        update(this.unionModel, entry.getValue(), 1.0);
+                        this.unionVersions.put(entry.getKey(), new Instances(entry.getValue()));
+                        derived = true;
+                    }
+                }
+            }
+
+            List<Instances> removed = new ArrayList<>();
+            int numRemoved = 0;
+            for (Map.Entry<VersionKey, Instances> entry : this.unionVersions.entrySet()) {
+                if (!versions.containsKey(entry.getKey())) {
+                    removed.add(entry.getValue());
+                    numRemoved += entry.getValue().size();
+                }
+            }
+            if (removed.isEmpty()) {
+                this.classifier = this.unionModel;
+            }
+            else if (numRemoved > traindata.size()) {
+                // removing the instances is more expensive than retraining
+                this.classifier = WekaUtils.buildClassifier(template, traindata);
+                return;
+            }
+            else {
+                Classifier derivedModel = AbstractClassifier.makeCopy(this.unionModel);
+                for (Instances data : removed) {
+                    update(derivedModel, data, -1.0);
+                }
+                this.classifier = derivedModel;
+                derived = true;
+            }
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        if (derived && this.verificationTolerance >= 0.0) {
+            verify(template, traindata);
+        }
+    }
+
+    /**
+     * <p>
+     * Trains the union model on the training data and resets the versions that are part of it. If
+     * the training falls back to a classifier that cannot be updated, the union model is
+     * discarded and only the current classifier is set.
+     * </p>
+     *
+     * @param template
+     *            untrained classifier
+     * @param traindata
+     *            training data of the versions
+     * @param versions
+     *            the versions
+     */
+    private void buildUnionModel(Classifier template,
+                                 Instances traindata,
+                                 Map<VersionKey, Instances> versions)
+    {
+        Classifier model = WekaUtils.buildClassifier(template, traindata);
+        this.unionVersions.clear();
+        if (isDecremental(model)) {
+            this.unionModel = model;
+            for (Map.Entry<VersionKey, Instances> entry : versions.entrySet()) {
+                this.unionVersions.put(entry.getKey(), new Instances(entry.getValue()));
+            }
+        }
+        else {
+            this.unionModel = null;
+        }
+        this.classifier = model;
+    }
+
+    /**
+     * <p>
+     * Compares the current classifier with a full retraining on the training data. The retrained
+     * classifier replaces the current classifier if the class probabilities of any training
+     * instance differ by more than the verification tolerance.
+     * </p>
+     *
+     * @param template
+     *            untrained classifier
+     * @param traindata
+     *            training data
+     */
+    private void verify(Classifier template, Instances traindata) {
+        try {
+            Classifier retrained =
+                WekaUtils.buildClassifier(AbstractClassifier.makeCopy(template), traindata);
+            double maxDifference = 0.0;
+            for (Instance instance : traindata) {
+                double[] expected = retrained.distributionForInstance(instance);
+                double[] actual = this.classifier.distributionForInstance(instance);
+                for (int j = 0; j < expected.length; j++) {
+                    maxDifference = Math.max(maxDifference, Math.abs(expected[j] - actual[j]));
+                }
+            }
+            if (maxDifference > this.verificationTolerance) {
+                LOGGER.warn(String.format(
+                                          "derived model differs from retraining by %f, using retrained model",
+                                          maxDifference));
+                this.classifier = retrained;
+            }
+            else {
+                LOGGER.debug(String.format("derived model differs from retraining by %f",
+                                           maxDifference));
+            }
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Checks if the model of a classifier can be updated with negative weights. Other updateable
+     * classifiers, e.g., {@link weka.classifiers.bayes.NaiveBayesMultinomialUpdateable}, reject
+     * negative weights or do not consist of sums of the instances.
+     * </p>
+     *
+     * @param classifier
+     *            the classifier
+     * @return true if instances can be removed from the model
+     */
+    private static boolean isDecremental(Classifier classifier) {
+        if (!(classifier instanceof NaiveBayes)) {
+            return false;
+        }
+        NaiveBayes naiveBayes = (NaiveBayes) classifier;
+        return !naiveBayes.getUseKernelEstimator() && !naiveBayes.getUseSupervisedDiscretization();
+    }
+
+    /**
+     * <p>
+     * Adds or removes the instances of a data set to or from a model.
+     * </p>
+     *
+     * @param model
+     *            the model
+     * @param data
+     *            the data
+     * @param sign
+     *            1.0 to add the instances, -1.0 to remove them
+     * @throws Exception
+     *             thrown if the update fails
+     */
+    private static void update(Classifier model, Instances data, double sign) throws Exception {
+        for (Instance instance : data) {
+            Instance weighted = (Instance) instance.copy();
+            weighted.setWeight(sign * instance.weight());
+            ((NaiveBayes) model).updateClassifier(weighted);
+        }
+    }
+
+    /**
+     * <p>
+     * Identifies a version by its name and content, because the versions are copied for each
+     * experiment run and may be changed by the set-wise data processing.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class VersionKey {
+
+        /**
+         * dataset, project, and version name
+         */
+        private final String name;
+
+        /**
+         * number of instances
+         */
+        private final int size;
+
+        /**
+         * hash of the values and weights of the instances
+         */
+        private final long contentHash;
+
+        /**
+         * <p>
+         * Constructor. Creates a new key for a version.
+         * </p>
+         *
+         * @param version
+         *            the version
+         */
+        VersionKey(SoftwareVersion version) {
+            this.name = version.getDataset() + "/" + version.getProject() + "/" +
+                version.getVersion();
+            Instances data = version.getInstances();
+            this.size = data.size();
+            long hash = 1L;
+            for (Instance instance : data) {
+                hash = 31L * hash + Arrays.hashCode(instance.toDoubleArray());
+                hash = 31L * hash + Double.hashCode(instance.weight());
+            }
+            this.contentHash = hash;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof VersionKey)) {
+                return false;
+            }
+            VersionKey other = (VersionKey) obj;
+            return this.size == other.size && this.contentHash == other.contentHash &&
+                this.name.equals(other.name);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, Integer.valueOf(this.size),
+                                Long.valueOf(this.contentHash));
+        }
+    }
+}
@@ -14,9 +14,7 @@
 
 package de.ugoe.cs.cpdp.training;
 
-import java.util.LinkedList;
-import java.util.List;
-
+import de.ugoe.cs.cpdp.util.HammingIndex;
 import de.ugoe.cs.cpdp.util.WekaUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.classifiers.AbstractClassifier;
@@ -28,6 +26,10 @@ import weka.core.Instances;
  * <p>
  * Implements training following the LASER classification scheme.
  * </p>
+ * <p>
+ * The nearest neighbors with respect to the Hamming distance are determined with a
+ * {@link HammingIndex}. The nearest neighbors of the training instances are only determined once.
+ * </p>
  * 
  * @author Steffen Herbold
  */
@@ -87,57 +89,33 @@ public class WekaLASERTraining extends WekaBaseTraining implements ITrainingStra
          */
         private Instances traindata = null;
 
+        /**
+         * Index of the training data for the NN analysis.
+         */
+        private HammingIndex index = null;
+
+        /**
+         * Nearest neighbors of the training instances within the training data; null if not yet
+         * determined.
+         */
+        private int[][] trainingNeighbors = null;
+
         /*
          * (non-Javadoc)
          * 
          * @see weka.classifiers.AbstractClassifier#classifyInstance(weka.core.Instance)
          */
-        @SuppressWarnings("boxing")
         @Override
         public double classifyInstance(Instance instance) throws Exception {
-            List<Integer> closestInstances = new LinkedList<>();
-            double minDistance = Double.MAX_VALUE;
-            for (int i = 0; i < this.traindata.size(); i++) {
-                double distance = WekaUtils.hammingDistance(instance, this.traindata.get(i));
-                if (distance < minDistance) {
-                    minDistance = distance;
-                }
-            }
-            for (int i = 0; i < this.traindata.size(); i++) {
-                double distance = WekaUtils.hammingDistance(instance, this.traindata.get(i));
-                if (distance <= minDistance) {
-                    closestInstances.add(i);
-                }
-            }
-            if (closestInstances.size() == 1) {
-                int closestIndex = closestInstances.get(0);
-                Instance closestTrainingInstance = this.traindata.get(closestIndex);
-                List<Integer> closestToTrainingInstance = new LinkedList<>();
-                double minTrainingDistance = Double.MAX_VALUE;
-                for (int i = 0; i < this.traindata.size(); i++) {
-                    if (closestIndex != i) {
-                        double distance =
-                            WekaUtils.hammingDistance(closestTrainingInstance, this.traindata.get(i));
-                        if (distance < minTrainingDistance) {
-                            minTrainingDistance = distance;
-                        }
-                    }
-                }
-                for (int i = 0; i < this.traindata.size(); i++) {
-                    if (closestIndex != i) {
-                        double distance =
-                            WekaUtils.hammingDistance(closestTrainingInstance, this.traindata.get(i));
-                        if (distance <= minTrainingDistance) {
-                            closestToTrainingInstance.add(i);
-                        }
-                    }
-                }
-                if (closestToTrainingInstance.size() == 1) {
+            int[] closestInstances = this.index.nearest(instance);
+            if (closestInstances.length == 1) {
+                int[] closestToTrainingInstance = getTrainingNeighbors(closestInstances[0]);
+                if (closestToTrainingInstance.length == 1) {
                     return this.laserClassifier.classifyInstance(instance);
                 }
                 double label = Double.NaN;
                 boolean allEqual = true;
-                for (Integer index : closestToTrainingInstance) {
+                for (int index : closestToTrainingInstance) {
                     if (Double.isNaN(label)) {
                         label = this.traindata.get(index).classValue();
                     }
@@ -153,7 +131,7 @@ public class WekaLASERTraining extends WekaBaseTraining implements ITrainingStra
             }
             double label = Double.NaN;
             boolean allEqual = true;
-            for (Integer index : closestInstances) {
+            for (int index : closestInstances) {
                 if (Double.isNaN(label)) {
                     label = this.traindata.get(index).classValue();
                 }
@@ -177,8 +155,30 @@ public class WekaLASERTraining extends WekaBaseTraining implements ITrainingStra
         @Override
         public void buildClassifier(Instances traindata) throws Exception {
             this.traindata = new Instances(traindata);
+            this.index = new HammingIndex(this.traindata);
+            this.trainingNeighbors = new int[this.traindata.size()][];
             this.laserClassifier = setupClassifier();
             this.laserClassifier = WekaUtils.buildClassifier(this.laserClassifier, traindata);
         }
+
+        /**
+         * <p>
+         * Returns the nearest neighbors of a training instance within the training data. The
+         * neighbors are only determined once for each training instance.
+         * </p>
+         *
+         * @param trainIndex
+         *            index of the training instance
+         * @return indices of the nearest neighbors
+         */
+        private int[] getTrainingNeighbors(int trainIndex) {
+            // concurrent calls at most determine the same neighbors twice
+            int[] neighbors = this.trainingNeighbors[trainIndex];
+            if (neighbors == null) {
+                neighbors = this.index.nearest(trainIndex);
+                this.trainingNeighbors[trainIndex] = neighbors;
+            }
+            return neighbors;
+        }
     }
 }
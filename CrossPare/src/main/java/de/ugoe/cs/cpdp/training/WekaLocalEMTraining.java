@@ -14,23 +14,34 @@
 
 package de.ugoe.cs.cpdp.training;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
 import de.ugoe.cs.cpdp.util.WekaUtils;
 import de.ugoe.cs.cpdp.versions.SoftwareVersion;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.clusterers.EM;
+import weka.core.BatchPredictor;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
 
@@ -43,12 +54,17 @@ import weka.filters.unsupervised.attribute.Remove;
  * <li>for each cluster train a classifier with training data from cluster</li>
  * <li>match test data instance to a cluster, then classify with classifier from the cluster</li>
  * </ol>
+ * <p>
+ * The classifiers of the clusters are trained with the number of threads defined by -threads
+ * (default: 1).
+ * </p>
  * 
  * XML configuration:
  * 
  * <pre>
  * {@code
  * <trainer name="WekaLocalEMTraining" param="NaiveBayes weka.classifiers.bayes.NaiveBayes" />
+ * <trainer name="WekaLocalEMTraining" param="J48 weka.classifiers.trees.J48 -threads 4" />
  * }
  * </pre>
  */
@@ -65,6 +81,37 @@ public class WekaLocalEMTraining extends WekaBaseTraining implements ITrainingSt
     @SuppressWarnings("hiding")
 	private final TraindatasetCluster classifier = new TraindatasetCluster();
 
+    /**
+     * number of threads used to train the classifiers of the clusters; sequential unless set with
+     * {@link #setNumThreads(int)}
+     */
+    private int numThreads = 1;
+
+    /**
+     * <p>
+     * Sets the number of threads used to train the classifiers of the clusters.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see de.ugoe.cs.cpdp.training.WekaBaseTraining#setParameter(java.lang.String)
+     */
+    @Override
+    public void setParameter(String parameters) {
+        String[] options = parameters.split(" ");
+        this.numThreads = CrosspareUtils.parseNumThreads(options);
+        super.setParameter(Utils.joinOptions(options));
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -104,6 +151,11 @@ public class WekaLocalEMTraining extends WekaBaseTraining implements ITrainingSt
          */
         private static final long serialVersionUID = 1L;
 
+        /**
+         * minimal number of instances in each cluster
+         */
+        private static final int MIN_CLUSTER_SIZE = 5;
+
         /**
          * EM clusterer used
          */
@@ -120,36 +172,94 @@ public class WekaLocalEMTraining extends WekaBaseTraining implements ITrainingSt
         private HashMap<Integer, Instances> ctraindata;
 
         /**
-         * Helper method that gives us a clean instance copy with the values of the instancelist of
-         * the first parameter.
-         * 
-         * @param instancelist
-         *            with attributes
-         * @param instance
-         *            with only values
-         * @return copy of the instance
+         * empty header of the training data
+         */
+        private Instances header;
+
+        /**
+         * empty header of the training data without the class attribute
+         */
+        private Instances clusterHeader;
+
+        /**
+         * header of the instances for which the projections were computed last
+         */
+        private transient Instances projectionHeader = null;
+
+        /**
+         * projection of the attributes of the last header to the attributes of the training data
          */
-        private Instance createInstance(Instances instances, Instance instance) {
-            // attributes for feeding instance to classifier
+        private transient int[] classProjection = null;
+
+        /**
+         * projection of the attributes of the last header to the attributes of the training data
+         * without the class attribute
+         */
+        private transient int[] clusterProjection = null;
+
+        /**
+         * <p>
+         * Determines the indizes of the attributes of the instances that are also part of the
+         * format.
+         * </p>
+         *
+         * @param format
+         *            format to which the instances are projected
+         * @param instancesHeader
+         *            header of the instances that are projected
+         * @return indizes of the attributes
+         */
+        private int[] createProjection(Instances format, Instances instancesHeader) {
             Set<String> attributeNames = new HashSet<>();
-            for (int j = 0; j < instances.numAttributes(); j++) {
-                attributeNames.add(instances.attribute(j).name());
+            for (int j = 0; j < format.numAttributes(); j++) {
+                attributeNames.add(format.attribute(j).name());
             }
-
-            double[] values = new double[instances.numAttributes()];
+            int[] projection = new int[format.numAttributes()];
             int index = 0;
-            for (int j = 0; j < instance.numAttributes(); j++) {
-                if (attributeNames.contains(instance.attribute(j).name())) {
-                    values[index] = instance.value(j);
+            for (int j = 0; j < instancesHeader.numAttributes(); j++) {
+                if (attributeNames.contains(instancesHeader.attribute(j).name())) {
+                    projection[index] = j;
                     index++;
                 }
             }
+            return Arrays.copyOf(projection, index);
+        }
 
-            Instances tmp = new Instances(instances);
-            tmp.clear();
-            Instance instCopy = new DenseInstance(instance.weight(), values);
-            instCopy.setDataset(tmp);
+        /**
+         * <p>
+         * Updates the projections, if the header of the instances changed.
+         * </p>
+         *
+         * @param instancesHeader
+         *            header of the instances that are projected
+         */
+        private synchronized void updateProjections(Instances instancesHeader) {
+            if (this.projectionHeader != instancesHeader) {
+                this.classProjection = createProjection(this.header, instancesHeader);
+                this.clusterProjection = createProjection(this.clusterHeader, instancesHeader);
+                this.projectionHeader = instancesHeader;
+            }
+        }
 
+        /**
+         * Helper method that gives us a clean instance copy with the values of the instance
+         * projected to the format.
+         * 
+         * @param format
+         *            format of the copy
+         * @param projection
+         *            projection of the attributes of the instance to the format
+         * @param instance
+         *            with only values
+         * @return copy of the instance
+         */
+        private Instance createInstance(Instances format, int[] projection, Instance instance) {
+            double[] values = new double[format.numAttributes()];
+            for (int j = 0; j < projection.length; j++) {
+                values[j] = instance.value(projection[j]);
+            }
+            Instance instCopy = new DenseInstance(instance.weight(), values);
+            instCopy.setDataset(format);
             return instCopy;
         }
 
@@ -163,23 +273,20 @@ public class WekaLocalEMTraining extends WekaBaseTraining implements ITrainingSt
         public double classifyInstance(Instance instance) {
             double ret = 0;
             try {
-                // 1. copy the instance (keep the class attribute)
-                Instances traindata = this.ctraindata.get(0);
-                Instance classInstance = createInstance(traindata, instance);
+                updateProjections(instance.dataset());
 
-                // 2. remove class attribute before clustering
-                Remove filter = new Remove();
-                filter.setAttributeIndices("" + (traindata.classIndex() + 1));
-                filter.setInputFormat(traindata);
-                traindata = Filter.useFilter(traindata, filter);
+                // 1. copy the instance (keep the class attribute)
+                Instance classInstance =
+                    createInstance(this.header, this.classProjection, instance);
 
-                // 3. copy the instance (without the class attribute) for clustering
-                Instance clusterInstance = createInstance(traindata, instance);
+                // 2. copy the instance (without the class attribute) for clustering
+                Instance clusterInstance =
+                    createInstance(this.clusterHeader, this.clusterProjection, instance);
 
-                // 4. match instance without class attribute to a cluster number
+                // 3. match instance without class attribute to a cluster number
                 int cnum = this.clusterer.clusterInstance(clusterInstance);
 
-                // 5. classify instance with class attribute to the classifier of that cluster
+                // 4. classify instance with class attribute to the classifier of that cluster
                 // number
                 ret = this.cclassifier.get(cnum).classifyInstance(classInstance);
 
@@ -191,6 +298,137 @@ public class WekaLocalEMTraining extends WekaBaseTraining implements ITrainingSt
             return ret;
         }
 
+        /**
+         * <p>
+         * Classifies all instances at once. The projections of the instances are only determined
+         * once. First, all instances are assigned to the clusters. Then, the instances of each
+         * cluster are classified together by the classifier of the cluster. Classifiers that
+         * support batch prediction predict all instances of their cluster with a single call. As
+         * with {@link #classifyInstance(Instance)}, the distributions contain a 1 for the predicted
+         * class.
+         * </p>
+         * 
+         * @see weka.classifiers.AbstractClassifier#distributionsForInstances(weka.core.Instances)
+         */
+        @SuppressWarnings("boxing")
+        @Override
+        public double[][] distributionsForInstances(Instances instances) throws Exception {
+            updateProjections(instances);
+
+            // 1. match the instances without class attribute to the clusters
+            Map<Integer, List<Integer>> clusterMembers = new HashMap<>();
+            for (int i = 0; i < instances.numInstances(); i++) {
+                Instance clusterInstance =
+                    createInstance(this.clusterHeader, this.clusterProjection, instances.instance(i));
+                clusterMembers
+                    .computeIfAbsent(this.clusterer.clusterInstance(clusterInstance),
+                                     cnum -> new ArrayList<>())
+                    .add(i);
+            }
+
+            // 2. classify the instances of each cluster with the classifier of the cluster
+            double[][] distributions = new double[instances.numInstances()][instances.numClasses()];
+            for (Entry<Integer, List<Integer>> entry : clusterMembers.entrySet()) {
+                Classifier classifier = this.cclassifier.get(entry.getKey());
+                List<Integer> members = entry.getValue();
+                Instances clusterInstances = new Instances(this.header, members.size());
+                for (int i : members) {
+                    clusterInstances
+                        .add(createInstance(this.header, this.classProjection, instances.instance(i)));
+                }
+                if (classifier instanceof BatchPredictor &&
+                    ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction())
+                {
+                    double[][] clusterDistributions =
+                        ((BatchPredictor) classifier).distributionsForInstances(clusterInstances);
+                    for (int k = 0; k < members.size(); k++) {
+                        // same as the classification of a single instance by AbstractClassifier
+                        int maxIndex = Utils.maxIndex(clusterDistributions[k]);
+                        if (clusterDistributions[k][maxIndex] > 0) {
+                            distributions[members.get(k)][maxIndex] = 1.0;
+                        }
+                    }
+                }
+                else {
+                    for (int k = 0; k < members.size(); k++) {
+                        double classification = classifier.classifyInstance(clusterInstances.instance(k));
+                        if (!Utils.isMissingValue(classification)) {
+                            distributions[members.get(k)][(int) classification] = 1.0;
+                        }
+                    }
+                }
+            }
+            return distributions;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see weka.classifiers.AbstractClassifier#implementsMoreEfficientBatchPrediction()
+         */
+        @Override
+        public boolean implementsMoreEfficientBatchPrediction() {
+            return true;
+        }
+
+        /**
+         * <p>
+         * Clusters the training data with EM and assigns the training data to the clusters.
+         * </p>
+         *
+         * @param train
+         *            training data without the class attribute
+         * @param traindata
+         *            training data with the class attribute
+         * @param maxNumClusters
+         *            maximal number of clusters; the number of clusters is determined with cross
+         *            validation by EM
+         * @param numClusters
+         *            fixed number of clusters; -1 if the number of clusters is determined with
+         *            cross validation
+         * @return true, if each cluster contains sufficient instances of each class
+         * @throws Exception
+         *             thrown if EM fails
+         */
+        @SuppressWarnings("boxing")
+        private boolean cluster(Instances train,
+                                Instances traindata,
+                                int maxNumClusters,
+                                int numClusters)
+            throws Exception
+        {
+            this.clusterer = new EM();
+            if (numClusters > 0) {
+                this.clusterer.setNumClusters(numClusters);
+            }
+            else {
+                this.clusterer.setMaximumNumberOfClusters(maxNumClusters);
+            }
+            this.clusterer.buildClusterer(train);
+
+            // get traindata per cluster
+            this.ctraindata = new HashMap<>();
+            for (int j = 0; j < train.numInstances(); j++) {
+                int cnumber = this.clusterer.clusterInstance(train.get(j));
+                // add training data to list of instances for this cluster number
+                if (!this.ctraindata.containsKey(cnumber)) {
+                    this.ctraindata.put(cnumber, new Instances(traindata, 0));
+                }
+                this.ctraindata.get(cnumber).add(traindata.get(j));
+            }
+
+            boolean sufficientInstancesInEachCluster = true;
+            for (Entry<Integer, Instances> entry : this.ctraindata.entrySet()) {
+                Instances instances = entry.getValue();
+                int[] counts = instances.attributeStats(instances.classIndex()).nominalCounts;
+                for (int count : counts) {
+                    sufficientInstancesInEachCluster &= count > 0;
+                }
+                sufficientInstancesInEachCluster &= instances.numInstances() >= MIN_CLUSTER_SIZE;
+            }
+            return sufficientInstancesInEachCluster;
+        }
+
         /*
          * (non-Javadoc)
          * 
@@ -209,66 +447,64 @@ public class WekaLocalEMTraining extends WekaBaseTraining implements ITrainingSt
             filter.setInputFormat(train);
             train = Filter.useFilter(train, filter);
 
-            // new objects
-            this.cclassifier = new HashMap<>();
-            this.ctraindata = new HashMap<>();
-
-            Instances ctrain;
-            int maxNumClusters = train.size();
-            boolean sufficientInstancesInEachCluster;
-            do { // while(onlyTarget)
-                sufficientInstancesInEachCluster = true;
-                this.clusterer = new EM();
-                this.clusterer.setMaximumNumberOfClusters(maxNumClusters);
-                this.clusterer.buildClusterer(train);
-
-                // 4. get cluster membership of our traindata
-                // AddCluster cfilter = new AddCluster();
-                // cfilter.setClusterer(clusterer);
-                // cfilter.setInputFormat(train);
-                // Instances ctrain = Filter.useFilter(train, cfilter);
-
-                ctrain = new Instances(train);
-                this.ctraindata = new HashMap<>();
-
-                // get traindata per cluster
-                for (int j = 0; j < ctrain.numInstances(); j++) {
-                    // get the cluster number from the attributes, subract 1 because if we
-                    // clusterInstance we get 0-n, and this is 1-n
-                    // cnumber =
-                    // Integer.parseInt(ctrain.get(j).stringValue(ctrain.get(j).numAttributes()-1).replace("cluster",
-                    // "")) - 1;
-
-                    int cnumber = this.clusterer.clusterInstance(ctrain.get(j));
-                    // add training data to list of instances for this cluster number
-                    if (!this.ctraindata.containsKey(cnumber)) {
-                        this.ctraindata.put(cnumber, new Instances(traindata));
-                        this.ctraindata.get(cnumber).delete();
+            this.header = new Instances(traindata, 0);
+            this.clusterHeader = new Instances(train, 0);
+            this.projectionHeader = null;
+
+            // 3. cluster with the number of clusters determined by EM
+            if (!cluster(train, traindata, train.size(), -1)) {
+                // 4. bisection for the largest number of clusters with sufficient instances in
+                // each cluster; the number of clusters is fixed, such that EM does not need to
+                // repeat the cross validation for each candidate
+                int lower = 1;
+                int upper = this.clusterer.numberOfClusters() - 1;
+                EM bestClusterer = null;
+                HashMap<Integer, Instances> bestTraindata = null;
+                while (lower <= upper) {
+                    int numClusters = (lower + upper + 1) / 2;
+                    if (cluster(train, traindata, numClusters, numClusters)) {
+                        bestClusterer = this.clusterer;
+                        bestTraindata = this.ctraindata;
+                        lower = numClusters + 1;
                     }
-                    this.ctraindata.get(cnumber).add(traindata.get(j));
-                }
-
-                for (Entry<Integer, Instances> entry : this.ctraindata.entrySet()) {
-                    Instances instances = entry.getValue();
-                    int[] counts = instances.attributeStats(instances.classIndex()).nominalCounts;
-                    for (int count : counts) {
-                        sufficientInstancesInEachCluster &= count > 0;
+                    else {
+                        upper = numClusters - 1;
                     }
-                    sufficientInstancesInEachCluster &= instances.numInstances() >= 5;
                 }
-                maxNumClusters = this.clusterer.numberOfClusters() - 1;
+                if (bestClusterer == null) {
+                    // no suitable number of clusters found; use a single cluster
+                    cluster(train, traindata, 1, 1);
+                }
+                else {
+                    this.clusterer = bestClusterer;
+                    this.ctraindata = bestTraindata;
+                }
             }
-            while (!sufficientInstancesInEachCluster);
-
-            // train one classifier per cluster, we get the cluster number from the training data
-            Iterator<Integer> clusternumber = this.ctraindata.keySet().iterator();
-            while (clusternumber.hasNext()) {
-                int cnumber = clusternumber.next();
-                Classifier currentClassifier = setupClassifier();
-                currentClassifier = WekaUtils.buildClassifier(currentClassifier, this.ctraindata.get(cnumber));
-                this.cclassifier.put(cnumber, currentClassifier);
 
-                // Console.traceln(Level.INFO, String.format("classifier in cluster "+cnumber));
+            // 5. train one classifier per cluster, in parallel if more threads are set
+            List<Integer> clusterNumbers = new ArrayList<>(this.ctraindata.keySet());
+            List<Callable<Classifier>> tasks = new ArrayList<>(clusterNumbers.size());
+            for (int cnumber : clusterNumbers) {
+                Instances clusterData = this.ctraindata.get(cnumber);
+                tasks.add(() -> WekaUtils.buildClassifier(setupClassifier(), clusterData));
+            }
+            this.cclassifier = new HashMap<>();
+            ExecutorService threadPool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(tasks.size(), WekaLocalEMTraining.this.numThreads)));
+            try {
+                List<Future<Classifier>> classifiers = threadPool.invokeAll(tasks);
+                for (int i = 0; i < clusterNumbers.size(); i++) {
+                    this.cclassifier.put(clusterNumbers.get(i), classifiers.get(i).get());
+                }
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            finally {
+                threadPool.shutdown();
             }
         }
     }
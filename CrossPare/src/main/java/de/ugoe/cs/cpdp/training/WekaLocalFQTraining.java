@@ -15,6 +15,8 @@
 package de.ugoe.cs.cpdp.training;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -139,6 +141,37 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
          */
         private HashMap<Integer, ArrayList<Double[][]>> csize;
 
+        /**
+         * index of the cluster centroids in the Fastmap space; used for instances that are not
+         * within any cluster
+         */
+        private CentroidIndex centroidIndex;
+
+        /**
+         * empty header of the training data
+         */
+        private Instances header;
+
+        /**
+         * names of the attributes of the training data
+         */
+        private Set<String> attributeNames;
+
+        /**
+         * empty header of the training data without the class attribute
+         */
+        private Instances clusterHeader;
+
+        /**
+         * names of the attributes of the training data without the class attribute
+         */
+        private Set<String> clusterAttributeNames;
+
+        /**
+         * distance function used for the Fastmap projection of instances that are classified
+         */
+        private EuclideanDistance fastmapDistance;
+
         /**
          * debug variable
          */
@@ -164,30 +197,24 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
          *
          * @param instances
          *            instance format
+         * @param names
+         *            names of the attributes of the instance format
          * @param instance
          *            instance that is copied
          * @return
          */
-        private Instance createInstance(Instances instances, Instance instance) {
-            // attributes for feeding instance to classifier
-            Set<String> attributeNames = new HashSet<>();
-            for (int j = 0; j < instances.numAttributes(); j++) {
-                attributeNames.add(instances.attribute(j).name());
-            }
-
+        private Instance createInstance(Instances instances, Set<String> names, Instance instance) {
             double[] values = new double[instances.numAttributes()];
             int index = 0;
             for (int j = 0; j < instance.numAttributes(); j++) {
-                if (attributeNames.contains(instance.attribute(j).name())) {
+                if (names.contains(instance.attribute(j).name())) {
                     values[index] = instance.value(j);
                     index++;
                 }
             }
 
-            Instances tmp = new Instances(instances);
-            tmp.clear();
             Instance instCopy = new DenseInstance(instance.weight(), values);
-            instCopy.setDataset(tmp);
+            instCopy.setDataset(instances);
 
             return instCopy;
         }
@@ -216,21 +243,13 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
             double ret = 0;
             try {
                 // classinstance gets passed to classifier
-                Instances traindata = this.ctraindata.get(0);
-                Instance classInstance = createInstance(traindata, instance);
-
-                // this one keeps the class attribute
-                Instances traindata2 = this.ctraindata.get(0);
+                Instance classInstance = createInstance(this.header, this.attributeNames, instance);
 
-                // remove class attribute before clustering
-                Remove filter = new Remove();
-                filter.setAttributeIndices("" + (traindata.classIndex() + 1));
-                filter.setInputFormat(traindata);
-                traindata = Filter.useFilter(traindata, filter);
-                Instance clusterInstance = createInstance(traindata, instance);
+                // the class attribute is removed before clustering
+                Instance clusterInstance =
+                    createInstance(this.clusterHeader, this.clusterAttributeNames, instance);
 
                 Fastmap FMAP = new Fastmap(2);
-                EuclideanDistance dist = new EuclideanDistance(traindata);
 
                 // we set our pivot indices [x=0,y=1][dimension]
                 int[][] npivotindices = new int[2][2];
@@ -239,82 +258,25 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
                 npivotindices[0][1] = 3;
                 npivotindices[1][1] = 4;
 
-                // build temp dist matrix (2 pivots per dimension + 1 instance we want to classify)
-                // the instance we want to classify comes first after that the pivot elements in the
-                // order defined above
-                double[][] distmat = new double[2 * FMAP.target_dims + 1][2 * FMAP.target_dims + 1];
-                distmat[0][0] = 0;
-                distmat[0][1] =
-                    dist.distance(clusterInstance, this.cpivots.get(this.cpivotindices[0][0]));
-                distmat[0][2] =
-                    dist.distance(clusterInstance, this.cpivots.get(this.cpivotindices[1][0]));
-                distmat[0][3] =
-                    dist.distance(clusterInstance, this.cpivots.get(this.cpivotindices[0][1]));
-                distmat[0][4] =
-                    dist.distance(clusterInstance, this.cpivots.get(this.cpivotindices[1][1]));
-
-                distmat[1][0] =
-                    dist.distance(this.cpivots.get(this.cpivotindices[0][0]), clusterInstance);
-                distmat[1][1] = 0;
-                distmat[1][2] = dist.distance(this.cpivots.get(this.cpivotindices[0][0]),
-                                              this.cpivots.get(this.cpivotindices[1][0]));
-                distmat[1][3] = dist.distance(this.cpivots.get(this.cpivotindices[0][0]),
-                                              this.cpivots.get(this.cpivotindices[0][1]));
-                distmat[1][4] = dist.distance(this.cpivots.get(this.cpivotindices[0][0]),
-                                              this.cpivots.get(this.cpivotindices[1][1]));
-
-                distmat[2][0] =
-                    dist.distance(this.cpivots.get(this.cpivotindices[1][0]), clusterInstance);
-                distmat[2][1] = dist.distance(this.cpivots.get(this.cpivotindices[1][0]),
-                                              this.cpivots.get(this.cpivotindices[0][0]));
-                distmat[2][2] = 0;
-                distmat[2][3] = dist.distance(this.cpivots.get(this.cpivotindices[1][0]),
-                                              this.cpivots.get(this.cpivotindices[0][1]));
-                distmat[2][4] = dist.distance(this.cpivots.get(this.cpivotindices[1][0]),
-                                              this.cpivots.get(this.cpivotindices[1][1]));
-
-                distmat[3][0] =
-                    dist.distance(this.cpivots.get(this.cpivotindices[0][1]), clusterInstance);
-                distmat[3][1] = dist.distance(this.cpivots.get(this.cpivotindices[0][1]),
-                                              this.cpivots.get(this.cpivotindices[0][0]));
-                distmat[3][2] = dist.distance(this.cpivots.get(this.cpivotindices[0][1]),
-                                              this.cpivots.get(this.cpivotindices[1][0]));
-                distmat[3][3] = 0;
-                distmat[3][4] = dist.distance(this.cpivots.get(this.cpivotindices[0][1]),
-                                              this.cpivots.get(this.cpivotindices[1][1]));
-
-                distmat[4][0] =
-                    dist.distance(this.cpivots.get(this.cpivotindices[1][1]), clusterInstance);
-                distmat[4][1] = dist.distance(this.cpivots.get(this.cpivotindices[1][1]),
-                                              this.cpivots.get(this.cpivotindices[0][0]));
-                distmat[4][2] = dist.distance(this.cpivots.get(this.cpivotindices[1][1]),
-                                              this.cpivots.get(this.cpivotindices[1][0]));
-                distmat[4][3] = dist.distance(this.cpivots.get(this.cpivotindices[1][1]),
-                                              this.cpivots.get(this.cpivotindices[0][1]));
-                distmat[4][4] = 0;
-
-                /*
-                 * debug output: show biggest distance found within the new distance matrix double
-                 * biggest = 0; for(int i=0; i < distmat.length; i++) { for(int j=0; j <
-                 * distmat[0].length; j++) { if(biggest < distmat[i][j]) { biggest = distmat[i][j];
-                 * } } } if(this.show_biggest) { Console.traceln(Level.INFO,
-                 * String.format(""+clusterInstance)); Console.traceln(Level.INFO, String.format(
-                 * "biggest distances: "+ biggest)); this.show_biggest = false; }
-                 */
-
-                FMAP.setDistmat(distmat);
+                // objects for the Fastmap calculation (2 pivots per dimension + 1 instance we want
+                // to classify); the instance we want to classify comes first after that the pivot
+                // elements in the order defined above
+                final Instance[] objects = new Instance[]
+                    { clusterInstance, this.cpivots.get(this.cpivotindices[0][0]),
+                        this.cpivots.get(this.cpivotindices[1][0]),
+                        this.cpivots.get(this.cpivotindices[0][1]),
+                        this.cpivots.get(this.cpivotindices[1][1]) };
+                final EuclideanDistance dist = this.fastmapDistance;
+                FMAP.setObjects(objects.length,
+                                (i, j) -> i == j ? 0 : dist.distance(objects[i], objects[j]));
                 FMAP.setPivots(npivotindices);
                 FMAP.calculate();
                 double[][] x = FMAP.getX();
                 double[] proj = x[0];
 
-                // debug output: show the calculated distance matrix, our result vektor for the
-                // instance and the complete result matrix
+                // debug output: show our result vektor for the instance and the complete result
+                // matrix
                 /*
-                 * Console.traceln(Level.INFO, "distmat:"); for(int i=0; i<distmat.length; i++){
-                 * for(int j=0; j<distmat[0].length; j++){ Console.trace(Level.INFO,
-                 * String.format("%20s", distmat[i][j])); } Console.traceln(Level.INFO, ""); }
-                 * 
                  * Console.traceln(Level.INFO, "vector:"); for(int i=0; i < proj.length; i++) {
                  * Console.trace(Level.INFO, String.format("%20s", proj[i])); }
                  * Console.traceln(Level.INFO, "");
@@ -359,27 +321,10 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
                 // (too few instances)
                 // or we get bigger distance measures from weka so that we are completely outside of
                 // our clusters.
-                // in these cases we just find the nearest cluster to our instance and use it for
-                // classification.
-                // to do that we use the EuclideanDistance again to compare our distance to all
-                // other Instances
-                // then we take the cluster of the closest weka instance
-                dist = new EuclideanDistance(traindata2);
+                // in these cases we just find the cluster whose centroid is nearest to the
+                // projection of our instance and use it for classification.
                 if (!this.ctraindata.containsKey(found_cnumber)) {
-                    double min_distance = Double.MAX_VALUE;
-                    clusternumber = this.ctraindata.keySet().iterator();
-                    while (clusternumber.hasNext()) {
-                        cnumber = clusternumber.next();
-                        for (int i = 0; i < this.ctraindata.get(cnumber).size(); i++) {
-                            if (dist.distance(instance,
-                                              this.ctraindata.get(cnumber).get(i)) <= min_distance)
-                            {
-                                found_cnumber = cnumber;
-                                min_distance =
-                                    dist.distance(instance, this.ctraindata.get(cnumber).get(i));
-                            }
-                        }
-                    }
+                    found_cnumber = this.centroidIndex.nearest(proj[0], proj[1]);
                 }
 
                 // here we have the cluster where an instance has the minimum distance between
@@ -429,23 +374,15 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
             filter.setInputFormat(train);
             train = Filter.useFilter(train, filter);
 
-            // 3. calculate distance matrix (needed for Fastmap because it starts at dimension 1)
-            double biggest = 0;
-            EuclideanDistance dist = new EuclideanDistance(train);
-            double[][] distmat = new double[train.size()][train.size()];
-            for (int i = 0; i < train.size(); i++) {
-                for (int j = 0; j < train.size(); j++) {
-                    distmat[i][j] = dist.distance(train.get(i), train.get(j));
-                    if (distmat[i][j] > biggest) {
-                        biggest = distmat[i][j];
-                    }
-                }
-            }
-            // Console.traceln(Level.INFO, String.format("biggest distances: "+ biggest));
+            // 3. distances are calculated on demand; Fastmap only needs the distances to the
+            // pivots
+            final Instances fastmapData = train;
+            final EuclideanDistance dist = new EuclideanDistance(fastmapData);
 
-            // 4. run fastmap for 2 dimensions on the distance matrix
+            // 4. run fastmap for 2 dimensions
             Fastmap FMAP = new Fastmap(2);
-            FMAP.setDistmat(distmat);
+            FMAP.setObjects(fastmapData.size(),
+                            (i, j) -> dist.distance(fastmapData.get(i), fastmapData.get(j)));
             FMAP.calculate();
 
             this.cpivotindices = FMAP.getPivots();
@@ -486,20 +423,15 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
 
             // 5. generate quadtree
             QuadTree TREE = new QuadTree(null, qtp);
-            QuadTree.size = train.size();
-            QuadTree.alpha = Math.sqrt(train.size());
-            QuadTree.ccluster = new ArrayList<>();
-            QuadTree.csize = new HashMap<>();
-
-            // Console.traceln(Level.INFO, String.format("Generate QuadTree with "+ QuadTree.size +
-            // " size, Alpha: "+ QuadTree.alpha+ ""));
+            TREE.setTreeSize(train.size());
+            TREE.setAlpha(Math.sqrt(train.size()));
 
             // set the size and then split the tree recursively at the median value for x, y
             TREE.setSize(new double[]
                 { small[0], big[0] }, new double[]
                 { small[1], big[1] });
 
-            // recursive split und grid clustering eher static
+            // recursive split und grid clustering
             QuadTree.recursiveSplit(TREE);
 
             // generate list of nodes sorted by density (childs only)
@@ -510,8 +442,10 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
 
             // wir iterieren durch die cluster und sammeln uns die instanzen daraus
             // ctraindata.clear();
-            for (int i = 0; i < QuadTree.ccluster.size(); i++) {
-                ArrayList<QuadTreePayload<Instance>> current = QuadTree.ccluster.get(i);
+            ArrayList<ArrayList<QuadTreePayload<Instance>>> clusters = TREE.getClusters();
+            this.centroidIndex = new CentroidIndex();
+            for (int i = 0; i < clusters.size(); i++) {
+                ArrayList<QuadTreePayload<Instance>> current = clusters.get(i);
 
                 // i is the clusternumber
                 // we only allow clusters with Instances > ALPHA, other clusters are not considered!
@@ -524,6 +458,7 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
                         }
                         this.ctraindata.get(i).add(current.get(j).getInst());
                     }
+                    this.centroidIndex.add(i, current);
                 }
                 else {
                     LOGGER.info(String.format("drop cluster, only: " + current.size() + " instances"));
@@ -532,7 +467,23 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
 
             // here we keep things we need later on
             // QuadTree sizes for later use (matching new instances)
-            this.csize = new HashMap<>(QuadTree.csize);
+            this.csize = new HashMap<>(TREE.getClusterSizes());
+            this.centroidIndex.build();
+
+            // headers and distance function for the classification of instances; the distance
+            // function uses the value ranges of the first cluster
+            this.header = new Instances(train2, 0);
+            this.attributeNames = getAttributeNames(this.header);
+            if (!this.ctraindata.isEmpty()) {
+                Instances clusterData = this.ctraindata.get(Collections.min(this.ctraindata.keySet()));
+                Remove clusterFilter = new Remove();
+                clusterFilter.setAttributeIndices("" + (clusterData.classIndex() + 1));
+                clusterFilter.setInputFormat(clusterData);
+                clusterData = Filter.useFilter(clusterData, clusterFilter);
+                this.fastmapDistance = new EuclideanDistance(clusterData);
+                this.clusterHeader = new Instances(clusterData, 0);
+                this.clusterAttributeNames = getAttributeNames(this.clusterHeader);
+            }
 
             // pivot elements
             // this.cpivots.clear();
@@ -577,6 +528,167 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
         }
     }
 
+    /**
+     * <p>
+     * returns the names of the attributes of a data set
+     * </p>
+     *
+     * @param data
+     *            the data set
+     * @return names of the attributes
+     */
+    private static Set<String> getAttributeNames(Instances data) {
+        Set<String> attributeNames = new HashSet<>();
+        for (int j = 0; j < data.numAttributes(); j++) {
+            attributeNames.add(data.attribute(j).name());
+        }
+        return attributeNames;
+    }
+
+    /**
+     * <p>
+     * Index of the centroids of the clusters in the two dimensional Fastmap space. The centroids are
+     * sorted by their x-value, such that the search for the nearest centroid only needs to check
+     * centroids whose x-value is closer than the nearest centroid found so far.
+     * </p>
+     * 
+     * @author Steffen Herbold
+     */
+    private static class CentroidIndex {
+
+        /**
+         * cluster numbers and centroids (cluster number, x, y) in the order they were added
+         */
+        private final ArrayList<double[]> centroids = new ArrayList<>();
+
+        /**
+         * cluster numbers sorted by the x-value of the centroids
+         */
+        private int[] clusters = new int[0];
+
+        /**
+         * x-values of the centroids in sorted order
+         */
+        private double[] xs = new double[0];
+
+        /**
+         * y-values of the centroids in the order of the x-values
+         */
+        private double[] ys = new double[0];
+
+        /**
+         * <p>
+         * adds the centroid of a cluster
+         * </p>
+         *
+         * @param cnumber
+         *            cluster number
+         * @param payload
+         *            data of the cluster
+         */
+        void add(int cnumber, ArrayList<QuadTreePayload<Instance>> payload) {
+            double x = 0;
+            double y = 0;
+            for (QuadTreePayload<Instance> item : payload) {
+                x += item.x;
+                y += item.y;
+            }
+            this.centroids.add(new double[]
+                { cnumber, x / payload.size(), y / payload.size() });
+        }
+
+        /**
+         * <p>
+         * sorts the centroids; must be called after all centroids were added
+         * </p>
+         */
+        void build() {
+            this.centroids.sort((c1, c2) -> Double.compare(c1[1], c2[1]));
+            this.clusters = new int[this.centroids.size()];
+            this.xs = new double[this.centroids.size()];
+            this.ys = new double[this.centroids.size()];
+            for (int i = 0; i < this.centroids.size(); i++) {
+                this.clusters[i] = (int) this.centroids.get(i)[0];
+                this.xs[i] = this.centroids.get(i)[1];
+                this.ys[i] = this.centroids.get(i)[2];
+            }
+        }
+
+        /**
+         * <p>
+         * finds the cluster with the nearest centroid
+         * </p>
+         *
+         * @param x
+         *            x-value of the point
+         * @param y
+         *            y-value of the point
+         * @return cluster number of the nearest centroid; -1 if there are no clusters
+         */
+        int nearest(double x, double y) {
+            int start = Arrays.binarySearch(this.xs, x);
+            if (start < 0) {
+                start = -start - 1;
+            }
+            int nearest = -1;
+            double minDistance = Double.MAX_VALUE;
+            int left = start - 1;
+            int right = start;
+            while (left >= 0 || right < this.xs.length) {
+                if (right < this.xs.length) {
+                    double dx = this.xs[right] - x;
+                    if (dx * dx >= minDistance) {
+                        right = this.xs.length;
+                    }
+                    else {
+                        double dy = this.ys[right] - y;
+                        if (dx * dx + dy * dy < minDistance) {
+                            minDistance = dx * dx + dy * dy;
+                            nearest = this.clusters[right];
+                        }
+                        right++;
+                    }
+                }
+                if (left >= 0) {
+                    double dx = x - this.xs[left];
+                    if (dx * dx >= minDistance) {
+                        left = -1;
+                    }
+                    else {
+                        double dy = this.ys[left] - y;
+                        if (dx * dx + dy * dy < minDistance) {
+                            minDistance = dx * dx + dy * dy;
+                            nearest = this.clusters[left];
+                        }
+                        left--;
+                    }
+                }
+            }
+            return nearest;
+        }
+    }
+
+    /**
+     * <p>
+     * Distance between two objects of the Fastmap calculation, identified by their indices.
+     * </p>
+     */
+    private interface ObjectDistance {
+
+        /**
+         * <p>
+         * returns the distance between two objects
+         * </p>
+         *
+         * @param i
+         *            index of the first object
+         * @param j
+         *            index of the second object
+         * @return the distance
+         */
+        double distance(int i, int j);
+    }
+
     /**
      * <p>
      * Payload for the QuadTree. x and y are the calculated Fastmap values. T is a Weka instance.
@@ -641,7 +753,7 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
      * visualization of traditional and multimedia datasets (Vol. 24, No. 2, pp. 163-174). ACM.
      * </p>
      */
-    private class Fastmap {
+    private static class Fastmap {
 
         /**
          * N x k Array, at the end, the i-th row will be the image of the i-th object
@@ -654,9 +766,15 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
         private int[][] PA;
 
         /**
-         * Objects we got (distance matrix)
+         * number of objects
+         */
+        private int numObjects;
+
+        /**
+         * distances between the objects; calculated on demand, such that only O(n*k) distances
+         * are calculated and no distance matrix is stored
          */
-        private double[][] O;
+        private ObjectDistance objectDistance;
 
         /**
          * column of X currently updated (also the dimension)
@@ -687,17 +805,19 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
 
         /**
          * <p>
-         * Sets the distance matrix and params that depend on this.
+         * Sets the objects and params that depend on this.
          * </p>
          * 
-         * @param O
-         *            distance matrix
+         * @param numObjects
+         *            number of objects
+         * @param objectDistance
+         *            distance between the objects
          */
         @SuppressWarnings("hiding")
-        public void setDistmat(double[][] O) {
-            this.O = O;
-            int N = O.length;
-            this.X = new double[N][this.target_dims];
+        public void setObjects(int numObjects, ObjectDistance objectDistance) {
+            this.numObjects = numObjects;
+            this.objectDistance = objectDistance;
+            this.X = new double[numObjects][this.target_dims];
             this.PA = new int[2][this.target_dims];
         }
 
@@ -742,8 +862,9 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
          */
         private double dist(int x, int y, int k) {
 
-            // basis is object distance, we get this from our distance matrix
-            double tmp = this.O[x][y] * this.O[x][y];
+            // basis is object distance
+            double objDist = this.objectDistance.distance(x, y);
+            double tmp = objDist * objDist;
 
             // decrease by projections
             for (int i = 0; i < k; i++) {
@@ -768,7 +889,7 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
             double furthest = Double.MIN_VALUE;
             int ret = 0;
 
-            for (int i = 0; i < this.O.length; i++) {
+            for (int i = 0; i < this.numObjects; i++) {
                 double dist = this.dist(i, index, this.col);
                 if (i != index && dist > furthest) {
                     furthest = dist;
@@ -788,7 +909,7 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
         private int[] findDistantObjects() {
             // 1. choose object randomly
             Random r = new Random();
-            int obj = r.nextInt(this.O.length);
+            int obj = r.nextInt(this.numObjects);
 
             // 2. find farthest object from randomly chosen object
             int idx1 = this.findFarthest(obj);
@@ -827,7 +948,7 @@ public class WekaLocalFQTraining extends WekaBaseTraining implements ITrainingSt
 
                 // 5) project the objects on the line between the pivots
                 double dxy = this.dist(this.PA[0][this.col], this.PA[1][this.col], this.col);
-                for (int i = 0; i < this.O.length; i++) {
+                for (int i = 0; i < this.numObjects; i++) {
 
                     double dix = this.dist(i, this.PA[0][this.col], this.col);
                     double diy = this.dist(i, this.PA[1][this.col], this.col);
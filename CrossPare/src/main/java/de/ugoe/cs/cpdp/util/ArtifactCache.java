@@ -0,0 +1,252 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Local cache for intermediate results of experiments that are expensive to compute and that only
+ * depend on the content of the data, e.g., scores of classifiers that are trained on one version
+ * and evaluated on another version. The artifacts are identified by a namespace and a key, which
+ * is usually derived from the content of the data with {@link #contentHash(Instances)}.
+ * </p>
+ * <p>
+ * Recently used artifacts are kept in memory. If a cache directory is defined (see
+ * {@link #setDirectory(File)} and the command line argument {@code --cachedir=<directory>} of the
+ * {@link de.ugoe.cs.cpdp.Runner}), the artifacts are also serialized to the directory, such that
+ * they can be reused by other experiment configurations and later runs.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class ArtifactCache {
+
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * maximal number of artifacts that are kept in memory
+     */
+    private static final int MEMORY_CACHE_SIZE = 1024;
+
+    /**
+     * artifacts that are kept in memory
+     */
+    private static final Map<String, Serializable> MEMORY_CACHE =
+        Collections.synchronizedMap(new LRUMap<String, Serializable>(MEMORY_CACHE_SIZE));
+
+    /**
+     * directory where the artifacts are stored; null if the artifacts are only kept in memory
+     */
+    private static volatile File directory = null;
+
+    /**
+     * <p>
+     * Private constructor to prevent instantiation.
+     * </p>
+     */
+    private ArtifactCache() {
+        // only static methods
+    }
+
+    /**
+     * <p>
+     * Sets the directory where the artifacts are stored.
+     * </p>
+     *
+     * @param directory
+     *            the directory; null if the artifacts are only kept in memory
+     */
+    @SuppressWarnings("hiding")
+    public static void setDirectory(File directory) {
+        ArtifactCache.directory = directory;
+    }
+
+    /**
+     * <p>
+     * returns the directory where the artifacts are stored
+     * </p>
+     *
+     * @return the directory; null if the artifacts are only kept in memory
+     */
+    public static File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * <p>
+     * Removes all artifacts from the memory. The artifacts in the cache directory are kept.
+     * </p>
+     */
+    public static void clearMemory() {
+        MEMORY_CACHE.clear();
+    }
+
+    /**
+     * <p>
+     * Retrieves an artifact from the cache. The returned artifact is shared and must not be
+     * modified.
+     * </p>
+     *
+     * @param namespace
+     *            namespace of the artifact, e.g., the name of the strategy that uses the artifact
+     * @param key
+     *            key of the artifact within the namespace
+     * @return the artifact; null if the artifact is not cached
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Serializable> T get(String namespace, String key) {
+        String memoryKey = namespace + "/" + key;
+        Serializable artifact = MEMORY_CACHE.get(memoryKey);
+        if (artifact == null) {
+            File file = artifactFile(namespace, key);
+            if (file != null && file.isFile()) {
+                try (InputStream in = Files.newInputStream(file.toPath());
+                        ObjectInputStream objectIn = new ObjectInputStream(in))
+                {
+                    artifact = (Serializable) objectIn.readObject();
+                    MEMORY_CACHE.put(memoryKey, artifact);
+                }
+                catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    LOGGER.warn("could not read cached artifact " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return (T) artifact;
+    }
+
+    /**
+     * <p>
+     * Adds an artifact to the cache or replaces it. The artifact must not be modified afterwards.
+     * </p>
+     *
+     * @param namespace
+     *            namespace of the artifact, e.g., the name of the strategy that uses the artifact
+     * @param key
+     *            key of the artifact within the namespace
+     * @param artifact
+     *            the artifact
+     */
+    public static void put(String namespace, String key, Serializable artifact) {
+        MEMORY_CACHE.put(namespace + "/" + key, artifact);
+        File file = artifactFile(namespace, key);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            File tmpFile = File.createTempFile("artifact", ".tmp", file.getParentFile());
+            try (OutputStream out = Files.newOutputStream(tmpFile.toPath());
+                    ObjectOutputStream objectOut = new ObjectOutputStream(out))
+            {
+                objectOut.writeObject(artifact);
+            }
+            // other threads and processes never read partially written artifacts
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            LOGGER.warn("could not write cached artifact " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * <p>
+     * Calculates a hash of the content of data, i.e., of the attributes, the class index, and the
+     * values and weights of the instances. The name of the data is not part of the hash.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @return hexadecimal SHA-256 hash
+     */
+    public static String contentHash(Instances data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        for (int j = 0; j < data.numAttributes(); j++) {
+            digest.update(data.attribute(j).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8 * (data.numAttributes() + 2));
+        buffer.putLong(data.classIndex());
+        buffer.putLong(data.size());
+        digest.update(buffer.array(), 0, buffer.position());
+        for (Instance instance : data) {
+            buffer.clear();
+            for (int j = 0; j < data.numAttributes(); j++) {
+                buffer.putLong(Double.doubleToLongBits(instance.value(j)));
+            }
+            buffer.putLong(Double.doubleToLongBits(instance.weight()));
+            digest.update(buffer.array(), 0, buffer.position());
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", Byte.valueOf(b)));
+        }
+        return hash.toString();
+    }
+
+    /**
+     * <p>
+     * Determines the file of an artifact.
+     * </p>
+     *
+     * @param namespace
+     *            namespace of the artifact
+     * @param key
+     *            key of the artifact
+     * @return the file; null if no cache directory is defined
+     */
+    private static File artifactFile(String namespace, String key) {
+        File dir = directory;
+        if (dir == null) {
+            return null;
+        }
+        return new File(new File(dir, namespace), key + ".ser");
+    }
+}
@@ -0,0 +1,591 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package de.ugoe.cs.cpdp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * <p>
+ * Column-major copy of the attribute values of data as primitive arrays, with kernels that process
+ * all attributes at once, e.g., order statistics with quickselect and threshold counts as used by
+ * CLA, CLAMI, and CLIFF. The kernels split the attributes into blocks of fixed size, which are
+ * processed in parallel. Because the blocks do not depend on the number of threads, the results
+ * are the same for any number of threads.
+ * </p>
+ * <p>
+ * The class attribute is not part of the matrix, i.e., its column is null. Missing values are
+ * stored as {@link Double#NaN}.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class ColumnMatrix {
+
+    /**
+     * number of attributes that are processed by one task
+     */
+    private static final int BLOCK_SIZE = 8;
+
+    /**
+     * values of each attribute; null for the class attribute
+     */
+    private final double[][] columns;
+
+    /**
+     * number of instances
+     */
+    private final int numRows;
+
+    /**
+     * index of the class attribute; -1 if the data has no class
+     */
+    private final int classIndex;
+
+    /**
+     * number of threads used by the kernels
+     */
+    private final int numThreads;
+
+    /**
+     * <p>
+     * Constructor. Creates the column-major copy of the data.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @param numThreads
+     *            number of threads used by the kernels
+     */
+    @SuppressWarnings("hiding")
+    public ColumnMatrix(Instances data, int numThreads) {
+        this.numRows = data.numInstances();
+        this.classIndex = data.classIndex();
+        this.numThreads = numThreads;
+        this.columns = new double[data.numAttributes()][];
+        mapColumnBlocks((start, end) -> {
+            for (int j = start; j < end; j++) {
+                if (j != this.classIndex) {
+                    this.columns[j] = data.attributeToDoubleArray(j);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * <p>
+     * returns the number of instances
+     * </p>
+     *
+     * @return number of instances
+     */
+    public int numRows() {
+        return this.numRows;
+    }
+
+    /**
+     * <p>
+     * returns the number of attributes, including the class attribute
+     * </p>
+     *
+     * @return number of attributes
+     */
+    public int numColumns() {
+        return this.columns.length;
+    }
+
+    /**
+     * <p>
+     * Returns the values of an attribute. The returned array is shared and must not be modified.
+     * </p>
+     *
+     * @param j
+     *            index of the attribute
+     * @return the values; null for the class attribute
+     */
+    public double[] column(int j) {
+        return this.columns[j];
+    }
+
+    /**
+     * <p>
+     * Determines the k-th smallest value of each attribute in the same way as
+     * {@link Instances#kthSmallestValue(int, int)}, i.e., missing values are treated as
+     * {@link Double#MAX_VALUE}.
+     * </p>
+     *
+     * @param k
+     *            the value of k, starting at 1
+     * @return k-th smallest value of each attribute; 0 for the class attribute
+     */
+    public double[] kthSmallestValues(int k) {
+        if (k < 1 || k > this.numRows) {
+            throw new IllegalArgumentException("k out of bounds: " + k);
+        }
+        double[] values = new double[this.columns.length];
+        mapColumnBlocks((start, end) -> {
+            double[] buffer = new double[this.numRows];
+            for (int j = start; j < end; j++) {
+                if (this.columns[j] != null) {
+                    copyWithoutMissing(this.columns[j], buffer);
+                    values[j] = select(buffer, k - 1);
+                }
+            }
+            return null;
+        });
+        return values;
+    }
+
+    /**
+     * <p>
+     * Counts for each instance the attributes whose value is greater than a threshold.
+     * </p>
+     *
+     * @param thresholds
+     *            threshold of each attribute
+     * @return number of attributes above the threshold for each instance
+     */
+    public int[] countAbove(double[] thresholds) {
+        List<int[]> partialCounts = mapColumnBlocks((start, end) -> {
+            int[] counts = new int[this.numRows];
+            for (int j = start; j < end; j++) {
+                double[] column = this.columns[j];
+                if (column != null) {
+                    double threshold = thresholds[j];
+                    for (int i = 0; i < this.numRows; i++) {
+                        if (column[i] > threshold) {
+                            counts[i]++;
+                        }
+                    }
+                }
+            }
+            return counts;
+        });
+        int[] counts = new int[this.numRows];
+        for (int[] partial : partialCounts) {
+            for (int i = 0; i < this.numRows; i++) {
+                counts[i] += partial[i];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * <p>
+     * Counts for each attribute the instances that violate a threshold. The value of a high
+     * instance violates the threshold if it is less than or equal to the threshold, the value of
+     * any other instance if it is greater than the threshold.
+     * </p>
+     *
+     * @param thresholds
+     *            threshold of each attribute
+     * @param high
+     *            true for each instance that should be above the thresholds
+     * @return number of violations for each attribute; 0 for the class attribute
+     */
+    public int[] columnViolations(double[] thresholds, boolean[] high) {
+        int[] violations = new int[this.columns.length];
+        mapColumnBlocks((start, end) -> {
+            for (int j = start; j < end; j++) {
+                double[] column = this.columns[j];
+                if (column != null) {
+                    double threshold = thresholds[j];
+                    int count = 0;
+                    for (int i = 0; i < this.numRows; i++) {
+                        if (high[i] ? column[i] <= threshold : column[i] > threshold) {
+                            count++;
+                        }
+                    }
+                    violations[j] = count;
+                }
+            }
+            return null;
+        });
+        return violations;
+    }
+
+    /**
+     * <p>
+     * Counts for each instance the selected attributes whose value violates the threshold (see
+     * {@link #columnViolations(double[], boolean[])}).
+     * </p>
+     *
+     * @param thresholds
+     *            threshold of each attribute
+     * @param high
+     *            true for each instance that should be above the thresholds
+     * @param selected
+     *            true for each attribute that is considered
+     * @return number of violations for each instance
+     */
+    public int[] rowViolations(double[] thresholds, boolean[] high, boolean[] selected) {
+        List<int[]> partialViolations = mapColumnBlocks((start, end) -> {
+            int[] violations = new int[this.numRows];
+            for (int j = start; j < end; j++) {
+                double[] column = this.columns[j];
+                if (column != null && selected[j]) {
+                    double threshold = thresholds[j];
+                    for (int i = 0; i < this.numRows; i++) {
+                        if (high[i] ? column[i] <= threshold : column[i] > threshold) {
+                            violations[i]++;
+                        }
+                    }
+                }
+            }
+            return violations;
+        });
+        int[] violations = new int[this.numRows];
+        for (int[] partial : partialViolations) {
+            for (int i = 0; i < this.numRows; i++) {
+                violations[i] += partial[i];
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * <p>
+     * Sums a function of the attribute values for each instance. The function is applied to each
+     * attribute except the class attribute and returns the summands of all instances for this
+     * attribute. The sums are accumulated in the order of the attributes.
+     * </p>
+     *
+     * @param function
+     *            the function
+     * @return sum for each instance
+     */
+    public double[] rowSums(ColumnFunction function) {
+        List<double[]> partialSums = mapColumnBlocks((start, end) -> {
+            double[] sums = new double[this.numRows];
+            double[] summands = new double[this.numRows];
+            for (int j = start; j < end; j++) {
+                if (this.columns[j] != null) {
+                    function.apply(j, this.columns[j], summands);
+                    for (int i = 0; i < this.numRows; i++) {
+                        sums[i] += summands[i];
+                    }
+                }
+            }
+            return sums;
+        });
+        double[] sums = new double[this.numRows];
+        for (double[] partial : partialSums) {
+            for (int i = 0; i < this.numRows; i++) {
+                sums[i] += partial[i];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * <p>
+     * Applies a function to the values of each attribute except the class attribute.
+     * </p>
+     *
+     * @param function
+     *            the function
+     * @return result of the function for each attribute; null for the class attribute
+     */
+    public <T> List<T> mapColumns(ColumnMapper<T> function) {
+        List<T> results = new ArrayList<>(this.columns.length);
+        for (List<T> blockResults : mapColumnBlocks((start, end) -> {
+            List<T> blockResult = new ArrayList<>(end - start);
+            for (int j = start; j < end; j++) {
+                blockResult.add(this.columns[j] == null ? null : function.apply(j, this.columns[j]));
+            }
+            return blockResult;
+        }))
+        {
+            results.addAll(blockResults);
+        }
+        return results;
+    }
+
+    /**
+     * <p>
+     * Determines for each value of an attribute the distance to the nearest value of any other
+     * instance. The values are sorted, such that the nearest value is one of the neighbors in the
+     * sorted order. Missing values have no distance to other values.
+     * </p>
+     *
+     * @param column
+     *            values of the attribute
+     * @return distance to the nearest value of each instance; {@link Double#MAX_VALUE} if no
+     *         distance to another value is defined
+     */
+    public static double[] nearestValueDistances(double[] column) {
+        double[] distances = new double[column.length];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        int[] indices = new int[column.length];
+        double[] values = new double[column.length];
+        int numValues = 0;
+        for (int i = 0; i < column.length; i++) {
+            if (!Utils.isMissingValue(column[i])) {
+                indices[numValues] = i;
+                values[numValues] = column[i];
+                numValues++;
+            }
+        }
+        int[] order = Utils.sort(Arrays.copyOf(values, numValues));
+        for (int p = 1; p < numValues; p++) {
+            int i1 = indices[order[p - 1]];
+            int i2 = indices[order[p]];
+            double distance = Math.abs(column[i2] - column[i1]);
+            if (distance < distances[i1]) {
+                distances[i1] = distance;
+            }
+            if (distance < distances[i2]) {
+                distances[i2] = distance;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * <p>
+     * Sorts the values of an attribute in ascending order. Missing values are treated as
+     * {@link Double#MAX_VALUE} in the same way as by {@link #kthSmallestValues(int)}.
+     * </p>
+     *
+     * @param column
+     *            values of the attribute
+     * @return sorted copy of the values
+     */
+    public static double[] sortedCopy(double[] column) {
+        double[] sorted = new double[column.length];
+        copyWithoutMissing(column, sorted);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * <p>
+     * Determines the k-th smallest value of an array through quickselect. The array is reordered.
+     * </p>
+     *
+     * @param values
+     *            the values
+     * @param k
+     *            the value of k, starting at 0
+     * @return the k-th smallest value
+     */
+    public static double select(double[] values, int k) {
+        int left = 0;
+        int right = values.length - 1;
+        while (left < right) {
+            // median of three as pivot
+            int middle = (left + right) >>> 1;
+            if (values[middle] < values[left]) {
+                swap(values, left, middle);
+            }
+            if (values[right] < values[left]) {
+                swap(values, left, right);
+            }
+            if (values[right] < values[middle]) {
+                swap(values, middle, right);
+            }
+            double pivot = values[middle];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            }
+            else if (k >= i) {
+                left = i;
+            }
+            else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+
+    /**
+     * <p>
+     * Copies values and replaces missing values with {@link Double#MAX_VALUE}.
+     * </p>
+     *
+     * @param source
+     *            the values
+     * @param target
+     *            array to which the values are copied
+     */
+    private static void copyWithoutMissing(double[] source, double[] target) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] = Utils.isMissingValue(source[i]) ? Double.MAX_VALUE : source[i];
+        }
+    }
+
+    /**
+     * <p>
+     * Swaps two elements of an array.
+     * </p>
+     *
+     * @param values
+     *            the array
+     * @param i
+     *            index of the first element
+     * @param j
+     *            index of the second element
+     */
+    private static void swap(double[] values, int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+
+    /**
+     * <p>
+     * Applies a function to the blocks of attributes. The blocks are processed in parallel if more
+     * than one thread is used.
+     * </p>
+     *
+     * @param function
+     *            the function
+     * @return results of the blocks in the order of the attributes
+     */
+    private <T> List<T> mapColumnBlocks(ColumnBlockFunction<T> function) {
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (int start = 0; start < this.columns.length; start += BLOCK_SIZE) {
+            final int blockStart = start;
+            final int blockEnd = Math.min(start + BLOCK_SIZE, this.columns.length);
+            tasks.add(() -> function.apply(blockStart, blockEnd));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() <= 1 || this.numThreads <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return results;
+        }
+        ExecutorService threadPool =
+            Executors.newFixedThreadPool(Math.min(this.numThreads, tasks.size()));
+        try {
+            for (Future<T> future : threadPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("processing of attribute columns failed", e.getCause());
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            threadPool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * <p>
+     * Function that is applied to the values of an attribute.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    public interface ColumnFunction {
+
+        /**
+         * <p>
+         * Applies the function to the values of an attribute.
+         * </p>
+         *
+         * @param j
+         *            index of the attribute
+         * @param column
+         *            values of the attribute; must not be modified
+         * @param result
+         *            array to which the results for the instances are written
+         */
+        void apply(int j, double[] column, double[] result);
+    }
+
+    /**
+     * <p>
+     * Function that is applied to the values of an attribute and returns a result for the
+     * attribute.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    public interface ColumnMapper<T> {
+
+        /**
+         * <p>
+         * Applies the function to the values of an attribute.
+         * </p>
+         *
+         * @param j
+         *            index of the attribute
+         * @param column
+         *            values of the attribute; must not be modified
+         * @return result for the attribute
+         */
+        T apply(int j, double[] column);
+    }
+
+    /**
+     * <p>
+     * Function that is applied to a block of attributes.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private interface ColumnBlockFunction<T> {
+
+        /**
+         * <p>
+         * Applies the function to a block of attributes.
+         * </p>
+         *
+         * @param start
+         *            index of the first attribute of the block
+         * @param end
+         *            index after the last attribute of the block
+         * @return result of the block
+         */
+        T apply(int start, int end);
+    }
+}
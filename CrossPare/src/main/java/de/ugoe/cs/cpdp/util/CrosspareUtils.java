@@ -23,6 +23,7 @@ import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 
 /**
  * Crosspare specific helper functions
@@ -73,6 +74,22 @@ public class CrosspareUtils {
 	
 	/**
      * <p>
+     * helper function that loads the number of available results of the configuration from all
+     * result storages, such that {@link #resultsAvailable(SoftwareVersion, ExperimentConfiguration)}
+     * does not need to query the storages for each version
+     * </p>
+     *
+     * @param config
+     *            configuration of the experiment
+     */
+    public static void preloadResults(ExperimentConfiguration config) {
+        for (IResultStorage storage : config.getResultStorages()) {
+            storage.preloadCounts(config.getExperimentName());
+        }
+    }
+
+	/**
+     * <p>
      * helper function that checks if the results are already in the data store
      * </p>
      *
@@ -213,4 +230,21 @@ public class CrosspareUtils {
         return new SoftwareVersion("singleTrainVersionSet", "trainProjects", "trainVersions", instances, bugmatrix,
                 efforts, numBugs, null, null);
     }
+
+    /**
+     * Helper method that parses the number of threads of a strategy from the option -threads of
+     * its parameters. The option is removed from the options.
+     * 
+     * @param options the options
+     * @return number of threads; 1 if the option is not defined
+     */
+    public static int parseNumThreads(String[] options) {
+        try {
+            String numThreads = Utils.getOption("threads", options);
+            return numThreads.isEmpty() ? 1 : Math.max(1, Integer.parseInt(numThreads));
+        }
+        catch (Exception e) {
+            throw new RuntimeException("invalid option -threads", e);
+        }
+    }
 }
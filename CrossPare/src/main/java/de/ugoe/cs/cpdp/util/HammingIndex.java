@@ -0,0 +1,369 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Index for nearest neighbor queries with respect to
+ * {@link WekaUtils#hammingDistance(Instance, Instance)}, i.e., the number of attributes with
+ * different values.
+ * </p>
+ * <p>
+ * The values of each attribute are discretised into codes 1, 2, ... in the order in which they
+ * appear in the indexed data; missing values and values that are not part of the indexed data get
+ * the code 0, which never matches. The codes of an instance are packed into a {@code long[]} with a
+ * fixed number of bits per attribute, which is a power of two. The number of matching attributes of
+ * two instances is then determined word by word with {@link Long#bitCount(long)}. A query finds the
+ * minimal distance and all training instances with this distance in a single pass over the data.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class HammingIndex {
+
+    /**
+     * indices of the attributes that are compared, i.e., all except the class
+     */
+    private final int[] attributeIndices;
+
+    /**
+     * codes of the values of each compared attribute
+     */
+    private final List<Map<Long, Integer>> valueCodes;
+
+    /**
+     * number of bits of a packed code
+     */
+    private final int bitsPerCode;
+
+    /**
+     * number of codes packed into a word
+     */
+    private final int codesPerWord;
+
+    /**
+     * mask with the lowest bit of each code in a word set
+     */
+    private final long lowBits;
+
+    /**
+     * packed codes of the indexed instances
+     */
+    private final long[][] packedCodes;
+
+    /**
+     * <p>
+     * Constructor. Creates a new index for the data.
+     * </p>
+     *
+     * @param data
+     *            the indexed data
+     */
+    @SuppressWarnings("boxing")
+    public HammingIndex(Instances data) {
+        this.attributeIndices = new int[data.classIndex() < 0 ? data.numAttributes()
+            : data.numAttributes() - 1];
+        int k = 0;
+        for (int j = 0; j < data.numAttributes(); j++) {
+            if (j != data.classIndex()) {
+                this.attributeIndices[k++] = j;
+            }
+        }
+
+        int maxCode = 1;
+        this.valueCodes = new ArrayList<>(this.attributeIndices.length);
+        for (int attIndex : this.attributeIndices) {
+            Map<Long, Integer> codes = new HashMap<>();
+            for (int i = 0; i < data.size(); i++) {
+                double value = data.get(i).value(attIndex);
+                if (!Double.isNaN(value)) {
+                    codes.putIfAbsent(key(value), codes.size() + 1);
+                }
+            }
+            maxCode = Math.max(maxCode, codes.size());
+            this.valueCodes.add(codes);
+        }
+
+        // the number of bits must be a power of two, such that the codes never span two words
+        int bits = 1;
+        while (bits < 32 && (maxCode >>> bits) != 0) {
+            bits <<= 1;
+        }
+        this.bitsPerCode = bits;
+        this.codesPerWord = 64 / bits;
+        long low = 0L;
+        for (int c = 0; c < this.codesPerWord; c++) {
+            low |= 1L << (c * bits);
+        }
+        this.lowBits = low;
+
+        this.packedCodes = new long[data.size()][];
+        for (int i = 0; i < data.size(); i++) {
+            this.packedCodes[i] = encode(data.get(i));
+        }
+    }
+
+    /**
+     * <p>
+     * Returns the number of indexed instances.
+     * </p>
+     *
+     * @return number of instances
+     */
+    public int size() {
+        return this.packedCodes.length;
+    }
+
+    /**
+     * <p>
+     * Returns the indices of the indexed instances with the minimal Hamming distance to an
+     * instance. The instance must have the same attributes as the indexed data.
+     * </p>
+     *
+     * @param instance
+     *            the instance
+     * @return indices of the nearest instances in ascending order; empty if the index is empty
+     */
+    public int[] nearest(Instance instance) {
+        return nearest(encode(instance), -1);
+    }
+
+    /**
+     * <p>
+     * Returns the indices of the other indexed instances with the minimal Hamming distance to an
+     * indexed instance.
+     * </p>
+     *
+     * @param index
+     *            index of the indexed instance
+     * @return indices of the nearest instances in ascending order, without the instance itself
+     */
+    public int[] nearest(int index) {
+        return nearest(this.packedCodes[index], index);
+    }
+
+    /**
+     * <p>
+     * Returns the nearest indexed instances for each instance of the queries. The queries are
+     * split into shards that are processed in parallel.
+     * </p>
+     *
+     * @param queries
+     *            the instances; must have the same attributes as the indexed data
+     * @param numThreads
+     *            number of threads
+     * @return indices of the nearest instances for each query
+     */
+    public int[][] nearest(Instances queries, int numThreads) {
+        final int[][] result = new int[queries.size()][];
+        final int numShards = Math.max(1, Math.min(numThreads, queries.size()));
+        if (numShards == 1) {
+            for (int i = 0; i < queries.size(); i++) {
+                result[i] = nearest(queries.get(i));
+            }
+            return result;
+        }
+        List<Callable<Void>> shards = new ArrayList<>(numShards);
+        for (int shard = 0; shard < numShards; shard++) {
+            final int from = (int) ((long) queries.size() * shard / numShards);
+            final int to = (int) ((long) queries.size() * (shard + 1) / numShards);
+            shards.add(() -> {
+                for (int i = from; i < to; i++) {
+                    result[i] = nearest(queries.get(i));
+                }
+                return null;
+            });
+        }
+        ExecutorService threadPool = Executors.newFixedThreadPool(numShards);
+        try {
+            for (Future<Void> future : threadPool.invokeAll(shards)) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            threadPool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Returns the Hamming distance between an instance and an indexed instance.
+     * </p>
+     *
+     * @param instance
+     *            the instance
+     * @param index
+     *            index of the indexed instance
+     * @return the distance
+     */
+    public int distance(Instance instance, int index) {
+        long[] query = encode(instance);
+        return this.attributeIndices.length -
+            matches(this.packedCodes[index], query, nonZeroCodes(query));
+    }
+
+    /**
+     * <p>
+     * Single pass over the indexed instances that determines the minimal distance and all
+     * instances with this distance.
+     * </p>
+     *
+     * @param query
+     *            packed codes of the query
+     * @param exclude
+     *            index of an instance that is skipped; -1 if no instance is skipped
+     * @return indices of the nearest instances in ascending order
+     */
+    private int[] nearest(long[] query, int exclude) {
+        long[] queryNonZero = nonZeroCodes(query);
+        int[] ties = new int[8];
+        int numTies = 0;
+        int maxMatches = -1;
+        for (int i = 0; i < this.packedCodes.length; i++) {
+            if (i == exclude) {
+                continue;
+            }
+            // the minimal distance is the maximal number of matching attributes
+            int matches = matches(this.packedCodes[i], query, queryNonZero);
+            if (matches > maxMatches) {
+                maxMatches = matches;
+                numTies = 0;
+            }
+            if (matches == maxMatches) {
+                if (numTies == ties.length) {
+                    ties = Arrays.copyOf(ties, 2 * numTies);
+                }
+                ties[numTies++] = i;
+            }
+        }
+        return Arrays.copyOf(ties, numTies);
+    }
+
+    /**
+     * <p>
+     * Counts the attributes with equal codes, ignoring the code 0 of the query.
+     * </p>
+     *
+     * @param codes
+     *            packed codes of an indexed instance
+     * @param query
+     *            packed codes of the query
+     * @param queryNonZero
+     *            lowest bits of the non-zero codes of the query
+     * @return number of matching attributes
+     */
+    private int matches(long[] codes, long[] query, long[] queryNonZero) {
+        int matches = 0;
+        for (int w = 0; w < query.length; w++) {
+            matches += Long.bitCount(~nonZero(codes[w] ^ query[w]) & queryNonZero[w]);
+        }
+        return matches;
+    }
+
+    /**
+     * <p>
+     * Determines the lowest bits of the non-zero codes of packed codes.
+     * </p>
+     *
+     * @param codes
+     *            packed codes
+     * @return lowest bits of the non-zero codes
+     */
+    private long[] nonZeroCodes(long[] codes) {
+        long[] result = new long[codes.length];
+        for (int w = 0; w < codes.length; w++) {
+            result[w] = nonZero(codes[w]);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Folds all bits of each code in a word into the lowest bit of the code.
+     * </p>
+     *
+     * @param word
+     *            word with packed codes
+     * @return word where the lowest bit of each code is set iff the code is non-zero
+     */
+    private long nonZero(long word) {
+        long folded = word;
+        for (int shift = 1; shift < this.bitsPerCode; shift <<= 1) {
+            folded |= folded >>> shift;
+        }
+        return folded & this.lowBits;
+    }
+
+    /**
+     * <p>
+     * Packs the codes of the values of an instance.
+     * </p>
+     *
+     * @param instance
+     *            the instance
+     * @return packed codes
+     */
+    @SuppressWarnings("boxing")
+    private long[] encode(Instance instance) {
+        long[] packed =
+            new long[(this.attributeIndices.length + this.codesPerWord - 1) / this.codesPerWord];
+        for (int k = 0; k < this.attributeIndices.length; k++) {
+            double value = instance.value(this.attributeIndices[k]);
+            if (!Double.isNaN(value)) {
+                Integer code = this.valueCodes.get(k).get(key(value));
+                if (code != null) {
+                    packed[k / this.codesPerWord] |=
+                        ((long) code) << ((k % this.codesPerWord) * this.bitsPerCode);
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * <p>
+     * Key of a value, such that values are equal iff they are equal with respect to ==.
+     * </p>
+     *
+     * @param value
+     *            the value; must not be NaN
+     * @return the key
+     */
+    @SuppressWarnings("boxing")
+    private static Long key(double value) {
+        return value == 0.0 ? 0L : Double.doubleToLongBits(value);
+    }
+}
@@ -0,0 +1,262 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Sampling of the instances of software versions on index arrays. The samples are drawn as arrays
+ * of the indices of the instances, without copying any data. The final sample is applied to the
+ * instances, the bug matrix, the efforts, and the number of bugs of a version at once with
+ * {@link #select(SoftwareVersion, int[], SoftwareVersion)}.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class IndexSampling {
+
+    /**
+     * <p>
+     * Private constructor to prevent instantiation.
+     * </p>
+     */
+    private IndexSampling() {
+        // only static methods
+    }
+
+    /**
+     * <p>
+     * Determines the indices of the instances of each class. Instances with a missing class value
+     * are skipped.
+     * </p>
+     *
+     * @param data
+     *            the data; the class attribute must be nominal
+     * @return indices of the instances of each class value in ascending order
+     */
+    public static int[][] classIndices(Instances data) {
+        int[] counts = new int[data.numClasses()];
+        for (Instance instance : data) {
+            if (!instance.classIsMissing()) {
+                counts[(int) instance.classValue()]++;
+            }
+        }
+        int[][] classIndices = new int[data.numClasses()][];
+        for (int c = 0; c < classIndices.length; c++) {
+            classIndices[c] = new int[counts[c]];
+        }
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < data.size(); i++) {
+            Instance instance = data.get(i);
+            if (!instance.classIsMissing()) {
+                int c = (int) instance.classValue();
+                classIndices[c][counts[c]++] = i;
+            }
+        }
+        return classIndices;
+    }
+
+    /**
+     * <p>
+     * Draws a sample with replacement.
+     * </p>
+     *
+     * @param indices
+     *            indices from which the sample is drawn
+     * @param size
+     *            size of the sample
+     * @param rand
+     *            random number generator
+     * @return the sample
+     */
+    public static int[] sampleWithReplacement(int[] indices, int size, Random rand) {
+        if (indices.length == 0 && size > 0) {
+            throw new IllegalArgumentException("cannot draw a sample from an empty set of indices");
+        }
+        int[] sample = new int[size];
+        for (int i = 0; i < size; i++) {
+            sample[i] = indices[rand.nextInt(indices.length)];
+        }
+        return sample;
+    }
+
+    /**
+     * <p>
+     * Draws a sample with replacement with a uniform class distribution, i.e., each class that
+     * occurs in the data has the same number of instances in the sample. If the size of the sample
+     * is not divisible by the number of classes, the first classes get one instance more. The
+     * sample contains the instances of the classes one after another.
+     * </p>
+     *
+     * @param classIndices
+     *            indices of the instances of each class, see {@link #classIndices(Instances)}
+     * @param size
+     *            size of the sample
+     * @param rand
+     *            random number generator
+     * @return the sample
+     */
+    public static int[] uniformClassSample(int[][] classIndices, int size, Random rand) {
+        int actualClasses = 0;
+        for (int[] indices : classIndices) {
+            if (indices.length > 0) {
+                actualClasses++;
+            }
+        }
+        int[][] classSamples = new int[classIndices.length][];
+        int k = 0;
+        for (int c = 0; c < classIndices.length; c++) {
+            int classSize = 0;
+            if (classIndices[c].length > 0) {
+                classSize = size / actualClasses + (k < size % actualClasses ? 1 : 0);
+                k++;
+            }
+            classSamples[c] = sampleWithReplacement(classIndices[c], classSize, rand);
+        }
+        return concat(classSamples);
+    }
+
+    /**
+     * <p>
+     * Determines the indices that are not part of a sample.
+     * </p>
+     *
+     * @param numInstances
+     *            number of instances from which the sample was drawn
+     * @param sample
+     *            the sample
+     * @return indices of the instances that are not in the sample in ascending order
+     */
+    public static int[] outOfSample(int numInstances, int[] sample) {
+        boolean[] inSample = new boolean[numInstances];
+        int numInSample = 0;
+        for (int index : sample) {
+            if (!inSample[index]) {
+                inSample[index] = true;
+                numInSample++;
+            }
+        }
+        int[] leftovers = new int[numInstances - numInSample];
+        int k = 0;
+        for (int i = 0; i < numInstances; i++) {
+            if (!inSample[i]) {
+                leftovers[k++] = i;
+            }
+        }
+        return leftovers;
+    }
+
+    /**
+     * <p>
+     * Concatenates index arrays.
+     * </p>
+     *
+     * @param indices
+     *            the index arrays
+     * @return the concatenated indices
+     */
+    public static int[] concat(int[]... indices) {
+        int size = 0;
+        for (int[] array : indices) {
+            size += array.length;
+        }
+        int[] result = new int[size];
+        int k = 0;
+        for (int[] array : indices) {
+            System.arraycopy(array, 0, result, k, array.length);
+            k += array.length;
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Replaces the instances, the bug matrix, the efforts, and the number of bugs of the target
+     * version with the elements of the source version at the sampled indices. Indices may occur
+     * multiple times. Source and target may be the same version. The bug matrix, the efforts, and
+     * the number of bugs are only replaced if they exist in the target version.
+     * </p>
+     *
+     * @param source
+     *            version from which the instances are selected
+     * @param indices
+     *            the sampled indices
+     * @param target
+     *            version whose data is replaced
+     */
+    public static void select(SoftwareVersion source, int[] indices, SoftwareVersion target) {
+        List<Instance> instances = select(source.getInstances(), indices);
+        List<Instance> bugMatrix =
+            target.getBugMatrix() == null ? null : select(source.getBugMatrix(), indices);
+        List<Double> efforts =
+            target.getEfforts() == null ? null : select(source.getEfforts(), indices);
+        List<Double> numBugs =
+            target.getNumBugs() == null ? null : select(source.getNumBugs(), indices);
+
+        // Instances.add copies the instances, hence duplicates are independent of each other
+        replace(target.getInstances(), instances);
+        if (bugMatrix != null) {
+            replace(target.getBugMatrix(), bugMatrix);
+        }
+        if (efforts != null) {
+            replace(target.getEfforts(), efforts);
+        }
+        if (numBugs != null) {
+            replace(target.getNumBugs(), numBugs);
+        }
+    }
+
+    /**
+     * <p>
+     * Selects the elements of a list at the sampled indices.
+     * </p>
+     *
+     * @param list
+     *            the list
+     * @param indices
+     *            the sampled indices
+     * @return the selected elements
+     */
+    private static <T> List<T> select(List<T> list, int[] indices) {
+        List<T> selected = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            selected.add(list.get(index));
+        }
+        return selected;
+    }
+
+    /**
+     * <p>
+     * Replaces the elements of a list.
+     * </p>
+     *
+     * @param list
+     *            the list
+     * @param elements
+     *            the new elements
+     */
+    private static <T> void replace(List<T> list, List<T> elements) {
+        list.clear();
+        list.addAll(elements);
+    }
+}
@@ -0,0 +1,222 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>
+ * Captures the output that third party libraries (e.g., Weka) write to {@link System#err} for
+ * single threads. Instead of replacing {@link System#err} for the whole process while a library is
+ * running, a dispatching stream is installed once. Output of threads that are capturing is passed
+ * line by line to the logger, the output of all other threads is passed unchanged to the original
+ * error stream. Hence, capturing is thread-safe and does not affect concurrent experiments.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class ThreadOutputCapture {
+
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * context and buffer of the current thread; null if the thread is not capturing
+     */
+    private static final ThreadLocal<Capture> CAPTURE = new ThreadLocal<>();
+
+    /**
+     * dispatching error stream; null if not yet installed
+     */
+    private static PrintStream dispatchingStream = null;
+
+    /**
+     * <p>
+     * Private constructor to prevent instantiation.
+     * </p>
+     */
+    private ThreadOutputCapture() {
+        // static utility class
+    }
+
+    /**
+     * <p>
+     * Starts capturing the error output of the current thread. Each line is logged with the
+     * context as prefix.
+     * </p>
+     *
+     * @param context
+     *            context that is used as prefix of the logged lines
+     */
+    public static void begin(String context) {
+        install();
+        CAPTURE.set(new Capture(context));
+    }
+
+    /**
+     * <p>
+     * Stops capturing the error output of the current thread. Incomplete lines are logged.
+     * </p>
+     */
+    public static void end() {
+        Capture capture = CAPTURE.get();
+        CAPTURE.remove();
+        if (capture != null) {
+            capture.flush();
+        }
+    }
+
+    /**
+     * <p>
+     * Installs the dispatching error stream, if this was not yet done.
+     * </p>
+     */
+    private static synchronized void install() {
+        if (dispatchingStream == null || System.err != dispatchingStream) {
+            dispatchingStream = new PrintStream(new DispatchingOutputStream(System.err), true);
+            System.setErr(dispatchingStream);
+        }
+    }
+
+    /**
+     * <p>
+     * Context and line buffer of a capturing thread.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class Capture {
+
+        /**
+         * context used as prefix of the logged lines
+         */
+        private final String context;
+
+        /**
+         * buffer of the current line
+         */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        /**
+         * <p>
+         * Constructor. Creates a new Capture.
+         * </p>
+         *
+         * @param context
+         *            context used as prefix of the logged lines
+         */
+        @SuppressWarnings("hiding")
+        Capture(String context) {
+            this.context = context;
+        }
+
+        /**
+         * <p>
+         * Adds a byte to the current line. The line is logged on a line break.
+         * </p>
+         *
+         * @param b
+         *            the byte
+         */
+        void write(int b) {
+            if (b == '\n') {
+                flush();
+            }
+            else if (b != '\r') {
+                this.buffer.write(b);
+            }
+        }
+
+        /**
+         * <p>
+         * Logs the current line, if it is not empty.
+         * </p>
+         */
+        void flush() {
+            if (this.buffer.size() > 0) {
+                LOGGER.debug(String.format("[%s] %s", this.context, this.buffer.toString()));
+                this.buffer.reset();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Stream that passes the output either to the capture of the current thread or to the original
+     * stream.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class DispatchingOutputStream extends OutputStream {
+
+        /**
+         * stream that receives the output of threads that are not capturing
+         */
+        private final OutputStream original;
+
+        /**
+         * <p>
+         * Constructor. Creates a new DispatchingOutputStream.
+         * </p>
+         *
+         * @param original
+         *            stream that receives the output of threads that are not capturing
+         */
+        @SuppressWarnings("hiding")
+        DispatchingOutputStream(OutputStream original) {
+            this.original = original;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            Capture capture = CAPTURE.get();
+            if (capture == null) {
+                this.original.write(b);
+            }
+            else {
+                capture.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Capture capture = CAPTURE.get();
+            if (capture == null) {
+                this.original.write(b, off, len);
+            }
+            else {
+                for (int i = off; i < off + len; i++) {
+                    capture.write(b[i]);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (CAPTURE.get() == null) {
+                this.original.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Budget for the wall time and the memory of a training. The memory use is estimated from the
+ * number of bytes that the threads of the training allocate on the heap. The budget is checked
+ * cooperatively: long-running loops call {@link #checkpoint()}, which throws a
+ * {@link BudgetExceededException} if the budget of the training that is executed by the current
+ * thread is exceeded. Threads that are started during a training, e.g., by thread pools of the
+ * training, inherit the budget. Outside of a training, {@link #checkpoint()} does nothing.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class TrainingBudget {
+
+    /**
+     * budget of the training that is executed by a thread
+     */
+    private static final InheritableThreadLocal<TrainingBudget> ACTIVE_BUDGET =
+        new InheritableThreadLocal<>();
+
+    /**
+     * maximal wall time in milliseconds; 0 if the wall time is not limited
+     */
+    private final long maxMillis;
+
+    /**
+     * maximal number of allocated bytes; 0 if the memory is not limited
+     */
+    private final long maxAllocatedBytes;
+
+    /**
+     * start of the current training as returned by {@link System#nanoTime()}
+     */
+    private volatile long startNanos;
+
+    /**
+     * true while a training is executed
+     */
+    private volatile boolean running = false;
+
+    /**
+     * reason why the budget was exceeded; null if the budget is not exceeded
+     */
+    private volatile String exceededReason = null;
+
+    /**
+     * allocated bytes of each thread at the first checkpoint of the thread
+     */
+    private final Map<Long, Long> allocationBaselines = new ConcurrentHashMap<>();
+
+    /**
+     * bytes allocated by each thread since its first checkpoint
+     */
+    private final Map<Long, Long> allocatedBytes = new ConcurrentHashMap<>();
+
+    /**
+     * <p>
+     * Constructor. Creates a new budget.
+     * </p>
+     *
+     * @param maxMillis
+     *            maximal wall time in milliseconds; 0 if the wall time is not limited
+     * @param maxAllocatedBytes
+     *            maximal number of bytes allocated by the training; 0 if the memory is not
+     *            limited
+     */
+    @SuppressWarnings("hiding")
+    public TrainingBudget(long maxMillis, long maxAllocatedBytes) {
+        this.maxMillis = maxMillis;
+        this.maxAllocatedBytes = maxAllocatedBytes;
+    }
+
+    /**
+     * <p>
+     * Executes a training within the budget.
+     * </p>
+     *
+     * @param training
+     *            the training
+     * @return reason why the budget was exceeded; null if the training finished within the budget
+     */
+    public String run(Runnable training) {
+        TrainingBudget previous = ACTIVE_BUDGET.get();
+        this.allocationBaselines.clear();
+        this.allocatedBytes.clear();
+        this.exceededReason = null;
+        this.startNanos = System.nanoTime();
+        this.running = true;
+        ACTIVE_BUDGET.set(this);
+        try {
+            measureAllocation();
+            training.run();
+        }
+        catch (RuntimeException e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof BudgetExceededException)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw e;
+            }
+        }
+        finally {
+            this.running = false;
+            if (previous == null) {
+                ACTIVE_BUDGET.remove();
+            }
+            else {
+                ACTIVE_BUDGET.set(previous);
+            }
+        }
+        // the exception may have been caught by the training
+        return this.exceededReason;
+    }
+
+    /**
+     * <p>
+     * Checks the budget of the training that is executed by the current thread.
+     * </p>
+     *
+     * @throws BudgetExceededException
+     *             thrown if the budget is exceeded
+     */
+    public static void checkpoint() {
+        TrainingBudget budget = ACTIVE_BUDGET.get();
+        if (budget != null && budget.running) {
+            budget.check();
+        }
+    }
+
+    /**
+     * <p>
+     * Checks if the budget is exceeded.
+     * </p>
+     *
+     * @throws BudgetExceededException
+     *             thrown if the budget is exceeded
+     */
+    private void check() {
+        if (this.exceededReason == null && this.maxMillis > 0) {
+            long millis = (System.nanoTime() - this.startNanos) / 1000000;
+            if (millis > this.maxMillis) {
+                this.exceededReason = String.format("time budget of %d ms exceeded after %d ms",
+                                                    this.maxMillis, millis);
+            }
+        }
+        if (this.exceededReason == null && this.maxAllocatedBytes > 0) {
+            long allocated = measureAllocation();
+            if (allocated > this.maxAllocatedBytes) {
+                this.exceededReason =
+                    String.format("memory budget of %d MB exceeded after %d MB allocations",
+                                  this.maxAllocatedBytes >> 20, allocated >> 20);
+            }
+        }
+        if (this.exceededReason != null) {
+            throw new BudgetExceededException(this.exceededReason);
+        }
+    }
+
+    /**
+     * <p>
+     * Updates the bytes allocated by the current thread and estimates the bytes allocated by the
+     * training.
+     * </p>
+     *
+     * @return bytes allocated by all threads of the training since their first checkpoint; 0 if
+     *         the JVM does not support the measurement of allocations
+     */
+    @SuppressWarnings("boxing")
+    private long measureAllocation() {
+        if (this.maxAllocatedBytes <= 0 ||
+            !(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+        {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported() ||
+            !threadBean.isThreadAllocatedMemoryEnabled())
+        {
+            return 0;
+        }
+        long threadId = Thread.currentThread().getId();
+        long current = threadBean.getThreadAllocatedBytes(threadId);
+        long baseline = this.allocationBaselines.computeIfAbsent(threadId, id -> current);
+        this.allocatedBytes.put(threadId, current - baseline);
+        long allocated = 0;
+        for (long bytes : this.allocatedBytes.values()) {
+            allocated += bytes;
+        }
+        return allocated;
+    }
+
+    /**
+     * <p>
+     * Thrown by {@link TrainingBudget#checkpoint()} if the budget of a training is exceeded.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    public static class BudgetExceededException extends RuntimeException {
+
+        /**
+         * default serialization ID
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * <p>
+         * Constructor. Creates a new exception.
+         * </p>
+         *
+         * @param reason
+         *            reason why the budget is exceeded
+         */
+        public BudgetExceededException(String reason) {
+            super(reason);
+        }
+    }
+}
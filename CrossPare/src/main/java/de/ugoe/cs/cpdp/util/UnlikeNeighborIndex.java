@@ -0,0 +1,785 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Index for nearest unlike neighbor queries, i.e., for the instance with the smallest Euclidean
+ * distance that has a different class value, as used by MORPH and LACE2. The distance is computed
+ * over the numeric attributes except the class. The instances of each class value are stored in a
+ * KD-tree, which supports the insertion of instances, e.g., while a data set grows, and the update
+ * of instances after their values were changed. Updated instances are marked as deleted and
+ * inserted again; the trees are rebuilt balanced once they doubled their size.
+ * </p>
+ * <p>
+ * The results are identical to a linear scan over the instances: the distances are computed with
+ * the same floating point operations, subtrees are only pruned if they cannot contain an instance
+ * with the same or a smaller distance, and ties are resolved in favor of the instance that was
+ * indexed first. If the indexed data contains infinite or missing values, the index falls back to a
+ * linear scan.
+ * </p>
+ * <p>
+ * The index is not thread-safe.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class UnlikeNeighborIndex {
+
+    /**
+     * minimal number of nodes of a tree, before it is rebuilt
+     */
+    private static final int MIN_REBUILD_SIZE = 32;
+
+    /**
+     * indices of the attributes that are compared, i.e., all numeric attributes except the class
+     */
+    private final int[] attributeIndices;
+
+    /**
+     * number of compared attributes
+     */
+    private final int dimension;
+
+    /**
+     * indexed instances in the order in which they were added
+     */
+    private final List<Instance> instances = new ArrayList<>();
+
+    /**
+     * positions of the indexed instances
+     */
+    private final Map<Instance, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * trees of the class values
+     */
+    private final List<KdTree> trees = new ArrayList<>();
+
+    /**
+     * tree of each indexed instance
+     */
+    private KdTree[] treeOfPosition = new KdTree[16];
+
+    /**
+     * node of each indexed instance within its tree
+     */
+    private int[] nodeOfPosition = new int[16];
+
+    /**
+     * true if the index falls back to a linear scan
+     */
+    private boolean linearScan;
+
+    /**
+     * values of the current query
+     */
+    private final double[] query;
+
+    /**
+     * distance of the best candidate of the current query
+     */
+    private double bestDistance;
+
+    /**
+     * position of the best candidate of the current query; -1 if there is no candidate
+     */
+    private int bestPosition;
+
+    /**
+     * <p>
+     * Constructor. Creates a new index for the data. The data may be empty and is afterwards only
+     * used through the instances that are added to the index.
+     * </p>
+     *
+     * @param data
+     *            the indexed data
+     */
+    public UnlikeNeighborIndex(Instances data) {
+        this.attributeIndices = numericAttributeIndices(data);
+        this.dimension = this.attributeIndices.length;
+        this.query = new double[this.dimension];
+        this.linearScan = this.dimension == 0;
+        for (Instance instance : data) {
+            // the trees are built balanced afterwards
+            insert(instance, false);
+        }
+        for (KdTree tree : this.trees) {
+            tree.rebuild();
+        }
+    }
+
+    /**
+     * <p>
+     * Determines the indices of the numeric attributes of a data set, except the class attribute.
+     * </p>
+     *
+     * @param data
+     *            the data
+     * @return indices of the attributes
+     */
+    public static int[] numericAttributeIndices(Instances data) {
+        int count = 0;
+        for (int j = 0; j < data.numAttributes(); j++) {
+            if (j != data.classIndex() && data.attribute(j).isNumeric()) {
+                count++;
+            }
+        }
+        int[] indices = new int[count];
+        int k = 0;
+        for (int j = 0; j < data.numAttributes(); j++) {
+            if (j != data.classIndex() && data.attribute(j).isNumeric()) {
+                indices[k++] = j;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * <p>
+     * Calculates the Euclidean distance between two instances over the given attributes without
+     * allocating memory.
+     * </p>
+     *
+     * @param instance1
+     *            first instance
+     * @param instance2
+     *            second instance
+     * @param attributeIndices
+     *            indices of the compared attributes, e.g., determined with
+     *            {@link #numericAttributeIndices(Instances)}
+     * @return the distance
+     */
+    @SuppressWarnings("hiding")
+    public static double distance(Instance instance1, Instance instance2, int[] attributeIndices) {
+        double sum = 0.0;
+        for (int attIndex : attributeIndices) {
+            final double dp = instance1.value(attIndex) - instance2.value(attIndex);
+            sum += dp * dp;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * <p>
+     * Adds an instance to the index.
+     * </p>
+     *
+     * @param instance
+     *            the instance; the index keeps a reference to the instance, which is also returned
+     *            by {@link #nearest(Instance)}
+     */
+    public void add(Instance instance) {
+        KdTree tree = insert(instance, true);
+        if (tree != null) {
+            tree.rebuildIfUnbalanced();
+        }
+    }
+
+    /**
+     * <p>
+     * Updates the index after the values of an indexed instance were changed.
+     * </p>
+     *
+     * @param instance
+     *            the changed instance
+     */
+    public void update(Instance instance) {
+        Integer position = this.positions.get(instance);
+        if (position == null) {
+            throw new IllegalArgumentException("instance is not part of the index");
+        }
+        if (this.linearScan) {
+            return;
+        }
+        int pos = position.intValue();
+        this.treeOfPosition[pos].delete(this.nodeOfPosition[pos]);
+        if (!isFinite(instance)) {
+            switchToLinearScan();
+            return;
+        }
+        KdTree tree = treeOf(instance.classValue());
+        this.treeOfPosition[pos] = tree;
+        this.nodeOfPosition[pos] = tree.insert(instance, pos, true);
+        tree.rebuildIfUnbalanced();
+    }
+
+    /**
+     * <p>
+     * Determines the nearest unlike neighbor of an instance, i.e., the indexed instance with the
+     * smallest distance whose class value is different. If multiple instances have the smallest
+     * distance, the instance that was added first is returned.
+     * </p>
+     *
+     * @param instance
+     *            the instance
+     * @return nearest unlike neighbor; null if there is no instance with a different class value
+     *         and a distance below {@link Double#MAX_VALUE}
+     */
+    public Instance nearest(Instance instance) {
+        double classValue = instance.classValue();
+        for (int k = 0; k < this.dimension; k++) {
+            this.query[k] = instance.value(this.attributeIndices[k]);
+        }
+        this.bestDistance = Double.MAX_VALUE;
+        this.bestPosition = -1;
+        if (this.linearScan) {
+            for (int pos = 0; pos < this.instances.size(); pos++) {
+                Instance other = this.instances.get(pos);
+                if (classValue != other.classValue()) {
+                    double distance = distance(instance, other, this.attributeIndices);
+                    if (distance < this.bestDistance) {
+                        this.bestDistance = distance;
+                        this.bestPosition = pos;
+                    }
+                }
+            }
+        }
+        else {
+            for (KdTree tree : this.trees) {
+                if (classValue != tree.classValue) {
+                    tree.search();
+                }
+            }
+        }
+        return this.bestPosition < 0 ? null : this.instances.get(this.bestPosition);
+    }
+
+    /**
+     * <p>
+     * Adds an instance to the instances and to the tree of its class value, without rebuilding
+     * the tree.
+     * </p>
+     *
+     * @param instance
+     *            the instance
+     * @param link
+     *            true if the node of the instance is linked into the tree
+     * @return the tree; null if the index uses a linear scan
+     */
+    private KdTree insert(Instance instance, boolean link) {
+        int pos = this.instances.size();
+        this.instances.add(instance);
+        this.positions.put(instance, Integer.valueOf(pos));
+        if (pos == this.nodeOfPosition.length) {
+            this.nodeOfPosition = Arrays.copyOf(this.nodeOfPosition, 2 * pos);
+            this.treeOfPosition = Arrays.copyOf(this.treeOfPosition, 2 * pos);
+        }
+        if (!this.linearScan && !isFinite(instance)) {
+            switchToLinearScan();
+        }
+        if (this.linearScan) {
+            return null;
+        }
+        KdTree tree = treeOf(instance.classValue());
+        this.treeOfPosition[pos] = tree;
+        this.nodeOfPosition[pos] = tree.insert(instance, pos, link);
+        return tree;
+    }
+
+    /**
+     * <p>
+     * Determines the tree of a class value and creates it if required.
+     * </p>
+     *
+     * @param classValue
+     *            the class value
+     * @return the tree
+     */
+    private KdTree treeOf(double classValue) {
+        for (KdTree tree : this.trees) {
+            if (Double.compare(tree.classValue, classValue) == 0) {
+                return tree;
+            }
+        }
+        KdTree tree = new KdTree(classValue);
+        this.trees.add(tree);
+        return tree;
+    }
+
+    /**
+     * <p>
+     * Checks if all compared values of an instance are finite.
+     * </p>
+     *
+     * @param instance
+     *            the instance
+     * @return true if all values are finite
+     */
+    private boolean isFinite(Instance instance) {
+        for (int attIndex : this.attributeIndices) {
+            if (!Double.isFinite(instance.value(attIndex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Discards the trees and uses a linear scan for all further queries.
+     * </p>
+     */
+    private void switchToLinearScan() {
+        this.linearScan = true;
+        this.trees.clear();
+        Arrays.fill(this.treeOfPosition, null);
+    }
+
+    /**
+     * <p>
+     * Offers a candidate to the current query.
+     * </p>
+     *
+     * @param distance
+     *            distance of the candidate
+     * @param position
+     *            position of the candidate
+     */
+    private void offer(double distance, int position) {
+        if (distance < this.bestDistance ||
+            (this.bestPosition >= 0 && distance == this.bestDistance &&
+                position < this.bestPosition))
+        {
+            this.bestDistance = distance;
+            this.bestPosition = position;
+        }
+    }
+
+    /**
+     * <p>
+     * KD-tree over the instances of a class value. The left subtree of a node contains only
+     * values that are less than or equal to the value of the node in the split attribute, the right
+     * subtree only values that are greater than or equal to it. The split attribute cycles with the
+     * depth of the node.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private class KdTree {
+
+        /**
+         * class value of the instances
+         */
+        final double classValue;
+
+        /**
+         * values of the nodes, {@link UnlikeNeighborIndex#dimension} values per node
+         */
+        private double[] coords = new double[0];
+
+        /**
+         * positions of the instances of the nodes
+         */
+        private int[] nodePositions = new int[0];
+
+        /**
+         * left children of the nodes; -1 if there is no child
+         */
+        private int[] left = new int[0];
+
+        /**
+         * right children of the nodes; -1 if there is no child
+         */
+        private int[] right = new int[0];
+
+        /**
+         * deletion marks of the nodes
+         */
+        private boolean[] deleted = new boolean[0];
+
+        /**
+         * number of nodes, including deleted nodes
+         */
+        private int size = 0;
+
+        /**
+         * number of nodes after the last rebuild
+         */
+        private int builtSize = 0;
+
+        /**
+         * root node; -1 if the tree is empty
+         */
+        private int root = -1;
+
+        /**
+         * nodes of the pending subtrees of a search
+         */
+        private int[] stackNodes = new int[16];
+
+        /**
+         * depths of the pending subtrees of a search
+         */
+        private int[] stackDepths = new int[16];
+
+        /**
+         * lower bounds of the squared distance of the pending subtrees of a search
+         */
+        private double[] stackBounds = new double[16];
+
+        /**
+         * <p>
+         * Constructor. Creates a new empty tree.
+         * </p>
+         *
+         * @param classValue
+         *            class value of the instances
+         */
+        @SuppressWarnings("hiding")
+        KdTree(double classValue) {
+            this.classValue = classValue;
+        }
+
+        /**
+         * <p>
+         * Inserts an instance as new leaf.
+         * </p>
+         *
+         * @param instance
+         *            the instance
+         * @param position
+         *            position of the instance
+         * @param link
+         *            true if the node is linked into the tree; otherwise, the tree must be rebuilt
+         * @return the node of the instance
+         */
+        @SuppressWarnings("hiding")
+        int insert(Instance instance, int position, boolean link) {
+            final int dim = UnlikeNeighborIndex.this.dimension;
+            final int[] attributeIndices = UnlikeNeighborIndex.this.attributeIndices;
+            int node = createNode(position);
+            for (int k = 0; k < dim; k++) {
+                this.coords[node * dim + k] = instance.value(attributeIndices[k]);
+            }
+            if (link) {
+                link(node);
+            }
+            return node;
+        }
+
+        /**
+         * <p>
+         * Marks a node as deleted.
+         * </p>
+         *
+         * @param node
+         *            the node
+         */
+        void delete(int node) {
+            this.deleted[node] = true;
+        }
+
+        /**
+         * <p>
+         * Rebuilds the tree if its size doubled since the last rebuild.
+         * </p>
+         */
+        void rebuildIfUnbalanced() {
+            if (this.size >= MIN_REBUILD_SIZE && this.size > 2 * this.builtSize) {
+                rebuild();
+            }
+        }
+
+        /**
+         * <p>
+         * Rebuilds the tree balanced from the nodes that are not deleted.
+         * </p>
+         */
+        void rebuild() {
+            final int dim = UnlikeNeighborIndex.this.dimension;
+            int live = 0;
+            for (int node = 0; node < this.size; node++) {
+                if (!this.deleted[node]) {
+                    live++;
+                }
+            }
+            double[] newCoords = new double[Math.max(1, live) * dim];
+            int[] newPositions = new int[Math.max(1, live)];
+            int newNode = 0;
+            for (int node = 0; node < this.size; node++) {
+                if (!this.deleted[node]) {
+                    System.arraycopy(this.coords, node * dim, newCoords, newNode * dim, dim);
+                    newPositions[newNode] = this.nodePositions[node];
+                    UnlikeNeighborIndex.this.nodeOfPosition[this.nodePositions[node]] = newNode;
+                    newNode++;
+                }
+            }
+            this.coords = newCoords;
+            this.nodePositions = newPositions;
+            this.left = new int[newPositions.length];
+            this.right = new int[newPositions.length];
+            this.deleted = new boolean[newPositions.length];
+            this.size = live;
+            this.builtSize = live;
+            int[] nodes = new int[live];
+            for (int node = 0; node < live; node++) {
+                nodes[node] = node;
+            }
+            this.root = build(nodes, 0, live, 0);
+        }
+
+        /**
+         * <p>
+         * Searches the tree for a better candidate of the current query of the index.
+         * </p>
+         */
+        void search() {
+            if (this.root < 0) {
+                return;
+            }
+            final int dim = UnlikeNeighborIndex.this.dimension;
+            final double[] queryValues = UnlikeNeighborIndex.this.query;
+            int top = 0;
+            push(top++, this.root, 0, 0.0);
+            while (top > 0) {
+                top--;
+                int node = this.stackNodes[top];
+                int depth = this.stackDepths[top];
+                double bound = this.stackBounds[top];
+                if (Math.sqrt(bound) > UnlikeNeighborIndex.this.bestDistance) {
+                    continue;
+                }
+                int offset = node * dim;
+                if (!this.deleted[node]) {
+                    double sum = 0.0;
+                    for (int k = 0; k < dim; k++) {
+                        final double dp = queryValues[k] - this.coords[offset + k];
+                        sum += dp * dp;
+                    }
+                    offer(Math.sqrt(sum), this.nodePositions[node]);
+                }
+                int axis = depth % dim;
+                double diff = queryValues[axis] - this.coords[offset + axis];
+                int near = diff < 0 ? this.left[node] : this.right[node];
+                int far = diff < 0 ? this.right[node] : this.left[node];
+                // the far subtree is pushed first, such that the near subtree is searched first
+                if (far >= 0) {
+                    push(top++, far, depth + 1, Math.max(bound, diff * diff));
+                }
+                if (near >= 0) {
+                    push(top++, near, depth + 1, bound);
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Pushes a subtree to the stack of the search.
+         * </p>
+         *
+         * @param index
+         *            index in the stack
+         * @param node
+         *            root of the subtree
+         * @param depth
+         *            depth of the root
+         * @param bound
+         *            lower bound of the squared distance of the subtree
+         */
+        private void push(int index, int node, int depth, double bound) {
+            if (index == this.stackNodes.length) {
+                this.stackNodes = Arrays.copyOf(this.stackNodes, 2 * index);
+                this.stackDepths = Arrays.copyOf(this.stackDepths, 2 * index);
+                this.stackBounds = Arrays.copyOf(this.stackBounds, 2 * index);
+            }
+            this.stackNodes[index] = node;
+            this.stackDepths[index] = depth;
+            this.stackBounds[index] = bound;
+        }
+
+        /**
+         * <p>
+         * Creates a new unlinked node.
+         * </p>
+         *
+         * @param position
+         *            position of the instance of the node
+         * @return the node
+         */
+        private int createNode(int position) {
+            if (this.size == this.nodePositions.length) {
+                int capacity = Math.max(16, 2 * this.size);
+                this.coords =
+                    Arrays.copyOf(this.coords, capacity * UnlikeNeighborIndex.this.dimension);
+                this.nodePositions = Arrays.copyOf(this.nodePositions, capacity);
+                this.left = Arrays.copyOf(this.left, capacity);
+                this.right = Arrays.copyOf(this.right, capacity);
+                this.deleted = Arrays.copyOf(this.deleted, capacity);
+            }
+            int node = this.size++;
+            this.nodePositions[node] = position;
+            this.left[node] = -1;
+            this.right[node] = -1;
+            this.deleted[node] = false;
+            return node;
+        }
+
+        /**
+         * <p>
+         * Links a new node as leaf into the tree.
+         * </p>
+         *
+         * @param node
+         *            the node
+         */
+        private void link(int node) {
+            if (this.root < 0) {
+                this.root = node;
+                return;
+            }
+            final int dim = UnlikeNeighborIndex.this.dimension;
+            int current = this.root;
+            int depth = 0;
+            while (true) {
+                int axis = depth % dim;
+                if (this.coords[node * dim + axis] < this.coords[current * dim + axis]) {
+                    if (this.left[current] < 0) {
+                        this.left[current] = node;
+                        return;
+                    }
+                    current = this.left[current];
+                }
+                else {
+                    if (this.right[current] < 0) {
+                        this.right[current] = node;
+                        return;
+                    }
+                    current = this.right[current];
+                }
+                depth++;
+            }
+        }
+
+        /**
+         * <p>
+         * Builds a balanced subtree from nodes by splitting at the median of the split attribute.
+         * </p>
+         *
+         * @param nodes
+         *            the nodes
+         * @param from
+         *            first node of the subtree (inclusive)
+         * @param to
+         *            last node of the subtree (exclusive)
+         * @param depth
+         *            depth of the subtree
+         * @return root of the subtree; -1 if the subtree is empty
+         */
+        private int build(int[] nodes, int from, int to, int depth) {
+            if (from >= to) {
+                return -1;
+            }
+            int axis = depth % UnlikeNeighborIndex.this.dimension;
+            int median = (from + to) >>> 1;
+            select(nodes, from, to - 1, median, axis);
+            int node = nodes[median];
+            this.left[node] = build(nodes, from, median, depth + 1);
+            this.right[node] = build(nodes, median + 1, to, depth + 1);
+            return node;
+        }
+
+        /**
+         * <p>
+         * Partially sorts nodes such that the node at the k-th index is the node that would be
+         * there if the nodes were sorted by the split attribute.
+         * </p>
+         *
+         * @param nodes
+         *            the nodes
+         * @param from
+         *            first index (inclusive)
+         * @param to
+         *            last index (inclusive)
+         * @param k
+         *            the index
+         * @param axis
+         *            the split attribute
+         */
+        private void select(int[] nodes, int from, int to, int k, int axis) {
+            int lo = from;
+            int hi = to;
+            while (lo < hi) {
+                int pivotIndex = (lo + hi) >>> 1;
+                swap(nodes, pivotIndex, hi);
+                int pivot = nodes[hi];
+                int store = lo;
+                for (int i = lo; i < hi; i++) {
+                    if (compare(nodes[i], pivot, axis) < 0) {
+                        swap(nodes, i, store++);
+                    }
+                }
+                swap(nodes, store, hi);
+                if (store == k) {
+                    return;
+                }
+                else if (store < k) {
+                    lo = store + 1;
+                }
+                else {
+                    hi = store - 1;
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Compares two nodes by the split attribute. Ties are resolved by the node numbers to
+         * make the order strict.
+         * </p>
+         *
+         * @param node1
+         *            first node
+         * @param node2
+         *            second node
+         * @param axis
+         *            the split attribute
+         * @return comparison result
+         */
+        private int compare(int node1, int node2, int axis) {
+            final int dim = UnlikeNeighborIndex.this.dimension;
+            int result = Double.compare(this.coords[node1 * dim + axis],
+                                        this.coords[node2 * dim + axis]);
+            return result != 0 ? result : Integer.compare(node1, node2);
+        }
+
+        /**
+         * <p>
+         * Swaps two nodes.
+         * </p>
+         *
+         * @param nodes
+         *            the nodes
+         * @param i
+         *            first index
+         * @param j
+         *            second index
+         */
+        private void swap(int[] nodes, int i, int j) {
+            int tmp = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = tmp;
+        }
+    }
+}
@@ -290,6 +290,7 @@ public class WekaUtils {
      *            the training data
      */
     public static Classifier buildClassifier(Classifier classifier, Instances traindata) {
+        TrainingBudget.checkpoint();
         try {
             if (classifier == null) {
                 LOGGER.warn(String.format("classifier null!"));
@@ -447,6 +448,7 @@ public class WekaUtils {
         Random rand = new Random();
         List<ClassifierScorePair> population = new ArrayList<>();
         for (int j = 0; j < populationSize; j++) {
+            TrainingBudget.checkpoint();
             List<Hyperparameter> tuneParamsRand = new ArrayList<>();
             for (Hyperparameter hyperparam : tuneParams) {
                 Hyperparameter copyHyperparam = new Hyperparameter(hyperparam);
@@ -464,6 +466,7 @@ public class WekaUtils {
         }
         for (int gen = 0; gen < numGenerations; gen++) {
             for (int j = 0; j < populationSize; j++) {
+                TrainingBudget.checkpoint();
                 int[] r = {0, 0, 0};
                 r[0] = rand.nextInt(populationSize);
                 while (r[0] == j) {
@@ -0,0 +1,481 @@
+// Copyright 2015 Georg-August-Universität Göttingen, Germany
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package de.ugoe.cs.cpdp.wekaclassifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.ugoe.cs.cpdp.util.ThreadOutputCapture;
+import de.ugoe.cs.cpdp.util.TrainingBudget;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.AggregateableEvaluation;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.meta.CVParameterSelection;
+import weka.core.Instances;
+import weka.core.OptionHandler;
+import weka.core.Utils;
+
+/**
+ * <p>
+ * Drop-in replacement for {@link CVParameterSelection} that evaluates the pairs of grid points and
+ * folds in parallel. The grid, the folds, and the selection of the best parameters are the same as
+ * in {@link CVParameterSelection}.
+ * </p>
+ * <p>
+ * Optionally, the grid points are evaluated with successive halving: the folds are evaluated in
+ * rungs of 1, 2, 4, ... folds and after each rung only the better half of the grid points with
+ * respect to the error on the folds so far is evaluated further. Successive halving is disabled by
+ * default, because it may abandon the grid point that would be selected with all folds.
+ * </p>
+ * <p>
+ * The winning parameters are available through {@link #getSelectedParameters()}, the time
+ * required for the tuning through {@link #getTuningTime()}. Both are also part of
+ * {@link #toString()} and are stored with the results of the evaluation.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class ParallelCVParameterSelection extends CVParameterSelection {
+
+    /**
+     * default serialization ID
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Reference to the logger
+     */
+    private static final Logger LOGGER = LogManager.getLogger("main");
+
+    /**
+     * number of threads used for the evaluation of the grid points
+     */
+    private int numThreads = 1;
+
+    /**
+     * defines if successive halving is used
+     */
+    private boolean successiveHalving = false;
+
+    /**
+     * time required for the parameter tuning in milliseconds
+     */
+    private long tuningTime = 0;
+
+    /**
+     * <p>
+     * Sets the number of threads used for the evaluation of the grid points.
+     * </p>
+     *
+     * @param numThreads
+     *            number of threads
+     */
+    @SuppressWarnings("hiding")
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * <p>
+     * Defines if grid points are abandoned with successive halving.
+     * </p>
+     *
+     * @param successiveHalving
+     *            true if successive halving is used
+     */
+    @SuppressWarnings("hiding")
+    public void setSuccessiveHalving(boolean successiveHalving) {
+        this.successiveHalving = successiveHalving;
+    }
+
+    /**
+     * <p>
+     * Returns the time required for the parameter tuning of the last call of
+     * {@link #buildClassifier(Instances)}.
+     * </p>
+     *
+     * @return tuning time in milliseconds
+     */
+    public long getTuningTime() {
+        return this.tuningTime;
+    }
+
+    /**
+     * <p>
+     * Returns the options of the parameters selected by the last call of
+     * {@link #buildClassifier(Instances)}.
+     * </p>
+     *
+     * @return selected options; null if the classifier was not built
+     */
+    public String getSelectedParameters() {
+        if (this.m_BestClassifierOptions == null) {
+            return null;
+        }
+        return Utils.joinOptions(this.m_BestClassifierOptions);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see weka.classifiers.meta.CVParameterSelection#buildClassifier(weka.core.Instances)
+     */
+    @Override
+    public void buildClassifier(Instances instances) throws Exception {
+        long start = System.currentTimeMillis();
+        if (this.m_CVParams.size() == 0) {
+            super.buildClassifier(instances);
+            this.tuningTime = System.currentTimeMillis() - start;
+            return;
+        }
+
+        // same preparation as CVParameterSelection
+        getCapabilities().testWithFail(instances);
+        Instances trainData = new Instances(instances);
+        trainData.deleteWithMissingClass();
+        Instances trainCopy = new Instances(trainData);
+        if (!(this.m_Classifier instanceof OptionHandler)) {
+            throw new IllegalArgumentException("Base classifier should be OptionHandler.");
+        }
+        this.m_InitOptions = ((OptionHandler) this.m_Classifier).getOptions();
+        this.m_BestPerformance = -99;
+        this.m_NumAttributes = trainData.numAttributes();
+        trainData.randomize(new Random(this.m_Seed));
+        this.m_TrainFoldSize = trainData.trainCV(this.m_NumFolds, 0).numInstances();
+        if (trainData.classAttribute().isNominal()) {
+            trainData.stratify(this.m_NumFolds);
+        }
+        this.m_BestClassifierOptions = null;
+        this.m_ClassifierOptions = ((OptionHandler) this.m_Classifier).getOptions();
+        List<GridParameter> parameters = new ArrayList<>();
+        for (int i = 0; i < this.m_CVParams.size(); i++) {
+            GridParameter parameter = new GridParameter(getCVParameter(i));
+            Utils.getOption(parameter.paramChar, this.m_ClassifierOptions);
+            parameters.add(parameter);
+        }
+
+        List<String[]> grid = new ArrayList<>();
+        enumerateGrid(parameters, 0, new double[parameters.size()], grid);
+        double[] errors = evaluateGrid(grid, trainData);
+
+        // select the best grid point in the same order as CVParameterSelection
+        for (int i = 0; i < grid.size(); i++) {
+            if (this.m_BestPerformance == -99 || errors[i] < this.m_BestPerformance) {
+                this.m_BestPerformance = errors[i];
+                this.m_BestClassifierOptions = grid.get(i);
+            }
+        }
+
+        ((OptionHandler) this.m_Classifier).setOptions(this.m_BestClassifierOptions.clone());
+        this.m_Classifier.buildClassifier(trainCopy);
+        this.tuningTime = System.currentTimeMillis() - start;
+        LOGGER.debug(String.format("parameter selection for %s: %s (error %f, %d grid points, %d ms)",
+                                   this.m_Classifier.getClass().getName(),
+                                   Utils.joinOptions(this.m_BestClassifierOptions),
+                                   this.m_BestPerformance, grid.size(), this.tuningTime));
+    }
+
+    /**
+     * <p>
+     * Enumerates the options of all grid points in the same order as
+     * {@link CVParameterSelection}.
+     * </p>
+     *
+     * @param parameters
+     *            the parameters of the grid
+     * @param depth
+     *            current parameter
+     * @param values
+     *            values of the parameters
+     * @param grid
+     *            options of the grid points
+     */
+    private void enumerateGrid(List<GridParameter> parameters,
+                               int depth,
+                               double[] values,
+                               List<String[]> grid)
+    {
+        if (depth == parameters.size()) {
+            grid.add(createOptions(parameters, values));
+            return;
+        }
+        GridParameter parameter = parameters.get(depth);
+        double upper;
+        switch ((int) (parameter.lower - parameter.upper + 0.5))
+        {
+            case 1:
+                upper = this.m_NumAttributes;
+                break;
+            case 2:
+                upper = this.m_TrainFoldSize;
+                break;
+            default:
+                upper = parameter.upper;
+                break;
+        }
+        double increment = (upper - parameter.lower) / (parameter.steps - 1);
+        for (values[depth] = parameter.lower; values[depth] <= upper; values[depth] += increment) {
+            enumerateGrid(parameters, depth + 1, values, grid);
+        }
+    }
+
+    /**
+     * <p>
+     * Creates the options of a grid point in the same way as {@link CVParameterSelection}.
+     * </p>
+     *
+     * @param parameters
+     *            the parameters of the grid
+     * @param values
+     *            values of the parameters
+     * @return the options
+     */
+    private String[] createOptions(List<GridParameter> parameters, double[] values) {
+        String[] options = new String[this.m_ClassifierOptions.length + 2 * parameters.size()];
+        int current = 0;
+        for (int i = 0; i < parameters.size(); i++) {
+            GridParameter parameter = parameters.get(i);
+            double value = values[i];
+            if (parameter.roundParam) {
+                value = Math.rint(value);
+            }
+            boolean isInt = (value - (int) value) == 0;
+            options[current++] = "-" + parameter.paramChar;
+            options[current++] = (parameter.roundParam || isInt) ? Utils.doubleToString(value, 4)
+                : Double.toString(value);
+        }
+        System.arraycopy(this.m_ClassifierOptions, 0, options, current,
+                         this.m_ClassifierOptions.length);
+        return options;
+    }
+
+    /**
+     * <p>
+     * Evaluates the grid points with cross validation. The pairs of grid points and folds are
+     * evaluated in parallel.
+     * </p>
+     *
+     * @param grid
+     *            options of the grid points
+     * @param data
+     *            randomized and stratified training data
+     * @return cross validation error of each grid point; infinity for abandoned grid points
+     * @throws Exception
+     *             thrown if the evaluation of a grid point fails
+     */
+    private double[] evaluateGrid(List<String[]> grid, Instances data) throws Exception {
+        final AggregateableEvaluation[] evaluations = new AggregateableEvaluation[grid.size()];
+        List<Integer> remaining = new ArrayList<>(grid.size());
+        for (int i = 0; i < grid.size(); i++) {
+            evaluations[i] = new AggregateableEvaluation(data);
+            remaining.add(i);
+        }
+
+        ExecutorService threadPool = Executors
+            .newFixedThreadPool(Math.min(this.numThreads, grid.size() * this.m_NumFolds));
+        try {
+            int fromFold = 0;
+            while (fromFold < this.m_NumFolds) {
+                int toFold =
+                    this.successiveHalving ? Math.min(Math.max(1, 2 * fromFold), this.m_NumFolds)
+                        : this.m_NumFolds;
+                List<Callable<Evaluation>> tasks = new ArrayList<>();
+                for (int point : remaining) {
+                    for (int fold = fromFold; fold < toFold; fold++) {
+                        final String[] options = grid.get(point);
+                        final int currentFold = fold;
+                        tasks.add(() -> evaluateFold(options, data, currentFold));
+                    }
+                }
+                // aggregate in the order of the folds
+                List<Future<Evaluation>> results = threadPool.invokeAll(tasks);
+                int k = 0;
+                for (int point : remaining) {
+                    for (int fold = fromFold; fold < toFold; fold++) {
+                        evaluations[point].aggregate(results.get(k++).get());
+                    }
+                }
+                fromFold = toFold;
+                if (fromFold < this.m_NumFolds) {
+                    remaining = halve(remaining, evaluations);
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            threadPool.shutdown();
+        }
+
+        double[] errors = new double[grid.size()];
+        Arrays.fill(errors, Double.POSITIVE_INFINITY);
+        for (int point : remaining) {
+            errors[point] = evaluations[point].errorRate();
+        }
+        return errors;
+    }
+
+    /**
+     * <p>
+     * Keeps the better half of the grid points with respect to the error on the folds evaluated so
+     * far. Grid points with the same error as the last kept grid point are also kept.
+     * </p>
+     *
+     * @param points
+     *            the grid points
+     * @param evaluations
+     *            evaluations of the grid points
+     * @return the kept grid points in the order of the grid
+     */
+    private static List<Integer> halve(List<Integer> points,
+                                       AggregateableEvaluation[] evaluations)
+    {
+        double[] errors = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            errors[i] = evaluations[points.get(i)].errorRate();
+        }
+        double[] sortedErrors = errors.clone();
+        Arrays.sort(sortedErrors);
+        double threshold = sortedErrors[(points.size() + 1) / 2 - 1];
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (errors[i] <= threshold) {
+                kept.add(points.get(i));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * <p>
+     * Evaluates a grid point on a fold in the same way as {@link CVParameterSelection}.
+     * </p>
+     *
+     * @param options
+     *            options of the grid point
+     * @param data
+     *            randomized and stratified training data
+     * @param fold
+     *            the fold
+     * @return evaluation of the fold
+     * @throws Exception
+     *             thrown if training or evaluation fails
+     */
+    private Evaluation evaluateFold(String[] options, Instances data, int fold) throws Exception {
+        TrainingBudget.checkpoint();
+        ThreadOutputCapture.begin(String.format("%s fold %d", Utils.joinOptions(options), fold));
+        try {
+            Classifier copiedClassifier = AbstractClassifier.makeCopy(this.m_Classifier);
+            ((OptionHandler) copiedClassifier).setOptions(options.clone());
+            Instances train = data.trainCV(this.m_NumFolds, fold, new Random(1));
+            Instances test = data.testCV(this.m_NumFolds, fold);
+            Evaluation evaluation = new Evaluation(data);
+            copiedClassifier.buildClassifier(train);
+            evaluation.setPriors(train);
+            evaluation.evaluateModel(copiedClassifier, test);
+            return evaluation;
+        }
+        finally {
+            ThreadOutputCapture.end();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see weka.classifiers.meta.CVParameterSelection#toString()
+     */
+    @Override
+    public String toString() {
+        return super.toString() + "\nTuning time: " + this.tuningTime + " ms\n";
+    }
+
+    /**
+     * <p>
+     * Parameter of the grid, parsed from the string representation of the parameters of
+     * {@link CVParameterSelection}.
+     * </p>
+     *
+     * @author Steffen Herbold
+     */
+    private static class GridParameter {
+
+        /**
+         * character of the option
+         */
+        private final String paramChar;
+
+        /**
+         * lower bound
+         */
+        private final double lower;
+
+        /**
+         * upper bound; lower-1 for the number of attributes, lower-2 for the size of the training
+         * folds
+         */
+        private final double upper;
+
+        /**
+         * number of steps
+         */
+        private final double steps;
+
+        /**
+         * defines if the values are rounded
+         */
+        private final boolean roundParam;
+
+        /**
+         * <p>
+         * Constructor. Creates a new GridParameter.
+         * </p>
+         *
+         * @param parameter
+         *            string representation of the parameter, e.g., "I 5.0 25.0 5.0"
+         */
+        GridParameter(String parameter) {
+            String[] parts = parameter.trim().split(" ");
+            this.paramChar = parts[0];
+            this.lower = Double.parseDouble(parts[1]);
+            if (parts[2].equals("A")) {
+                this.upper = this.lower - 1;
+            }
+            else if (parts[2].equals("I")) {
+                this.upper = this.lower - 2;
+            }
+            else {
+                this.upper = Double.parseDouble(parts[2]);
+            }
+            this.steps = Double.parseDouble(parts[3]);
+            this.roundParam = parts.length == 5 && parts[4].equals("R");
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.stream.IntStream;
 
+import de.ugoe.cs.cpdp.util.TrainingBudget;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
@@ -138,6 +139,7 @@ public class SearchBasedSelectionClassifier extends AbstractClassifier
             int cnt = 0;
             int g = 0;
             for (g = 0; g < numGens; g++) {
+                TrainingBudget.checkpoint();
                 ArrayList<IChrm> popNEW = new ArrayList<>();
 
                 for (int i = 0; i < sizeTopP; i++) {
@@ -0,0 +1,125 @@
+package de.ugoe.cs.cpdp.dataprocessing;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+public class SynonymAttributePruningTest {
+
+	@Test
+	public void testEqualsBruteForce() {
+		int numPruned = 0;
+		for (int seed = 0; seed < 20; seed++) {
+			// discrete values have duplicates, continuous values require the comparison of pairs
+			boolean discrete = seed % 2 == 0;
+			Instances data = createData(seed, 40, 12, discrete);
+			List<String> expected = attributeNames(bruteForcePruning(new Instances(data)));
+			numPruned += data.numAttributes() - expected.size();
+			for (int numThreads : new int[] { 1, 4 }) {
+				SoftwareVersion trainversion = createVersion(new Instances(data));
+				SoftwareVersion testversion = createVersion(new Instances(data));
+				SynonymAttributePruning pruning = new SynonymAttributePruning();
+				pruning.setParameter("-threads " + numThreads);
+				pruning.apply(testversion, trainversion);
+				assertEquals(expected, attributeNames(trainversion.getInstances()));
+				assertEquals(expected, attributeNames(testversion.getInstances()));
+				assertEquals("bug", trainversion.getInstances().classAttribute().name());
+			}
+		}
+		assertTrue(numPruned > 0);
+	}
+
+	@Test
+	public void testPrunesAttributes() {
+		Instances data = createData(1, 40, 12, false);
+		// scaled copies of an attribute are never closest
+		for (int i = 0; i < data.size(); i++) {
+			data.get(i).setValue(3, data.get(i).value(2) * 1000.0);
+		}
+		SoftwareVersion trainversion = createVersion(data);
+		new SynonymAttributePruning().apply(createVersion(new Instances(data)), trainversion);
+		assertFalse(attributeNames(trainversion.getInstances()).contains("attr3"));
+	}
+
+	/**
+	 * reference implementation: for every attribute, all pairs of instances are compared on all
+	 * attributes
+	 */
+	private static Instances bruteForcePruning(Instances traindata) {
+		for (int j = traindata.numAttributes() - 1; j >= 0; j--) {
+			if (j != traindata.classIndex()) {
+				boolean hasClosest = false;
+				for (int i1 = 0; !hasClosest && i1 < traindata.size(); i1++) {
+					for (int i2 = 0; !hasClosest && i2 < traindata.size(); i2++) {
+						if (i1 != i2) {
+							double minVal = Double.MAX_VALUE;
+							double distanceJ = Double.MAX_VALUE;
+							for (int k = 0; k < traindata.numAttributes(); k++) {
+								double distance = Math.abs(traindata.get(i1).value(k) - traindata.get(i2).value(k));
+								if (distance < minVal) {
+									minVal = distance;
+								}
+								if (k == j) {
+									distanceJ = distance;
+								}
+							}
+							hasClosest = distanceJ <= minVal;
+						}
+					}
+				}
+				if (!hasClosest) {
+					traindata.deleteAttributeAt(j);
+				}
+			}
+		}
+		return traindata;
+	}
+
+	private static List<String> attributeNames(Instances data) {
+		List<String> names = new ArrayList<>();
+		for (int j = 0; j < data.numAttributes(); j++) {
+			names.add(data.attribute(j).name());
+		}
+		return names;
+	}
+
+	private static Instances createData(int seed, int numInstances, int numAttributes, boolean discrete) {
+		Random random = new Random(seed);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("test", attributes, 0);
+		data.setClassIndex(numAttributes);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 1];
+			for (int j = 0; j < numAttributes; j++) {
+				double scale = Math.pow(10.0, j / 2);
+				values[j] = discrete ? random.nextInt(20 * (j + 1)) : scale * random.nextDouble();
+				if (random.nextDouble() < 0.02) {
+					values[j] = Utils.missingValue();
+				}
+			}
+			values[numAttributes] = random.nextInt(2);
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+
+	private static SoftwareVersion createVersion(Instances data) {
+		return new SoftwareVersion("dataset", "project", "1", data, null, null, null, LocalDateTime.now(), null);
+	}
+}
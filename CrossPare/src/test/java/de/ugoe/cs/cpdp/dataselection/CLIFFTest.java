@@ -0,0 +1,113 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class CLIFFTest {
+
+	@Test
+	public void testApplyEqualsPowerProduct() {
+		SoftwareVersion version = createVersion(200, 5);
+		Instances data = version.getInstances();
+		double[] power = referencePowers(data);
+		double[] sortedPower = power.clone();
+		Arrays.sort(sortedPower);
+		double cutOff = sortedPower[(int) (data.size() * 0.8)];
+
+		for (int numThreads : new int[] { 1, 4 }) {
+			CLIFF cliff = new CLIFF();
+			cliff.setParameter("0.2 -threads " + numThreads);
+			SoftwareVersion result = cliff.apply(null, version);
+			List<Double> expectedEfforts = new ArrayList<>();
+			for (int i = 0; i < data.size(); i++) {
+				if (power[i] >= cutOff) {
+					expectedEfforts.add(version.getEfforts().get(i));
+				}
+			}
+			assertEquals(expectedEfforts, result.getEfforts());
+			assertEquals(expectedEfforts.size(), result.getInstances().size());
+		}
+	}
+
+	private static double[] referencePowers(Instances data) {
+		int numDefects = 0;
+		for (Instance instance : data) {
+			if (instance.classValue() == 1) {
+				numDefects++;
+			}
+		}
+		double probDefect = data.size() / (double) numDefects;
+		double[] power = new double[data.size()];
+		Arrays.fill(power, 1.0);
+		for (int j = 0; j < data.numAttributes(); j++) {
+			if (j == data.classIndex()) {
+				// the class attribute contributes a factor 0
+				for (int i = 0; i < data.size(); i++) {
+					power[i] *= 0.0;
+				}
+				continue;
+			}
+			double[] ranges = new double[11];
+			for (int k = 0; k < 10; k++) {
+				ranges[k] = data.kthSmallestValue(j, (int) (data.size() * (k + 1.0) / 10));
+			}
+			ranges[10] = data.attributeStats(j).numericStats.max;
+			int[] range = new int[data.size()];
+			int[] countRange = new int[10];
+			int[] countDefect = new int[10];
+			for (int i = 0; i < data.size(); i++) {
+				while (data.get(i).value(j) > ranges[range[i] + 1]) {
+					range[i]++;
+				}
+				countRange[range[i]]++;
+				if (data.get(i).classValue() == 1) {
+					countDefect[range[i]]++;
+				}
+			}
+			for (int i = 0; i < data.size(); i++) {
+				double probDefectRange = countDefect[range[i]] / (double) countRange[range[i]];
+				double probRangeClass = data.get(i).classValue() == 1 ? probDefectRange : 1.0 - probDefectRange;
+				double probClass = data.get(i).classValue() == 1 ? probDefect : 1.0 - probDefect;
+				power[i] *= probRangeClass * probRangeClass /
+						(probRangeClass * probClass + (1.0 - probRangeClass) * (1.0 - probClass));
+			}
+		}
+		return power;
+	}
+
+	private static SoftwareVersion createVersion(int numInstances, int numAttributes) {
+		Random random = new Random(numAttributes);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances("test", attributes, 0);
+		instances.setClassIndex(numAttributes);
+		List<Double> efforts = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 1];
+			values[numAttributes] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+			for (int j = 0; j < numAttributes; j++) {
+				values[j] = random.nextGaussian() + values[numAttributes] * (j % 3);
+			}
+			instances.add(new DenseInstance(1.0, values));
+			efforts.add((double) i);
+		}
+		return new SoftwareVersion("dataset", "project", "1", instances, null, efforts, null, LocalDateTime.now(),
+				null);
+	}
+}
@@ -0,0 +1,234 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.DBSCAN;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.Model;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.ArrayAdapterDatabaseConnection;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class DBSCANFilterTest {
+
+	@Test
+	public void testSelectsClustersWithTestdata() {
+		Random random = new Random(1);
+		SoftwareVersion testversion = createVersion(random, new double[] { 0.0 }, 60);
+		SoftwareVersion trainversion = createVersion(random, new double[] { 0.0, 20.0 }, 200);
+
+		DBSCANFilter filter = new DBSCANFilter();
+		filter.setParameter("1.0 10");
+		SoftwareVersion result = filter.apply(testversion, trainversion);
+
+		assertSelectedFirstCluster(trainversion, result);
+	}
+
+	@Test
+	public void testEstimatedEps() {
+		Random random = new Random(2);
+		SoftwareVersion testversion = createVersion(random, new double[] { 0.0 }, 60);
+		SoftwareVersion trainversion = createVersion(random, new double[] { 0.0, 20.0 }, 200);
+
+		DBSCANFilter filter = new DBSCANFilter();
+		filter.setParameter("auto 10");
+		SoftwareVersion result = filter.apply(testversion, trainversion);
+
+		// the outliers at the knee of the k-distance graph are noise, which is selected as well
+		int firstCluster = 0;
+		for (Instance instance : result.getInstances()) {
+			if (instance.value(0) < 10.0) {
+				firstCluster++;
+			}
+		}
+		assertEquals(100, firstCluster);
+		assertTrue(result.getInstances().size() - firstCluster < 10);
+	}
+
+	@Test
+	public void testReusedDatabases() {
+		Random random = new Random(3);
+		SoftwareVersion testversion = createVersion(random, new double[] { 0.0 }, 60);
+		SoftwareVersion trainversion1 = createVersion(random, new double[] { 0.0, 20.0 }, 200);
+		SoftwareVersion trainversion2 = createVersion(random, new double[] { 20.0, 0.0 }, 150);
+
+		DBSCANFilter filter = new DBSCANFilter();
+		filter.setParameter("");
+		SoftwareVersion result1 = filter.apply(testversion, trainversion1);
+		SoftwareVersion result2 = filter.apply(testversion, trainversion2);
+		assertEquals(result1.getEfforts(), filter.apply(testversion, trainversion1).getEfforts());
+
+		DBSCANFilter newFilter = new DBSCANFilter();
+		newFilter.setParameter("");
+		assertEquals(result2.getEfforts(), newFilter.apply(testversion, trainversion2).getEfforts());
+	}
+
+	@Test
+	public void testKDistancesWithTies() {
+		Random random = new Random(4);
+		SoftwareVersion testversion = createVersion(random, new double[] { 0.0, 2.0 }, 80);
+		SoftwareVersion trainversion = createVersion(random, new double[] { 0.0, 2.0, 4.0 }, 150);
+		// rounded values lead to many ties in the k-nearest neighbors
+		for (SoftwareVersion version : new SoftwareVersion[] { testversion, trainversion }) {
+			for (Instance instance : version.getInstances()) {
+				for (int j = 0; j < 3; j++) {
+					instance.setValue(j, Math.round(instance.value(j)));
+				}
+			}
+		}
+		List<double[]> points = new ArrayList<>();
+		for (SoftwareVersion version : new SoftwareVersion[] { testversion, trainversion }) {
+			for (Instance instance : version.getInstances()) {
+				points.add(new double[] { instance.value(0), instance.value(1), instance.value(2) });
+			}
+		}
+		int k = 10;
+		double[] expected = new double[points.size()];
+		for (int i = 0; i < points.size(); i++) {
+			double[] distances = new double[points.size()];
+			for (int l = 0; l < points.size(); l++) {
+				double sum = 0.0;
+				for (int j = 0; j < 3; j++) {
+					double diff = points.get(i)[j] - points.get(l)[j];
+					sum += diff * diff;
+				}
+				distances[l] = Math.sqrt(sum);
+			}
+			Arrays.sort(distances);
+			expected[i] = distances[k - 1];
+		}
+		Arrays.sort(expected);
+
+		DBSCANFilter filter = new DBSCANFilter();
+		filter.setParameter("auto " + k);
+		assertArrayEquals(expected, filter.kDistances(testversion.getInstances(), trainversion.getInstances()),
+				1e-12);
+	}
+
+	@Test
+	public void testSameSelectionAsELKI() {
+		Random random = new Random(5);
+		for (int run = 0; run < 20; run++) {
+			double[] testCenters = new double[] { 4.0 * random.nextInt(4) };
+			double[] trainCenters = new double[] { 0.0, 4.0, 8.0, 12.0 };
+			SoftwareVersion testversion = createVersion(random, testCenters, 20 + random.nextInt(60));
+			SoftwareVersion trainversion = createVersion(random, trainCenters, 100 + random.nextInt(200));
+			// uniform noise between the clusters
+			for (Instance instance : trainversion.getInstances()) {
+				if (random.nextDouble() < 0.1) {
+					for (int j = 0; j < 3; j++) {
+						instance.setValue(j, 14.0 * random.nextDouble() - 1.0);
+					}
+				}
+			}
+			double eps = 0.5 + random.nextDouble();
+			int minPts = 3 + random.nextInt(10);
+
+			DBSCANFilter filter = new DBSCANFilter();
+			filter.setParameter(eps + " " + minPts);
+			List<Double> actual = new ArrayList<>(filter.apply(testversion, trainversion).getEfforts());
+			Collections.sort(actual);
+
+			assertEquals(elkiSelection(testversion, trainversion, eps, minPts), actual);
+		}
+	}
+
+	private static List<Double> elkiSelection(SoftwareVersion testversion, SoftwareVersion trainversion,
+			double eps, int minPts) {
+		Instances testdata = testversion.getInstances();
+		Instances traindata = trainversion.getInstances();
+		double[][] data = new double[testdata.size() + traindata.size()][3];
+		for (int i = 0; i < testdata.size(); i++) {
+			for (int j = 0; j < 3; j++) {
+				data[i][j] = testdata.get(i).value(j);
+			}
+		}
+		for (int i = 0; i < traindata.size(); i++) {
+			for (int j = 0; j < 3; j++) {
+				data[testdata.size() + i][j] = traindata.get(i).value(j);
+			}
+		}
+		Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null);
+		db.initialize();
+		Clustering<Model> clustering = new DBSCAN<DoubleVector>(EuclideanDistanceFunction.STATIC, eps, minPts)
+				.run(db);
+		Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+		int firstIndex = relation.iterDBIDs().internalGetIndex();
+
+		List<Double> selection = new ArrayList<>();
+		for (Cluster<Model> cluster : clustering.getAllClusters()) {
+			boolean hasTestdata = false;
+			for (DBIDIter iter = cluster.getIDs().iter(); iter.valid(); iter.advance()) {
+				hasTestdata |= iter.internalGetIndex() - firstIndex < testdata.size();
+			}
+			if (hasTestdata) {
+				for (DBIDIter iter = cluster.getIDs().iter(); iter.valid(); iter.advance()) {
+					int index = iter.internalGetIndex() - firstIndex - testdata.size();
+					if (index >= 0) {
+						selection.add(trainversion.getEfforts().get(index));
+					}
+				}
+			}
+		}
+		Collections.sort(selection);
+		return selection;
+	}
+
+	private static void assertSelectedFirstCluster(SoftwareVersion trainversion, SoftwareVersion result) {
+		Instances traindata = trainversion.getInstances();
+		List<Double> expectedEfforts = new ArrayList<>();
+		for (int i = 0; i < traindata.size(); i++) {
+			if (traindata.get(i).value(0) < 10.0) {
+				expectedEfforts.add(trainversion.getEfforts().get(i));
+			}
+		}
+		assertEquals(expectedEfforts.size(), result.getInstances().size());
+		assertEquals(expectedEfforts, result.getEfforts());
+		for (Instance instance : result.getInstances()) {
+			assertTrue(instance.value(0) < 10.0);
+		}
+	}
+
+	private static SoftwareVersion createVersion(Random random, double[] centers, int numInstances) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 3; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances("version", attributes, 0);
+		instances.setClassIndex(3);
+		List<Double> efforts = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			double center = centers[i % centers.length];
+			double[] values = new double[4];
+			for (int j = 0; j < 3; j++) {
+				values[j] = center + 0.5 * random.nextGaussian();
+			}
+			values[3] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+			instances.add(new DenseInstance(1.0, values));
+			efforts.add((double) i);
+		}
+		return new SoftwareVersion("dataset", "project", "1", instances, null, efforts, null, LocalDateTime.now(),
+				null);
+	}
+}
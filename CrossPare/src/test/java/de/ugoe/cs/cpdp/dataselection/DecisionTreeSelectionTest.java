@@ -0,0 +1,102 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class DecisionTreeSelectionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		ArtifactCache.setDirectory(null);
+		ArtifactCache.clearMemory();
+	}
+
+	@Test
+	public void testCachedTransferScores() throws Exception {
+		List<SoftwareVersion> versions = createVersions();
+
+		// without reuse of the transfer scores
+		List<String> expected = new ArrayList<>();
+		for (int left = 0; left < versions.size(); left++) {
+			ArtifactCache.clearMemory();
+			expected.add(select(versions, left, 1));
+		}
+
+		// scores computed in parallel and reused from memory
+		ArtifactCache.clearMemory();
+		File cacheDir = this.folder.newFolder();
+		ArtifactCache.setDirectory(cacheDir);
+		for (int left = 0; left < versions.size(); left++) {
+			assertEquals(expected.get(left), select(versions, left, 4));
+		}
+		assertEquals(versions.size(), new File(cacheDir, "DecisionTreeSelection-J48-fMeasure").list().length);
+
+		// scores reused from the cache directory
+		ArtifactCache.clearMemory();
+		for (int left = 0; left < versions.size(); left++) {
+			assertEquals(expected.get(left), select(versions, left, 4));
+		}
+	}
+
+	private static String select(List<SoftwareVersion> versions, int left, int numThreads) {
+		SetUniqueList<SoftwareVersion> trainversionSet = SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+		for (int i = 0; i < versions.size(); i++) {
+			if (i != left) {
+				trainversionSet.add(new SoftwareVersion(versions.get(i)));
+			}
+		}
+		DecisionTreeSelection selection = new DecisionTreeSelection();
+		selection.setParameter("-threads " + numThreads);
+		selection.apply(new SoftwareVersion(versions.get(left)), trainversionSet);
+		assertEquals(1, trainversionSet.size());
+		return trainversionSet.get(0).getProject();
+	}
+
+	private static List<SoftwareVersion> createVersions() {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 3; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		List<SoftwareVersion> versions = new ArrayList<>();
+		for (int v = 0; v < 6; v++) {
+			Instances instances = new Instances("version" + v, attributes, 0);
+			instances.setClassIndex(3);
+			double scale = 1.0 + random.nextInt(5);
+			for (int i = 0; i < 80; i++) {
+				double[] values = new double[4];
+				values[3] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+				for (int j = 0; j < 3; j++) {
+					values[j] = scale * (random.nextGaussian() + values[3] * (j + v % 3));
+				}
+				instances.add(new DenseInstance(1.0, values));
+			}
+			versions.add(new SoftwareVersion("dataset", "project" + v, "1", instances, null, null, null,
+					LocalDateTime.now(), null));
+		}
+		return versions;
+	}
+}
@@ -0,0 +1,100 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+
+import de.ugoe.cs.cpdp.loader.CSVFolderLoader;
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+
+/**
+ * <p>
+ * Benchmark of the time saved by reusing the cluster models of the {@link PointWiseEMClusterSelection}
+ * and the clusterings of the {@link SetWiseEMClusterSelection} across the iterations of a leave-one-out
+ * experiment on the JURECZKO data (default: testdata/JURECZKO). Each version is used once as test version
+ * and the other versions as training data. Without reuse, the cache is cleared before each iteration. This
+ * is not a unit test, it is executed through the main method.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class EMClusterSelectionBenchmark {
+
+	private static final String DEFAULT_LOCATION = "testdata/JURECZKO";
+
+	private static final String POINTWISE_PARAMETERS = "-N 3";
+
+	public static void main(String[] args) {
+		String location = args.length > 0 ? args[0] : DEFAULT_LOCATION;
+		CSVFolderLoader loader = new CSVFolderLoader();
+		loader.setLocation(location);
+		List<SoftwareVersion> versions = new ArrayList<>();
+		for (SoftwareVersion version : loader.load()) {
+			// the CSV data has no release dates, which are required by SoftwareVersion.hashCode()
+			versions.add(new SoftwareVersion(version.getDataset(), version.getProject(), version.getVersion(),
+					version.getInstances(), null, null, null, LocalDateTime.now(), null));
+		}
+		if (versions.size() < 3) {
+			System.out.println("data of " + location + " not available");
+			return;
+		}
+
+		System.out.println("selection;reuse;milliseconds");
+		for (String selection : new String[] { "pointwise", "setwise" }) {
+			long withoutReuse = 0;
+			long withReuse = 0;
+			for (boolean reuse : new boolean[] { false, true }) {
+				ArtifactCache.clearMemory();
+				long start = System.nanoTime();
+				for (int left = 0; left < versions.size(); left++) {
+					if (!reuse) {
+						ArtifactCache.clearMemory();
+					}
+					if ("pointwise".equals(selection)) {
+						applyPointWise(versions, left);
+					}
+					else {
+						applySetWise(versions, left);
+					}
+				}
+				long millis = (System.nanoTime() - start) / 1000000;
+				System.out.println(selection + ";" + reuse + ";" + millis);
+				if (reuse) {
+					withReuse = millis;
+				}
+				else {
+					withoutReuse = millis;
+				}
+			}
+			System.out.println(selection + ": time saved " + (withoutReuse - withReuse) + " ms (" +
+					(100 * (withoutReuse - withReuse) / Math.max(1, withoutReuse)) + "%)");
+		}
+	}
+
+	private static void applyPointWise(List<SoftwareVersion> versions, int left) {
+		PointWiseEMClusterSelection selection = new PointWiseEMClusterSelection();
+		selection.setParameter(POINTWISE_PARAMETERS);
+		for (int i = 0; i < versions.size(); i++) {
+			if (i != left) {
+				selection.apply(versions.get(left), versions.get(i));
+			}
+		}
+	}
+
+	private static void applySetWise(List<SoftwareVersion> versions, int left) {
+		SetUniqueList<SoftwareVersion> trainversionSet = SetUniqueList
+				.setUniqueList(new LinkedList<SoftwareVersion>());
+		for (int i = 0; i < versions.size(); i++) {
+			if (i != left) {
+				trainversionSet.add(versions.get(i));
+			}
+		}
+		SetWiseEMClusterSelection selection = new SetWiseEMClusterSelection();
+		selection.setParameter("");
+		selection.apply(versions.get(left), trainversionSet);
+	}
+}
@@ -0,0 +1,119 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+import org.junit.After;
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+public class EMClusterSelectionTest {
+
+	@After
+	public void tearDown() {
+		ArtifactCache.clearMemory();
+	}
+
+	@Test
+	public void testPointWiseSelectsClustersOfTestdata() {
+		Random random = new Random(1);
+		SoftwareVersion testversion = createVersion("test", random, new double[] { -5.0 }, 50);
+		SoftwareVersion trainversion = createVersion("train", random, new double[] { -5.0, 5.0 }, 200);
+
+		PointWiseEMClusterSelection selection = new PointWiseEMClusterSelection();
+		selection.setParameter("-N 2 -num-slots 2");
+		SoftwareVersion result = selection.apply(testversion, trainversion);
+		assertEquals(100, result.getInstances().size());
+		assertEquals(100, result.getEfforts().size());
+		for (Instance instance : result.getInstances()) {
+			assertTrue(instance.value(0) < 0.0);
+		}
+
+		// the cached model is reused and the parameters are not consumed by the first clustering
+		SoftwareVersion otherTestversion = createVersion("test", random, new double[] { 5.0 }, 50);
+		result = selection.apply(otherTestversion, trainversion);
+		assertEquals(100, result.getInstances().size());
+		for (Instance instance : result.getInstances()) {
+			assertTrue(instance.value(0) > 0.0);
+		}
+	}
+
+	@Test
+	public void testParseNumExecutionSlots() {
+		String[] options = "mean -num-slots 3 stddev".split(" ");
+		assertEquals(3, EMClustering.parseNumExecutionSlots(options, 1));
+		assertEquals("mean stddev", Utils.joinOptions(options));
+		assertEquals(1, EMClustering.parseNumExecutionSlots("mean stddev".split(" "), 1));
+	}
+
+	@Test
+	public void testSetWiseIndependentOfTestversion() {
+		Random random = new Random(2);
+		List<SoftwareVersion> versions = new ArrayList<>();
+		for (int v = 0; v < 8; v++) {
+			double center = v < 4 ? -5.0 : 5.0;
+			versions.add(createVersion("project" + v, random, new double[] { center }, 60 + 5 * v));
+		}
+		List<Set<String>> groups = new ArrayList<>();
+		for (int left = 0; left < versions.size(); left++) {
+			SetUniqueList<SoftwareVersion> trainversionSet = SetUniqueList
+					.setUniqueList(new LinkedList<SoftwareVersion>());
+			for (int i = 0; i < versions.size(); i++) {
+				if (i != left) {
+					trainversionSet.add(versions.get(i));
+				}
+			}
+			SetWiseEMClusterSelection selection = new SetWiseEMClusterSelection();
+			selection.setParameter("mean -num-slots 2");
+			selection.apply(versions.get(left), trainversionSet);
+			assertFalse(trainversionSet.isEmpty());
+			Set<String> group = new TreeSet<>();
+			group.add(versions.get(left).getProject());
+			for (SoftwareVersion version : trainversionSet) {
+				group.add(version.getProject());
+			}
+			groups.add(group);
+		}
+		// all versions of a cluster select each other
+		for (int left = 0; left < versions.size(); left++) {
+			for (String project : groups.get(left)) {
+				int index = Integer.parseInt(project.replace("project", ""));
+				assertEquals(groups.get(left), groups.get(index));
+			}
+		}
+	}
+
+	private static SoftwareVersion createVersion(String project, Random random, double[] centers, int numInstances) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 2; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances(project, attributes, 0);
+		instances.setClassIndex(2);
+		List<Double> efforts = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			double center = centers[i % centers.length];
+			instances.add(new DenseInstance(1.0, new double[] { center + random.nextGaussian(),
+					center + random.nextGaussian(), random.nextDouble() < 0.3 ? 1.0 : 0.0 }));
+			efforts.add((double) i);
+		}
+		return new SoftwareVersion("dataset", project, "1", instances, null, efforts, null, LocalDateTime.now(), null);
+	}
+}
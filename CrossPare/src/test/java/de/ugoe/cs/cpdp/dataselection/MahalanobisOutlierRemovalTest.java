@@ -0,0 +1,108 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class MahalanobisOutlierRemovalTest {
+
+	@Test
+	public void testRemovesOutliersFromAllStructures() {
+		SoftwareVersion version = createVersion(false);
+		MahalanobisOutlierRemoval removal = new MahalanobisOutlierRemoval();
+		removal.setParameter("3.0 -threads 4");
+		removal.apply(null, version);
+
+		assertOutliersRemoved(version);
+	}
+
+	@Test
+	public void testCollinearMetrics() {
+		SoftwareVersion version = createVersion(true);
+		MahalanobisOutlierRemoval removal = new MahalanobisOutlierRemoval();
+		removal.setParameter("");
+		removal.apply(null, version);
+
+		assertOutliersRemoved(version);
+	}
+
+	@Test
+	public void testDifferentScales() {
+		for (boolean collinear : new boolean[] { false, true }) {
+			SoftwareVersion unscaled = createVersion(collinear, new double[] { 1.0, 1.0, 1.0 });
+			SoftwareVersion scaled = createVersion(collinear, new double[] { 1.0e4, 1.0, 1.0e-4 });
+			MahalanobisOutlierRemoval removal = new MahalanobisOutlierRemoval();
+			removal.setParameter("");
+			removal.apply(null, unscaled);
+			removal.apply(null, scaled);
+
+			assertOutliersRemoved(scaled);
+			assertEquals(unscaled.getEfforts(), scaled.getEfforts());
+		}
+	}
+
+	private static void assertOutliersRemoved(SoftwareVersion version) {
+		Instances data = version.getInstances();
+		assertTrue(data.size() < 3000);
+		assertTrue(data.size() > 2500);
+		assertEquals(data.size(), version.getEfforts().size());
+		assertEquals(data.size(), version.getNumBugs().size());
+		assertEquals(data.size(), version.getBugMatrix().size());
+		for (int i = 0; i < data.size(); i++) {
+			// the outliers are the multiples of 100
+			assertTrue(version.getEfforts().get(i) % 100 != 0);
+			assertEquals(version.getEfforts().get(i), version.getNumBugs().get(i));
+			assertEquals(version.getEfforts().get(i), version.getBugMatrix().get(i).value(0), 0.0);
+			assertEquals(version.getEfforts().get(i), data.get(i).value(3), 0.0);
+		}
+	}
+
+	private static SoftwareVersion createVersion(boolean collinear) {
+		return createVersion(collinear, new double[] { 1.0, 1.0, 1.0 });
+	}
+
+	private static SoftwareVersion createVersion(boolean collinear, double[] scales) {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 3; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("id"));
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances("version", attributes, 0);
+		instances.setClassIndex(4);
+		Instances bugMatrix = new Instances("bugs", new ArrayList<>(Arrays.asList(new Attribute("id"))), 0);
+		List<Double> efforts = new ArrayList<>();
+		List<Double> numBugs = new ArrayList<>();
+		for (int i = 1; i <= 3000; i++) {
+			double[] values = new double[5];
+			double shift = i % 100 == 0 ? 25.0 : 0.0;
+			values[0] = shift + random.nextGaussian();
+			values[1] = shift + random.nextGaussian();
+			values[2] = collinear ? 2.0 * values[0] - values[1] : shift + random.nextGaussian();
+			for (int j = 0; j < 3; j++) {
+				values[j] *= scales[j];
+			}
+			// the id is small compared to the outliers
+			values[3] = i;
+			values[4] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+			instances.add(new DenseInstance(1.0, values));
+			bugMatrix.add(new DenseInstance(1.0, new double[] { i }));
+			efforts.add((double) i);
+			numBugs.add((double) i);
+		}
+		return new SoftwareVersion("dataset", "project", "1", instances, bugMatrix, efforts, numBugs,
+				LocalDateTime.now(), null);
+	}
+}
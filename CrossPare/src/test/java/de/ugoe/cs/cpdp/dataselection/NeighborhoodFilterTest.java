@@ -0,0 +1,82 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.util.WekaUtils;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class NeighborhoodFilterTest {
+
+	@SuppressWarnings("boxing")
+	@Test
+	public void testApply() {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 10; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("class"));
+		Instances traindata = new Instances("train", attributes, 0);
+		traindata.setClassIndex(10);
+		Instances testdata = new Instances("test", attributes, 0);
+		testdata.setClassIndex(10);
+		ArrayList<Double> efforts = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			traindata.add(new DenseInstance(1.0, randomValues(random, 11)));
+			efforts.add((double) i);
+		}
+		for (int i = 0; i < 40; i++) {
+			testdata.add(new DenseInstance(1.0, randomValues(random, 11)));
+		}
+		SoftwareVersion trainversion = new SoftwareVersion("dataset", "train", "1", traindata, null, efforts, null,
+				LocalDateTime.now(), null);
+		SoftwareVersion testversion = new SoftwareVersion("dataset", "test", "1", testdata, null, null, null,
+				LocalDateTime.now(), null);
+
+		// selection with two passes of the Hamming distance over the training data per test instance
+		TreeSet<Integer> expected = new TreeSet<>();
+		for (int i = 0; i < testdata.size(); i++) {
+			double minHam = Double.MAX_VALUE;
+			for (int j = 0; j < traindata.size(); j++) {
+				minHam = Math.min(minHam, WekaUtils.hammingDistance(testdata.get(i), traindata.get(j)));
+			}
+			for (int j = 0; j < traindata.size(); j++) {
+				if (WekaUtils.hammingDistance(testdata.get(i), traindata.get(j)) <= minHam) {
+					expected.add(j);
+				}
+			}
+		}
+
+		for (String parameters : new String[] { "", "-threads 4" }) {
+			NeighborhoodFilter filter = new NeighborhoodFilter();
+			filter.setParameter(parameters);
+			SoftwareVersion result = filter.apply(testversion, trainversion);
+
+			assertEquals(expected.size(), result.getInstances().size());
+			int k = 0;
+			for (Integer index : expected) {
+				assertArrayEquals(traindata.get(index).toDoubleArray(), result.getInstances().get(k).toDoubleArray(), 0.0);
+				assertEquals(efforts.get(index), result.getEfforts().get(k));
+				k++;
+			}
+		}
+	}
+
+	private static double[] randomValues(Random random, int length) {
+		double[] values = new double[length];
+		for (int j = 0; j < length; j++) {
+			values[j] = random.nextInt(3);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,102 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+
+import de.ugoe.cs.cpdp.loader.CSVFolderLoader;
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+
+/**
+ * <p>
+ * Benchmark of the {@link SeparatabilitySelection} on the JURECZKO data (default: testdata/JURECZKO).
+ * Each version is used once as test version and the other versions as candidates for the training
+ * data. The selection is executed with the logistic regression and the linear discriminant analysis
+ * for different numbers of threads, once with an empty cache and once with the separatabilities in
+ * the cache. The agreement of the linear discriminant analysis with the logistic regression is the
+ * mean Jaccard similarity of the selected versions. This is not a unit test, it is executed through
+ * the main method.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class SeparatabilitySelectionBenchmark {
+
+	private static final String DEFAULT_LOCATION = "testdata/JURECZKO";
+
+	private static final String[] METHODS = new String[] { "logistic", "lda" };
+
+	private static final int NEIGHBORS = 16;
+
+	public static void main(String[] args) {
+		String location = args.length > 0 ? args[0] : DEFAULT_LOCATION;
+		CSVFolderLoader loader = new CSVFolderLoader();
+		loader.setLocation(location);
+		List<SoftwareVersion> versions = new ArrayList<>();
+		for (SoftwareVersion version : loader.load()) {
+			// the CSV data has no release dates, which are required by SoftwareVersion.hashCode()
+			versions.add(new SoftwareVersion(version.getDataset(), version.getProject(), version.getVersion(),
+					version.getInstances(), null, null, null, LocalDateTime.now(), null));
+		}
+		if (versions.size() <= NEIGHBORS) {
+			System.out.println("data of " + location + " not available");
+			return;
+		}
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+
+		List<List<Set<String>>> selections = new ArrayList<>();
+		System.out.println("method;threads;cache;milliseconds");
+		for (String method : METHODS) {
+			List<Set<String>> selected = null;
+			for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(2 * threads, maxThreads) : threads + 1) {
+				ArtifactCache.clearMemory();
+				long start = System.nanoTime();
+				selected = selectAll(versions, method, threads);
+				System.out.println(method + ";" + threads + ";cold;" + (System.nanoTime() - start) / 1000000);
+				start = System.nanoTime();
+				selectAll(versions, method, threads);
+				System.out.println(method + ";" + threads + ";warm;" + (System.nanoTime() - start) / 1000000);
+			}
+			selections.add(selected);
+		}
+
+		double agreement = 0.0;
+		for (int i = 0; i < versions.size(); i++) {
+			Set<String> intersection = new HashSet<>(selections.get(0).get(i));
+			intersection.retainAll(selections.get(1).get(i));
+			Set<String> union = new HashSet<>(selections.get(0).get(i));
+			union.addAll(selections.get(1).get(i));
+			agreement += ((double) intersection.size()) / union.size();
+		}
+		System.out.println("agreement of lda and logistic: " + agreement / versions.size());
+	}
+
+	private static List<Set<String>> selectAll(List<SoftwareVersion> versions, String method, int threads) {
+		List<Set<String>> selected = new ArrayList<>();
+		for (int left = 0; left < versions.size(); left++) {
+			SetUniqueList<SoftwareVersion> trainversionSet = SetUniqueList
+					.setUniqueList(new LinkedList<SoftwareVersion>());
+			for (int i = 0; i < versions.size(); i++) {
+				if (i != left) {
+					trainversionSet.add(versions.get(i));
+				}
+			}
+			SeparatabilitySelection selection = new SeparatabilitySelection();
+			selection.setParameter(NEIGHBORS + " " + method);
+			selection.setNumThreads(threads);
+			selection.apply(versions.get(left), trainversionSet);
+			Set<String> names = new HashSet<>();
+			for (SoftwareVersion version : trainversionSet) {
+				names.add(version.getProject() + "_" + version.getVersion());
+			}
+			selected.add(names);
+		}
+		return selected;
+	}
+}
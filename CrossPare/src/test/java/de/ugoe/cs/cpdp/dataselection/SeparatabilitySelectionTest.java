@@ -0,0 +1,112 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ugoe.cs.cpdp.util.ArtifactCache;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class SeparatabilitySelectionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		ArtifactCache.setDirectory(null);
+		ArtifactCache.clearMemory();
+	}
+
+	@Test
+	public void testLogisticSelection() throws Exception {
+		List<SoftwareVersion> versions = createVersions();
+		List<String> expected = select(versions, 0, "logistic", 1);
+		// the shifted versions are separatable from the test version; the cutoff is the third distance
+		assertEquals(Arrays.asList("project1", "project2", "project3"), expected);
+
+		ArtifactCache.clearMemory();
+		File cacheDir = this.folder.newFolder();
+		ArtifactCache.setDirectory(cacheDir);
+		assertEquals(expected, select(versions, 0, "logistic", 4));
+		assertEquals(versions.size() - 1, new File(cacheDir, "SeparatabilitySelection-logistic-500-10").list().length);
+
+		// the separatability of the pairs is symmetric and reused
+		ArtifactCache.clearMemory();
+		select(versions, 1, "logistic", 4);
+		assertEquals(2 * versions.size() - 3,
+				new File(cacheDir, "SeparatabilitySelection-logistic-500-10").list().length);
+	}
+
+	@Test
+	public void testLDASelection() {
+		List<SoftwareVersion> versions = createVersions();
+		assertEquals(Arrays.asList("project1", "project2", "project3"), select(versions, 0, "lda", 1));
+		ArtifactCache.clearMemory();
+		assertEquals(Arrays.asList("project1", "project2", "project3"), select(versions, 0, "lda", 4));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnknownMethod() {
+		new SeparatabilitySelection().setParameter("3 svm");
+	}
+
+	private static List<String> select(List<SoftwareVersion> versions, int left, String method, int numThreads) {
+		SetUniqueList<SoftwareVersion> trainversionSet = SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+		for (int i = 0; i < versions.size(); i++) {
+			if (i != left) {
+				trainversionSet.add(new SoftwareVersion(versions.get(i)));
+			}
+		}
+		SeparatabilitySelection selection = new SeparatabilitySelection();
+		selection.setParameter("2 " + method + " -threads " + numThreads);
+		selection.apply(new SoftwareVersion(versions.get(left)), trainversionSet);
+		List<String> projects = new ArrayList<>();
+		for (SoftwareVersion version : trainversionSet) {
+			projects.add(version.getProject());
+		}
+		return projects;
+	}
+
+	private static List<SoftwareVersion> createVersions() {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 3; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		List<SoftwareVersion> versions = new ArrayList<>();
+		for (int v = 0; v < 7; v++) {
+			Instances instances = new Instances("version" + v, attributes, 0);
+			instances.setClassIndex(3);
+			// the first four versions are similar, the others are shifted
+			double shift = v < 4 ? 0.0 : 2.0 * v;
+			for (int i = 0; i < 100; i++) {
+				double[] values = new double[4];
+				values[3] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+				for (int j = 0; j < 3; j++) {
+					values[j] = random.nextGaussian() + shift;
+				}
+				instances.add(new DenseInstance(1.0, values));
+			}
+			versions.add(new SoftwareVersion("dataset", "project" + v, "1", instances, null, null, null,
+					LocalDateTime.now(), null));
+		}
+		return versions;
+	}
+}
@@ -0,0 +1,112 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+public class SynonymOutlierRemovalTest {
+
+	@Test
+	public void testEqualsBruteForce() {
+		for (int seed = 0; seed < 20; seed++) {
+			boolean discrete = seed % 2 == 0;
+			SoftwareVersion version = createVersion(seed, 60, 6, discrete);
+			List<Double> expected = bruteForceRemoval(version.getInstances());
+			for (int numThreads : new int[] { 1, 4 }) {
+				SoftwareVersion trainversion = createVersion(seed, 60, 6, discrete);
+				SynonymOutlierRemoval removal = new SynonymOutlierRemoval();
+				removal.setParameter("-threads " + numThreads);
+				removal.apply(null, trainversion);
+				assertEquals(expected, trainversion.getEfforts());
+				assertEquals(expected.size(), trainversion.getInstances().size());
+			}
+		}
+	}
+
+	@Test
+	public void testRemovesOutliers() {
+		SoftwareVersion trainversion = createVersion(1, 100, 3, false);
+		SynonymOutlierRemoval.applySynonymRemoval(trainversion);
+		// only the closest pairs of values of each attribute remain
+		assertTrue(trainversion.getInstances().size() <= 6);
+		assertTrue(trainversion.getInstances().size() >= 2);
+		assertEquals(trainversion.getInstances().size(), trainversion.getEfforts().size());
+	}
+
+	/**
+	 * reference implementation: for every instance and attribute, the distances to all other
+	 * instances are compared; returns the efforts of the remaining instances
+	 */
+	@SuppressWarnings("boxing")
+	private static List<Double> bruteForceRemoval(Instances traindata) {
+		double[][] minDistance = new double[traindata.size()][traindata.numAttributes()];
+		double[] minDistanceAttribute = new double[traindata.numAttributes()];
+		Arrays.fill(minDistanceAttribute, Double.MAX_VALUE);
+		for (int i1 = 0; i1 < traindata.size(); i1++) {
+			for (int j = 0; j < traindata.numAttributes(); j++) {
+				minDistance[i1][j] = Double.MAX_VALUE;
+				if (j != traindata.classIndex()) {
+					for (int i2 = 0; i2 < traindata.size(); i2++) {
+						if (i1 != i2) {
+							double distance = Math.abs(traindata.get(i1).value(j) - traindata.get(i2).value(j));
+							if (distance < minDistance[i1][j]) {
+								minDistance[i1][j] = distance;
+							}
+							if (distance < minDistanceAttribute[j]) {
+								minDistanceAttribute[j] = distance;
+							}
+						}
+					}
+				}
+			}
+		}
+		List<Double> efforts = new ArrayList<>();
+		for (int i = 0; i < traindata.size(); i++) {
+			boolean hasClosest = false;
+			for (int j = 0; !hasClosest && j < traindata.numAttributes(); j++) {
+				hasClosest = j != traindata.classIndex() && minDistance[i][j] <= minDistanceAttribute[j];
+			}
+			if (hasClosest) {
+				efforts.add((double) i);
+			}
+		}
+		return efforts;
+	}
+
+	private static SoftwareVersion createVersion(int seed, int numInstances, int numAttributes, boolean discrete) {
+		Random random = new Random(seed);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("test", attributes, 0);
+		data.setClassIndex(numAttributes);
+		List<Double> efforts = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 1];
+			for (int j = 0; j < numAttributes; j++) {
+				values[j] = discrete ? random.nextInt(1000) : random.nextGaussian();
+				if (random.nextDouble() < 0.02) {
+					values[j] = Utils.missingValue();
+				}
+			}
+			values[numAttributes] = random.nextInt(2);
+			data.add(new DenseInstance(1.0, values));
+			efforts.add((double) i);
+		}
+		return new SoftwareVersion("dataset", "project", "1", data, null, efforts, null, LocalDateTime.now(), null);
+	}
+}
@@ -0,0 +1,74 @@
+package de.ugoe.cs.cpdp.dataselection;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.experiment.Stats;
+
+public class VersionCharacteristicsCacheTest {
+
+	@Test
+	public void testCharacteristics() {
+		Random random = new Random(1);
+		for (int run = 0; run < 10; run++) {
+			Instances data = createData(random, 1 + random.nextInt(200));
+			double[][] characteristics = VersionCharacteristicsCache.computeCharacteristics(data);
+			assertNull(characteristics[data.classIndex()]);
+			for (int j = 0; j < data.numAttributes() - 1; j++) {
+				Stats stats = data.attributeStats(j).numericStats;
+				double tolerance = 1.0e-12 * (1.0 + Math.abs(stats.mean) + Math.abs(stats.stdDev));
+				assertEquals(stats.mean, characteristics[j][VersionCharacteristicsCache.MEAN], tolerance);
+				assertEquals(stats.stdDev, characteristics[j][VersionCharacteristicsCache.STDDEV], tolerance);
+				assertEquals(data.variance(j), characteristics[j][VersionCharacteristicsCache.VAR], 0.0);
+				assertEquals(stats.min, characteristics[j][VersionCharacteristicsCache.MIN], 0.0);
+				assertEquals(stats.max, characteristics[j][VersionCharacteristicsCache.MAX], 0.0);
+				assertEquals(Utils.kthSmallestValue(data.attributeToDoubleArray(j), data.size() / 2),
+						characteristics[j][VersionCharacteristicsCache.MEDIAN], 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidatedByChanges() {
+		SoftwareVersion version = new SoftwareVersion("dataset", "project", "1", createData(new Random(1), 50), null,
+				null, null, LocalDateTime.now(), null);
+		double[][] characteristics = VersionCharacteristicsCache.characteristics(version);
+		assertSame(characteristics, VersionCharacteristicsCache.characteristics(new SoftwareVersion(version)));
+
+		version.getInstances().get(0).setValue(0, 1.0e6);
+		double[][] changed = VersionCharacteristicsCache.characteristics(version);
+		assertNotSame(characteristics, changed);
+		assertEquals(1.0e6, changed[0][VersionCharacteristicsCache.MAX], 0.0);
+	}
+
+	private static Instances createData(Random random, int numInstances) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 4; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("data", attributes, numInstances);
+		data.setClassIndex(4);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[5];
+			values[0] = random.nextGaussian() * 1000.0;
+			values[1] = random.nextInt(5);
+			values[2] = random.nextDouble() < 0.1 ? Double.NaN : Math.exp(random.nextGaussian());
+			values[3] = 7.0;
+			values[4] = random.nextInt(2);
+			data.add(new DenseInstance(random.nextDouble() < 0.5 ? 1.0 : 2.5, values));
+		}
+		return data;
+	}
+}
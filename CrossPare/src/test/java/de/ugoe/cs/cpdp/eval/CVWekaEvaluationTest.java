@@ -0,0 +1,70 @@
+package de.ugoe.cs.cpdp.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class CVWekaEvaluationTest {
+
+	@Test
+	public void testSameResultsAsCrossValidateModel() throws Exception {
+		Instances data = createData();
+		for (Classifier classifier : new Classifier[] { new NaiveBayes(), new J48() }) {
+			Evaluation expected = new Evaluation(data);
+			expected.crossValidateModel(classifier, data, 10, new Random(1));
+
+			CVWekaEvaluation evaluation = new CVWekaEvaluation();
+			evaluation.setNumThreads(4);
+			Evaluation actual = evaluation.createEvaluator(data, classifier);
+
+			assertEquals(expected.numInstances(), actual.numInstances(), 0.0);
+			assertArrayEquals(expected.confusionMatrix(), actual.confusionMatrix());
+			assertEquals(expected.errorRate(), actual.errorRate(), 1e-12);
+			assertEquals(expected.recall(1), actual.recall(1), 1e-12);
+			assertEquals(expected.precision(1), actual.precision(1), 1e-12);
+			assertEquals(expected.fMeasure(1), actual.fMeasure(1), 1e-12);
+			assertEquals(expected.matthewsCorrelationCoefficient(1),
+					actual.matthewsCorrelationCoefficient(1), 1e-12);
+			assertEquals(expected.areaUnderROC(1), actual.areaUnderROC(1), 1e-12);
+			assertEquals(expected.meanAbsoluteError(), actual.meanAbsoluteError(), 1e-12);
+			assertEquals(expected.rootMeanSquaredError(), actual.rootMeanSquaredError(), 1e-12);
+			// metrics that depend on the class priors of the folds
+			assertEquals(expected.relativeAbsoluteError(), actual.relativeAbsoluteError(), 1e-9);
+			assertEquals(expected.rootRelativeSquaredError(), actual.rootRelativeSquaredError(), 1e-9);
+			assertEquals(expected.KBInformation(), actual.KBInformation(), 1e-9);
+			assertEquals(expected.SFMeanPriorEntropy(), actual.SFMeanPriorEntropy(), 1e-9);
+		}
+	}
+
+	private static Instances createData() {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 4; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("data", attributes, 0);
+		data.setClassIndex(4);
+		for (int i = 0; i < 503; i++) {
+			double[] values = new double[5];
+			values[4] = random.nextDouble() < 0.2 ? 1.0 : 0.0;
+			for (int j = 0; j < 4; j++) {
+				values[j] = random.nextGaussian() + values[4] * j * 0.5;
+			}
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+}
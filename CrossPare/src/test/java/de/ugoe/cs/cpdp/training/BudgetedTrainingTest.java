@@ -0,0 +1,86 @@
+package de.ugoe.cs.cpdp.training;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.util.TrainingBudget;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.rules.ZeroR;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class BudgetedTrainingTest {
+
+	private static final String TUNED_J48 = "J48 weka.classifiers.trees.J48 -CVPARAM M 1 100 100 C 0.1 0.5 5";
+
+	@Test
+	public void testWithinBudget() {
+		WekaTraining trainer = new WekaTraining();
+		trainer.setParameter("NB weka.classifiers.bayes.NaiveBayes");
+		BudgetedTraining training = new BudgetedTraining(trainer, new TrainingBudget(60000, 0), null);
+		training.apply(createVersion());
+
+		assertNull(training.getFallbackReason());
+		assertTrue(training.getClassifier() instanceof NaiveBayes);
+		assertEquals("NB", training.getName());
+	}
+
+	@Test
+	public void testTimeBudgetExceeded() {
+		WekaTraining trainer = new WekaTraining();
+		trainer.setParameter(TUNED_J48);
+		BudgetedTraining training = new BudgetedTraining(trainer, new TrainingBudget(1, 0),
+				"weka.classifiers.bayes.NaiveBayes -K");
+		training.apply(createVersion());
+
+		assertTrue(training.getFallbackReason().startsWith("time budget"));
+		assertTrue(training.getClassifier() instanceof NaiveBayes);
+		assertTrue(((NaiveBayes) training.getClassifier()).getUseKernelEstimator());
+	}
+
+	@Test
+	public void testMemoryBudgetExceeded() {
+		WekaTraining trainer = new WekaTraining();
+		trainer.setParameter(TUNED_J48);
+		BudgetedTraining training = new BudgetedTraining(trainer, new TrainingBudget(0, 1 << 20), null);
+		training.apply(createVersion());
+
+		assertTrue(training.getFallbackReason().startsWith("memory budget"));
+		assertTrue(training.getClassifier() instanceof ZeroR);
+	}
+
+	@Test
+	public void testCheckpointOutsideOfBudget() {
+		// must not throw
+		TrainingBudget.checkpoint();
+	}
+
+	private static SoftwareVersion createVersion() {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 4; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances("test", attributes, 0);
+		instances.setClassIndex(4);
+		for (int i = 0; i < 200; i++) {
+			double[] values = new double[5];
+			values[4] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+			for (int j = 0; j < 4; j++) {
+				values[j] = random.nextGaussian() + values[4] * j;
+			}
+			instances.add(new DenseInstance(1.0, values));
+		}
+		return new SoftwareVersion("dataset", "project", "1", instances, null, null, null, LocalDateTime.now(),
+				null);
+	}
+}
@@ -0,0 +1,69 @@
+package de.ugoe.cs.cpdp.training;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HypervolumeConvergenceTest {
+
+	@Test
+	public void testHypervolumeStaircase() {
+		// the rule of complexity 2 remains the best until complexity 4
+		double[] bestCostRanges = new double[] { 1.0, 3.0, Double.NaN, 2.0, 5.0 };
+		assertEquals(1.0 + 3.0 + 3.0 + 3.0 + 5.0, HypervolumeConvergence.hypervolume(bestCostRanges), 0.0);
+	}
+
+	@Test
+	public void testHypervolumeEmptyFront() {
+		double[] bestCostRanges = new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NaN };
+		assertEquals(0.0, HypervolumeConvergence.hypervolume(bestCostRanges), 0.0);
+	}
+
+	@Test
+	public void testConvergesAfterStagnation() {
+		HypervolumeConvergence convergence = new HypervolumeConvergence(3, 0.01, 0);
+		assertFalse(convergence.update(10.0, 1000));
+		assertFalse(convergence.update(12.0, 2000));
+		assertFalse(convergence.update(12.05, 3000));
+		assertFalse(convergence.update(12.05, 4000));
+		assertEquals(2, convergence.getStagnation());
+		assertTrue(convergence.update(12.1, 5000));
+		assertEquals(5, convergence.getGeneration());
+	}
+
+	@Test
+	public void testImprovementResetsStagnation() {
+		HypervolumeConvergence convergence = new HypervolumeConvergence(2, 0.01, 0);
+		assertFalse(convergence.update(10.0, 1000));
+		assertFalse(convergence.update(10.0, 2000));
+		assertFalse(convergence.update(11.0, 3000));
+		assertEquals(0, convergence.getStagnation());
+		assertFalse(convergence.update(11.0, 4000));
+		assertTrue(convergence.update(11.0, 5000));
+	}
+
+	@Test
+	public void testMinimalTrainingTime() {
+		HypervolumeConvergence convergence = new HypervolumeConvergence(1, 0.01, 10000);
+		assertFalse(convergence.update(10.0, 1000));
+		assertFalse(convergence.update(10.0, 2000));
+		assertFalse(convergence.update(10.0, 9999));
+		assertTrue(convergence.update(10.0, 10000));
+	}
+
+	@Test
+	public void testEmptyFrontDoesNotConverge() {
+		HypervolumeConvergence convergence = new HypervolumeConvergence(2, 0.01, 0);
+		for (int i = 1; i <= 10; i++) {
+			assertFalse(convergence.update(0.0, i * 1000));
+		}
+	}
+
+	@Test
+	public void testDisabled() {
+		HypervolumeConvergence convergence = new HypervolumeConvergence(0, 0.01, 0);
+		for (int i = 1; i <= 10; i++) {
+			assertFalse(convergence.update(10.0, i * 1000));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package de.ugoe.cs.cpdp.training;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+
+import de.ugoe.cs.cpdp.ExperimentConfiguration;
+import de.ugoe.cs.cpdp.loader.IVersionLoader;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Benchmark of the scaling of the {@link MetricMatchingTraining} with the number of attributes and
+ * threads. The versions are loaded with the loaders of a heterogeneous configuration (default:
+ * testdata/configurations/AEEEM_RELINK-Nam15HDP.xml). If the data is not available, synthetic
+ * versions with the shape of AEEEM (61 attributes) and ReLink (26 attributes) are used. This is
+ * not a unit test, it is executed through the main method.
+ * </p>
+ *
+ * @author Steffen Herbold
+ */
+public class MetricMatchingTrainingBenchmark {
+
+	private static final String DEFAULT_CONFIG = "testdata/configurations/AEEEM_RELINK-Nam15HDP.xml";
+
+	private static final int[] ATTRIBUTE_COUNTS = new int[] { 15, 30, 60, 120, 240 };
+
+	private static final String[] METHODS = new String[] { "ks", "spearman", "percentile" };
+
+	private static final int REPETITIONS = 3;
+
+	public static void main(String[] args) throws Exception {
+		String configFile = args.length > 0 ? args[0] : DEFAULT_CONFIG;
+		List<SoftwareVersion> versions = loadVersions(configFile);
+		if (versions.size() < 2) {
+			System.out.println("data of " + configFile + " not available, using synthetic data");
+			versions = createSyntheticVersions();
+		}
+		SoftwareVersion testversion = versions.get(0);
+		List<SoftwareVersion> trainversions = versions.subList(1, versions.size());
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("method;attributes;threads;milliseconds");
+		for (String method : METHODS) {
+			for (int numAttributes : ATTRIBUTE_COUNTS) {
+				SoftwareVersion scaledTest = scale(testversion, numAttributes);
+				SetUniqueList<SoftwareVersion> scaledTrain = SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+				for (SoftwareVersion trainversion : trainversions) {
+					scaledTrain.add(scale(trainversion, numAttributes));
+				}
+				for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(2 * threads, maxThreads) : threads + 1) {
+					long millis = Long.MAX_VALUE;
+					try {
+						for (int i = 0; i < REPETITIONS; i++) {
+							MetricMatchingTraining training = new MetricMatchingTraining();
+							training.setParameter("NB weka.classifiers.bayes.NaiveBayes");
+							training.setMethod(method);
+							training.setThreshold("0.05");
+							training.setNumThreads(threads);
+							long start = System.nanoTime();
+							training.apply(scaledTrain, scaledTest);
+							millis = Math.min(millis, (System.nanoTime() - start) / 1000000);
+						}
+						System.out.println(method + ";" + numAttributes + ";" + threads + ";" + millis);
+					} catch (RuntimeException e) {
+						System.out.println(method + ";" + numAttributes + ";" + threads + ";failed: " + e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	private static List<SoftwareVersion> loadVersions(String configFile) {
+		List<SoftwareVersion> versions = new ArrayList<>();
+		try {
+			ExperimentConfiguration config = new ExperimentConfiguration(configFile);
+			for (IVersionLoader loader : config.getLoaders()) {
+				versions.addAll(loader.load());
+			}
+		} catch (Exception e) {
+			System.out.println("could not load " + configFile + ": " + e.getMessage());
+			versions.clear();
+		}
+		return versions;
+	}
+
+	private static List<SoftwareVersion> createSyntheticVersions() {
+		Random random = new Random(1);
+		List<SoftwareVersion> versions = new ArrayList<>();
+		versions.add(createSyntheticVersion("RELINK", "target", 26, 200, random));
+		for (int i = 0; i < 4; i++) {
+			versions.add(createSyntheticVersion("AEEEM", "source" + i, 61, 300 + 100 * i, random));
+		}
+		versions.add(createSyntheticVersion("RELINK", "source", 26, 150, random));
+		return versions;
+	}
+
+	private static SoftwareVersion createSyntheticVersion(String dataset, String project, int numAttributes,
+			int numInstances, Random random) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute(project + "_metric" + j));
+		}
+		ArrayList<String> classValues = new ArrayList<>();
+		classValues.add("0");
+		classValues.add("1");
+		attributes.add(new Attribute("bug", classValues));
+		Instances instances = new Instances(project, attributes, numInstances);
+		instances.setClassIndex(numAttributes);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 1];
+			values[numAttributes] = random.nextDouble() < 0.2 ? 1.0 : 0.0;
+			for (int j = 0; j < numAttributes; j++) {
+				// skewed metric values, shifted for defective instances
+				values[j] = Math.exp(random.nextGaussian() + (j % 3) + values[numAttributes] * (j % 2));
+			}
+			instances.add(new DenseInstance(1.0, values));
+		}
+		return new SoftwareVersion(dataset, project, "1", instances, null, null, null, LocalDateTime.now(), null);
+	}
+
+	private static SoftwareVersion scale(SoftwareVersion version, int numAttributes) {
+		Instances data = version.getInstances();
+		ArrayList<Integer> columns = new ArrayList<>();
+		for (int j = 0; j < data.numAttributes(); j++) {
+			if (j != data.classIndex()) {
+				columns.add(j);
+			}
+		}
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add((Attribute) data.classAttribute().copy());
+		Instances scaled = new Instances(data.relationName(), attributes, data.numInstances());
+		scaled.setClassIndex(numAttributes);
+		for (int i = 0; i < data.numInstances(); i++) {
+			double[] values = new double[numAttributes + 1];
+			for (int j = 0; j < numAttributes; j++) {
+				// replicated columns are shifted to avoid identical columns
+				values[j] = data.instance(i).value(columns.get(j % columns.size())) + j / columns.size();
+			}
+			values[numAttributes] = data.instance(i).classValue();
+			scaled.add(new DenseInstance(data.instance(i).weight(), values));
+		}
+		return new SoftwareVersion(version.getDataset(), version.getProject(), version.getVersion(), scaled, null,
+				null, null, LocalDateTime.now(), null);
+	}
+}
@@ -0,0 +1,107 @@
+package de.ugoe.cs.cpdp.training;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.collections4.list.SetUniqueList;
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.util.CrosspareUtils;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.classifiers.functions.Logistic;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class WekaDecrementalTrainingTest {
+
+	@Test
+	public void testNaiveBayesMatchesRetraining() throws Exception {
+		// the numeric precision of the estimators is determined from the union of the versions
+		assertLeaveOneOutMatchesRetraining("NB weka.classifiers.bayes.NaiveBayesUpdateable", new NaiveBayesUpdateable(),
+				createVersions(false), 0.05);
+	}
+
+	@Test
+	public void testNaiveBayesSamePrecisionMatchesRetraining() throws Exception {
+		assertLeaveOneOutMatchesRetraining("NB weka.classifiers.bayes.NaiveBayes", new NaiveBayesUpdateable(),
+				createVersions(true), 1.0e-9);
+	}
+
+	@Test
+	public void testFallbackToRetraining() throws Exception {
+		assertLeaveOneOutMatchesRetraining("Logistic weka.classifiers.functions.Logistic", new Logistic(),
+				createVersions(false), 0.0);
+	}
+
+	@Test
+	public void testVerificationUsesRetraining() throws Exception {
+		assertLeaveOneOutMatchesRetraining("NB weka.classifiers.bayes.NaiveBayesUpdateable -VERIFY 0.0",
+				new NaiveBayesUpdateable(), createVersions(false), 0.0);
+	}
+
+	private static void assertLeaveOneOutMatchesRetraining(String parameters, Classifier retrained,
+			List<SoftwareVersion> versions, double tolerance) throws Exception {
+		WekaDecrementalTraining training = new WekaDecrementalTraining();
+		training.setParameter(parameters);
+		for (int left = 0; left < versions.size(); left++) {
+			SetUniqueList<SoftwareVersion> trainversionSet = SetUniqueList.setUniqueList(new LinkedList<SoftwareVersion>());
+			for (int i = 0; i < versions.size(); i++) {
+				if (i != left) {
+					// the experiments copy the versions for each run
+					trainversionSet.add(new SoftwareVersion(versions.get(i)));
+				}
+			}
+			training.apply(trainversionSet);
+
+			Instances traindata = CrosspareUtils.makeSingleTrainingSet(trainversionSet);
+			retrained.buildClassifier(traindata);
+			for (Instance instance : versions.get(left).getInstances()) {
+				double[] expected = retrained.distributionForInstance(instance);
+				double[] actual = training.getClassifier().distributionForInstance(instance);
+				assertArrayEquals(expected, actual, tolerance);
+			}
+		}
+	}
+
+	private static List<SoftwareVersion> createVersions(boolean fullRangeIntegers) {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 5; j++) {
+			attributes.add(new Attribute("metric" + j));
+		}
+		attributes.add(new Attribute("size", Arrays.asList("small", "medium", "large")));
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		List<SoftwareVersion> versions = new ArrayList<>();
+		for (int v = 0; v < 4; v++) {
+			Instances instances = new Instances("version" + v, attributes, 0);
+			instances.setClassIndex(6);
+			for (int i = 0; i < 100; i++) {
+				double[] values = new double[7];
+				values[6] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+				for (int j = 0; j < 5; j++) {
+					if (fullRangeIntegers) {
+						// all values 0, ..., 9 occur in each version, hence the precision is always 1
+						values[j] = i < 10 ? i : random.nextInt(10 - (int) values[6] * j / 2) + (int) values[6] * j / 2;
+					} else {
+						values[j] = random.nextGaussian() + values[6] * j + v;
+					}
+				}
+				values[5] = random.nextInt(3);
+				instances.add(new DenseInstance(1.0, values));
+			}
+			versions.add(new SoftwareVersion("dataset", "project" + v, "1", instances, null, null, null,
+					LocalDateTime.now(), null));
+		}
+		return versions;
+	}
+}
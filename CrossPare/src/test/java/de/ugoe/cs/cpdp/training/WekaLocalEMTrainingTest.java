@@ -0,0 +1,83 @@
+package de.ugoe.cs.cpdp.training;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class WekaLocalEMTrainingTest {
+
+	@Test
+	public void testBatchEqualsSingleClassification() throws Exception {
+		assertBatchEqualsSingleClassification("NB weka.classifiers.bayes.NaiveBayes");
+	}
+
+	@Test
+	public void testBatchPredictorEqualsSingleClassification() throws Exception {
+		assertBatchEqualsSingleClassification(
+				"NB de.ugoe.cs.cpdp.training.WekaLocalEMTrainingTest$BatchNaiveBayes -threads 2");
+	}
+
+	private static void assertBatchEqualsSingleClassification(String parameters) throws Exception {
+		WekaLocalEMTraining training = new WekaLocalEMTraining();
+		training.setParameter(parameters);
+		training.apply(createVersion(1, 300));
+
+		Instances testdata = createVersion(2, 100).getInstances();
+		Classifier classifier = training.getClassifier();
+		double[][] distributions = ((WekaLocalEMTraining.TraindatasetCluster) classifier)
+				.distributionsForInstances(testdata);
+		assertEquals(testdata.size(), distributions.length);
+		for (int i = 0; i < testdata.size(); i++) {
+			double[] expected = new double[testdata.numClasses()];
+			expected[(int) classifier.classifyInstance(testdata.get(i))] = 1.0;
+			assertArrayEquals(expected, distributions[i], 0.0);
+		}
+	}
+
+	private static SoftwareVersion createVersion(long seed, int numInstances) {
+		Random random = new Random(seed);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 3; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances("test", attributes, 0);
+		instances.setClassIndex(3);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[4];
+			double center = 10.0 * random.nextInt(3);
+			values[3] = random.nextDouble() < 0.4 ? 1.0 : 0.0;
+			for (int j = 0; j < 3; j++) {
+				values[j] = center + random.nextGaussian() + values[3] * j;
+			}
+			instances.add(new DenseInstance(1.0, values));
+		}
+		return new SoftwareVersion("dataset", "project", "1", instances, null, null, null, LocalDateTime.now(),
+				null);
+	}
+
+	/**
+	 * Naive Bayes that claims to support batch prediction.
+	 */
+	public static class BatchNaiveBayes extends NaiveBayes {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean implementsMoreEfficientBatchPrediction() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package de.ugoe.cs.cpdp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+public class ColumnMatrixTest {
+
+	@Test
+	public void testSelect() {
+		Random random = new Random(1);
+		for (int n = 1; n < 50; n++) {
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				// many ties
+				values[i] = random.nextInt(5);
+			}
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+			for (int k = 0; k < n; k++) {
+				assertEquals(sorted[k], ColumnMatrix.select(values.clone(), k), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testKthSmallestValues() {
+		Instances data = createData(101, 20);
+		data.get(3).setMissing(0);
+		for (int numThreads : new int[] { 1, 4 }) {
+			ColumnMatrix matrix = new ColumnMatrix(data, numThreads);
+			for (int k : new int[] { 1, 51, 101 }) {
+				double[] values = matrix.kthSmallestValues(k);
+				for (int j = 0; j < data.numAttributes(); j++) {
+					if (j == data.classIndex()) {
+						assertEquals(0.0, values[j], 0.0);
+					}
+					else {
+						assertEquals(data.kthSmallestValue(j, k), values[j], 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCountsAndViolations() {
+		Instances data = createData(50, 20);
+		ColumnMatrix matrix = new ColumnMatrix(data, 4);
+		double[] thresholds = matrix.kthSmallestValues(25);
+		boolean[] high = new boolean[data.numInstances()];
+		for (int i = 0; i < high.length; i++) {
+			high[i] = i % 3 == 0;
+		}
+		boolean[] selected = new boolean[data.numAttributes()];
+		for (int j = 0; j < selected.length; j++) {
+			selected[j] = j % 2 == 0;
+		}
+
+		int[] countAbove = matrix.countAbove(thresholds);
+		int[] columnViolations = matrix.columnViolations(thresholds, high);
+		int[] rowViolations = matrix.rowViolations(thresholds, high, selected);
+		int[] expectedColumnViolations = new int[data.numAttributes()];
+		for (int i = 0; i < data.numInstances(); i++) {
+			Instance instance = data.get(i);
+			int expectedCountAbove = 0;
+			int expectedRowViolations = 0;
+			for (int j = 0; j < data.numAttributes(); j++) {
+				if (j != data.classIndex()) {
+					boolean above = instance.value(j) > thresholds[j];
+					if (above) {
+						expectedCountAbove++;
+					}
+					if (above != high[i]) {
+						expectedColumnViolations[j]++;
+						if (selected[j]) {
+							expectedRowViolations++;
+						}
+					}
+				}
+			}
+			assertEquals(expectedCountAbove, countAbove[i]);
+			assertEquals(expectedRowViolations, rowViolations[i]);
+		}
+		assertArrayEquals(expectedColumnViolations, columnViolations);
+	}
+
+	@Test
+	public void testRowSumsIndependentOfThreads() {
+		Instances data = createData(30, 40);
+		ColumnMatrix.ColumnFunction logValues = (j, column, result) -> {
+			for (int i = 0; i < column.length; i++) {
+				result[i] = Math.log(column[i] + j);
+			}
+		};
+		double[] sequential = new ColumnMatrix(data, 1).rowSums(logValues);
+		double[] parallel = new ColumnMatrix(data, 4).rowSums(logValues);
+		assertArrayEquals(sequential, parallel, 0.0);
+		for (int i = 0; i < data.numInstances(); i++) {
+			double expected = 0.0;
+			for (int j = 0; j < data.numAttributes(); j++) {
+				if (j != data.classIndex()) {
+					expected += Math.log(data.get(i).value(j) + j);
+				}
+			}
+			assertTrue(Utils.eq(expected, sequential[i]));
+		}
+	}
+
+	private static Instances createData(int numInstances, int numAttributes) {
+		Random random = new Random(numInstances);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		// the class is in the middle of a block of attributes
+		attributes.add(numAttributes / 2, new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("test", attributes, 0);
+		data.setClassIndex(numAttributes / 2);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 1];
+			for (int j = 0; j <= numAttributes; j++) {
+				values[j] = random.nextInt(10);
+			}
+			values[data.classIndex()] = random.nextInt(2);
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+}
@@ -0,0 +1,103 @@
+package de.ugoe.cs.cpdp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class HammingIndexTest {
+
+	@Test
+	public void testNearest() {
+		Random random = new Random(42);
+		for (int run = 0; run < 20; run++) {
+			int numAttributes = 1 + random.nextInt(40);
+			int numValues = 1 + random.nextInt(run < 10 ? 4 : 500);
+			int classIndex = random.nextInt(numAttributes + 1);
+			Instances traindata = createData(random, numAttributes, classIndex, numValues, 1 + random.nextInt(150));
+			Instances testdata = createData(random, numAttributes, classIndex, numValues + 2, 50);
+			HammingIndex index = new HammingIndex(traindata);
+
+			int[][] batch = index.nearest(testdata, 3);
+			for (int i = 0; i < testdata.size(); i++) {
+				int[] expected = bruteForceNearest(testdata.get(i), traindata, -1);
+				assertArrayEquals(expected, index.nearest(testdata.get(i)));
+				assertArrayEquals(expected, batch[i]);
+				for (int j = 0; j < traindata.size(); j++) {
+					assertEquals(WekaUtils.hammingDistance(testdata.get(i), traindata.get(j)),
+							index.distance(testdata.get(i), j), 0.0);
+				}
+			}
+			for (int j = 0; j < traindata.size(); j++) {
+				assertArrayEquals(bruteForceNearest(traindata.get(j), traindata, j), index.nearest(j));
+			}
+		}
+	}
+
+	@Test
+	public void testSpecialValues() {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		attributes.add(new Attribute("attr1"));
+		attributes.add(new Attribute("attr2"));
+		attributes.add(new Attribute("class"));
+		Instances traindata = new Instances("train", attributes, 0);
+		traindata.setClassIndex(2);
+		traindata.add(new DenseInstance(1.0, new double[] { 0.0, Double.NaN, 1.0 }));
+		traindata.add(new DenseInstance(1.0, new double[] { 1.0, 2.0, 0.0 }));
+		HammingIndex index = new HammingIndex(traindata);
+
+		// -0.0 == 0.0, NaN != NaN
+		Instance instance = new DenseInstance(1.0, new double[] { -0.0, Double.NaN, 0.0 });
+		instance.setDataset(traindata);
+		assertEquals(1, index.distance(instance, 0));
+		assertEquals(2, index.distance(instance, 1));
+		assertArrayEquals(new int[] { 0 }, index.nearest(instance));
+
+		// values that are not part of the index never match
+		instance = new DenseInstance(1.0, new double[] { 5.0, 7.0, 0.0 });
+		instance.setDataset(traindata);
+		assertArrayEquals(new int[] { 0, 1 }, index.nearest(instance));
+	}
+
+	private static Instances createData(Random random, int numAttributes, int classIndex, int numValues,
+			int numInstances) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("class"));
+		Instances data = new Instances("data", attributes, numInstances);
+		data.setClassIndex(classIndex);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 1];
+			for (int j = 0; j < values.length; j++) {
+				values[j] = random.nextDouble() < 0.05 ? Double.NaN : random.nextInt(numValues) * 0.5;
+			}
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+
+	private static int[] bruteForceNearest(Instance instance, Instances data, int exclude) {
+		double minDistance = Double.MAX_VALUE;
+		for (int j = 0; j < data.size(); j++) {
+			if (j != exclude) {
+				minDistance = Math.min(minDistance, WekaUtils.hammingDistance(instance, data.get(j)));
+			}
+		}
+		ArrayList<Integer> nearest = new ArrayList<>();
+		for (int j = 0; j < data.size(); j++) {
+			if (j != exclude && WekaUtils.hammingDistance(instance, data.get(j)) <= minDistance) {
+				nearest.add(j);
+			}
+		}
+		return nearest.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,139 @@
+package de.ugoe.cs.cpdp.util;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.dataprocessing.Oversampling;
+import de.ugoe.cs.cpdp.dataprocessing.Undersampling;
+import de.ugoe.cs.cpdp.dataselection.OutOfSampleBootstrap;
+import de.ugoe.cs.cpdp.versions.SoftwareVersion;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+public class IndexSamplingTest {
+
+	@Test
+	public void testClassIndices() {
+		int[][] classIndices = IndexSampling.classIndices(createVersion(10).getInstances());
+		assertArrayEquals(new int[] { 0, 1, 3, 4, 6, 7, 9 }, classIndices[0]);
+		assertArrayEquals(new int[] { 2, 5, 8 }, classIndices[1]);
+	}
+
+	@Test
+	public void testClassIndicesMissingClass() {
+		Instances data = createVersion(10).getInstances();
+		data.get(3).setClassMissing();
+		data.get(5).setClassMissing();
+		int[][] classIndices = IndexSampling.classIndices(data);
+		assertArrayEquals(new int[] { 0, 1, 4, 6, 7, 9 }, classIndices[0]);
+		assertArrayEquals(new int[] { 2, 8 }, classIndices[1]);
+	}
+
+	@Test
+	public void testUniformClassSample() {
+		int[][] classIndices = new int[][] { { 0, 1, 2, 3, 4, 5, 6 }, {}, { 7, 8, 9 } };
+		int[] sample = IndexSampling.uniformClassSample(classIndices, 11, new Random(1));
+		assertEquals(11, sample.length);
+		for (int i = 0; i < sample.length; i++) {
+			assertEquals(i < 6, sample[i] < 7);
+		}
+	}
+
+	@Test
+	public void testOutOfSample() {
+		assertArrayEquals(new int[] { 1, 4 }, IndexSampling.outOfSample(5, new int[] { 3, 0, 3, 2, 0 }));
+	}
+
+	@Test
+	public void testSelect() {
+		SoftwareVersion version = createVersion(10);
+		IndexSampling.select(version, new int[] { 4, 2, 4 }, version);
+		assertAligned(version, 3);
+		assertEquals(Arrays.asList(4.0, 2.0, 4.0), version.getEfforts());
+		// duplicates are independent of each other
+		version.getInstances().get(0).setValue(0, -1.0);
+		assertEquals(4.0, version.getInstances().get(2).value(0), 0.0);
+	}
+
+	@Test
+	public void testUndersampling() {
+		SoftwareVersion version = createVersion(30);
+		new Undersampling().apply(null, version);
+		assertAligned(version, 20);
+		assertArrayEquals(new int[] { 10, 10 }, version.getInstances().attributeStats(1).nominalCounts);
+	}
+
+	@Test
+	public void testOversampling() {
+		SoftwareVersion version = createVersion(30);
+		new Oversampling().apply(null, version);
+		assertAligned(version, 40);
+		assertArrayEquals(new int[] { 20, 20 }, version.getInstances().attributeStats(1).nominalCounts);
+	}
+
+	@Test
+	public void testOutOfSampleBootstrap() {
+		for (int i = 0; i < 20; i++) {
+			SoftwareVersion testversion = createVersion(9);
+			SoftwareVersion trainversion = createVersion(1);
+			OutOfSampleBootstrap bootstrap = new OutOfSampleBootstrap();
+			bootstrap.setParameter("");
+			bootstrap.apply(testversion, trainversion);
+
+			assertAligned(trainversion, 9);
+			assertEquals(3, trainversion.getInstances().attributeStats(1).nominalCounts[1]);
+			assertAligned(testversion, testversion.getInstances().size());
+			assertTrue(testversion.getInstances().attributeStats(1).nominalCounts[1] >= 1);
+			for (double effort : testversion.getEfforts()) {
+				assertFalse(trainversion.getEfforts().contains(effort));
+			}
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testOutOfSampleBootstrapTooFewDefects() {
+		OutOfSampleBootstrap bootstrap = new OutOfSampleBootstrap();
+		bootstrap.setParameter("4");
+		bootstrap.apply(createVersion(9), createVersion(1));
+	}
+
+	private static void assertAligned(SoftwareVersion version, int size) {
+		assertEquals(size, version.getInstances().size());
+		assertEquals(size, version.getBugMatrix().size());
+		assertEquals(size, version.getNumBugs().size());
+		for (int i = 0; i < size; i++) {
+			double id = version.getInstances().get(i).value(0);
+			assertEquals(id, version.getEfforts().get(i), 0.0);
+			assertEquals(id, version.getNumBugs().get(i), 0.0);
+			assertEquals(id, version.getBugMatrix().get(i).value(0), 0.0);
+		}
+	}
+
+	private static SoftwareVersion createVersion(int size) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		attributes.add(new Attribute("id"));
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances instances = new Instances("version", attributes, 0);
+		instances.setClassIndex(1);
+		Instances bugMatrix = new Instances("bugs", new ArrayList<>(Arrays.asList(new Attribute("id"))), 0);
+		List<Double> efforts = new ArrayList<>();
+		List<Double> numBugs = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			// every third instance is defective
+			instances.add(new DenseInstance(1.0, new double[] { i, i % 3 == 2 ? 1.0 : 0.0 }));
+			bugMatrix.add(new DenseInstance(1.0, new double[] { i }));
+			efforts.add((double) i);
+			numBugs.add((double) i);
+		}
+		return new SoftwareVersion("dataset", "project", "1", instances, bugMatrix, efforts, numBugs,
+				LocalDateTime.now(), null);
+	}
+}
@@ -0,0 +1,114 @@
+package de.ugoe.cs.cpdp.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.ugoe.cs.cpdp.dataprocessing.MORPH;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+public class UnlikeNeighborIndexTest {
+
+	@Test
+	public void testNearest() {
+		Random random = new Random(42);
+		for (int run = 0; run < 20; run++) {
+			// few distinct values lead to many ties
+			int numValues = run < 10 ? 3 : 1000;
+			int numAttributes = 1 + random.nextInt(10);
+			Instances data = createData(random, numAttributes, numValues, random.nextInt(300));
+			Instances testdata = createData(random, numAttributes, numValues, 50);
+			UnlikeNeighborIndex index = new UnlikeNeighborIndex(data);
+			for (Instance instance : testdata) {
+				assertSame(MORPH.getNearestUnlikeNeighbor(instance, data), index.nearest(instance));
+			}
+			for (Instance instance : data) {
+				assertSame(MORPH.getNearestUnlikeNeighbor(instance, data), index.nearest(instance));
+			}
+		}
+	}
+
+	@Test
+	public void testAddAndUpdate() {
+		Random random = new Random(42);
+		for (int run = 0; run < 10; run++) {
+			int numValues = run < 5 ? 3 : 1000;
+			Instances data = createData(random, 4, numValues, 0);
+			UnlikeNeighborIndex index = new UnlikeNeighborIndex(data);
+			for (Instance instance : createData(random, 4, numValues, 300)) {
+				Instance query = createData(random, 4, numValues, 1).get(0);
+				assertSame(MORPH.getNearestUnlikeNeighbor(query, data), index.nearest(query));
+				data.add(instance);
+				index.add(data.lastInstance());
+			}
+			for (int i = 0; i < data.size(); i++) {
+				Instance instance = data.get(i);
+				instance.setValue(random.nextInt(4), random.nextInt(numValues));
+				if (i % 10 == 0) {
+					instance.setClassValue(1 - instance.classValue());
+				}
+				index.update(instance);
+				for (int j = 0; j < 5; j++) {
+					Instance query = data.get(random.nextInt(data.size()));
+					assertSame(MORPH.getNearestUnlikeNeighbor(query, data), index.nearest(query));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSpecialValues() {
+		Instances data = createData(new Random(1), 2, 10, 0);
+		UnlikeNeighborIndex index = new UnlikeNeighborIndex(data);
+		data.add(new DenseInstance(1.0, new double[] { 1.0, 1.0, 0.0, 0.0 }));
+		index.add(data.lastInstance());
+		Instance query = new DenseInstance(1.0, new double[] { 1.0, 1.0, 0.0, 0.0 });
+		query.setDataset(data);
+		assertNull(index.nearest(query));
+
+		data.add(new DenseInstance(1.0, new double[] { 3.0, 3.0, 0.0, 1.0 }));
+		index.add(data.lastInstance());
+		data.add(new DenseInstance(1.0, new double[] { 1.0, 3.0, 0.0, 1.0 }));
+		index.add(data.lastInstance());
+		data.add(new DenseInstance(1.0, new double[] { 3.0, 1.0, 0.0, 1.0 }));
+		index.add(data.lastInstance());
+		// ties are resolved by the order of the instances
+		assertSame(data.get(2), index.nearest(query));
+
+		// missing values switch to a linear scan
+		data.add(new DenseInstance(1.0, new double[] { Double.NaN, 1.0, 0.0, 1.0 }));
+		index.add(data.lastInstance());
+		assertSame(data.get(2), index.nearest(query));
+		data.get(3).setValue(0, 1.5);
+		index.update(data.get(3));
+		assertSame(data.get(3), index.nearest(query));
+	}
+
+	private static Instances createData(Random random, int numAttributes, int numValues, int numInstances) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < numAttributes; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("nominal", Arrays.asList("a", "b")));
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("data", attributes, numInstances);
+		data.setClassIndex(numAttributes + 1);
+		for (int i = 0; i < numInstances; i++) {
+			double[] values = new double[numAttributes + 2];
+			for (int j = 0; j < numAttributes; j++) {
+				values[j] = numValues < 10 ? random.nextInt(numValues) : random.nextGaussian();
+			}
+			values[numAttributes] = random.nextInt(2);
+			values[numAttributes + 1] = random.nextDouble() < 0.3 ? 1.0 : 0.0;
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+}
@@ -0,0 +1,76 @@
+package de.ugoe.cs.cpdp.wekaclassifier;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import weka.classifiers.meta.CVParameterSelection;
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+public class ParallelCVParameterSelectionTest {
+
+	@Test
+	public void testSameSelectionAsCVParameterSelection() throws Exception {
+		Instances data = createData();
+		CVParameterSelection expected = new CVParameterSelection();
+		ParallelCVParameterSelection actual = new ParallelCVParameterSelection();
+		assertNull(actual.getSelectedParameters());
+		actual.setNumThreads(4);
+		for (CVParameterSelection ps : new CVParameterSelection[] { expected, actual }) {
+			ps.setClassifier(new J48());
+			ps.setNumFolds(5);
+			ps.addCVParameter("C 0.1 0.5 5");
+			ps.addCVParameter("M 1 10 4");
+			ps.buildClassifier(data);
+		}
+
+		assertArrayEquals(expected.getBestClassifierOptions(), actual.getBestClassifierOptions());
+		assertEquals(Utils.joinOptions(expected.getBestClassifierOptions()), actual.getSelectedParameters());
+		for (Instance instance : data) {
+			assertEquals(expected.classifyInstance(instance), actual.classifyInstance(instance), 0.0);
+		}
+		assertTrue(actual.getTuningTime() >= 0);
+	}
+
+	@Test
+	public void testSuccessiveHalving() throws Exception {
+		ParallelCVParameterSelection ps = new ParallelCVParameterSelection();
+		ps.setSuccessiveHalving(true);
+		ps.setClassifier(new J48());
+		ps.setNumFolds(5);
+		ps.addCVParameter("C 0.1 0.5 5");
+		ps.buildClassifier(createData());
+
+		String confidence = ps.getBestClassifierOptions()[Arrays.asList(ps.getBestClassifierOptions()).indexOf("-C") + 1];
+		assertTrue(Double.parseDouble(confidence) >= 0.1 && Double.parseDouble(confidence) <= 0.5);
+	}
+
+	private static Instances createData() {
+		Random random = new Random(1);
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		for (int j = 0; j < 4; j++) {
+			attributes.add(new Attribute("attr" + j));
+		}
+		attributes.add(new Attribute("bug", Arrays.asList("0", "1")));
+		Instances data = new Instances("data", attributes, 0);
+		data.setClassIndex(4);
+		for (int i = 0; i < 100; i++) {
+			double[] values = new double[5];
+			for (int j = 0; j < 4; j++) {
+				values[j] = random.nextGaussian();
+			}
+			values[4] = values[0] + 0.5 * values[1] * values[2] + random.nextGaussian() > 0.3 ? 1 : 0;
+			data.add(new DenseInstance(1.0, values));
+		}
+		return data;
+	}
+}